@@ -0,0 +1,68 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.constants.Constants;
+import com.result.TopKCollector;
+import com.searcher.AccumulatorLimitStrategy;
+import com.searcher.BoundedAccumulatorSearch;
+import com.searcher.EasySearch;
+
+/**
+ * This class benchmarks the long queries with the BoundedAccumulatorSearch, for several accumulator limits and both
+ * strategies, against the dense accumulator of the EXHAUSTIVE retrieval measured by PostingsLoopBenchmark.
+ * Run with the GC profiler, gc.alloc.rate.norm is the allocation per query.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+	/* The synthetic index has 20000 documents, so the largest limit is never reached */
+	@Param({ "1000", "5000", "20000" })
+	public int accumulatorLimit;
+
+	@Param({ "QUIT", "CONTINUE" })
+	public AccumulatorLimitStrategy accumulatorLimitStrategy;
+
+	private Similarity similarity = new DefaultSimilarity();
+	private BoundedAccumulatorSearch boundedAccumulatorSearch;
+	private TopKCollector topKCollector;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		boundedAccumulatorSearch = new BoundedAccumulatorSearch(accumulatorLimit, accumulatorLimitStrategy);
+		topKCollector = new TopKCollector(Constants.TOP_K_RESULTS);
+	}
+
+	@Benchmark
+	public TopKCollector longQuery(IndexState indexState) throws Exception
+	{
+		String queryString = indexState.longQueries[nextQuery++ % indexState.longQueries.length];
+		return EasySearch.getBoundedTopKResults(indexState.searchSession, indexState.sessionSearcher, queryString, similarity,
+				boundedAccumulatorSearch, topKCollector);
+	}
+}
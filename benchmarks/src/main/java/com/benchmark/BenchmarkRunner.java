@@ -0,0 +1,31 @@
+package com.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks with the GC profiler, so the allocation rate is reported along with the throughput.
+ * It takes the usual JMH command line options, e.g. a regular expression selecting the benchmarks to run.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Main Function to run the benchmarks.
+	 * @param args
+	 *  JMH command line options
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
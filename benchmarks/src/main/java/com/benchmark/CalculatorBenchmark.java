@@ -0,0 +1,89 @@
+package com.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.calculator.Calculator;
+
+/**
+ * This class benchmarks the TF-IDF score of one posting, as computed by Calculator for every posting of a query term.
+ * The inputs are postings like values, precomputed so only the calculation is measured.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculatorBenchmark {
+
+	private static final int POSTING_COUNT = 1024;
+
+	private double[] termFrequencies;
+	private double[] documentLengths;
+	private double[] documentFrequencies;
+	private double[] iDFScores;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		termFrequencies = new double[POSTING_COUNT];
+		documentLengths = new double[POSTING_COUNT];
+		documentFrequencies = new double[POSTING_COUNT];
+		iDFScores = new double[POSTING_COUNT];
+		for(int index = 0; index < POSTING_COUNT; index++)
+		{
+			termFrequencies[index] = 1 + random.nextInt(10);
+			documentLengths[index] = 20 + random.nextInt(400);
+			documentFrequencies[index] = 1 + random.nextInt(SyntheticCollection.DOCUMENT_COUNT);
+			iDFScores[index] = Calculator.calculateIDFScore(documentFrequencies[index], SyntheticCollection.DOCUMENT_COUNT);
+		}
+	}
+
+	/**
+	 * Score with the IDF computed per posting.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(POSTING_COUNT)
+	public double tfIdfScore()
+	{
+		double sum = 0;
+		for(int index = 0; index < POSTING_COUNT; index++)
+		{
+			sum += Calculator.calculateTFIDFScoreForTerm(termFrequencies[index], documentLengths[index],
+					documentFrequencies[index], SyntheticCollection.DOCUMENT_COUNT);
+		}
+		return sum;
+	}
+
+	/**
+	 * Score with the IDF precomputed per term, as the search loop does.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(POSTING_COUNT)
+	public double tfIdfScoreWithPrecomputedIdf()
+	{
+		double sum = 0;
+		for(int index = 0; index < POSTING_COUNT; index++)
+		{
+			sum += Calculator.calculateTFIDFScoreForTerm(termFrequencies[index], documentLengths[index], iDFScores[index]);
+		}
+		return sum;
+	}
+}
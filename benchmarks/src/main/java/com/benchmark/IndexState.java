@@ -0,0 +1,90 @@
+package com.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.searcher.SearchSession;
+import com.searcher.SessionSearcher;
+import com.searcher.SimilarityFactory;
+
+/**
+ * This class is the benchmark state holding the synthetic index, opened in a SearchSession, and the queries.
+ * The index is built once per fork and deleted at the end.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Benchmark)
+public class IndexState {
+
+	public static final String[] ALGORITHM_NAMES = { "DEFAULT_VECTOR", "BM25", "LMDirichlet", "LMJelinek" };
+
+	/* Title queries are short, description queries are long */
+	private static final int QUERY_COUNT = 50;
+	private static final int SHORT_QUERY_TERM_COUNT = 3;
+	private static final int LONG_QUERY_TERM_COUNT = 15;
+
+	public SearchSession searchSession;
+	public SessionSearcher sessionSearcher;
+	public String[] shortQueries;
+	public String[] longQueries;
+
+	private Path indexDirectory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		indexDirectory = SyntheticCollection.buildIndex();
+		/* The term score cache is disabled, so every query walks the postings as the benchmarks intend */
+		searchSession = new SearchSession(indexDirectory.toString(), 0);
+		sessionSearcher = searchSession.acquire();
+		shortQueries = SyntheticCollection.generateQueries(QUERY_COUNT, SHORT_QUERY_TERM_COUNT);
+		longQueries = SyntheticCollection.generateQueries(QUERY_COUNT, LONG_QUERY_TERM_COUNT);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		searchSession.release(sessionSearcher);
+		searchSession.close();
+		try(Stream<Path> paths = Files.walk(indexDirectory))
+		{
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Returns the similarity compared by CompareAlgorithms under the specified algorithm name.
+	 *
+	 * @param algorithmName
+	 *  one of ALGORITHM_NAMES
+	 * @return
+	 *  similarity
+	 */
+	public static Similarity createSimilarity(String algorithmName)
+	{
+		return SimilarityFactory.create(algorithmName);
+	}
+
+	/**
+	 * Returns the null device, so the output benchmarks measure formatting and writing without filling the disk.
+	 *
+	 * @return
+	 *  path of the null device
+	 */
+	public static String getNullDevicePath()
+	{
+		return File.separatorChar == '\\' ? "NUL" : "/dev/null";
+	}
+}
@@ -0,0 +1,67 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.constants.Constants;
+import com.result.RankedResults;
+import com.searcher.MultiSimilaritySearch;
+
+/**
+ * This class benchmarks searching the top 1000 documents under all the similarities of CompareAlgorithms at once
+ * with MultiSimilaritySearch, to be compared with the sum of SimilaritySearchBenchmark over the similarities.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiSimilaritySearchBenchmark {
+
+	private MultiSimilaritySearch multiSimilaritySearch;
+	private Query[] shortQueries;
+	private Query[] longQueries;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp(IndexState indexState) throws Exception
+	{
+		Similarity[] similarities = new Similarity[IndexState.ALGORITHM_NAMES.length];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			similarities[similarityIndex] = IndexState.createSimilarity(IndexState.ALGORITHM_NAMES[similarityIndex]);
+		}
+		multiSimilaritySearch = new MultiSimilaritySearch(indexState.sessionSearcher, similarities);
+		shortQueries = SimilaritySearchBenchmark.parseQueries(indexState, indexState.shortQueries);
+		longQueries = SimilaritySearchBenchmark.parseQueries(indexState, indexState.longQueries);
+	}
+
+	@Benchmark
+	public RankedResults[] shortQuery() throws Exception
+	{
+		return multiSimilaritySearch.search(shortQueries[nextQuery++ % shortQueries.length], "51", Constants.TOP_K_RESULTS);
+	}
+
+	@Benchmark
+	public RankedResults[] longQuery() throws Exception
+	{
+		return multiSimilaritySearch.search(longQueries[nextQuery++ % longQueries.length], "51", Constants.TOP_K_RESULTS);
+	}
+}
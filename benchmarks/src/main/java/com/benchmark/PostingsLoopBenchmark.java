@@ -0,0 +1,58 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.result.QueryScore;
+import com.searcher.EasySearch;
+
+/**
+ * This class benchmarks EasySearch.getQueryRelevanceScores, i.e. the loop over the postings of every query term
+ * accumulating the TF-IDF score of every matching document, for the short and the long queries.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostingsLoopBenchmark {
+
+	private Similarity similarity = new DefaultSimilarity();
+	private QueryScore reusableQueryScore;
+	private int nextQuery;
+
+	@Benchmark
+	public QueryScore shortQuery(IndexState indexState) throws Exception
+	{
+		return search(indexState, indexState.shortQueries);
+	}
+
+	@Benchmark
+	public QueryScore longQuery(IndexState indexState) throws Exception
+	{
+		return search(indexState, indexState.longQueries);
+	}
+
+	private QueryScore search(IndexState indexState, String[] queries) throws Exception
+	{
+		String queryString = queries[nextQuery++ % queries.length];
+		reusableQueryScore = EasySearch.getQueryRelevanceScores(indexState.searchSession, indexState.sessionSearcher,
+				queryString, "51", similarity, reusableQueryScore);
+		return reusableQueryScore;
+	}
+}
@@ -0,0 +1,58 @@
+package com.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.result.QueryScore;
+import com.searcher.EasySearch;
+
+/**
+ * This class benchmarks the selection and output of a scored query: the boxed document id to score map,
+ * and selecting and writing the top 1000 documents. The query is the first long query, which matches most of the index.
+ * The results are written to the null device.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryScoreBenchmark {
+
+	private QueryScore queryScore;
+
+	@Setup(Level.Trial)
+	public void setUp(IndexState indexState) throws Exception
+	{
+		queryScore = EasySearch.getQueryRelevanceScores(indexState.searchSession, indexState.sessionSearcher,
+				indexState.longQueries[0], "51", new DefaultSimilarity(), null);
+	}
+
+	@Benchmark
+	public Map<Integer, Double> documentIdToScoreMap()
+	{
+		return queryScore.getDocumentIdToScoreMap();
+	}
+
+	@Benchmark
+	public void writeTop1KResults() throws Exception
+	{
+		queryScore.writeTop1KResults(IndexState.getNullDevicePath());
+	}
+}
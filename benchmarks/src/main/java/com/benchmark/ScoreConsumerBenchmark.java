@@ -0,0 +1,94 @@
+package com.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.result.RunFileWriter;
+import com.result.ScoreConsumer;
+
+/**
+ * This class benchmarks writing the result lines of one query (1000 ranked documents) through the ScoreConsumer,
+ * with the custom model's double scores and with lucene's float scores. The run file is the null device,
+ * kept open for the iteration as it is for a run.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreConsumerBenchmark {
+
+	private static final int RESULT_COUNT = 1000;
+
+	private int[] documentIDs;
+	private double[] scores;
+	private RunFileWriter runFileWriter;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Random random = new Random(42);
+		documentIDs = new int[RESULT_COUNT];
+		scores = new double[RESULT_COUNT];
+		double score = 10;
+		for(int rankIndex = 0; rankIndex < RESULT_COUNT; rankIndex++)
+		{
+			documentIDs[rankIndex] = random.nextInt(SyntheticCollection.DOCUMENT_COUNT);
+			score -= random.nextDouble() * 0.01;
+			scores[rankIndex] = score;
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void openRunFile(IndexState indexState) throws IOException
+	{
+		runFileWriter = new RunFileWriter(IndexState.getNullDevicePath(), indexState.sessionSearcher.getDocNoLookup());
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeRunFile() throws IOException
+	{
+		runFileWriter.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RESULT_COUNT)
+	public void writeDoubleScores()
+	{
+		ScoreConsumer scoreConsumer = new ScoreConsumer(runFileWriter, "51");
+		for(int rankIndex = 0; rankIndex < RESULT_COUNT; rankIndex++)
+		{
+			scoreConsumer.accept(documentIDs[rankIndex], scores[rankIndex]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RESULT_COUNT)
+	public void writeFloatScores()
+	{
+		ScoreConsumer scoreConsumer = new ScoreConsumer(runFileWriter, "51");
+		for(int rankIndex = 0; rankIndex < RESULT_COUNT; rankIndex++)
+		{
+			scoreConsumer.accept(documentIDs[rankIndex], (float) scores[rankIndex]);
+		}
+	}
+}
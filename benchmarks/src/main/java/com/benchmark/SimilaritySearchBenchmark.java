@@ -0,0 +1,75 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.constants.Constants;
+
+/**
+ * This class benchmarks IndexSearcher.search for the top 1000 documents under each similarity compared by CompareAlgorithms.
+ * The queries are parsed at setup, so only the search is measured.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilaritySearchBenchmark {
+
+	@Param({ "DEFAULT_VECTOR", "BM25", "LMDirichlet", "LMJelinek" })
+	public String algorithmName;
+
+	private IndexSearcher indexSearcher;
+	private Query[] shortQueries;
+	private Query[] longQueries;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp(IndexState indexState) throws Exception
+	{
+		indexSearcher = indexState.sessionSearcher.withSimilarity(IndexState.createSimilarity(algorithmName));
+		shortQueries = parseQueries(indexState, indexState.shortQueries);
+		longQueries = parseQueries(indexState, indexState.longQueries);
+	}
+
+	static Query[] parseQueries(IndexState indexState, String[] queryStrings) throws Exception
+	{
+		Query[] queries = new Query[queryStrings.length];
+		for(int queryIndex = 0; queryIndex < queryStrings.length; queryIndex++)
+		{
+			queries[queryIndex] = indexState.searchSession.parseQuery(queryStrings[queryIndex]);
+		}
+		return queries;
+	}
+
+	@Benchmark
+	public TopDocs shortQuery() throws Exception
+	{
+		return indexSearcher.search(shortQueries[nextQuery++ % shortQueries.length], Constants.TOP_K_RESULTS);
+	}
+
+	@Benchmark
+	public TopDocs longQuery() throws Exception
+	{
+		return indexSearcher.search(longQueries[nextQuery++ % longQueries.length], Constants.TOP_K_RESULTS);
+	}
+}
@@ -0,0 +1,141 @@
+package com.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.indexer.AP89Indexer;
+import com.indexer.TrecDocument;
+import com.indexer.TrecDocumentReader;
+
+/**
+ * This class generates a synthetic collection shaped like AP89, so the benchmarks run offline without the real collection.
+ * Documents have 20 to 420 terms drawn from a skewed vocabulary (a few very frequent terms, a long tail of rare terms),
+ * and DOCNOs in the AP89 format. The collection and the queries are generated from fixed seeds, so every run
+ * benchmarks the same index.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SyntheticCollection implements TrecDocumentReader {
+
+	public static final int DOCUMENT_COUNT = 20000;
+	public static final int VOCABULARY_SIZE = 5000;
+
+	private static final long COLLECTION_SEED = 42;
+	private static final long QUERY_SEED = 7;
+
+	private Random random;
+	private int documentCount;
+	private int nextDocument;
+
+	/**
+	 * Creates the generator of specified number of documents.
+	 *
+	 * @param documentCount
+	 *  number of documents to generate
+	 */
+	public SyntheticCollection(int documentCount)
+	{
+		this.random = new Random(COLLECTION_SEED);
+		this.documentCount = documentCount;
+		this.nextDocument = 0;
+	}
+
+	/**
+	 * This function builds the index of the synthetic collection with AP89Indexer in a new temporary directory.
+	 *
+	 * @return
+	 *  path of the index directory
+	 *
+	 * @throws IOException
+	 */
+	public static Path buildIndex() throws IOException
+	{
+		Path indexDirectory = Files.createTempDirectory("synthetic-ap89-index");
+		AP89Indexer.indexCollection(new SyntheticCollection(DOCUMENT_COUNT), indexDirectory.toString(), 1);
+		return indexDirectory;
+	}
+
+	/**
+	 * This function builds the synthetic collection split into shards with AP89Indexer, in a new temporary directory
+	 * holding the shard indexes.
+	 *
+	 * @param shardCount
+	 *  number of shards
+	 * @return
+	 *  path of the index directory of every shard
+	 *
+	 * @throws IOException
+	 */
+	public static String[] buildShardedIndex(int shardCount) throws IOException
+	{
+		Path shardsDirectory = Files.createTempDirectory("synthetic-ap89-shards");
+		String[] shardIndexDirPaths = AP89Indexer.getShardIndexDirPaths(shardsDirectory.resolve("index").toString(), shardCount);
+		AP89Indexer.indexCollection(new SyntheticCollection(DOCUMENT_COUNT), shardIndexDirPaths, 1);
+		return shardIndexDirPaths;
+	}
+
+	/**
+	 * This function generates the query strings with specified number of terms.
+	 *
+	 * @param queryCount
+	 *  number of queries
+	 * @param termCount
+	 *  number of terms per query
+	 * @return
+	 *  query strings
+	 */
+	public static String[] generateQueries(int queryCount, int termCount)
+	{
+		Random random = new Random(QUERY_SEED + termCount);
+		String[] queries = new String[queryCount];
+		for(int queryIndex = 0; queryIndex < queryCount; queryIndex++)
+		{
+			StringBuilder query = new StringBuilder();
+			for(int termIndex = 0; termIndex < termCount; termIndex++)
+			{
+				query.append(nextTerm(random)).append(' ');
+			}
+			queries[queryIndex] = query.toString().trim();
+		}
+		return queries;
+	}
+
+	@Override
+	public TrecDocument next()
+	{
+		if(nextDocument == documentCount)
+		{
+			return null;
+		}
+
+		int length = 20 + random.nextInt(400);
+		StringBuilder text = new StringBuilder(length * 6);
+		for(int termIndex = 0; termIndex < length; termIndex++)
+		{
+			text.append(nextTerm(random)).append(' ');
+		}
+		String docNo = String.format("AP89%04d-%04d", nextDocument / 1000, nextDocument % 1000);
+		nextDocument++;
+		return new TrecDocument(docNo, new StringReader(text.toString()));
+	}
+
+	/**
+	 * Returns a term of the vocabulary, skewed towards the first terms.
+	 */
+	private static String nextTerm(Random random)
+	{
+		double uniform = random.nextDouble();
+		int termID = (int) (VOCABULARY_SIZE * uniform * uniform * uniform);
+		return "w" + Integer.toString(termID, 36) + "x";
+	}
+
+	@Override
+	public void close()
+	{
+		nextDocument = documentCount;
+	}
+}
@@ -0,0 +1,90 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.constants.Constants;
+import com.result.QueryScore;
+import com.result.TopKCollector;
+import com.searcher.EasySearch;
+import com.searcher.TFIDFCustomSimilarity;
+
+/**
+ * This class benchmarks retrieving the top 1000 documents of the custom TF-IDF model for the same queries with
+ * the postings walk of EasySearch, with its MaxScore path, and with IndexSearcher set to TFIDFCustomSimilarity.
+ * Every path parses the query string and extracts its distinct terms, so the paths do the same work around the search.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TFIDFCustomSimilarityBenchmark {
+
+	@Param({ "EASY_SEARCH", "MAX_SCORE", "LUCENE_SIMILARITY" })
+	public String retrievalPath;
+
+	private Similarity similarity = new DefaultSimilarity();
+	private IndexSearcher similaritySearcher;
+	private QueryScore reusableQueryScore;
+	private TopKCollector topKCollector;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp(IndexState indexState)
+	{
+		similaritySearcher = indexState.sessionSearcher.withSimilarity(new TFIDFCustomSimilarity());
+		topKCollector = new TopKCollector(Constants.TOP_K_RESULTS);
+	}
+
+	@Benchmark
+	public Object shortQuery(IndexState indexState) throws Exception
+	{
+		return search(indexState, indexState.shortQueries);
+	}
+
+	@Benchmark
+	public Object longQuery(IndexState indexState) throws Exception
+	{
+		return search(indexState, indexState.longQueries);
+	}
+
+	private Object search(IndexState indexState, String[] queries) throws Exception
+	{
+		String queryString = queries[nextQuery++ % queries.length];
+		switch(retrievalPath)
+		{
+		case "EASY_SEARCH":
+			reusableQueryScore = EasySearch.getQueryRelevanceScores(indexState.searchSession, indexState.sessionSearcher,
+					queryString, "51", similarity, reusableQueryScore);
+			topKCollector.reset(Constants.TOP_K_RESULTS);
+			reusableQueryScore.collectTopK(topKCollector);
+			return topKCollector;
+		case "MAX_SCORE":
+			return EasySearch.getTopKResults(indexState.searchSession, indexState.sessionSearcher, queryString, similarity, topKCollector);
+		default:
+			Query query = TFIDFCustomSimilarity.createDistinctTermQuery(indexState.sessionSearcher, indexState.searchSession.parseQuery(queryString));
+			return similaritySearcher.search(query, Constants.TOP_K_RESULTS);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.benchmark;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.constants.Constants;
+import com.result.QueryScore;
+import com.result.TopKCollector;
+import com.searcher.AccumulatorLimitStrategy;
+import com.searcher.BoundedAccumulatorSearch;
+import com.searcher.EasySearch;
+
+/**
+ * This class checks that the retrieval of a query allocates no more than a fixed budget once the reusable accumulators
+ * are warmed up, so a change which starts allocating per posting or per document, e.g. boxing the scores, is caught.
+ * Every long query of the synthetic collection is searched with every checked retrieval, and the bytes allocated by the
+ * thread are read from the ThreadMXBean. The test runs with the build of the benchmarks, so a retrieval over its budget
+ * fails the build.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class AllocationBudgetTest {
+
+	/* A long query allocates about 300 KB for the parsed query and the terms and postings enums of its terms,
+	 * while boxing a score per matching document would take well over 1 MB */
+	private static final long QUERY_ALLOCATION_BUDGET_BYTES = 512 * 1024;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int MEASURED_ROUNDS = 5;
+
+	/**
+	 * This interface searches one query with the retrieval being checked.
+	 */
+	private interface QuerySearch
+	{
+		void search(String queryString) throws Exception;
+	}
+
+	private static com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static IndexState indexState;
+	private static Similarity similarity = new DefaultSimilarity();
+
+	@BeforeClass
+	public static void setUp() throws Exception
+	{
+		indexState = new IndexState();
+		indexState.setUp();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception
+	{
+		if(indexState != null)
+		{
+			indexState.tearDown();
+		}
+	}
+
+	@Test
+	public void exhaustiveWithinBudget() throws Exception
+	{
+		QueryScore[] reusableQueryScore = new QueryScore[1];
+		checkBudget("EXHAUSTIVE", queryString -> {
+			reusableQueryScore[0] = EasySearch.getQueryRelevanceScores(indexState.searchSession, indexState.sessionSearcher,
+					queryString, "51", similarity, reusableQueryScore[0]);
+		});
+	}
+
+	@Test
+	public void boundedQuitWithinBudget() throws Exception
+	{
+		checkBoundedBudget(AccumulatorLimitStrategy.QUIT);
+	}
+
+	@Test
+	public void boundedContinueWithinBudget() throws Exception
+	{
+		checkBoundedBudget(AccumulatorLimitStrategy.CONTINUE);
+	}
+
+	/**
+	 * Checks the bounded accumulator retrieval with the accumulator limit of the trec runs.
+	 */
+	private static void checkBoundedBudget(AccumulatorLimitStrategy accumulatorLimitStrategy) throws Exception
+	{
+		BoundedAccumulatorSearch boundedAccumulatorSearch = new BoundedAccumulatorSearch(Constants.ACCUMULATOR_LIMIT, accumulatorLimitStrategy);
+		TopKCollector topKCollector = new TopKCollector(Constants.TOP_K_RESULTS);
+		checkBudget("BOUNDED_" + accumulatorLimitStrategy, queryString -> {
+			EasySearch.getBoundedTopKResults(indexState.searchSession, indexState.sessionSearcher, queryString, similarity,
+					boundedAccumulatorSearch, topKCollector);
+		});
+	}
+
+	/**
+	 * Searches every long query with the retrieval, and asserts that the mean allocation per query is within the budget.
+	 */
+	private static void checkBudget(String retrievalName, QuerySearch querySearch) throws Exception
+	{
+		String[] queries = indexState.longQueries;
+		for(int round = 0; round < WARMUP_ROUNDS; round++)
+		{
+			for(String queryString : queries)
+			{
+				querySearch.search(queryString);
+			}
+		}
+
+		long threadID = Thread.currentThread().getId();
+		long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadID);
+		for(int round = 0; round < MEASURED_ROUNDS; round++)
+		{
+			for(String queryString : queries)
+			{
+				querySearch.search(queryString);
+			}
+		}
+		long bytesPerQuery = (threadMXBean.getThreadAllocatedBytes(threadID) - allocatedBytes) / ((long) MEASURED_ROUNDS * queries.length);
+
+		String report = String.format(Locale.ROOT, "%-18s %8d bytes per query, budget %d", retrievalName, bytesPerQuery, QUERY_ALLOCATION_BUDGET_BYTES);
+		System.out.println(report);
+		assertTrue(report, bytesPerQuery <= QUERY_ALLOCATION_BUDGET_BYTES);
+	}
+}
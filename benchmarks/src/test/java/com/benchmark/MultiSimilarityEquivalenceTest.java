@@ -0,0 +1,145 @@
+package com.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.similarities.Similarity;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.constants.Constants;
+import com.result.RankedResults;
+import com.searcher.MultiSimilaritySearch;
+import com.searcher.PostingsSnapshot;
+import com.searcher.SimilarityFactory;
+import com.searcher.SnapshotSearch;
+import com.searcher.TFIDFCustomSimilarity;
+
+/**
+ * This class checks that the searches scoring the postings of a query with lucene similarities by hand, MultiSimilaritySearch
+ * and SnapshotSearch, give exactly the top k of IndexSearcher: the same document ids with the same scores at every rank,
+ * for every similarity of CompareAlgorithms and every short and long query of the synthetic collection. TFIDF_CUSTOM
+ * is compared with IndexSearcher searching the distinct terms of the query, as EasySearch scores them.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class MultiSimilarityEquivalenceTest {
+
+	private static final String[] SIMILARITY_NAMES = { SimilarityFactory.DEFAULT_VECTOR, SimilarityFactory.BM25,
+			SimilarityFactory.LM_DIRICHLET, SimilarityFactory.LM_JELINEK, SimilarityFactory.TFIDF_CUSTOM };
+	private static final float QUERY_BOOST = 2f;
+
+	private static IndexState indexState;
+	private static Similarity[] similarities;
+
+	@BeforeClass
+	public static void setUp() throws Exception
+	{
+		indexState = new IndexState();
+		indexState.setUp();
+		similarities = new Similarity[SIMILARITY_NAMES.length];
+		for(int similarityIndex = 0; similarityIndex < SIMILARITY_NAMES.length; similarityIndex++)
+		{
+			similarities[similarityIndex] = SimilarityFactory.create(SIMILARITY_NAMES[similarityIndex]);
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception
+	{
+		if(indexState != null)
+		{
+			indexState.tearDown();
+		}
+	}
+
+	@Test
+	public void multiSimilaritySearchMatchesIndexSearcher() throws Exception
+	{
+		MultiSimilaritySearch multiSimilaritySearch = new MultiSimilaritySearch(indexState.sessionSearcher, similarities);
+		for(String queryString : getQueries())
+		{
+			Query query = indexState.searchSession.parseQuery(queryString);
+			RankedResults[] rankedResults = multiSimilaritySearch.search(query, "51", Constants.TOP_K_RESULTS);
+			for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+			{
+				assertSameTopK(SIMILARITY_NAMES[similarityIndex] + " " + queryString, search(query, similarities[similarityIndex]), rankedResults[similarityIndex]);
+			}
+		}
+	}
+
+	@Test
+	public void snapshotSearchMatchesIndexSearcher() throws Exception
+	{
+		SnapshotSearch snapshotSearch = new SnapshotSearch(indexState.sessionSearcher, Constants.TOP_K_RESULTS);
+		for(String queryString : getQueries())
+		{
+			Query query = indexState.searchSession.parseQuery(queryString);
+			PostingsSnapshot postingsSnapshot = PostingsSnapshot.create(indexState.sessionSearcher, query);
+			assertNotNull(queryString, postingsSnapshot);
+			for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+			{
+				RankedResults rankedResults = snapshotSearch.search(postingsSnapshot, similarities[similarityIndex], "51", Constants.TOP_K_RESULTS);
+				assertSameTopK(SIMILARITY_NAMES[similarityIndex] + " " + queryString, search(query, similarities[similarityIndex]), rankedResults);
+			}
+		}
+	}
+
+	@Test
+	public void boostedQueryMatchesIndexSearcher() throws Exception
+	{
+		MultiSimilaritySearch multiSimilaritySearch = new MultiSimilaritySearch(indexState.sessionSearcher, similarities);
+		for(String queryString : indexState.shortQueries)
+		{
+			/* A boosted query is not scored by hand, it is searched with each similarity and cannot be snapshotted */
+			Query query = new BoostQuery(indexState.searchSession.parseQuery(queryString), QUERY_BOOST);
+			assertNull(queryString, PostingsSnapshot.create(indexState.sessionSearcher, query));
+			RankedResults[] rankedResults = multiSimilaritySearch.search(query, "51", Constants.TOP_K_RESULTS);
+			for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+			{
+				assertSameTopK(SIMILARITY_NAMES[similarityIndex] + " boosted " + queryString, search(query, similarities[similarityIndex]), rankedResults[similarityIndex]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the top k of IndexSearcher with the similarity, over the distinct terms of the query for TFIDF_CUSTOM.
+	 */
+	private static ScoreDoc[] search(Query query, Similarity similarity) throws Exception
+	{
+		IndexSearcher similaritySearcher = indexState.sessionSearcher.withSimilarity(similarity);
+		Query similarityQuery = (similarity instanceof TFIDFCustomSimilarity) ? TFIDFCustomSimilarity.createDistinctTermQuery(similaritySearcher, query) : query;
+		return similaritySearcher.search(similarityQuery, Constants.TOP_K_RESULTS).scoreDocs;
+	}
+
+	/**
+	 * Returns the short and the long queries of the synthetic collection.
+	 */
+	private static String[] getQueries()
+	{
+		String[] queries = new String[indexState.shortQueries.length + indexState.longQueries.length];
+		System.arraycopy(indexState.shortQueries, 0, queries, 0, indexState.shortQueries.length);
+		System.arraycopy(indexState.longQueries, 0, queries, indexState.shortQueries.length, indexState.longQueries.length);
+		return queries;
+	}
+
+	/**
+	 * Asserts that the results have the document id and score of IndexSearcher at every rank.
+	 */
+	private static void assertSameTopK(String message, ScoreDoc[] scoreDocs, RankedResults rankedResults)
+	{
+		assertEquals(message, scoreDocs.length, rankedResults.size());
+		for(int rankIndex = 0; rankIndex < scoreDocs.length; rankIndex++)
+		{
+			assertEquals(message + " at rank " + (rankIndex + 1), scoreDocs[rankIndex].doc, rankedResults.getDocumentID(rankIndex));
+			assertEquals(message + " at rank " + (rankIndex + 1), scoreDocs[rankIndex].score, rankedResults.getScore(rankIndex), 0);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.benchmark;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.constants.Constants;
+import com.result.RankedResults;
+import com.result.TopKCollector;
+import com.searcher.DocNoLookup;
+import com.searcher.EasySearch;
+import com.searcher.ShardedSearcher;
+
+/**
+ * This class checks that searching the synthetic collection split into shards gives the top k of the single index:
+ * the same scores at every rank, and the same documents above the score of the last rank, whose ties are cut at k
+ * in another document order. The custom TF-IDF model is compared with the EXHAUSTIVE retrieval, and the lucene
+ * DefaultSimilarity with the lucene search of the single index, for every short and long query.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ShardEquivalenceTest {
+
+	private static final int SHARD_COUNT = 4;
+
+	private static IndexState indexState;
+	private static String[] shardIndexDirPaths;
+	private static ShardedSearcher shardedSearcher;
+	private static Similarity similarity = new DefaultSimilarity();
+
+	@BeforeClass
+	public static void setUp() throws Exception
+	{
+		indexState = new IndexState();
+		indexState.setUp();
+		shardIndexDirPaths = SyntheticCollection.buildShardedIndex(SHARD_COUNT);
+		shardedSearcher = new ShardedSearcher(shardIndexDirPaths);
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception
+	{
+		if(shardedSearcher != null)
+		{
+			shardedSearcher.close();
+		}
+		if(shardIndexDirPaths != null)
+		{
+			try(Stream<Path> paths = Files.walk(Paths.get(shardIndexDirPaths[0]).getParent()))
+			{
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+		if(indexState != null)
+		{
+			indexState.tearDown();
+		}
+	}
+
+	@Test
+	public void shardsIndexEveryDocument() throws Exception
+	{
+		assertEquals(SHARD_COUNT, shardedSearcher.getShardCount());
+		assertEquals(indexState.sessionSearcher.getIndexReader().maxDoc(), shardedSearcher.maxDoc());
+	}
+
+	@Test
+	public void tfidfTopKMatchesSingleIndex() throws Exception
+	{
+		TopKCollector topKCollector = new TopKCollector(Constants.TOP_K_RESULTS);
+		for(String queryString : getQueries())
+		{
+			topKCollector.reset(Constants.TOP_K_RESULTS);
+			EasySearch.getTopKResults(indexState.searchSession, indexState.sessionSearcher, queryString, similarity, topKCollector);
+			RankedResults shardedResults = shardedSearcher.search(queryString, "51", similarity, Constants.TOP_K_RESULTS);
+
+			double[] scores = new double[topKCollector.size()];
+			String[] docNos = new String[topKCollector.size()];
+			for(int rankIndex = 0; rankIndex < topKCollector.size(); rankIndex++)
+			{
+				scores[rankIndex] = topKCollector.getScore(rankIndex);
+				docNos[rankIndex] = indexState.sessionSearcher.getDocNoLookup().getDocNo(topKCollector.getDocumentID(rankIndex));
+			}
+			assertSameTopK("TF-IDF " + queryString, scores, docNos, shardedResults);
+		}
+	}
+
+	@Test
+	public void defaultSimilarityTopKMatchesSingleIndex() throws Exception
+	{
+		for(String queryString : getQueries())
+		{
+			Query query = indexState.searchSession.parseQuery(queryString);
+			ScoreDoc[] scoreDocs = indexState.sessionSearcher.withSimilarity(similarity).search(query, Constants.TOP_K_RESULTS).scoreDocs;
+			RankedResults shardedResults = shardedSearcher.search(query, "51", similarity, Constants.TOP_K_RESULTS);
+
+			double[] scores = new double[scoreDocs.length];
+			String[] docNos = new String[scoreDocs.length];
+			for(int rankIndex = 0; rankIndex < scoreDocs.length; rankIndex++)
+			{
+				scores[rankIndex] = scoreDocs[rankIndex].score;
+				docNos[rankIndex] = indexState.sessionSearcher.getDocNoLookup().getDocNo(scoreDocs[rankIndex].doc);
+			}
+			assertSameTopK("DefaultSimilarity " + queryString, scores, docNos, shardedResults);
+		}
+	}
+
+	/**
+	 * Returns the short and the long queries of the synthetic collection.
+	 */
+	private static String[] getQueries()
+	{
+		String[] queries = new String[indexState.shortQueries.length + indexState.longQueries.length];
+		System.arraycopy(indexState.shortQueries, 0, queries, 0, indexState.shortQueries.length);
+		System.arraycopy(indexState.longQueries, 0, queries, indexState.shortQueries.length, indexState.longQueries.length);
+		return queries;
+	}
+
+	/**
+	 * Asserts that the sharded results have the scores of the single index at every rank, and its documents above
+	 * the score of the last rank.
+	 */
+	private static void assertSameTopK(String message, double[] scores, String[] docNos, RankedResults shardedResults)
+	{
+		assertEquals(message, scores.length, shardedResults.size());
+		DocNoLookup shardedDocNoLookup = shardedSearcher.getDocNoLookup();
+		Set<String> docNosAboveLastScore = new HashSet<String>();
+		Set<String> shardedDocNosAboveLastScore = new HashSet<String>();
+		for(int rankIndex = 0; rankIndex < scores.length; rankIndex++)
+		{
+			assertEquals(message + " at rank " + (rankIndex + 1), scores[rankIndex], shardedResults.getScore(rankIndex), 0);
+			if(scores[rankIndex] != scores[scores.length - 1])
+			{
+				docNosAboveLastScore.add(docNos[rankIndex]);
+				shardedDocNosAboveLastScore.add(shardedDocNoLookup.getDocNo(shardedResults.getDocumentID(rankIndex)));
+			}
+		}
+		assertEquals(message, docNosAboveLastScore, shardedDocNosAboveLastScore);
+	}
+}
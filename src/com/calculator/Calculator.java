@@ -24,12 +24,62 @@ public class Calculator {
 			double termDocCount, double totalDocCount)
 
 	{
-		double tFScore = (termCountInDoc/docLength);
-		
+		double iDFScore = calculateIDFScore(termDocCount, totalDocCount);
+
+		return calculateTFIDFScoreForTerm(termCountInDoc, docLength, iDFScore);
+	}
+
+	/**
+	 * This function calculates the IDF Score for a term. It is same for all the documents, 
+	 * hence can be calculated once per term before iterating over its postings.
+	 * 
+	 * @param termDocCount
+	 * 	number of documents in the corpus containing the term
+	 * @param totalDocCount
+	 * 	total number of documents in the corpus
+	 * @return
+	 */
+	public static double calculateIDFScore(double termDocCount, double totalDocCount)
+	{
 		double iDFScore = Math.log(1+(totalDocCount/termDocCount));
+
+		return iDFScore;
+	}
+
+	/**
+	 * This function calculates the TF-IDF Score for a term in a document, provided with the IDF Score of the term.
+	 * 
+	 * @param termCountInDoc 
+	 * 	number of term occurrences in the document 
+	 * @param docLength
+	 *  length of the document
+	 * @param iDFScore
+	 * 	IDF Score of the term
+	 * @return
+	 */
+	public static double calculateTFIDFScoreForTerm(double termCountInDoc, double docLength, double iDFScore)
+	{
+		double tFScore = calculateTFScore(termCountInDoc, docLength);
 		
 		double score =  tFScore * iDFScore;
 
 		return score;
 	}
+
+	/**
+	 * This function calculates the TF Score for a term in a document. Since TF-IDF Score is TF Score multiplied by IDF Score, 
+	 * the highest TF Score of a term multiplied by its IDF Score is the upper bound of its TF-IDF Score in any document.
+	 * 
+	 * @param termCountInDoc 
+	 * 	number of term occurrences in the document 
+	 * @param docLength
+	 *  length of the document
+	 * @return
+	 */
+	public static double calculateTFScore(double termCountInDoc, double docLength)
+	{
+		double tFScore = (termCountInDoc/docLength);
+
+		return tFScore;
+	}
 }
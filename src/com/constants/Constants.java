@@ -8,11 +8,41 @@ package com.constants;
 public class Constants {
 	
 	public static final String INDEX_DIR_PATH = "D:/Study/Search/Assignment2/index";
+	public static final String IMPACT_INDEX_FILE_PATH = INDEX_DIR_PATH + ".impacts";
+	public static final String FIELD_TEXT = "TEXT";
+	public static final String FIELD_DOCNO = "DOCNO";
+	
+	public static final String CORPUS_DIR_PATH = "D:/Study/Search/Assignment2/AP89";
+	public static final int INDEXING_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	public static final double INDEXING_RAM_BUFFER_MB = 256;
+	public static final int SHARD_COUNT = 4;
 	
 	public static final String TREC_TOPIC_FILE_PATH = "D:/Study/Search/Assignment2/topics.51-100";
 	public static final String TREC_TOPIC_QUERY_TITLE = "title";
 	public static final String TREC_TOPIC_QUERY_DESC = "description";
 	
+	public static final String TREC_QRELS_FILE_PATH = "D:/Study/Search/Assignment2/qrels.51-100";
+	
 	public static final String TREC_TOPIC_OUTPUT_DIR = "D:/Study/Search/Assignment2/OUTPUT1";
+	public static final boolean WRITE_RUN_FILES = true;
+	public static final String QUERY_RESULT_CACHE_FILE_PATH = TREC_TOPIC_OUTPUT_DIR + "/query-results.cache";
+	public static final String PARAMETER_SWEEP_OUTPUT_DIR = TREC_TOPIC_OUTPUT_DIR + "/sweep";
+	public static final String METRICS_OUTPUT_DIR = TREC_TOPIC_OUTPUT_DIR + "/metrics";
 	public static final String OUTPUT_FILE_DELIMITER = " ";
+	public static final int TOP_K_RESULTS = 1000;
+	
+	public static final int SEARCH_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	public static final int SEGMENT_SEARCH_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	public static final long TERM_SCORE_CACHE_MB = 64;
+	public static final int QUERY_RESULT_CACHE_SIZE = 1000;
+	public static final int IMPACT_POSTINGS_BUDGET = Integer.MAX_VALUE;
+	public static final int ACCUMULATOR_LIMIT = 20000;
+	public static final int BATCH_SCORING_MAX_QUERIES = 100;
+	public static final int TOPIC_PIPELINE_QUEUE_SIZE = 64;
+	public static final int TOPIC_PIPELINE_MAX_IN_FLIGHT_QUERIES = 256;
+	
+	public static final int SEARCH_DAEMON_PORT = 8089;
+	public static final int SEARCH_DAEMON_QUEUE_SIZE = 64;
+	public static final int SEARCH_DAEMON_MAX_K = 10000;
+	public static final int SEARCH_DAEMON_MAX_BODY_BYTES = 16 * 1024 * 1024;
 }
@@ -0,0 +1,253 @@
+package com.evaluation;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.searcher.DocNoLookup;
+
+/**
+ * This class holds the relevance judgments of the trec topics, read once from a qrels file in the format read by trec_eval:
+ * topicID iteration DOCNO relevance
+ *
+ * The DOCNOs are resolved to lucene document ids when the file is loaded, and the judgments of every topic are kept in
+ * two parallel primitive arrays sorted by document id, so the relevance of a retrieved document is found with a binary
+ * search and no String is created while evaluating. A judged document which is not in the index can never be retrieved,
+ * but it is still counted in the number of relevant documents and the ideal gain of its topic, as trec_eval counts it.
+ *
+ * The topic ids are matched to the Query IDs exactly as trec_eval matches them, as strings.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class Qrels {
+
+	/* Lowest relevance level counted as relevant, the default relevance level of trec_eval */
+	public static final int RELEVANCE_LEVEL = 1;
+
+	private Map<String, QueryJudgments> judgmentsByQueryID;
+
+	private Qrels(Map<String, QueryJudgments> judgmentsByQueryID)
+	{
+		this.judgmentsByQueryID = judgmentsByQueryID;
+	}
+
+	/**
+	 * This function reads the qrels file and resolves the judged DOCNOs with the specified lookup.
+	 *
+	 * @param qrelsFilePath
+	 *  path of the qrels file
+	 * @param docNoLookup
+	 *  lookup of the index whose results are evaluated
+	 * @return
+	 *  judgments of all the topics
+	 *
+	 * @throws IOException
+	 *  if the file cannot be read, has a malformed line, or judges a document twice for a topic
+	 */
+	public static Qrels load(String qrelsFilePath, DocNoLookup docNoLookup) throws IOException
+	{
+		/* Judged DOCNOs with their relevance levels, per topic in the order of the file */
+		Map<String, Map<String, Integer>> relevanceByQueryID = new HashMap<String, Map<String, Integer>>();
+		List<String> queryIDs = new ArrayList<String>();
+		try(BufferedReader bufferedReader = new BufferedReader(new FileReader(qrelsFilePath)))
+		{
+			String line;
+			int lineNumber = 0;
+			while((line = bufferedReader.readLine()) != null)
+			{
+				lineNumber++;
+				String trimmedLine = line.trim();
+				if(trimmedLine.isEmpty())
+				{
+					continue;
+				}
+				String[] fields = trimmedLine.split("\\s+");
+				if(fields.length != 4)
+				{
+					throw new IOException("Malformed line " + lineNumber + " of qrels file " + qrelsFilePath + ": " + line);
+				}
+
+				int relevance;
+				try
+				{
+					relevance = Integer.parseInt(fields[3]);
+				}
+				catch(NumberFormatException e)
+				{
+					throw new IOException("Malformed relevance at line " + lineNumber + " of qrels file " + qrelsFilePath + ": " + line, e);
+				}
+
+				Map<String, Integer> relevanceByDocNo = relevanceByQueryID.get(fields[0]);
+				if(relevanceByDocNo == null)
+				{
+					relevanceByDocNo = new HashMap<String, Integer>();
+					relevanceByQueryID.put(fields[0], relevanceByDocNo);
+					queryIDs.add(fields[0]);
+				}
+				if(relevanceByDocNo.put(fields[2], relevance) != null)
+				{
+					throw new IOException("Document " + fields[2] + " is judged twice for topic " + fields[0] + " in qrels file " + qrelsFilePath);
+				}
+			}
+		}
+
+		/* Resolve the judged DOCNOs of all the topics in one pass over the documents */
+		Map<String, Integer> documentIDByDocNo = new HashMap<String, Integer>();
+		for(Map<String, Integer> relevanceByDocNo : relevanceByQueryID.values())
+		{
+			for(String docNo : relevanceByDocNo.keySet())
+			{
+				documentIDByDocNo.put(docNo, -1);
+			}
+		}
+		for(int documentID = 0; documentID < docNoLookup.size(); documentID++)
+		{
+			String docNo = docNoLookup.getDocNo(documentID);
+			if(documentIDByDocNo.containsKey(docNo))
+			{
+				documentIDByDocNo.put(docNo, documentID);
+			}
+		}
+
+		Map<String, QueryJudgments> judgmentsByQueryID = new HashMap<String, QueryJudgments>();
+		for(String queryID : queryIDs)
+		{
+			judgmentsByQueryID.put(queryID, QueryJudgments.build(relevanceByQueryID.get(queryID), documentIDByDocNo));
+		}
+		return new Qrels(judgmentsByQueryID);
+	}
+
+	/**
+	 * Returns the judgments of the topic with specified ID, or null if the topic is not judged.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @return
+	 *  judgments of the topic
+	 */
+	public QueryJudgments getJudgments(String queryID)
+	{
+		return judgmentsByQueryID.get(queryID);
+	}
+
+	/**
+	 * Returns the IDs of all the judged topics.
+	 * @return
+	 *  topic ids
+	 */
+	public Set<String> getQueryIDs()
+	{
+		return Collections.unmodifiableSet(judgmentsByQueryID.keySet());
+	}
+
+	/**
+	 * This class holds the judgments of one topic.
+	 */
+	public static class QueryJudgments
+	{
+		private int[] judgedDocumentIDs;
+		private int[] relevanceLevels;
+		private int relevantCount;
+		private double idealDCG;
+
+		private QueryJudgments(int[] judgedDocumentIDs, int[] relevanceLevels, int relevantCount, double idealDCG)
+		{
+			this.judgedDocumentIDs = judgedDocumentIDs;
+			this.relevanceLevels = relevanceLevels;
+			this.relevantCount = relevantCount;
+			this.idealDCG = idealDCG;
+		}
+
+		/**
+		 * Builds the judgments of a topic from its judged DOCNOs, dropping the documents which are not in the index.
+		 */
+		private static QueryJudgments build(Map<String, Integer> relevanceByDocNo, Map<String, Integer> documentIDByDocNo)
+		{
+			long[] packedJudgments = new long[relevanceByDocNo.size()];
+			int judgedDocumentCount = 0;
+			int relevantCount = 0;
+			int[] gains = new int[relevanceByDocNo.size()];
+			int gainCount = 0;
+			for(Map.Entry<String, Integer> judgment : relevanceByDocNo.entrySet())
+			{
+				int relevance = judgment.getValue();
+				if(relevance >= RELEVANCE_LEVEL)
+				{
+					relevantCount++;
+				}
+				if(relevance > 0)
+				{
+					gains[gainCount++] = relevance;
+				}
+
+				int documentID = documentIDByDocNo.get(judgment.getKey());
+				if(documentID >= 0)
+				{
+					/* Document id in the high bits, so sorting the packed values sorts by document id */
+					packedJudgments[judgedDocumentCount++] = ((long) documentID << 32) | (relevance & 0xFFFFFFFFL);
+				}
+			}
+
+			Arrays.sort(packedJudgments, 0, judgedDocumentCount);
+			int[] judgedDocumentIDs = new int[judgedDocumentCount];
+			int[] relevanceLevels = new int[judgedDocumentCount];
+			for(int index = 0; index < judgedDocumentCount; index++)
+			{
+				judgedDocumentIDs[index] = (int) (packedJudgments[index] >>> 32);
+				relevanceLevels[index] = (int) packedJudgments[index];
+			}
+
+			/* Ideal ranking puts the highest gains first */
+			Arrays.sort(gains, 0, gainCount);
+			double idealDCG = 0;
+			for(int rankIndex = 0; rankIndex < gainCount; rankIndex++)
+			{
+				idealDCG += gains[gainCount - 1 - rankIndex] / QueryEvaluation.log2(rankIndex + 2);
+			}
+
+			return new QueryJudgments(judgedDocumentIDs, relevanceLevels, relevantCount, idealDCG);
+		}
+
+		/**
+		 * Returns the relevance level of the document, 0 if the document is not judged.
+		 *
+		 * @param documentID
+		 *  lucene document id
+		 * @return
+		 *  relevance level
+		 */
+		public int getRelevance(int documentID)
+		{
+			int index = Arrays.binarySearch(judgedDocumentIDs, documentID);
+			return index >= 0 ? relevanceLevels[index] : 0;
+		}
+
+		/**
+		 * Returns the number of relevant documents of the topic, including those which are not in the index.
+		 * @return
+		 *  number of relevant documents
+		 */
+		public int getRelevantCount()
+		{
+			return relevantCount;
+		}
+
+		/**
+		 * Returns the discounted cumulative gain of the ideal ranking of all the judged documents.
+		 * @return
+		 *  ideal DCG
+		 */
+		public double getIdealDCG()
+		{
+			return idealDCG;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package com.evaluation;
+
+import com.result.RankedResults;
+import com.searcher.DocNoLookup;
+
+/**
+ * This class computes the measures of trec_eval for the ranked results of one query: average precision, precision at
+ * the cutoffs of trec_eval, R-precision and nDCG, along with the number of retrieved, relevant and relevant retrieved documents.
+ *
+ * As trec_eval does, the documents are ranked by decreasing score, and documents with the same score by decreasing DOCNO,
+ * whatever their rank in the results; an unjudged document is not relevant; and a document is relevant if its relevance level
+ * is at least Qrels.RELEVANCE_LEVEL. The gain of a document in nDCG is its relevance level, 0 for a negative level.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class QueryEvaluation {
+
+	/* Cutoffs of the P_k measures of trec_eval */
+	public static final int[] PRECISION_CUTOFFS = { 5, 10, 15, 20, 30, 100, 200, 500, 1000 };
+
+	private static final double LN_2 = Math.log(2);
+
+	private String queryID;
+	private int retrievedCount;
+	private int relevantCount;
+	private int relevantRetrievedCount;
+	private double averagePrecision;
+	private double[] precisions;
+	private double rPrecision;
+	private double nDCG;
+
+	private QueryEvaluation(String queryID)
+	{
+		this.queryID = queryID;
+		this.precisions = new double[PRECISION_CUTOFFS.length];
+	}
+
+	/**
+	 * This function evaluates the ranked results of a query against the judgments of its topic.
+	 *
+	 * @param rankedResults
+	 *  ranked results of the query
+	 * @param queryJudgments
+	 *  judgments of the topic
+	 * @param docNoLookup
+	 *  lookup of the index the results were retrieved from, to break ties of score on DOCNO
+	 * @return
+	 *  measures of the query
+	 */
+	public static QueryEvaluation evaluate(RankedResults rankedResults, Qrels.QueryJudgments queryJudgments, DocNoLookup docNoLookup)
+	{
+		QueryEvaluation queryEvaluation = new QueryEvaluation(rankedResults.getQueryID());
+		int[] rankOrder = sortAsTrecEval(rankedResults, docNoLookup);
+		int relevantCount = queryJudgments.getRelevantCount();
+
+		int relevantRetrievedCount = 0;
+		int relevantInTopR = 0;
+		double precisionSum = 0;
+		double dCG = 0;
+		int cutoffIndex = 0;
+		for(int rankIndex = 0; rankIndex < rankOrder.length; rankIndex++)
+		{
+			int relevance = queryJudgments.getRelevance(rankedResults.getDocumentID(rankOrder[rankIndex]));
+			if(relevance > 0)
+			{
+				dCG += relevance / log2(rankIndex + 2);
+			}
+			if(relevance >= Qrels.RELEVANCE_LEVEL)
+			{
+				relevantRetrievedCount++;
+				precisionSum += (double) relevantRetrievedCount / (rankIndex + 1);
+			}
+
+			int rank = rankIndex + 1;
+			if(rank == relevantCount)
+			{
+				relevantInTopR = relevantRetrievedCount;
+			}
+			while(cutoffIndex < PRECISION_CUTOFFS.length && PRECISION_CUTOFFS[cutoffIndex] == rank)
+			{
+				queryEvaluation.precisions[cutoffIndex++] = (double) relevantRetrievedCount / rank;
+			}
+		}
+
+		/* Cutoffs beyond the retrieved documents count the missing documents as not relevant */
+		for(; cutoffIndex < PRECISION_CUTOFFS.length; cutoffIndex++)
+		{
+			queryEvaluation.precisions[cutoffIndex] = (double) relevantRetrievedCount / PRECISION_CUTOFFS[cutoffIndex];
+		}
+		if(relevantCount > rankOrder.length)
+		{
+			relevantInTopR = relevantRetrievedCount;
+		}
+
+		queryEvaluation.retrievedCount = rankOrder.length;
+		queryEvaluation.relevantCount = relevantCount;
+		queryEvaluation.relevantRetrievedCount = relevantRetrievedCount;
+		if(relevantCount > 0)
+		{
+			queryEvaluation.averagePrecision = precisionSum / relevantCount;
+			queryEvaluation.rPrecision = (double) relevantInTopR / relevantCount;
+		}
+		if(queryJudgments.getIdealDCG() > 0)
+		{
+			queryEvaluation.nDCG = dCG / queryJudgments.getIdealDCG();
+		}
+		return queryEvaluation;
+	}
+
+	/**
+	 * Returns the rank indexes of the results in the order trec_eval ranks them: by decreasing score, then by decreasing DOCNO.
+	 * Short queries often tie on hundreds of documents, hence the indexes are merge sorted; the merge of two runs already
+	 * in order is skipped, so results sorted by score and DOCNO are only compared once per document.
+	 */
+	private static int[] sortAsTrecEval(RankedResults rankedResults, DocNoLookup docNoLookup)
+	{
+		int[] rankOrder = new int[rankedResults.size()];
+		for(int rankIndex = 0; rankIndex < rankOrder.length; rankIndex++)
+		{
+			rankOrder[rankIndex] = rankIndex;
+		}
+
+		int[] mergeBuffer = new int[rankOrder.length];
+		for(int width = 1; width < rankOrder.length; width *= 2)
+		{
+			for(int left = 0; left + width < rankOrder.length; left += 2 * width)
+			{
+				int middle = left + width;
+				int right = Math.min(left + 2 * width, rankOrder.length);
+				if(!ranksBefore(rankedResults, docNoLookup, rankOrder[middle], rankOrder[middle - 1]))
+				{
+					continue;
+				}
+
+				System.arraycopy(rankOrder, left, mergeBuffer, left, right - left);
+				int leftIndex = left;
+				int rightIndex = middle;
+				for(int index = left; index < right; index++)
+				{
+					if(leftIndex < middle && (rightIndex >= right || !ranksBefore(rankedResults, docNoLookup, mergeBuffer[rightIndex], mergeBuffer[leftIndex])))
+					{
+						rankOrder[index] = mergeBuffer[leftIndex++];
+					}
+					else
+					{
+						rankOrder[index] = mergeBuffer[rightIndex++];
+					}
+				}
+			}
+		}
+		return rankOrder;
+	}
+
+	/**
+	 * Returns true if the result at the rank index is ranked before the result at the other rank index by trec_eval.
+	 */
+	private static boolean ranksBefore(RankedResults rankedResults, DocNoLookup docNoLookup, int rankIndex, int otherRankIndex)
+	{
+		double score = rankedResults.getScore(rankIndex);
+		double otherScore = rankedResults.getScore(otherRankIndex);
+		if(score != otherScore)
+		{
+			return score > otherScore;
+		}
+		return docNoLookup.compareDocNo(rankedResults.getDocumentID(rankIndex), rankedResults.getDocumentID(otherRankIndex)) > 0;
+	}
+
+	/**
+	 * Returns the logarithm to the base 2, the discount of nDCG.
+	 */
+	static double log2(int value)
+	{
+		return Math.log(value) / LN_2;
+	}
+
+	/**
+	 * Returns the Query ID.
+	 * @return
+	 *  Query ID
+	 */
+	public String getQueryID()
+	{
+		return queryID;
+	}
+
+	/**
+	 * Returns the number of retrieved documents.
+	 * @return
+	 *  num_ret
+	 */
+	public int getRetrievedCount()
+	{
+		return retrievedCount;
+	}
+
+	/**
+	 * Returns the number of relevant documents of the topic.
+	 * @return
+	 *  num_rel
+	 */
+	public int getRelevantCount()
+	{
+		return relevantCount;
+	}
+
+	/**
+	 * Returns the number of relevant documents retrieved.
+	 * @return
+	 *  num_rel_ret
+	 */
+	public int getRelevantRetrievedCount()
+	{
+		return relevantRetrievedCount;
+	}
+
+	/**
+	 * Returns the average precision, 0 if the topic has no relevant document.
+	 * @return
+	 *  map of the query
+	 */
+	public double getAveragePrecision()
+	{
+		return averagePrecision;
+	}
+
+	/**
+	 * Returns the precision at the cutoff with specified index.
+	 *
+	 * @param cutoffIndex
+	 *  index of the cutoff in PRECISION_CUTOFFS
+	 * @return
+	 *  P_k of the query
+	 */
+	public double getPrecision(int cutoffIndex)
+	{
+		return precisions[cutoffIndex];
+	}
+
+	/**
+	 * Returns the precision after as many documents as the topic has relevant documents.
+	 * @return
+	 *  Rprec of the query
+	 */
+	public double getRPrecision()
+	{
+		return rPrecision;
+	}
+
+	/**
+	 * Returns the normalized discounted cumulative gain over all the retrieved documents.
+	 * @return
+	 *  ndcg of the query
+	 */
+	public double getNDCG()
+	{
+		return nDCG;
+	}
+}
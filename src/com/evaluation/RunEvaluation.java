@@ -0,0 +1,204 @@
+package com.evaluation;
+
+import java.util.Locale;
+
+/**
+ * This class holds the measures of every evaluated query of a run, and their means over the evaluated queries,
+ * which are the "all" values printed by trec_eval.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class RunEvaluation {
+
+	private QueryEvaluation[] queryEvaluations;
+
+	/**
+	 * Creates the RunEvaluation of the specified queries.
+	 *
+	 * @param queryEvaluations
+	 *  measures of the evaluated queries, in the order of the run
+	 */
+	public RunEvaluation(QueryEvaluation[] queryEvaluations)
+	{
+		this.queryEvaluations = queryEvaluations;
+	}
+
+	/**
+	 * Returns the number of evaluated queries.
+	 * @return
+	 *  num_q
+	 */
+	public int getQueryCount()
+	{
+		return queryEvaluations.length;
+	}
+
+	/**
+	 * Returns the measures of the query at specified index.
+	 *
+	 * @param queryIndex
+	 *  index of the evaluated query
+	 * @return
+	 *  measures of the query
+	 */
+	public QueryEvaluation getQueryEvaluation(int queryIndex)
+	{
+		return queryEvaluations[queryIndex];
+	}
+
+	/**
+	 * Returns the mean average precision.
+	 * @return
+	 *  map
+	 */
+	public double getMeanAveragePrecision()
+	{
+		double sum = 0;
+		for(QueryEvaluation queryEvaluation : queryEvaluations)
+		{
+			sum += queryEvaluation.getAveragePrecision();
+		}
+		return mean(sum);
+	}
+
+	/**
+	 * Returns the mean precision at the cutoff with specified index.
+	 *
+	 * @param cutoffIndex
+	 *  index of the cutoff in QueryEvaluation.PRECISION_CUTOFFS
+	 * @return
+	 *  P_k
+	 */
+	public double getMeanPrecision(int cutoffIndex)
+	{
+		double sum = 0;
+		for(QueryEvaluation queryEvaluation : queryEvaluations)
+		{
+			sum += queryEvaluation.getPrecision(cutoffIndex);
+		}
+		return mean(sum);
+	}
+
+	/**
+	 * Returns the mean R-precision.
+	 * @return
+	 *  Rprec
+	 */
+	public double getMeanRPrecision()
+	{
+		double sum = 0;
+		for(QueryEvaluation queryEvaluation : queryEvaluations)
+		{
+			sum += queryEvaluation.getRPrecision();
+		}
+		return mean(sum);
+	}
+
+	/**
+	 * Returns the mean nDCG.
+	 * @return
+	 *  ndcg
+	 */
+	public double getMeanNDCG()
+	{
+		double sum = 0;
+		for(QueryEvaluation queryEvaluation : queryEvaluations)
+		{
+			sum += queryEvaluation.getNDCG();
+		}
+		return mean(sum);
+	}
+
+	/**
+	 * Returns the mean of the sum over the evaluated queries, 0 if no query is evaluated.
+	 */
+	private double mean(double sum)
+	{
+		return queryEvaluations.length == 0 ? 0 : sum / queryEvaluations.length;
+	}
+
+	/**
+	 * Returns the measures in the format of trec_eval, the "all" lines of the whole run.
+	 */
+	@Override
+	public String toString()
+	{
+		return format(false);
+	}
+
+	/**
+	 * This function formats the measures as trec_eval prints them, preceded by the lines of every query if perQuery is true, like trec_eval -q.
+	 *
+	 * @param perQuery
+	 *  true to print the measures of every query
+	 * @return
+	 *  measures in the format of trec_eval
+	 */
+	public String format(boolean perQuery)
+	{
+		StringBuilder stringBuilder = new StringBuilder();
+		int retrievedCount = 0;
+		int relevantCount = 0;
+		int relevantRetrievedCount = 0;
+		for(QueryEvaluation queryEvaluation : queryEvaluations)
+		{
+			if(perQuery)
+			{
+				appendMeasures(stringBuilder, queryEvaluation.getQueryID(), queryEvaluation.getRetrievedCount(), queryEvaluation.getRelevantCount(),
+						queryEvaluation.getRelevantRetrievedCount(), queryEvaluation.getAveragePrecision(), queryEvaluation.getRPrecision(),
+						queryEvaluation::getPrecision, queryEvaluation.getNDCG());
+			}
+			retrievedCount += queryEvaluation.getRetrievedCount();
+			relevantCount += queryEvaluation.getRelevantCount();
+			relevantRetrievedCount += queryEvaluation.getRelevantRetrievedCount();
+		}
+
+		appendLine(stringBuilder, "num_q", "all", Integer.toString(queryEvaluations.length));
+		appendMeasures(stringBuilder, "all", retrievedCount, relevantCount, relevantRetrievedCount, getMeanAveragePrecision(), getMeanRPrecision(),
+				this::getMeanPrecision, getMeanNDCG());
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * Precision at the cutoff with specified index, of a query or of the run.
+	 */
+	private interface PrecisionAtCutoff
+	{
+		double get(int cutoffIndex);
+	}
+
+	/**
+	 * Appends the lines of all the measures of a query, or of the run when queryID is "all".
+	 */
+	private static void appendMeasures(StringBuilder stringBuilder, String queryID, int retrievedCount, int relevantCount, int relevantRetrievedCount,
+			double averagePrecision, double rPrecision, PrecisionAtCutoff precisionAtCutoff, double nDCG)
+	{
+		appendLine(stringBuilder, "num_ret", queryID, Integer.toString(retrievedCount));
+		appendLine(stringBuilder, "num_rel", queryID, Integer.toString(relevantCount));
+		appendLine(stringBuilder, "num_rel_ret", queryID, Integer.toString(relevantRetrievedCount));
+		appendLine(stringBuilder, "map", queryID, formatMeasure(averagePrecision));
+		appendLine(stringBuilder, "Rprec", queryID, formatMeasure(rPrecision));
+		for(int cutoffIndex = 0; cutoffIndex < QueryEvaluation.PRECISION_CUTOFFS.length; cutoffIndex++)
+		{
+			appendLine(stringBuilder, "P_" + QueryEvaluation.PRECISION_CUTOFFS[cutoffIndex], queryID, formatMeasure(precisionAtCutoff.get(cutoffIndex)));
+		}
+		appendLine(stringBuilder, "ndcg", queryID, formatMeasure(nDCG));
+	}
+
+	/**
+	 * Appends one line, with the measure name padded as trec_eval pads it.
+	 */
+	private static void appendLine(StringBuilder stringBuilder, String measure, String queryID, String value)
+	{
+		stringBuilder.append(String.format(Locale.ROOT, "%-22s\t%s\t%s%n", measure, queryID, value));
+	}
+
+	/**
+	 * Formats the measure with 4 decimals, as trec_eval formats it.
+	 */
+	private static String formatMeasure(double value)
+	{
+		return String.format(Locale.ROOT, "%6.4f", value);
+	}
+}
@@ -0,0 +1,84 @@
+package com.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.metrics.QueryMetrics.QueryType;
+import com.result.RankedResults;
+import com.searcher.TopicPipeline;
+
+/**
+ * This class evaluates the queries of a run as their results are written by the TopicPipeline, so a run is evaluated
+ * without keeping its results: only the measures of every evaluated query are kept, per output and query type.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class RunEvaluationCollector implements TopicPipeline.ResultsConsumer {
+
+	private TrecEvaluator trecEvaluator;
+	private List<List<QueryEvaluation>> shortQueryEvaluations;
+	private List<List<QueryEvaluation>> longQueryEvaluations;
+
+	/**
+	 * Creates the empty RunEvaluationCollector of the specified number of outputs.
+	 *
+	 * @param trecEvaluator
+	 *  evaluator of the queries
+	 * @param outputCount
+	 *  number of outputs of every query
+	 */
+	public RunEvaluationCollector(TrecEvaluator trecEvaluator, int outputCount)
+	{
+		this.trecEvaluator = trecEvaluator;
+		this.shortQueryEvaluations = new ArrayList<List<QueryEvaluation>>(outputCount);
+		this.longQueryEvaluations = new ArrayList<List<QueryEvaluation>>(outputCount);
+		for(int outputIndex = 0; outputIndex < outputCount; outputIndex++)
+		{
+			shortQueryEvaluations.add(new ArrayList<QueryEvaluation>());
+			longQueryEvaluations.add(new ArrayList<QueryEvaluation>());
+		}
+	}
+
+	@Override
+	public void accept(QueryType queryType, RankedResults[] rankedResults)
+	{
+		List<List<QueryEvaluation>> queryEvaluations = (queryType == QueryType.SHORT) ? shortQueryEvaluations : longQueryEvaluations;
+		for(int outputIndex = 0; outputIndex < rankedResults.length; outputIndex++)
+		{
+			QueryEvaluation queryEvaluation = trecEvaluator.evaluate(rankedResults[outputIndex]);
+			if(queryEvaluation != null)
+			{
+				queryEvaluations.get(outputIndex).add(queryEvaluation);
+			}
+		}
+	}
+
+	/**
+	 * Returns the evaluation of the short (title) queries of the output with specified index.
+	 *
+	 * @param outputIndex
+	 *  index of the output
+	 * @return
+	 *  measures of the evaluated queries and their means
+	 */
+	public RunEvaluation getShortQueryEvaluation(int outputIndex)
+	{
+		List<QueryEvaluation> queryEvaluations = shortQueryEvaluations.get(outputIndex);
+		return new RunEvaluation(queryEvaluations.toArray(new QueryEvaluation[queryEvaluations.size()]));
+	}
+
+	/**
+	 * Returns the evaluation of the long (description) queries of the output with specified index.
+	 *
+	 * @param outputIndex
+	 *  index of the output
+	 * @return
+	 *  measures of the evaluated queries and their means
+	 */
+	public RunEvaluation getLongQueryEvaluation(int outputIndex)
+	{
+		List<QueryEvaluation> queryEvaluations = longQueryEvaluations.get(outputIndex);
+		return new RunEvaluation(queryEvaluations.toArray(new QueryEvaluation[queryEvaluations.size()]));
+	}
+}
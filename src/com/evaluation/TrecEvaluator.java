@@ -0,0 +1,92 @@
+package com.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.result.RankedResults;
+import com.searcher.DocNoLookup;
+
+/**
+ * This class evaluates the ranked results of a run in memory, with the same measures and the same numbers as trec_eval
+ * computes from the run file, so the run file need not be written, nor an external process started, to evaluate a run.
+ *
+ * As trec_eval does by default, only the queries which retrieved documents and are judged in the qrels are evaluated,
+ * and the means are taken over those queries. The queries are evaluated in parallel on the common fork join pool;
+ * the qrels and the lookup are only read, hence one TrecEvaluator can evaluate several runs at once.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TrecEvaluator {
+
+	private Qrels qrels;
+	private DocNoLookup docNoLookup;
+
+	/**
+	 * Creates the TrecEvaluator of the runs retrieved from the index of the specified lookup.
+	 *
+	 * @param qrels
+	 *  judgments of the topics, loaded with the same lookup
+	 * @param docNoLookup
+	 *  lookup of the index the runs are retrieved from
+	 */
+	public TrecEvaluator(Qrels qrels, DocNoLookup docNoLookup)
+	{
+		this.qrels = qrels;
+		this.docNoLookup = docNoLookup;
+	}
+
+	/**
+	 * This function evaluates the ranked results of all the queries of a run.
+	 *
+	 * @param rankedResults
+	 *  ranked results of every query of the run
+	 * @return
+	 *  measures of the evaluated queries and their means
+	 */
+	public RunEvaluation evaluate(RankedResults[] rankedResults)
+	{
+		List<RankedResults> judgedResults = new ArrayList<RankedResults>(rankedResults.length);
+		for(RankedResults queryResults : rankedResults)
+		{
+			if(isEvaluated(queryResults))
+			{
+				judgedResults.add(queryResults);
+			}
+		}
+
+		QueryEvaluation[] queryEvaluations = new QueryEvaluation[judgedResults.size()];
+		IntStream.range(0, queryEvaluations.length).parallel().forEach(queryIndex -> {
+			RankedResults queryResults = judgedResults.get(queryIndex);
+			queryEvaluations[queryIndex] = QueryEvaluation.evaluate(queryResults, qrels.getJudgments(queryResults.getQueryID()), docNoLookup);
+		});
+		return new RunEvaluation(queryEvaluations);
+	}
+
+	/**
+	 * This function evaluates the ranked results of one query, e.g. of a run whose results are not kept.
+	 *
+	 * @param queryResults
+	 *  ranked results of the query
+	 * @return
+	 *  measures of the query, null if trec_eval does not evaluate the query
+	 */
+	public QueryEvaluation evaluate(RankedResults queryResults)
+	{
+		if(!isEvaluated(queryResults))
+		{
+			return null;
+		}
+		return QueryEvaluation.evaluate(queryResults, qrels.getJudgments(queryResults.getQueryID()), docNoLookup);
+	}
+
+	/**
+	 * Returns whether trec_eval evaluates the query, i.e. whether it retrieved any document and is judged.
+	 */
+	private boolean isEvaluated(RankedResults queryResults)
+	{
+		/* A query without any document has no line in the run file, hence trec_eval does not see it */
+		return queryResults.size() > 0 && qrels.getJudgments(queryResults.getQueryID()) != null;
+	}
+}
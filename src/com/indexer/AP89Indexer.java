@@ -0,0 +1,386 @@
+package com.indexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import com.constants.Constants;
+
+/**
+ * This class builds the index of the AP89 collection at Constants.INDEX_DIR_PATH, which is searched by the searchers.
+ *
+ * The collection files are memory mapped and parsed document by document on the calling thread (see MappedTrecDocumentReader),
+ * and the documents are handed to the indexing threads through a bounded queue, so the parsing and the analysis run in parallel
+ * and the memory stays bounded.
+ * All the indexing threads add to one IndexWriter, which is tuned for bulk loading with a large RAM buffer and
+ * a merge policy doing fewer, larger merges.
+ *
+ * The collection can also be split into several shard indexes searched by the ShardedSearcher. Every document goes
+ * to the shard given by the hash of its DOCNO, so a document always lands in the same shard whatever the order of parsing.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class AP89Indexer {
+
+	/* Number of documents queued per indexing thread */
+	private static final int QUEUE_SIZE_PER_THREAD = 256;
+
+	/* Marks the end of the collection for the indexing threads */
+	private static final TrecDocument END_OF_COLLECTION = new TrecDocument(null, null);
+
+	/**
+	 * This function lists the files of the collection under the specified path in the order of their names.
+	 *
+	 * @param corpusPath
+	 *  collection file, or directory holding the collection files
+	 * @return
+	 *  files of the collection
+	 *
+	 * @throws IOException
+	 */
+	public static List<File> listCorpusFiles(File corpusPath) throws IOException
+	{
+		List<File> corpusFiles = new ArrayList<File>();
+		if(corpusPath.isFile())
+		{
+			corpusFiles.add(corpusPath);
+			return corpusFiles;
+		}
+
+		File[] children = corpusPath.listFiles();
+		if(children == null)
+		{
+			throw new IOException("Unable to list the collection at " + corpusPath);
+		}
+		Arrays.sort(children);
+		for(File child : children)
+		{
+			if(child.isHidden() == false)
+			{
+				corpusFiles.addAll(listCorpusFiles(child));
+			}
+		}
+		return corpusFiles;
+	}
+
+	/**
+	 * This function creates the IndexWriterConfig for bulk loading the collection.
+	 *
+	 * @param analyzer
+	 *  analyzer of "TEXT" field
+	 * @return
+	 *  configuration of the IndexWriter
+	 */
+	public static IndexWriterConfig createBulkLoadConfig(Analyzer analyzer)
+	{
+		IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
+		indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+
+		/* Flush by RAM only, the flushed segments are large and few */
+		indexWriterConfig.setRAMBufferSizeMB(Constants.INDEXING_RAM_BUFFER_MB);
+		indexWriterConfig.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+
+		/* Merge more segments at once and less often while loading, and skip the compound file copy */
+		TieredMergePolicy mergePolicy = new TieredMergePolicy();
+		mergePolicy.setSegmentsPerTier(20);
+		mergePolicy.setMaxMergeAtOnce(20);
+		mergePolicy.setNoCFSRatio(0.0);
+		indexWriterConfig.setMergePolicy(mergePolicy);
+		indexWriterConfig.setUseCompoundFile(false);
+		return indexWriterConfig;
+	}
+
+	/**
+	 * This function indexes all the documents of the reader into a new index at the specified path,
+	 * replacing the existing index.
+	 *
+	 * @param trecDocumentReader
+	 *  reader of the collection
+	 * @param indexDirPath
+	 *  path of the index directory
+	 * @param threadCount
+	 *  number of indexing threads
+	 * @return
+	 *  number of indexed documents
+	 *
+	 * @throws IOException
+	 */
+	public static long indexCollection(TrecDocumentReader trecDocumentReader, String indexDirPath, int threadCount) throws IOException
+	{
+		return indexCollection(trecDocumentReader, new String[] { indexDirPath }, threadCount);
+	}
+
+	/**
+	 * This function indexes all the documents of the reader into new shard indexes at the specified paths,
+	 * replacing the existing indexes. Each document is added to the shard given by the hash of its DOCNO.
+	 *
+	 * @param trecDocumentReader
+	 *  reader of the collection
+	 * @param shardIndexDirPaths
+	 *  path of the index directory of every shard
+	 * @param threadCount
+	 *  number of indexing threads
+	 * @return
+	 *  number of indexed documents
+	 *
+	 * @throws IOException
+	 */
+	public static long indexCollection(TrecDocumentReader trecDocumentReader, String[] shardIndexDirPaths, int threadCount) throws IOException
+	{
+		Analyzer analyzer = new StandardAnalyzer();
+		Directory[] indexDirectories = new Directory[shardIndexDirPaths.length];
+		IndexWriter[] indexWriters = new IndexWriter[shardIndexDirPaths.length];
+		BlockingQueue<TrecDocument> documentQueue = new ArrayBlockingQueue<TrecDocument>(threadCount * QUEUE_SIZE_PER_THREAD);
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		boolean indexed = false;
+		Throwable indexFailure = null;
+
+		try
+		{
+			for(int shardIndex = 0; shardIndex < shardIndexDirPaths.length; shardIndex++)
+			{
+				indexDirectories[shardIndex] = FSDirectory.open(Paths.get(shardIndexDirPaths[shardIndex]));
+				indexWriters[shardIndex] = new IndexWriter(indexDirectories[shardIndex], createBulkLoadConfig(analyzer));
+			}
+
+			List<Future<Long>> indexingThreads = new ArrayList<Future<Long>>(threadCount);
+			for(int threadIndex = 0; threadIndex < threadCount; threadIndex++)
+			{
+				indexingThreads.add(executorService.submit(() -> indexDocuments(documentQueue, indexWriters, analyzer)));
+			}
+
+			TrecDocument trecDocument;
+			while((trecDocument = trecDocumentReader.next()) != null)
+			{
+				enqueue(documentQueue, trecDocument, indexingThreads);
+			}
+			for(int threadIndex = 0; threadIndex < threadCount; threadIndex++)
+			{
+				enqueue(documentQueue, END_OF_COLLECTION, indexingThreads);
+			}
+
+			long documentCount = 0;
+			for(Future<Long> indexingThread : indexingThreads)
+			{
+				documentCount += getIndexedDocumentCount(indexingThread);
+			}
+
+			for(IndexWriter indexWriter : indexWriters)
+			{
+				indexWriter.commit();
+			}
+			indexed = true;
+			return documentCount;
+		}
+		catch(Throwable e)
+		{
+			indexFailure = e;
+			throw e;
+		}
+		finally
+		{
+			executorService.shutdownNow();
+			/* Every shard is closed, or rolled back if the collection is not indexed, and then its directory */
+			List<Closeable> closeables = new ArrayList<Closeable>(2 * shardIndexDirPaths.length + 1);
+			for(int shardIndex = 0; shardIndex < shardIndexDirPaths.length; shardIndex++)
+			{
+				IndexWriter indexWriter = indexWriters[shardIndex];
+				if(indexWriter != null)
+				{
+					closeables.add(indexed ? indexWriter : indexWriter::rollback);
+				}
+				closeables.add(indexDirectories[shardIndex]);
+			}
+			closeables.add(trecDocumentReader);
+			closeAll(indexFailure, closeables);
+		}
+	}
+
+	/**
+	 * Closes all the specified objects, trying every object whatever the failures of the others. If the indexing has
+	 * failed, the close failures are added to its failure as suppressed, so they do not hide it. Otherwise the first
+	 * close failure is reported, with the others suppressed.
+	 */
+	private static void closeAll(Throwable indexFailure, List<Closeable> closeables) throws IOException
+	{
+		IOException closeException = null;
+		for(Closeable closeable : closeables)
+		{
+			if(closeable == null)
+			{
+				continue;
+			}
+			try
+			{
+				closeable.close();
+			}
+			catch(IOException e)
+			{
+				if(indexFailure != null)
+				{
+					indexFailure.addSuppressed(e);
+				}
+				else if(closeException == null)
+				{
+					closeException = e;
+				}
+				else
+				{
+					closeException.addSuppressed(e);
+				}
+			}
+		}
+		if(closeException != null)
+		{
+			throw closeException;
+		}
+	}
+
+	/**
+	 * This function returns the shard of the document with specified DOCNO.
+	 *
+	 * @param docNo
+	 *  document number
+	 * @param shardCount
+	 *  number of shards
+	 * @return
+	 *  index of the shard between 0 and shardCount
+	 */
+	public static int getShardIndex(String docNo, int shardCount)
+	{
+		return Math.floorMod(docNo.hashCode(), shardCount);
+	}
+
+	/**
+	 * This function returns the paths of the shard indexes of the index at specified path.
+	 *
+	 * @param indexDirPath
+	 *  path of the index directory
+	 * @param shardCount
+	 *  number of shards
+	 * @return
+	 *  path of the index directory of every shard
+	 */
+	public static String[] getShardIndexDirPaths(String indexDirPath, int shardCount)
+	{
+		String[] shardIndexDirPaths = new String[shardCount];
+		for(int shardIndex = 0; shardIndex < shardCount; shardIndex++)
+		{
+			shardIndexDirPaths[shardIndex] = indexDirPath + "-shard" + shardIndex;
+		}
+		return shardIndexDirPaths;
+	}
+
+	/**
+	 * Takes the documents from the queue and adds them to the index of their shard, until the end of the collection.
+	 */
+	private static long indexDocuments(BlockingQueue<TrecDocument> documentQueue, IndexWriter[] indexWriters, Analyzer analyzer) throws IOException, InterruptedException
+	{
+		TrecDocumentBuilder trecDocumentBuilder = new TrecDocumentBuilder(analyzer);
+		long documentCount = 0;
+		TrecDocument trecDocument;
+		while((trecDocument = documentQueue.take()) != END_OF_COLLECTION)
+		{
+			IndexWriter indexWriter = indexWriters[getShardIndex(trecDocument.getDocNo(), indexWriters.length)];
+			indexWriter.addDocument(trecDocumentBuilder.build(trecDocument));
+			documentCount++;
+		}
+		return documentCount;
+	}
+
+	/**
+	 * Puts the document into the queue, failing if an indexing thread has failed so the queue may never be drained.
+	 */
+	private static void enqueue(BlockingQueue<TrecDocument> documentQueue, TrecDocument trecDocument, List<Future<Long>> indexingThreads) throws IOException
+	{
+		try
+		{
+			while(documentQueue.offer(trecDocument, 100, TimeUnit.MILLISECONDS) == false)
+			{
+				for(Future<Long> indexingThread : indexingThreads)
+				{
+					if(indexingThread.isDone())
+					{
+						/* Throws the failure of the thread, a thread which has taken its end marker simply stops */
+						getIndexedDocumentCount(indexingThread);
+					}
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queuing documents", e);
+		}
+	}
+
+	/**
+	 * Waits for the indexing thread, and reports its failure as IOException.
+	 */
+	private static long getIndexedDocumentCount(Future<Long> indexingThread) throws IOException
+	{
+		try
+		{
+			return indexingThread.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for indexing thread", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IOException("Unable to index the documents", e.getCause());
+		}
+	}
+
+	/**
+	 * Main Function to build the index.
+	 * @param args
+	 *  optional path of the collection, path of the index and number of shards, defaults are Constants.CORPUS_DIR_PATH,
+	 *  Constants.INDEX_DIR_PATH and a single index. More than one shard builds the shards at the paths given by
+	 *  getShardIndexDirPaths instead of the index.
+	 */
+	public static void main(String[] args) {
+
+		String corpusPath = args.length > 0 ? args[0] : Constants.CORPUS_DIR_PATH;
+		String indexDirPath = args.length > 1 ? args[1] : Constants.INDEX_DIR_PATH;
+		int shardCount = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		String[] shardIndexDirPaths = shardCount > 1 ? getShardIndexDirPaths(indexDirPath, shardCount) : new String[] { indexDirPath };
+
+		try
+		{
+			long startTime = System.nanoTime();
+			TrecDocumentReader trecDocumentReader = new MappedTrecDocumentReader(listCorpusFiles(new File(corpusPath)));
+			long documentCount = indexCollection(trecDocumentReader, shardIndexDirPaths, Constants.INDEXING_THREAD_COUNT);
+			double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+
+			System.out.println("Indexed " + documentCount + " documents in " + String.format("%.1f", elapsedSeconds) + " seconds ("
+					+ String.format("%.0f", documentCount / elapsedSeconds) + " documents/sec) to " + String.join(", ", shardIndexDirPaths));
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.indexer;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is a Reader over one or more byte ranges of a ByteBuffer, such as the &lt;TEXT&gt; sections of a document
+ * in a memory mapped file. The bytes are decoded as ISO-8859-1 directly into the buffer of the caller (the tokenizer),
+ * so the text is never copied into a String or a char array of its own. The ranges are separated by a new line.
+ *
+ * The ByteBuffer is only read with absolute gets, hence several readers can share one buffer across threads.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ByteSliceReader extends Reader {
+
+	private ByteBuffer byteBuffer;
+	private int[] rangeStarts;
+	private int[] rangeEnds;
+	private int rangeCount;
+	private int rangeIndex;
+	private int position;
+
+	/**
+	 * Creates the reader over the specified ranges of the buffer.
+	 *
+	 * @param byteBuffer
+	 *  buffer holding the text
+	 * @param rangeStarts
+	 *  start (inclusive) of each range
+	 * @param rangeEnds
+	 *  end (exclusive) of each range
+	 * @param rangeCount
+	 *  number of ranges
+	 */
+	public ByteSliceReader(ByteBuffer byteBuffer, int[] rangeStarts, int[] rangeEnds, int rangeCount)
+	{
+		this.byteBuffer = byteBuffer;
+		this.rangeStarts = rangeStarts;
+		this.rangeEnds = rangeEnds;
+		this.rangeCount = rangeCount;
+		this.rangeIndex = 0;
+		this.position = rangeCount > 0 ? rangeStarts[0] : 0;
+	}
+
+	@Override
+	public int read(char[] chars, int offset, int length)
+	{
+		int readCount = 0;
+		while(readCount < length && rangeIndex < rangeCount)
+		{
+			int rangeEnd = rangeEnds[rangeIndex];
+			if(position < rangeEnd)
+			{
+				int copyCount = Math.min(length - readCount, rangeEnd - position);
+				for(int index = 0; index < copyCount; index++)
+				{
+					chars[offset + readCount + index] = (char) (byteBuffer.get(position + index) & 0xFF);
+				}
+				position += copyCount;
+				readCount += copyCount;
+			}
+			else
+			{
+				/* End of range, separate it from the next range */
+				chars[offset + readCount++] = '\n';
+				rangeIndex++;
+				if(rangeIndex < rangeCount)
+				{
+					position = rangeStarts[rangeIndex];
+				}
+			}
+		}
+		return (readCount == 0 && length > 0) ? -1 : readCount;
+	}
+
+	@Override
+	public void close()
+	{
+		rangeIndex = rangeCount;
+	}
+}
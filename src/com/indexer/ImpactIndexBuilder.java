@@ -0,0 +1,373 @@
+package com.indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.searcher.DocumentLengths;
+import com.searcher.ImpactIndex;
+import com.searcher.SearchSession;
+import com.searcher.SessionSearcher;
+
+/**
+ * This class builds the impact ordered index read by ImpactIndex from the lucene index. The TF-IDF Score of every
+ * (term, document) pair of "TEXT" field is calculated as in EasySearch, and quantized uniformly to an impact between
+ * 1 and 255, so the scores of different terms can be summed as integers.
+ *
+ * The quantization scale is the score below which SCALE_QUANTILE of all the scores fall, scores above it get the highest
+ * impact. A few very short documents have scores far above the rest, and scaling to the highest score would squeeze
+ * almost every other score into the lowest impacts.
+ *
+ * The postings are read twice, once to find the scale and once to write them, so the memory used is that of the postings of one term.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ImpactIndexBuilder {
+
+	private static final double SCALE_QUANTILE = 0.999;
+
+	/* Histogram of the scores in logarithmic buckets, 16 buckets per power of two from 2^-40 to 2^24 */
+	private static final int HISTOGRAM_BUCKETS_PER_OCTAVE = 16;
+	private static final int HISTOGRAM_MIN_EXPONENT = -40;
+	private static final int HISTOGRAM_MAX_EXPONENT = 24;
+	private static final int HISTOGRAM_BUCKET_COUNT = (HISTOGRAM_MAX_EXPONENT - HISTOGRAM_MIN_EXPONENT) * HISTOGRAM_BUCKETS_PER_OCTAVE;
+
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * This function builds the impact index of the reader of the specified searcher, and writes it to the specified file.
+	 * The file is written aside and moved over the previous file, so searchers never map a half written index.
+	 *
+	 * @param sessionSearcher
+	 *  searcher acquired from the search session
+	 * @param similarity
+	 *  similarity used to decode the norm values into document lengths
+	 * @param impactIndexFilePath
+	 *  path of the impact index file
+	 *
+	 * @throws IOException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public static void build(SessionSearcher sessionSearcher, Similarity similarity, String impactIndexFilePath) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		IndexReader indexReader = sessionSearcher.getIndexReader();
+		int corpusDocumentCount = indexReader.maxDoc();
+		double[] documentLengths = getDocumentLengths(indexReader, sessionSearcher.getDocumentLengths(similarity));
+		Terms terms = MultiFields.getTerms(indexReader, Constants.FIELD_TEXT);
+
+		/* Pass 1: count the terms and find the quantization scale */
+		long[] scoreHistogram = new long[HISTOGRAM_BUCKET_COUNT];
+		long scoreCount = 0;
+		int termCount = 0;
+		int termBytesLength = 0;
+		if(terms != null)
+		{
+			TermsEnum termsEnum = terms.iterator();
+			PostingsEnum posting = null;
+			BytesRef term;
+			while((term = termsEnum.next()) != null)
+			{
+				termCount++;
+				termBytesLength += term.length;
+				double iDFScore = Calculator.calculateIDFScore(termsEnum.docFreq(), corpusDocumentCount);
+				posting = termsEnum.postings(posting, PostingsEnum.FREQS);
+				while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+				{
+					double score = Calculator.calculateTFIDFScoreForTerm(posting.freq(), documentLengths[posting.docID()], iDFScore);
+					scoreHistogram[getHistogramBucket(score)]++;
+					scoreCount++;
+				}
+			}
+		}
+		double scoreScale = getQuantileScore(scoreHistogram, scoreCount, SCALE_QUANTILE);
+
+		byte[] indexVersionBytes = sessionSearcher.getIndexVersion().getBytes(StandardCharsets.UTF_8);
+		int dictionaryOffset = ImpactIndex.getHeaderLength(indexVersionBytes.length);
+		int termBytesOffset = dictionaryOffset + termCount * ImpactIndex.DICTIONARY_ENTRY_BYTES;
+		long postingsOffset = (termBytesOffset + termBytesLength + 7) & ~7L;
+
+		File impactIndexFile = new File(impactIndexFilePath);
+		File parentDirectory = impactIndexFile.getAbsoluteFile().getParentFile();
+		if(parentDirectory != null)
+		{
+			parentDirectory.mkdirs();
+		}
+		File temporaryFile = new File(impactIndexFilePath + ".tmp");
+
+		try(FileChannel fileChannel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			/* Pass 2: write the postings of every term in blocks of decreasing impact */
+			ImpactWriter postingsWriter = new ImpactWriter(fileChannel, postingsOffset);
+			ByteBuffer dictionary = ByteBuffer.allocate(termCount * ImpactIndex.DICTIONARY_ENTRY_BYTES);
+			ByteArrayOutputStream termBytes = new ByteArrayOutputStream(termBytesLength);
+
+			if(terms != null)
+			{
+				TermsEnum termsEnum = terms.iterator();
+				PostingsEnum posting = null;
+				BytesRef term;
+				int[] documentIDs = new int[16];
+				int[] impacts = new int[16];
+				int[] sortedDocumentIDs = new int[16];
+				int[] impactStarts = new int[ImpactIndex.MAX_IMPACT + 2];
+
+				while((term = termsEnum.next()) != null)
+				{
+					int documentFrequency = 0;
+					double iDFScore = Calculator.calculateIDFScore(termsEnum.docFreq(), corpusDocumentCount);
+					posting = termsEnum.postings(posting, PostingsEnum.FREQS);
+					while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+					{
+						double score = Calculator.calculateTFIDFScoreForTerm(posting.freq(), documentLengths[posting.docID()], iDFScore);
+						documentIDs = ArrayUtil.grow(documentIDs, documentFrequency + 1);
+						impacts = ArrayUtil.grow(impacts, documentFrequency + 1);
+						documentIDs[documentFrequency] = posting.docID();
+						impacts[documentFrequency] = quantize(score, scoreScale);
+						documentFrequency++;
+					}
+
+					/* Counting sort by decreasing impact, documents of an impact stay in increasing order */
+					Arrays.fill(impactStarts, 0);
+					for(int index = 0; index < documentFrequency; index++)
+					{
+						impactStarts[ImpactIndex.MAX_IMPACT - impacts[index] + 1]++;
+					}
+					for(int rank = 1; rank < impactStarts.length; rank++)
+					{
+						impactStarts[rank] += impactStarts[rank - 1];
+					}
+					sortedDocumentIDs = ArrayUtil.grow(sortedDocumentIDs, documentFrequency);
+					int blockCount = 0;
+					for(int rank = 0; rank <= ImpactIndex.MAX_IMPACT; rank++)
+					{
+						if(impactStarts[rank + 1] > impactStarts[rank])
+						{
+							blockCount++;
+						}
+					}
+					int[] nextPositions = impactStarts.clone();
+					for(int index = 0; index < documentFrequency; index++)
+					{
+						sortedDocumentIDs[nextPositions[ImpactIndex.MAX_IMPACT - impacts[index]]++] = documentIDs[index];
+					}
+
+					dictionary.putInt(termBytes.size());
+					dictionary.putInt(term.length);
+					dictionary.putLong(postingsWriter.getPosition());
+					dictionary.putInt(blockCount);
+					dictionary.putInt(documentFrequency);
+					termBytes.write(term.bytes, term.offset, term.length);
+
+					for(int rank = 0; rank <= ImpactIndex.MAX_IMPACT; rank++)
+					{
+						int blockStart = impactStarts[rank];
+						int blockEnd = impactStarts[rank + 1];
+						if(blockEnd == blockStart)
+						{
+							continue;
+						}
+						postingsWriter.putInt(ImpactIndex.MAX_IMPACT - rank);
+						postingsWriter.putInt(blockEnd - blockStart);
+						for(int index = blockStart; index < blockEnd; index++)
+						{
+							postingsWriter.putInt(sortedDocumentIDs[index]);
+						}
+					}
+				}
+			}
+			postingsWriter.flush();
+			if(postingsWriter.getPosition() > Integer.MAX_VALUE)
+			{
+				throw new IOException("Unable to build the impact index larger than 2GB");
+			}
+
+			/* Header, dictionary and term bytes are written last, in front of the postings */
+			ByteBuffer header = ByteBuffer.allocate(dictionaryOffset);
+			header.putInt(ImpactIndex.FILE_MAGIC);
+			header.putInt(ImpactIndex.FILE_FORMAT_VERSION);
+			header.putInt(corpusDocumentCount);
+			header.putInt(termCount);
+			header.putDouble(scoreScale);
+			header.putLong(postingsOffset);
+			header.putInt(indexVersionBytes.length);
+			header.put(indexVersionBytes);
+			header.rewind();
+			dictionary.flip();
+			writeFully(fileChannel, header, 0);
+			writeFully(fileChannel, dictionary, dictionaryOffset);
+			writeFully(fileChannel, ByteBuffer.wrap(termBytes.toByteArray()), termBytesOffset);
+		}
+		Files.move(temporaryFile.toPath(), impactIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Returns the document length of every document of the reader, indexed by lucene document id.
+	 */
+	private static double[] getDocumentLengths(IndexReader indexReader, DocumentLengths documentLengths)
+	{
+		double[] allDocumentLengths = new double[indexReader.maxDoc()];
+		List<LeafReaderContext> leafReaderContexts = indexReader.leaves();
+		for(LeafReaderContext leafReaderContext : leafReaderContexts)
+		{
+			double[] leafDocumentLengths = documentLengths.getLeafDocumentLengths(leafReaderContext.ord);
+			System.arraycopy(leafDocumentLengths, 0, allDocumentLengths, leafReaderContext.docBase, leafDocumentLengths.length);
+		}
+		return allDocumentLengths;
+	}
+
+	/**
+	 * Returns the impact of the score, between 1 and MAX_IMPACT. A matching document never gets impact 0,
+	 * so it is retrieved even if its score is tiny.
+	 */
+	private static int quantize(double score, double scoreScale)
+	{
+		if(!(score < scoreScale))
+		{
+			return ImpactIndex.MAX_IMPACT;
+		}
+		return Math.max(1, (int) Math.round(score / scoreScale * ImpactIndex.MAX_IMPACT));
+	}
+
+	/**
+	 * Returns the histogram bucket of the score. Scores out of the range of the histogram go to the first or last bucket.
+	 */
+	private static int getHistogramBucket(double score)
+	{
+		if(!(score < Double.POSITIVE_INFINITY))
+		{
+			return HISTOGRAM_BUCKET_COUNT - 1;
+		}
+		double exponent = Math.log(score) / Math.log(2);
+		int bucket = (int) Math.floor((exponent - HISTOGRAM_MIN_EXPONENT) * HISTOGRAM_BUCKETS_PER_OCTAVE);
+		return Math.max(0, Math.min(HISTOGRAM_BUCKET_COUNT - 1, bucket));
+	}
+
+	/**
+	 * Returns the upper edge of the histogram bucket holding the score at specified quantile, or 1 if there are no scores.
+	 */
+	private static double getQuantileScore(long[] scoreHistogram, long scoreCount, double quantile)
+	{
+		if(scoreCount == 0)
+		{
+			return 1;
+		}
+		long rank = (long) Math.ceil(scoreCount * quantile);
+		long cumulativeCount = 0;
+		int bucket = 0;
+		while(bucket < HISTOGRAM_BUCKET_COUNT - 1)
+		{
+			cumulativeCount += scoreHistogram[bucket];
+			if(cumulativeCount >= rank)
+			{
+				break;
+			}
+			bucket++;
+		}
+		return Math.pow(2, HISTOGRAM_MIN_EXPONENT + (bucket + 1) / (double) HISTOGRAM_BUCKETS_PER_OCTAVE);
+	}
+
+	/**
+	 * Writes all the remaining bytes of the buffer to the channel at specified position.
+	 */
+	private static void writeFully(FileChannel fileChannel, ByteBuffer byteBuffer, long position) throws IOException
+	{
+		while(byteBuffer.hasRemaining())
+		{
+			position += fileChannel.write(byteBuffer, position);
+		}
+	}
+
+	/**
+	 * This class writes the ints of the postings through a buffer to the channel, starting at the specified position.
+	 */
+	private static class ImpactWriter
+	{
+		private FileChannel fileChannel;
+		private ByteBuffer writeBuffer;
+		private long flushedPosition;
+
+		private ImpactWriter(FileChannel fileChannel, long position)
+		{
+			this.fileChannel = fileChannel;
+			this.writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+			this.flushedPosition = position;
+		}
+
+		private void putInt(int value) throws IOException
+		{
+			if(writeBuffer.remaining() < Integer.BYTES)
+			{
+				flush();
+			}
+			writeBuffer.putInt(value);
+		}
+
+		private long getPosition()
+		{
+			return flushedPosition + writeBuffer.position();
+		}
+
+		private void flush() throws IOException
+		{
+			writeBuffer.flip();
+			writeFully(fileChannel, writeBuffer, flushedPosition);
+			flushedPosition += writeBuffer.limit();
+			writeBuffer.clear();
+		}
+	}
+
+	/**
+	 * Main function to build the impact index of the index at Constants.INDEX_DIR_PATH, or of the index directory given
+	 * as first argument, into Constants.IMPACT_INDEX_FILE_PATH, or into the file given as second argument.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String indexDirPath = args.length > 0 ? args[0] : Constants.INDEX_DIR_PATH;
+		String impactIndexFilePath = args.length > 1 ? args[1] : Constants.IMPACT_INDEX_FILE_PATH;
+
+		try(SearchSession searchSession = new SearchSession(indexDirPath))
+		{
+			long startTime = System.currentTimeMillis();
+			SessionSearcher sessionSearcher = searchSession.acquire();
+			try
+			{
+				build(sessionSearcher, new DefaultSimilarity(), impactIndexFilePath);
+			}
+			finally
+			{
+				searchSession.release(sessionSearcher);
+			}
+			System.out.println("Impact index built in " + (System.currentTimeMillis() - startTime) + " ms: " + impactIndexFilePath);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * This class reads the documents of the TREC SGML files by memory mapping each file and scanning its bytes for the
+ * &lt;DOC&gt;, &lt;DOCNO&gt; and &lt;TEXT&gt; tags. The text of a document is handed out as a ByteSliceReader over the
+ * &lt;TEXT&gt; sections of the mapped file, so neither the file nor the text is copied to the heap, and the heap used
+ * stays the same however large the collection is. The files are mapped one at a time.
+ *
+ * It reads the same documents as SgmlTrecDocumentReader. Compressed files (".gz") cannot be mapped,
+ * they are read with SgmlTrecDocumentReader.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class MappedTrecDocumentReader implements TrecDocumentReader {
+
+	private static final byte[] TAG_DOC_START = "<DOC>".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TAG_DOC_END = "</DOC>".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TAG_DOCNO_START = "<DOCNO>".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TAG_DOCNO_END = "</DOCNO>".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TAG_TEXT_START = "<TEXT>".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TAG_TEXT_END = "</TEXT>".getBytes(StandardCharsets.ISO_8859_1);
+
+	private List<File> corpusFiles;
+	private int nextFileIndex;
+
+	/* Mapped file being read, and the position of the next document in it */
+	private ByteBuffer fileBuffer;
+	private int position;
+
+	/* Reader of the compressed file being read */
+	private TrecDocumentReader compressedFileReader;
+
+	/**
+	 * Creates the reader over the specified files of the collection, which are read in the given order.
+	 *
+	 * @param corpusFiles
+	 *  SGML files of the collection
+	 */
+	public MappedTrecDocumentReader(List<File> corpusFiles)
+	{
+		this.corpusFiles = corpusFiles;
+		this.nextFileIndex = 0;
+	}
+
+	@Override
+	public TrecDocument next() throws IOException
+	{
+		while(true)
+		{
+			if(compressedFileReader != null)
+			{
+				TrecDocument trecDocument = compressedFileReader.next();
+				if(trecDocument != null)
+				{
+					return trecDocument;
+				}
+				compressedFileReader.close();
+				compressedFileReader = null;
+			}
+			else if(fileBuffer != null)
+			{
+				TrecDocument trecDocument = nextMappedDocument();
+				if(trecDocument != null)
+				{
+					return trecDocument;
+				}
+				/* The mapping is released once the documents of the file are indexed and collected */
+				fileBuffer = null;
+			}
+			else if(nextFileIndex < corpusFiles.size())
+			{
+				openFile(corpusFiles.get(nextFileIndex++));
+			}
+			else
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Maps the file, or opens the streaming reader for a compressed file.
+	 */
+	private void openFile(File corpusFile) throws IOException
+	{
+		if(corpusFile.getName().endsWith(".gz"))
+		{
+			compressedFileReader = new SgmlTrecDocumentReader(Collections.singletonList(corpusFile));
+			return;
+		}
+
+		try(FileChannel fileChannel = FileChannel.open(corpusFile.toPath(), StandardOpenOption.READ))
+		{
+			long fileSize = fileChannel.size();
+			if(fileSize > Integer.MAX_VALUE)
+			{
+				throw new IOException("Unable to map the collection file larger than 2GB: " + corpusFile);
+			}
+			fileBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			position = 0;
+		}
+	}
+
+	/**
+	 * Scans the next document of the mapped file, or returns null at the end of the file.
+	 */
+	private TrecDocument nextMappedDocument()
+	{
+		int fileLength = fileBuffer.limit();
+		while(true)
+		{
+			int documentStart = indexOf(TAG_DOC_START, position, fileLength);
+			if(documentStart < 0)
+			{
+				return null;
+			}
+			documentStart += TAG_DOC_START.length;
+			int documentEnd = indexOf(TAG_DOC_END, documentStart, fileLength);
+			if(documentEnd < 0)
+			{
+				/* Document is not closed till the end of file */
+				return null;
+			}
+			position = documentEnd + TAG_DOC_END.length;
+
+			String docNo = getDocNo(documentStart, documentEnd);
+			if(docNo == null)
+			{
+				/* Document without DOCNO cannot be identified in the results, hence it is skipped */
+				continue;
+			}
+
+			int[] textStarts = new int[1];
+			int[] textEnds = new int[1];
+			int textCount = 0;
+			int textTag = indexOf(TAG_TEXT_START, documentStart, documentEnd);
+			while(textTag >= 0)
+			{
+				int textStart = textTag + TAG_TEXT_START.length;
+				int textEnd = indexOf(TAG_TEXT_END, textStart, documentEnd);
+				if(textEnd < 0)
+				{
+					textEnd = documentEnd;
+				}
+
+				textStarts = ArrayUtil.grow(textStarts, textCount + 1);
+				textEnds = ArrayUtil.grow(textEnds, textCount + 1);
+				textStarts[textCount] = textStart;
+				textEnds[textCount] = textEnd;
+				textCount++;
+
+				textTag = indexOf(TAG_TEXT_START, textEnd, documentEnd);
+			}
+
+			return new TrecDocument(docNo, new ByteSliceReader(fileBuffer, textStarts, textEnds, textCount));
+		}
+	}
+
+	/**
+	 * Returns the trimmed content of the DOCNO tag within the document, or null if the document has no DOCNO.
+	 */
+	private String getDocNo(int documentStart, int documentEnd)
+	{
+		int docNoStart = indexOf(TAG_DOCNO_START, documentStart, documentEnd);
+		if(docNoStart < 0)
+		{
+			return null;
+		}
+		docNoStart += TAG_DOCNO_START.length;
+		int docNoEnd = indexOf(TAG_DOCNO_END, docNoStart, documentEnd);
+		if(docNoEnd < 0)
+		{
+			docNoEnd = docNoStart;
+			while(docNoEnd < documentEnd && fileBuffer.get(docNoEnd) != '\n')
+			{
+				docNoEnd++;
+			}
+		}
+
+		while(docNoStart < docNoEnd && (fileBuffer.get(docNoStart) & 0xFF) <= ' ')
+		{
+			docNoStart++;
+		}
+		while(docNoEnd > docNoStart && (fileBuffer.get(docNoEnd - 1) & 0xFF) <= ' ')
+		{
+			docNoEnd--;
+		}
+
+		byte[] docNoBytes = new byte[docNoEnd - docNoStart];
+		for(int index = 0; index < docNoBytes.length; index++)
+		{
+			docNoBytes[index] = fileBuffer.get(docNoStart + index);
+		}
+		return new String(docNoBytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the tag between from (inclusive) and to (exclusive), or -1.
+	 */
+	private int indexOf(byte[] tag, int from, int to)
+	{
+		int lastStart = to - tag.length;
+		for(int start = from; start <= lastStart; start++)
+		{
+			if(fileBuffer.get(start) != tag[0])
+			{
+				continue;
+			}
+			int index = 1;
+			while(index < tag.length && fileBuffer.get(start + index) == tag[index])
+			{
+				index++;
+			}
+			if(index == tag.length)
+			{
+				return start;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if(compressedFileReader != null)
+		{
+			compressedFileReader.close();
+			compressedFileReader = null;
+		}
+		fileBuffer = null;
+		nextFileIndex = corpusFiles.size();
+	}
+}
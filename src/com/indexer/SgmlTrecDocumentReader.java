@@ -0,0 +1,173 @@
+package com.indexer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads the documents of the TREC SGML files (such as AP89) line by line:
+ *
+ * &lt;DOC&gt;
+ * &lt;DOCNO&gt; AP890101-0001 &lt;/DOCNO&gt;
+ * ...
+ * &lt;TEXT&gt;
+ * text of the document
+ * &lt;/TEXT&gt;
+ * &lt;/DOC&gt;
+ *
+ * Only one document is held in memory at a time. The content of all the &lt;TEXT&gt; sections of a document is
+ * joined as its text, and all the other sections are skipped. Files ending with ".gz" are decompressed while reading.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SgmlTrecDocumentReader implements TrecDocumentReader {
+
+	private static final String TAG_DOC_START = "<DOC>";
+	private static final String TAG_DOC_END = "</DOC>";
+	private static final String TAG_DOCNO_START = "<DOCNO>";
+	private static final String TAG_DOCNO_END = "</DOCNO>";
+	private static final String TAG_TEXT_START = "<TEXT>";
+	private static final String TAG_TEXT_END = "</TEXT>";
+
+	private List<File> corpusFiles;
+	private int nextFileIndex;
+	private BufferedReader fileReader;
+
+	/**
+	 * Creates the reader over the specified files of the collection, which are read in the given order.
+	 *
+	 * @param corpusFiles
+	 *  SGML files of the collection
+	 */
+	public SgmlTrecDocumentReader(List<File> corpusFiles)
+	{
+		this.corpusFiles = corpusFiles;
+		this.nextFileIndex = 0;
+	}
+
+	@Override
+	public TrecDocument next() throws IOException
+	{
+		boolean inDocument = false;
+		boolean inText = false;
+		String docNo = null;
+		StringBuilder text = null;
+
+		String line;
+		while((line = readLine()) != null)
+		{
+			if(inText)
+			{
+				int textEnd = line.indexOf(TAG_TEXT_END);
+				if(textEnd < 0)
+				{
+					text.append(line).append('\n');
+				}
+				else
+				{
+					text.append(line, 0, textEnd).append('\n');
+					inText = false;
+				}
+				continue;
+			}
+
+			String trimmedLine = line.trim();
+			if(inDocument == false)
+			{
+				if(trimmedLine.startsWith(TAG_DOC_START))
+				{
+					inDocument = true;
+					docNo = null;
+					text = new StringBuilder();
+				}
+			}
+			else if(trimmedLine.startsWith(TAG_DOC_END))
+			{
+				if(docNo != null)
+				{
+					return new TrecDocument(docNo, new StringReader(text.toString()));
+				}
+				/* Document without DOCNO cannot be identified in the results, hence it is skipped */
+				inDocument = false;
+			}
+			else if(trimmedLine.startsWith(TAG_DOCNO_START))
+			{
+				int docNoEnd = trimmedLine.indexOf(TAG_DOCNO_END);
+				docNo = trimmedLine.substring(TAG_DOCNO_START.length(), docNoEnd < 0 ? trimmedLine.length() : docNoEnd).trim();
+			}
+			else if(trimmedLine.startsWith(TAG_TEXT_START))
+			{
+				String textLine = trimmedLine.substring(TAG_TEXT_START.length());
+				int textEnd = textLine.indexOf(TAG_TEXT_END);
+				if(textEnd < 0)
+				{
+					inText = true;
+					text.append(textLine).append('\n');
+				}
+				else
+				{
+					text.append(textLine, 0, textEnd).append('\n');
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the next line of the collection, moving on to the next file at the end of a file.
+	 */
+	private String readLine() throws IOException
+	{
+		while(true)
+		{
+			if(fileReader == null)
+			{
+				if(nextFileIndex == corpusFiles.size())
+				{
+					return null;
+				}
+				fileReader = openFile(corpusFiles.get(nextFileIndex++));
+			}
+
+			String line = fileReader.readLine();
+			if(line != null)
+			{
+				return line;
+			}
+			fileReader.close();
+			fileReader = null;
+		}
+	}
+
+	/**
+	 * Opens the file for reading; the collection is plain ASCII, and ISO-8859-1 maps any other byte to a character as is.
+	 */
+	private static BufferedReader openFile(File corpusFile) throws IOException
+	{
+		InputStream inputStream = new FileInputStream(corpusFile);
+		if(corpusFile.getName().endsWith(".gz"))
+		{
+			inputStream = new GZIPInputStream(inputStream, 64 * 1024);
+		}
+		return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.ISO_8859_1), 64 * 1024);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if(fileReader != null)
+		{
+			fileReader.close();
+			fileReader = null;
+		}
+		nextFileIndex = corpusFiles.size();
+	}
+}
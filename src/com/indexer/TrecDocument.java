@@ -0,0 +1,50 @@
+package com.indexer;
+
+import java.io.Reader;
+
+/**
+ * This class holds one document of the TREC collection, its document number (DOCNO) and the reader over its text,
+ * which is the content of all the &lt;TEXT&gt; sections of the document.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TrecDocument {
+
+	private String docNo;
+	private Reader textReader;
+
+	/**
+	 * Creates the TrecDocument.
+	 *
+	 * @param docNo
+	 *  document number
+	 * @param textReader
+	 *  reader over the text of the document
+	 */
+	public TrecDocument(String docNo, Reader textReader)
+	{
+		this.docNo = docNo;
+		this.textReader = textReader;
+	}
+
+	/**
+	 * Returns the document number.
+	 * @return
+	 *  DOCNO of the document
+	 */
+	public String getDocNo()
+	{
+		return docNo;
+	}
+
+	/**
+	 * Returns the reader over the text of the document. It can be read once.
+	 * @return
+	 *  text reader
+	 */
+	public Reader getTextReader()
+	{
+		return textReader;
+	}
+}
@@ -0,0 +1,67 @@
+package com.indexer;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
+
+import com.constants.Constants;
+
+/**
+ * This class converts a TrecDocument to the lucene Document with the fields the searchers expect:
+ * "DOCNO" as a stored, not analyzed field, and "TEXT" as an analyzed field which is not stored.
+ * It also adds "DOCNO" as binary doc values, so DocNoLookup can be built without reading the stored fields.
+ * The length of a document is not stored separately: the searchers decode it from the norms of "TEXT" (see DocumentLengths).
+ *
+ * The DOCNO fields are reused for every document, hence one builder must be used by one thread.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TrecDocumentBuilder {
+
+	private Analyzer analyzer;
+	private StringField docNoField;
+	private BinaryDocValuesField docNoValuesField;
+
+	/**
+	 * Creates the TrecDocumentBuilder which analyzes the text with specified analyzer.
+	 *
+	 * @param analyzer
+	 *  analyzer of "TEXT" field, same as the one used to parse the queries
+	 */
+	public TrecDocumentBuilder(Analyzer analyzer)
+	{
+		this.analyzer = analyzer;
+		this.docNoField = new StringField(Constants.FIELD_DOCNO, "", Field.Store.YES);
+		this.docNoValuesField = new BinaryDocValuesField(Constants.FIELD_DOCNO, new BytesRef());
+	}
+
+	/**
+	 * This function builds the lucene Document of specified TrecDocument. The returned Document shares the fields of the builder, so it is valid until the next call.
+	 *
+	 * @param trecDocument
+	 *  document of the collection
+	 * @return
+	 *  lucene document to be added to the index
+	 *
+	 * @throws IOException
+	 */
+	public Document build(TrecDocument trecDocument) throws IOException
+	{
+		docNoField.setStringValue(trecDocument.getDocNo());
+		docNoValuesField.setBytesValue(new BytesRef(trecDocument.getDocNo()));
+
+		/* The IndexWriter analyzes the text and closes the stream */
+		Document document = new Document();
+		document.add(docNoField);
+		document.add(docNoValuesField);
+		document.add(new TextField(Constants.FIELD_TEXT, analyzer.tokenStream(Constants.FIELD_TEXT, trecDocument.getTextReader())));
+		return document;
+	}
+}
@@ -0,0 +1,23 @@
+package com.indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This interface reads the documents of a TREC collection one at a time, so the collection is never held in memory.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public interface TrecDocumentReader extends Closeable {
+
+	/**
+	 * Reads the next document.
+	 *
+	 * @return
+	 *  next document, or null at the end of the collection
+	 *
+	 * @throws IOException
+	 */
+	TrecDocument next() throws IOException;
+}
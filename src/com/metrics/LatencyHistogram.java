@@ -0,0 +1,143 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a histogram of non negative values, e.g. latencies in nanoseconds, with buckets of logarithmic width:
+ * every power of two is split in 16 buckets, so a value is known within 1/16 (6%) of itself, whatever its magnitude,
+ * with 960 buckets covering the whole range of long.
+ *
+ * Recording a value increments one bucket and updates the count, sum and maximum with atomic operations, without locking
+ * or allocation, so the histogram is shared by all the search threads. Percentiles are read from the buckets at any time.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/* Values below SUB_BUCKET_COUNT have a bucket each, then SUB_BUCKET_COUNT buckets per power of two up to 2^63 */
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private AtomicLongArray bucketCounts;
+	private AtomicLong count;
+	private AtomicLong sum;
+	private AtomicLong max;
+
+	/**
+	 * Creates the empty histogram.
+	 */
+	public LatencyHistogram()
+	{
+		this.bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * Records the value; a negative value is recorded as 0.
+	 *
+	 * @param value
+	 *  value to record, e.g. nanoseconds
+	 */
+	public void record(long value)
+	{
+		long recordedValue = Math.max(value, 0);
+		bucketCounts.incrementAndGet(getBucketIndex(recordedValue));
+		count.incrementAndGet();
+		sum.addAndGet(recordedValue);
+		max.accumulateAndGet(recordedValue, Math::max);
+	}
+
+	/**
+	 * Returns the bucket of the value: the value itself below SUB_BUCKET_COUNT, and otherwise the power of two of the value
+	 * followed by the SUB_BUCKET_BITS bits after its highest bit.
+	 */
+	static int getBucketIndex(long value)
+	{
+		if(value < SUB_BUCKET_COUNT)
+		{
+			return (int) value;
+		}
+		int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Returns the highest value of the bucket.
+	 */
+	static long getBucketUpperBound(int bucketIndex)
+	{
+		if(bucketIndex < SUB_BUCKET_COUNT)
+		{
+			return bucketIndex;
+		}
+		int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+		long lowerBound = (long) (SUB_BUCKET_COUNT + bucketIndex % SUB_BUCKET_COUNT) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 * @return
+	 *  count
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values, 0 if none is recorded.
+	 * @return
+	 *  mean
+	 */
+	public double getMean()
+	{
+		long recordedCount = count.get();
+		return recordedCount == 0 ? 0 : (double) sum.get() / recordedCount;
+	}
+
+	/**
+	 * Returns the highest recorded value.
+	 * @return
+	 *  maximum
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the value below which the specified percentage of the recorded values fall, within the 6% precision of the buckets.
+	 * The highest value of the bucket is returned, so the percentile is never under-estimated, but it is not above the maximum.
+	 *
+	 * @param percentile
+	 *  percentage between 0 and 100
+	 * @return
+	 *  value at the percentile, 0 if none is recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long recordedCount = count.get();
+		if(recordedCount == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(recordedCount * Math.min(percentile, 100) / 100));
+		long cumulativeCount = 0;
+		for(int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++)
+		{
+			cumulativeCount += bucketCounts.get(bucketIndex);
+			if(cumulativeCount >= rank)
+			{
+				return Math.min(getBucketUpperBound(bucketIndex), max.get());
+			}
+		}
+		return max.get();
+	}
+}
@@ -0,0 +1,307 @@
+package com.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class measures the stages of a topic pipeline: the items processed by every stage, the time its threads were
+ * busy processing them, and the depth of its input queue. A stage whose threads are always busy while the queue before
+ * it is full is the bottleneck of the pipeline, the stages after it wait for input and the stages before it for space.
+ *
+ * The pipeline is exposed over JMX as com.metrics:type=PipelineMetrics,name=[run name] while it runs.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+
+	private static final String OBJECT_NAME_PREFIX = "com.metrics:type=PipelineMetrics,name=";
+
+	/**
+	 * This enum lists the stages of the pipeline, in the order the items pass through them.
+	 */
+	public enum PipelineStage
+	{
+		/** Reads the topics from the topic file */
+		READ,
+
+		/** Cleans the title and description of every topic into a short and a long query */
+		ANALYZE,
+
+		/** Searches the queries */
+		SCORE,
+
+		/** Writes the results to the run files in the order of topics */
+		WRITE
+	}
+
+	private String runName;
+	private int[] threadCounts;
+	private BlockingQueue<?>[] inputQueues;
+	private AtomicLongArray itemCounts;
+	private AtomicLongArray busyTimes;
+	private AtomicIntegerArray maxQueueDepths;
+	private volatile long startTime;
+	private volatile long endTime;
+	private ObjectName objectName;
+
+	/**
+	 * Creates the empty measurements of the pipeline, with one thread and no input queue per stage.
+	 *
+	 * @param runName
+	 *  name of the run, e.g. the algorithm name
+	 */
+	public PipelineMetrics(String runName)
+	{
+		int stageCount = PipelineStage.values().length;
+		this.runName = runName;
+		this.threadCounts = new int[stageCount];
+		this.inputQueues = new BlockingQueue<?>[stageCount];
+		this.itemCounts = new AtomicLongArray(stageCount);
+		this.busyTimes = new AtomicLongArray(stageCount);
+		this.maxQueueDepths = new AtomicIntegerArray(stageCount);
+		for(int stageIndex = 0; stageIndex < stageCount; stageIndex++)
+		{
+			threadCounts[stageIndex] = 1;
+		}
+	}
+
+	/**
+	 * Sets the number of threads of the stage and the queue it takes its items from.
+	 *
+	 * @param stage
+	 *  stage of the pipeline
+	 * @param threadCount
+	 *  number of threads running the stage
+	 * @param inputQueue
+	 *  queue the stage takes its items from, null if it has none
+	 */
+	public void setStage(PipelineStage stage, int threadCount, BlockingQueue<?> inputQueue)
+	{
+		threadCounts[stage.ordinal()] = threadCount;
+		inputQueues[stage.ordinal()] = inputQueue;
+	}
+
+	/**
+	 * This function marks the start of the run.
+	 */
+	public void start()
+	{
+		startTime = System.nanoTime();
+		endTime = 0;
+	}
+
+	/**
+	 * This function marks the end of the run, after which the throughputs and utilizations no longer change.
+	 */
+	public void stop()
+	{
+		endTime = System.nanoTime();
+	}
+
+	/**
+	 * This function records an item processed by the stage, which kept its thread busy since the specified time.
+	 *
+	 * @param stage
+	 *  stage of the pipeline
+	 * @param startTime
+	 *  value of System.nanoTime() when the stage started processing the item
+	 */
+	public void recordItem(PipelineStage stage, long startTime)
+	{
+		itemCounts.incrementAndGet(stage.ordinal());
+		busyTimes.addAndGet(stage.ordinal(), System.nanoTime() - startTime);
+	}
+
+	/**
+	 * This function samples the depth of the input queue of the stage, it is called whenever the stage takes an item.
+	 *
+	 * @param stage
+	 *  stage of the pipeline
+	 */
+	public void recordQueueDepth(PipelineStage stage)
+	{
+		BlockingQueue<?> inputQueue = inputQueues[stage.ordinal()];
+		if(inputQueue != null)
+		{
+			maxQueueDepths.accumulateAndGet(stage.ordinal(), inputQueue.size(), Math::max);
+		}
+	}
+
+	/**
+	 * This function registers the pipeline with the platform MBean server, replacing an earlier run with the same name.
+	 * A pipeline which cannot be registered is reported and still measured.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName pipelineObjectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(runName));
+			if(mBeanServer.isRegistered(pipelineObjectName))
+			{
+				mBeanServer.unregisterMBean(pipelineObjectName);
+			}
+			mBeanServer.registerMBean(this, pipelineObjectName);
+			objectName = pipelineObjectName;
+		}
+		catch(JMException e)
+		{
+			System.err.println("Unable to register the pipeline of run " + runName + " over JMX: " + e);
+		}
+	}
+
+	/**
+	 * This function unregisters the pipeline from the platform MBean server, if it is registered.
+	 */
+	public void unregister()
+	{
+		if(objectName == null)
+		{
+			return;
+		}
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch(JMException e)
+		{
+			System.err.println("Unable to unregister the pipeline of run " + runName + " from JMX: " + e);
+		}
+		objectName = null;
+	}
+
+	@Override
+	public String getRunName()
+	{
+		return runName;
+	}
+
+	@Override
+	public Map<String, Long> getItemCounts()
+	{
+		Map<String, Long> stageItemCounts = new LinkedHashMap<String, Long>();
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			stageItemCounts.put(getName(stage), itemCounts.get(stage.ordinal()));
+		}
+		return stageItemCounts;
+	}
+
+	@Override
+	public Map<String, Double> getThroughputs()
+	{
+		double elapsedSeconds = getElapsedTime() / 1e9;
+		Map<String, Double> throughputs = new LinkedHashMap<String, Double>();
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			throughputs.put(getName(stage), (elapsedSeconds > 0) ? itemCounts.get(stage.ordinal()) / elapsedSeconds : 0);
+		}
+		return throughputs;
+	}
+
+	@Override
+	public Map<String, Double> getUtilizations()
+	{
+		Map<String, Double> utilizations = new LinkedHashMap<String, Double>();
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			utilizations.put(getName(stage), getUtilization(stage));
+		}
+		return utilizations;
+	}
+
+	@Override
+	public Map<String, Integer> getQueueDepths()
+	{
+		Map<String, Integer> queueDepths = new LinkedHashMap<String, Integer>();
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			BlockingQueue<?> inputQueue = inputQueues[stage.ordinal()];
+			queueDepths.put(getName(stage), (inputQueue == null) ? 0 : inputQueue.size());
+		}
+		return queueDepths;
+	}
+
+	@Override
+	public Map<String, Integer> getMaxQueueDepths()
+	{
+		Map<String, Integer> stageMaxQueueDepths = new LinkedHashMap<String, Integer>();
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			stageMaxQueueDepths.put(getName(stage), maxQueueDepths.get(stage.ordinal()));
+		}
+		return stageMaxQueueDepths;
+	}
+
+	@Override
+	public String getBottleneck()
+	{
+		PipelineStage bottleneck = PipelineStage.READ;
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			if(getUtilization(stage) > getUtilization(bottleneck))
+			{
+				bottleneck = stage;
+			}
+		}
+		return getName(bottleneck);
+	}
+
+	/**
+	 * Returns the busy time of the threads of the stage over their time since the start of the run.
+	 */
+	private double getUtilization(PipelineStage stage)
+	{
+		long elapsedTime = getElapsedTime();
+		return (elapsedTime > 0) ? (double) busyTimes.get(stage.ordinal()) / ((double) elapsedTime * threadCounts[stage.ordinal()]) : 0;
+	}
+
+	/**
+	 * Returns the time from the start of the run to its end, or to now while it runs, in nanoseconds.
+	 */
+	private long getElapsedTime()
+	{
+		if(startTime == 0)
+		{
+			return 0;
+		}
+		return ((endTime == 0) ? System.nanoTime() : endTime) - startTime;
+	}
+
+	/**
+	 * Returns the name of the stage, e.g. "score".
+	 */
+	private static String getName(PipelineStage stage)
+	{
+		return stage.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the items, throughput, utilization and maximum input queue depth of every stage, and the bottleneck stage.
+	 */
+	@Override
+	public String toString()
+	{
+		double elapsedSeconds = getElapsedTime() / 1e9;
+		StringBuilder summary = new StringBuilder(runName).append(" pipeline:");
+		for(PipelineStage stage : PipelineStage.values())
+		{
+			long itemCount = itemCounts.get(stage.ordinal());
+			summary.append(String.format(Locale.ROOT, " %s %d items, %.1f/s, %.0f%% busy on %d threads, queue max %d;", getName(stage), itemCount,
+					(elapsedSeconds > 0) ? itemCount / elapsedSeconds : 0, getUtilization(stage) * 100, threadCounts[stage.ordinal()],
+					maxQueueDepths.get(stage.ordinal())));
+		}
+		summary.append(" bottleneck ").append(getBottleneck());
+		return summary.toString();
+	}
+}
@@ -0,0 +1,63 @@
+package com.metrics;
+
+import java.util.Map;
+
+/**
+ * This interface exposes the stages of a topic pipeline over JMX, e.g. to find the bottleneck stage of a run in progress
+ * with jconsole. The values are keyed by the name of the stage, e.g. "score".
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public interface PipelineMetricsMXBean {
+
+	/**
+	 * Returns the name of the run.
+	 * @return
+	 *  name of the run
+	 */
+	String getRunName();
+
+	/**
+	 * Returns the number of items every stage has processed so far.
+	 * @return
+	 *  number of items per stage
+	 */
+	Map<String, Long> getItemCounts();
+
+	/**
+	 * Returns the number of items every stage has processed per second since the start of the run.
+	 * @return
+	 *  throughput per stage
+	 */
+	Map<String, Double> getThroughputs();
+
+	/**
+	 * Returns the fraction of the time the threads of every stage were busy processing items, rather than waiting for
+	 * input or for space in the next queue. The busiest stage is the bottleneck.
+	 * @return
+	 *  utilization per stage, between 0 and 1
+	 */
+	Map<String, Double> getUtilizations();
+
+	/**
+	 * Returns the number of items waiting in the input queue of every stage.
+	 * @return
+	 *  queue depth per stage
+	 */
+	Map<String, Integer> getQueueDepths();
+
+	/**
+	 * Returns the largest number of items seen waiting in the input queue of every stage.
+	 * @return
+	 *  maximum queue depth per stage
+	 */
+	Map<String, Integer> getMaxQueueDepths();
+
+	/**
+	 * Returns the name of the stage with the highest utilization.
+	 * @return
+	 *  name of the bottleneck stage
+	 */
+	String getBottleneck();
+}
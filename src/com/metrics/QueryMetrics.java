@@ -0,0 +1,269 @@
+package com.metrics;
+
+/**
+ * This class holds the measurements of one query of a run: the time spent in each stage of the search, and the work done,
+ * i.e. the postings read, the documents scored and the documents written.
+ *
+ * The searcher of the query is instrumented through current(): the executor of the run begins the query on the thread
+ * searching it, the search code adds its measurements to QueryMetrics.current(), and the executor ends the query.
+ * Outside a query, current() returns a disabled object ignoring the measurements, so the search code is instrumented
+ * unconditionally at the cost of a thread local read and a few System.nanoTime() calls per query.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class QueryMetrics {
+
+	/**
+	 * Stages of a query, measured in nanoseconds.
+	 */
+	public enum Stage
+	{
+		/** Parsing and analyzing the query text */
+		PARSE,
+		/** Walking the postings and scoring the documents */
+		POSTINGS,
+		/** Selecting the top k documents from the scores */
+		TOP_K,
+		/** Resolving the DOCNOs and writing the results */
+		WRITE
+	}
+
+	/**
+	 * Types of queries compared by a run: the title and the description of the topic.
+	 */
+	public enum QueryType
+	{
+		SHORT, LONG
+	}
+
+	private static final ThreadLocal<QueryMetrics> CURRENT_QUERY_METRICS = new ThreadLocal<QueryMetrics>();
+	private static final QueryMetrics DISABLED_QUERY_METRICS = new QueryMetrics(null, null, false);
+
+	private String queryID;
+	private QueryType queryType;
+	private boolean enabled;
+	private long startTime;
+	private long searchTime;
+	private long[] stageTimes;
+	private long postingCount;
+	private long scoredDocumentCount;
+	private long writtenDocumentCount;
+	private boolean resultCacheHit;
+
+	/**
+	 * Creates the measurements of the query.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param queryType
+	 *  type of the query
+	 */
+	public QueryMetrics(String queryID, QueryType queryType)
+	{
+		this(queryID, queryType, true);
+	}
+
+	private QueryMetrics(String queryID, QueryType queryType, boolean enabled)
+	{
+		this.queryID = queryID;
+		this.queryType = queryType;
+		this.enabled = enabled;
+		this.stageTimes = new long[Stage.values().length];
+	}
+
+	/**
+	 * Returns the measurements of the query searched by the current thread, or a disabled object if no query is begun.
+	 * @return
+	 *  measurements of the current query
+	 */
+	public static QueryMetrics current()
+	{
+		QueryMetrics queryMetrics = CURRENT_QUERY_METRICS.get();
+		return queryMetrics == null ? DISABLED_QUERY_METRICS : queryMetrics;
+	}
+
+	/**
+	 * This function makes the query the current query of the thread, and starts measuring its search time.
+	 */
+	public void begin()
+	{
+		CURRENT_QUERY_METRICS.set(this);
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * This function stops measuring the search time of the query, and clears the current query of the thread.
+	 */
+	public void end()
+	{
+		searchTime += System.nanoTime() - startTime;
+		CURRENT_QUERY_METRICS.remove();
+	}
+
+	/**
+	 * Adds the time spent in the stage.
+	 *
+	 * @param stage
+	 *  stage of the query
+	 * @param startTime
+	 *  System.nanoTime() at the start of the stage, the stage ends now
+	 */
+	public void addStageTime(Stage stage, long startTime)
+	{
+		if(enabled)
+		{
+			stageTimes[stage.ordinal()] += System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * Adds the time of a stage measured by the caller, to the stage and to the search time. It measures a query scored
+	 * together with others, whose search time is the sum of its shares of the stages rather than from begin() to end().
+	 *
+	 * @param stage
+	 *  stage of the query
+	 * @param time
+	 *  share of the query in the stage, in nanoseconds
+	 */
+	public void addSharedStageTime(Stage stage, long time)
+	{
+		if(enabled)
+		{
+			stageTimes[stage.ordinal()] += time;
+			searchTime += time;
+		}
+	}
+
+	/**
+	 * Adds the number of postings read.
+	 * @param count
+	 *  number of postings
+	 */
+	public void addPostingCount(long count)
+	{
+		if(enabled)
+		{
+			postingCount += count;
+		}
+	}
+
+	/**
+	 * Adds the number of documents scored.
+	 * @param count
+	 *  number of documents
+	 */
+	public void addScoredDocumentCount(long count)
+	{
+		if(enabled)
+		{
+			scoredDocumentCount += count;
+		}
+	}
+
+	/**
+	 * Adds the number of documents written, whose DOCNOs are resolved.
+	 * @param count
+	 *  number of documents
+	 */
+	public void addWrittenDocumentCount(long count)
+	{
+		if(enabled)
+		{
+			writtenDocumentCount += count;
+		}
+	}
+
+	/**
+	 * Records that the results of the query came from the result cache.
+	 */
+	public void setResultCacheHit()
+	{
+		if(enabled)
+		{
+			resultCacheHit = true;
+		}
+	}
+
+	/**
+	 * Returns the Query ID.
+	 * @return
+	 *  Query ID
+	 */
+	public String getQueryID()
+	{
+		return queryID;
+	}
+
+	/**
+	 * Returns the type of the query.
+	 * @return
+	 *  type of the query
+	 */
+	public QueryType getQueryType()
+	{
+		return queryType;
+	}
+
+	/**
+	 * Returns the time from begin() to end() in nanoseconds, which excludes writing the results.
+	 * @return
+	 *  search time
+	 */
+	public long getSearchTime()
+	{
+		return searchTime;
+	}
+
+	/**
+	 * Returns the time spent in the stage in nanoseconds.
+	 * @param stage
+	 *  stage of the query
+	 * @return
+	 *  time of the stage
+	 */
+	public long getStageTime(Stage stage)
+	{
+		return stageTimes[stage.ordinal()];
+	}
+
+	/**
+	 * Returns the number of postings read.
+	 * @return
+	 *  number of postings
+	 */
+	public long getPostingCount()
+	{
+		return postingCount;
+	}
+
+	/**
+	 * Returns the number of documents scored.
+	 * @return
+	 *  number of documents
+	 */
+	public long getScoredDocumentCount()
+	{
+		return scoredDocumentCount;
+	}
+
+	/**
+	 * Returns the number of documents written.
+	 * @return
+	 *  number of documents
+	 */
+	public long getWrittenDocumentCount()
+	{
+		return writtenDocumentCount;
+	}
+
+	/**
+	 * Returns true if the results of the query came from the result cache.
+	 * @return
+	 *  true on a cache hit
+	 */
+	public boolean isResultCacheHit()
+	{
+		return resultCacheHit;
+	}
+}
@@ -0,0 +1,426 @@
+package com.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.metrics.QueryMetrics.QueryType;
+import com.metrics.QueryMetrics.Stage;
+
+/**
+ * This class aggregates the QueryMetrics of all the queries of a run: a LatencyHistogram of the search time and of every
+ * stage per query type, so short and long queries are compared, the total work counters, and the measurements of every
+ * query, so the outlier topics are found.
+ *
+ * The run is exposed over JMX as com.metrics:type=RunMetrics,name=[run name] while it runs, and its summary is written
+ * in JSON at the end of the run: per query type the mean, median, 90th and 99th percentile and maximum of every stage
+ * in microseconds, the slowest queries, and the measurements of every query.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class RunMetrics implements RunMetricsMXBean {
+
+	private static final String OBJECT_NAME_PREFIX = "com.metrics:type=RunMetrics,name=";
+	private static final int SLOWEST_QUERY_COUNT = 5;
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	private String runName;
+	private LatencyHistogram[] searchHistograms;
+	private LatencyHistogram[][] stageHistograms;
+	private AtomicLong queryCount;
+	private AtomicLong postingCount;
+	private AtomicLong scoredDocumentCount;
+	private AtomicLong writtenDocumentCount;
+	private AtomicLong resultCacheHitCount;
+	private long storedFieldFetchCount;
+	private List<QueryMetrics> queryMetricsList;
+	private ObjectName objectName;
+
+	/**
+	 * Creates the empty measurements of the run.
+	 *
+	 * @param runName
+	 *  name of the run, e.g. the algorithm name
+	 */
+	public RunMetrics(String runName)
+	{
+		int queryTypeCount = QueryType.values().length;
+		this.runName = runName;
+		this.searchHistograms = new LatencyHistogram[queryTypeCount];
+		this.stageHistograms = new LatencyHistogram[queryTypeCount][Stage.values().length];
+		for(int queryTypeIndex = 0; queryTypeIndex < queryTypeCount; queryTypeIndex++)
+		{
+			searchHistograms[queryTypeIndex] = new LatencyHistogram();
+			for(int stageIndex = 0; stageIndex < stageHistograms[queryTypeIndex].length; stageIndex++)
+			{
+				stageHistograms[queryTypeIndex][stageIndex] = new LatencyHistogram();
+			}
+		}
+		this.queryCount = new AtomicLong();
+		this.postingCount = new AtomicLong();
+		this.scoredDocumentCount = new AtomicLong();
+		this.writtenDocumentCount = new AtomicLong();
+		this.resultCacheHitCount = new AtomicLong();
+		this.queryMetricsList = Collections.synchronizedList(new ArrayList<QueryMetrics>());
+	}
+
+	/**
+	 * This function records the measurements of a query which is searched and written.
+	 *
+	 * @param queryMetrics
+	 *  measurements of the query
+	 */
+	public void record(QueryMetrics queryMetrics)
+	{
+		int queryTypeIndex = queryMetrics.getQueryType().ordinal();
+		searchHistograms[queryTypeIndex].record(queryMetrics.getSearchTime());
+		for(Stage stage : Stage.values())
+		{
+			stageHistograms[queryTypeIndex][stage.ordinal()].record(queryMetrics.getStageTime(stage));
+		}
+		queryCount.incrementAndGet();
+		postingCount.addAndGet(queryMetrics.getPostingCount());
+		scoredDocumentCount.addAndGet(queryMetrics.getScoredDocumentCount());
+		writtenDocumentCount.addAndGet(queryMetrics.getWrittenDocumentCount());
+		if(queryMetrics.isResultCacheHit())
+		{
+			resultCacheHitCount.incrementAndGet();
+		}
+		queryMetricsList.add(queryMetrics);
+	}
+
+	/**
+	 * Sets the number of stored documents read by the run outside the queries, i.e. to build the DOCNO lookup.
+	 *
+	 * @param storedFieldFetchCount
+	 *  number of stored field fetches
+	 */
+	public void setStoredFieldFetchCount(long storedFieldFetchCount)
+	{
+		this.storedFieldFetchCount = storedFieldFetchCount;
+	}
+
+	/**
+	 * This function registers the run with the platform MBean server, replacing an earlier run with the same name.
+	 * A run which cannot be registered is reported and still measured.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName runObjectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(runName));
+			if(mBeanServer.isRegistered(runObjectName))
+			{
+				mBeanServer.unregisterMBean(runObjectName);
+			}
+			mBeanServer.registerMBean(this, runObjectName);
+			objectName = runObjectName;
+		}
+		catch(JMException e)
+		{
+			System.err.println("Unable to register the metrics of run " + runName + " over JMX: " + e);
+		}
+	}
+
+	/**
+	 * This function unregisters the run from the platform MBean server, if it is registered.
+	 */
+	public void unregister()
+	{
+		if(objectName == null)
+		{
+			return;
+		}
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch(JMException e)
+		{
+			System.err.println("Unable to unregister the metrics of run " + runName + " from JMX: " + e);
+		}
+		objectName = null;
+	}
+
+	/**
+	 * This function writes the JSON summary of the run to the file, creating its directory if required.
+	 *
+	 * @param filePath
+	 *  path of the JSON file
+	 *
+	 * @throws IOException
+	 */
+	public void writeJson(String filePath) throws IOException
+	{
+		File file = new File(filePath);
+		if(file.getParentFile() != null)
+		{
+			file.getParentFile().mkdirs();
+		}
+		try(Writer writer = new FileWriter(file))
+		{
+			writer.write(toJson());
+		}
+	}
+
+	/**
+	 * This function returns the summary of the run in JSON.
+	 *
+	 * @return
+	 *  JSON summary
+	 */
+	public String toJson()
+	{
+		List<QueryMetrics> queryMetricsSnapshot;
+		synchronized(queryMetricsList)
+		{
+			queryMetricsSnapshot = new ArrayList<QueryMetrics>(queryMetricsList);
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"run\": ").append(quote(runName)).append(",\n");
+		json.append("  \"queryCount\": ").append(queryCount.get()).append(",\n");
+		json.append("  \"postingCount\": ").append(postingCount.get()).append(",\n");
+		json.append("  \"scoredDocumentCount\": ").append(scoredDocumentCount.get()).append(",\n");
+		json.append("  \"writtenDocumentCount\": ").append(writtenDocumentCount.get()).append(",\n");
+		json.append("  \"storedFieldFetchCount\": ").append(storedFieldFetchCount).append(",\n");
+		json.append("  \"resultCacheHitCount\": ").append(resultCacheHitCount.get()).append(",\n");
+
+		json.append("  \"queryTypes\": {\n");
+		for(QueryType queryType : QueryType.values())
+		{
+			List<QueryMetrics> typeQueryMetrics = new ArrayList<QueryMetrics>();
+			long typePostingCount = 0;
+			long typeScoredDocumentCount = 0;
+			for(QueryMetrics queryMetrics : queryMetricsSnapshot)
+			{
+				if(queryMetrics.getQueryType() == queryType)
+				{
+					typeQueryMetrics.add(queryMetrics);
+					typePostingCount += queryMetrics.getPostingCount();
+					typeScoredDocumentCount += queryMetrics.getScoredDocumentCount();
+				}
+			}
+			typeQueryMetrics.sort(Comparator.comparingLong(RunMetrics::getLatency).reversed());
+
+			int queryTypeIndex = queryType.ordinal();
+			json.append("    ").append(quote(getName(queryType))).append(": {\n");
+			json.append("      \"queryCount\": ").append(typeQueryMetrics.size()).append(",\n");
+			json.append("      \"postingCount\": ").append(typePostingCount).append(",\n");
+			json.append("      \"scoredDocumentCount\": ").append(typeScoredDocumentCount).append(",\n");
+			json.append("      \"latencyMicros\": {\n");
+			json.append("        \"search\": ").append(toJson(searchHistograms[queryTypeIndex]));
+			for(Stage stage : Stage.values())
+			{
+				json.append(",\n        ").append(quote(getName(stage))).append(": ").append(toJson(stageHistograms[queryTypeIndex][stage.ordinal()]));
+			}
+			json.append("\n      },\n");
+			json.append("      \"slowestQueries\": [");
+			for(int queryIndex = 0; queryIndex < Math.min(SLOWEST_QUERY_COUNT, typeQueryMetrics.size()); queryIndex++)
+			{
+				QueryMetrics queryMetrics = typeQueryMetrics.get(queryIndex);
+				json.append(queryIndex == 0 ? "" : ",").append("\n        {\"queryID\": ").append(quote(queryMetrics.getQueryID()))
+						.append(", \"latencyMicros\": ").append(toMicros(getLatency(queryMetrics)))
+						.append(", \"postingCount\": ").append(queryMetrics.getPostingCount()).append("}");
+			}
+			json.append("\n      ]\n");
+			json.append(queryTypeIndex == QueryType.values().length - 1 ? "    }\n" : "    },\n");
+		}
+		json.append("  },\n");
+
+		json.append("  \"queries\": [");
+		for(int queryIndex = 0; queryIndex < queryMetricsSnapshot.size(); queryIndex++)
+		{
+			QueryMetrics queryMetrics = queryMetricsSnapshot.get(queryIndex);
+			json.append(queryIndex == 0 ? "" : ",").append("\n    {\"queryID\": ").append(quote(queryMetrics.getQueryID()))
+					.append(", \"type\": ").append(quote(getName(queryMetrics.getQueryType())))
+					.append(", \"searchMicros\": ").append(toMicros(queryMetrics.getSearchTime()));
+			for(Stage stage : Stage.values())
+			{
+				json.append(", ").append(quote(getName(stage) + "Micros")).append(": ").append(toMicros(queryMetrics.getStageTime(stage)));
+			}
+			json.append(", \"postingCount\": ").append(queryMetrics.getPostingCount())
+					.append(", \"scoredDocumentCount\": ").append(queryMetrics.getScoredDocumentCount())
+					.append(", \"writtenDocumentCount\": ").append(queryMetrics.getWrittenDocumentCount())
+					.append(", \"resultCacheHit\": ").append(queryMetrics.isResultCacheHit()).append("}");
+		}
+		json.append("\n  ]\n");
+		json.append("}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Returns the statistics of the histogram as a JSON object, in microseconds.
+	 */
+	private static String toJson(LatencyHistogram latencyHistogram)
+	{
+		StringBuilder json = new StringBuilder();
+		json.append(String.format(Locale.ROOT, "{\"mean\": %.1f", latencyHistogram.getMean() / 1000));
+		for(double percentile : PERCENTILES)
+		{
+			json.append(", \"p").append((int) percentile).append("\": ").append(toMicros(latencyHistogram.getValueAtPercentile(percentile)));
+		}
+		json.append(", \"max\": ").append(toMicros(latencyHistogram.getMax())).append("}");
+		return json.toString();
+	}
+
+	/**
+	 * Returns the time of the query from the start of its search to the end of its writing, in nanoseconds.
+	 */
+	private static long getLatency(QueryMetrics queryMetrics)
+	{
+		return queryMetrics.getSearchTime() + queryMetrics.getStageTime(Stage.WRITE);
+	}
+
+	/**
+	 * Converts nanoseconds to microseconds.
+	 */
+	private static long toMicros(long nanos)
+	{
+		return nanos / 1000;
+	}
+
+	/**
+	 * Returns the name of the query type in the summary, e.g. "short".
+	 */
+	private static String getName(QueryType queryType)
+	{
+		return queryType.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the name of the stage in the summary, e.g. "topK".
+	 */
+	private static String getName(Stage stage)
+	{
+		String[] words = stage.name().toLowerCase(Locale.ROOT).split("_");
+		StringBuilder name = new StringBuilder(words[0]);
+		for(int wordIndex = 1; wordIndex < words.length; wordIndex++)
+		{
+			name.append(Character.toUpperCase(words[wordIndex].charAt(0))).append(words[wordIndex].substring(1));
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Quotes the string as a JSON string.
+	 */
+	private static String quote(String text)
+	{
+		if(text == null)
+		{
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for(int index = 0; index < text.length(); index++)
+		{
+			char character = text.charAt(index);
+			if(character == '"' || character == '\\')
+			{
+				quoted.append('\\').append(character);
+			}
+			else if(character < 0x20)
+			{
+				quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) character));
+			}
+			else
+			{
+				quoted.append(character);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	@Override
+	public String getRunName()
+	{
+		return runName;
+	}
+
+	@Override
+	public long getQueryCount()
+	{
+		return queryCount.get();
+	}
+
+	@Override
+	public long getPostingCount()
+	{
+		return postingCount.get();
+	}
+
+	@Override
+	public long getScoredDocumentCount()
+	{
+		return scoredDocumentCount.get();
+	}
+
+	@Override
+	public long getResultCacheHitCount()
+	{
+		return resultCacheHitCount.get();
+	}
+
+	@Override
+	public Map<String, Long> getLatencyPercentilesMicros()
+	{
+		Map<String, Long> latencyPercentiles = new LinkedHashMap<String, Long>();
+		for(QueryType queryType : QueryType.values())
+		{
+			int queryTypeIndex = queryType.ordinal();
+			for(double percentile : PERCENTILES)
+			{
+				latencyPercentiles.put(getName(queryType) + ".search.p" + (int) percentile, toMicros(searchHistograms[queryTypeIndex].getValueAtPercentile(percentile)));
+			}
+			for(Stage stage : Stage.values())
+			{
+				for(double percentile : PERCENTILES)
+				{
+					latencyPercentiles.put(getName(queryType) + "." + getName(stage) + ".p" + (int) percentile,
+							toMicros(stageHistograms[queryTypeIndex][stage.ordinal()].getValueAtPercentile(percentile)));
+				}
+			}
+		}
+		return latencyPercentiles;
+	}
+
+	@Override
+	public String getSummaryJson()
+	{
+		return toJson();
+	}
+
+	/**
+	 * Returns the search time percentiles of the short and long queries, in milliseconds.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder summary = new StringBuilder(runName).append(':');
+		for(QueryType queryType : QueryType.values())
+		{
+			LatencyHistogram searchHistogram = searchHistograms[queryType.ordinal()];
+			summary.append(String.format(Locale.ROOT, " %s queries %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms;", getName(queryType), searchHistogram.getCount(),
+					searchHistogram.getValueAtPercentile(50) / 1e6, searchHistogram.getValueAtPercentile(99) / 1e6, searchHistogram.getMax() / 1e6));
+		}
+		summary.append(String.format(Locale.ROOT, " %d postings, %d documents scored", postingCount.get(), scoredDocumentCount.get()));
+		return summary.toString();
+	}
+}
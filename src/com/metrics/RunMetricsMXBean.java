@@ -0,0 +1,63 @@
+package com.metrics;
+
+import java.util.Map;
+
+/**
+ * This interface exposes the measurements of a run over JMX, e.g. to watch a run in progress with jconsole.
+ * The latencies are in microseconds.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public interface RunMetricsMXBean {
+
+	/**
+	 * Returns the name of the run.
+	 * @return
+	 *  name of the run
+	 */
+	String getRunName();
+
+	/**
+	 * Returns the number of queries recorded so far.
+	 * @return
+	 *  number of queries
+	 */
+	long getQueryCount();
+
+	/**
+	 * Returns the number of postings read by the recorded queries.
+	 * @return
+	 *  number of postings
+	 */
+	long getPostingCount();
+
+	/**
+	 * Returns the number of documents scored by the recorded queries.
+	 * @return
+	 *  number of documents
+	 */
+	long getScoredDocumentCount();
+
+	/**
+	 * Returns the number of recorded queries answered from the result cache.
+	 * @return
+	 *  number of cache hits
+	 */
+	long getResultCacheHitCount();
+
+	/**
+	 * Returns the percentiles of the search time and of every stage per query type, keyed by
+	 * [query type].[stage].[percentile], e.g. "short.search.p99" or "long.postings.p50".
+	 * @return
+	 *  latency percentiles in microseconds
+	 */
+	Map<String, Long> getLatencyPercentilesMicros();
+
+	/**
+	 * Returns the summary of the run in JSON, as written at the end of the run.
+	 * @return
+	 *  JSON summary
+	 */
+	String getSummaryJson();
+}
@@ -0,0 +1,162 @@
+package com.result;
+
+/**
+ * This class accumulates the score of at most a fixed number of documents w.r.t the query. Unlike the ScoreAccumulator,
+ * whose arrays span every document of the index, its memory is bounded by the number of accumulated documents:
+ * the documents are kept in the order they were admitted, and found by an open addressing hash table with linear probing
+ * which is at most half full. A document which is not accumulated yet is refused once the limit is reached.
+ *
+ * All the arrays are allocated once, and resetting it for the next query only clears the accumulated documents.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class BoundedScoreAccumulator implements ScoreSink {
+
+	private static final int EMPTY_SLOT = -1;
+
+	private int maxDocumentCount;
+	private int[] slots;
+	private int slotMask;
+	private int[] documentIDs;
+	private double[] documentScores;
+	private int[] documentSlots;
+	private int documentCount;
+
+	/**
+	 * Creates the BoundedScoreAccumulator which accumulates at most specified number of documents.
+	 *
+	 * @param maxDocumentCount
+	 *  maximum number of accumulated documents
+	 */
+	public BoundedScoreAccumulator(int maxDocumentCount)
+	{
+		int slotCount = Integer.highestOneBit(Math.max(1, maxDocumentCount)) << 2;
+		this.maxDocumentCount = maxDocumentCount;
+		this.slots = new int[slotCount];
+		this.slotMask = slotCount - 1;
+		this.documentIDs = new int[maxDocumentCount];
+		this.documentScores = new double[maxDocumentCount];
+		this.documentSlots = new int[maxDocumentCount];
+		for(int slot = 0; slot < slotCount; slot++)
+		{
+			slots[slot] = EMPTY_SLOT;
+		}
+	}
+
+	/**
+	 * Adds the score to the accumulated score of the document, and accumulates the document if it is not accumulated yet
+	 * and the limit is not reached.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score to be added
+	 * @return
+	 *  false if the document is refused because the limit is reached
+	 */
+	@Override
+	public boolean addScore(int documentID, double score)
+	{
+		int slot = getFirstSlot(documentID);
+		while(slots[slot] != EMPTY_SLOT)
+		{
+			int documentIndex = slots[slot];
+			if(documentIDs[documentIndex] == documentID)
+			{
+				documentScores[documentIndex] += score;
+				return true;
+			}
+			slot = (slot + 1) & slotMask;
+		}
+
+		if(documentCount == maxDocumentCount)
+		{
+			return false;
+		}
+		slots[slot] = documentCount;
+		documentIDs[documentCount] = documentID;
+		documentScores[documentCount] = score;
+		documentSlots[documentCount] = slot;
+		documentCount++;
+		return true;
+	}
+
+	/**
+	 * Returns whether the limit of accumulated documents is reached.
+	 * @return
+	 *  true if no more document can be accumulated
+	 */
+	public boolean isFull()
+	{
+		return documentCount == maxDocumentCount;
+	}
+
+	/**
+	 * Returns the maximum number of accumulated documents.
+	 * @return
+	 *  limit of accumulated documents
+	 */
+	public int getMaxDocumentCount()
+	{
+		return maxDocumentCount;
+	}
+
+	/**
+	 * Returns the number of accumulated documents.
+	 * @return
+	 *  number of accumulated documents
+	 */
+	public int getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	/**
+	 * Returns the document id of the accumulated document at specified index. Documents are in the order they were admitted.
+	 *
+	 * @param index
+	 *  index between 0 and getDocumentCount()
+	 * @return
+	 *  lucene document id
+	 */
+	public int getDocumentID(int index)
+	{
+		return documentIDs[index];
+	}
+
+	/**
+	 * Returns the accumulated score of the accumulated document at specified index.
+	 *
+	 * @param index
+	 *  index between 0 and getDocumentCount()
+	 * @return
+	 *  accumulated score
+	 */
+	public double getScoreAt(int index)
+	{
+		return documentScores[index];
+	}
+
+	/**
+	 * Clears all the accumulated documents.
+	 */
+	public void reset()
+	{
+		for(int index = 0; index < documentCount; index++)
+		{
+			slots[documentSlots[index]] = EMPTY_SLOT;
+		}
+		documentCount = 0;
+	}
+
+	/**
+	 * Returns the slot where the probing for the document starts. Document ids are dense, so they are scrambled
+	 * to spread the neighbouring documents of a posting list over the table.
+	 */
+	private int getFirstSlot(int documentID)
+	{
+		int hash = documentID * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & slotMask;
+	}
+}
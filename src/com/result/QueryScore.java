@@ -1,83 +1,155 @@
 package com.result;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 
+import com.constants.Constants;
+import com.searcher.DocNoLookup;
+
 /**
  * This class is responsible for maintaining all the micro results generated for 
  * each term in the query. Query is composed of multiple terms similar structure is depicted in storing the scores 
  * QueryScore contains many QueryTermScores object one for a term in query.
  * 
+ * The scores of each QueryTermScores are summed into a ScoreAccumulator as soon as the term is added (term-at-a-time),
+ * and the object can be reset and reused for the next query, so a run allocates almost nothing per query.
+ * 
  * @author Anwar Shaikh
  *
  */
 public class QueryScore {
 
-	public List<QueryTermScores> queryTermScoresList; 
-	public Set<String> relevantDocumentIDs;
+	private ScoreAccumulator scoreAccumulator;
+	private TopKCollector topKCollector;
+	private QueryTermScores reusableQueryTermScores;
 	private String queryID;
+	private DocNoLookup docNoLookup;
 	
 	/**
 	 * Creates object QueryScore for query with specified ID
 	 * @param queryID
 	 *  Query ID
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 */
+	public QueryScore(String queryID, DocNoLookup docNoLookup)
+	{
+		this.queryID = queryID;
+		this.docNoLookup = docNoLookup;
+		scoreAccumulator = new ScoreAccumulator(docNoLookup.size());
+		reusableQueryTermScores = new QueryTermScores(null);
+	}
+	
+	/**
+	 * Resets this object for the query with specified ID, so it can be reused instead of creating a new QueryScore.
+	 * @param queryID
+	 *  Query ID
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
 	 */
-	public QueryScore(String queryID)
+	public void reset(String queryID, DocNoLookup docNoLookup)
 	{
 		this.queryID = queryID;
-		queryTermScoresList = new ArrayList<QueryTermScores>();
-		relevantDocumentIDs = new HashSet<String>();
+		this.docNoLookup = docNoLookup;
+		scoreAccumulator.reset(docNoLookup.size());
+	}
+	
+	/**
+	 * Returns the QueryTermScores object to be filled for the specified term. The same object is returned for every term,
+	 * hence it must be added with addQueryTermScores before the next term is processed.
+	 * 
+	 * @param queryTerm
+	 *  query term string
+	 * @return
+	 *  empty QueryTermScores object
+	 */
+	public QueryTermScores newQueryTermScores(String queryTerm)
+	{
+		reusableQueryTermScores.clear(queryTerm);
+		return reusableQueryTermScores;
 	}
 	
 	/**
 	 * Add the QueryTermScores which holds the document score for each term of query.
+	 * The scores are added to the accumulated document scores of the query.
 	 * 
 	 * @param queryTermScores
 	 *  Object of QueryTermScore class
 	 */
 	public void addQueryTermScores(QueryTermScores queryTermScores)
 	{
-		queryTermScoresList.add(queryTermScores);
+		for(int index = 0; index < queryTermScores.getDocumentCount(); index++)
+		{
+			scoreAccumulator.addScore(queryTermScores.getDocumentID(index), queryTermScores.getDocumentScoreAt(index));
+		}
+	}
+	
+	/**
+	 * Adds the scores of a term, given as parallel arrays of document id and score, to the accumulated document scores of the query.
+	 * It is used to add the scores of a term cached from a previous query.
+	 * 
+	 * @param documentIDs
+	 *  lucene document ids
+	 * @param documentScores
+	 *  score of each document w.r.t the term
+	 * @param documentCount
+	 *  number of documents to add
+	 */
+	public void addDocumentScores(int[] documentIDs, double[] documentScores, int documentCount)
+	{
+		for(int index = 0; index < documentCount; index++)
+		{
+			scoreAccumulator.addScore(documentIDs[index], documentScores[index]);
+		}
 	}
 	
 	/**
 	 * Calculate and returns the document score for specified document.
-	 * @param docNo
-	 * 	document number
+	 * @param documentID
+	 * 	lucene document id
 	 * @return
 	 * 	score of document w.r.t to the query
 	 */
-	public double getDocumentScore(String docNo)
+	public double getDocumentScore(int documentID)
 	{
-		double documentScoreForQuery = 0;
-		
-		for(QueryTermScores queryTermScores : queryTermScoresList)
-		{
-			documentScoreForQuery += queryTermScores.getDocumentScore(docNo);
-		}
-		
-		return documentScoreForQuery;
+		return scoreAccumulator.getScore(documentID);
 	}
 	
 	/**
-	 * Add the specified document number to the relevant document number for the query.
-	 * 
-	 * @param docNO
-	 * 	document number
+	 * Returns the number of documents relevant to the query, i.e. containing at least one query term.
+	 * @return
+	 *  number of relevant documents
+	 */
+	public int getRelevantDocumentCount()
+	{
+		return scoreAccumulator.getTouchedDocumentCount();
+	}
+	
+	/**
+	 * Returns the document id of relevant document at specified index.
+	 * @param index
+	 *  index between 0 and getRelevantDocumentCount()
+	 * @return
+	 *  lucene document id
+	 */
+	public int getRelevantDocumentID(int index)
+	{
+		return scoreAccumulator.getTouchedDocumentID(index);
+	}
+
+	/**
+	 * Returns the DOCNO of the specified document.
+	 * @param documentID
+	 * 	lucene document id
+	 * @return
+	 *  document number
 	 */
-	public void addRelevantDocument(String docNO)
+	public String getDocNo(int documentID)
 	{
-		relevantDocumentIDs.add(docNO);
+		return docNoLookup.getDocNo(documentID);
 	}
 
 
@@ -86,19 +158,36 @@ public class QueryScore {
 	 * @return
 	 *  map containing document id to it's score w.r.t query
 	 */
-	public Map<String, Double> getDocumentIdToScoreMap()
+	public Map<Integer, Double> getDocumentIdToScoreMap()
 	{
-		Map<String, Double> documentScoreMap = new HashMap<String, Double>();
+		Map<Integer, Double> documentScoreMap = new HashMap<Integer, Double>();
 		
-		for(String docNo : relevantDocumentIDs)
+		for(int index = 0; index < this.getRelevantDocumentCount(); index++)
 		{
-			double score = this.getDocumentScore(docNo);
-			documentScoreMap.put(docNo, score);
+			int documentID = this.getRelevantDocumentID(index);
+			double score = this.getDocumentScore(documentID);
+			documentScoreMap.put(documentID, score);
 		}
 		
 		return documentScoreMap;
 	}
 	
+	/**
+	 * Offers every relevant document of the query to the specified TopKCollector.
+	 * 
+	 * @param topKCollector
+	 *  collector selecting the top documents
+	 */
+	public void collectTopK(TopKCollector topKCollector)
+	{
+		for(int index = 0; index < this.getRelevantDocumentCount(); index++)
+		{
+			int documentID = this.getRelevantDocumentID(index);
+			topKCollector.collect(documentID, this.getDocumentScore(documentID));
+		}
+		topKCollector.sort();
+	}
+	
 	/**
 	 * This functions writes the top 1000 result document for the query in 'treceval' format to the specified output file.
 	 * 
@@ -109,28 +198,76 @@ public class QueryScore {
 	 */
 	public void writeTop1KResults(String outputFilePath) throws IOException {
 
-		Map<String, Double> documentIdToScoreMap = this.getDocumentIdToScoreMap();
-		
-		File outputFile = new File(outputFilePath);
-		//outputFile.delete();
-		outputFile.getParentFile().mkdirs();
-		if(outputFile.exists() == false)
+		writeTopKResults(outputFilePath, Constants.TOP_K_RESULTS);
+	}
+	
+	/**
+	 * This functions writes the top k result document for the query in 'treceval' format to the specified output file.
+	 * 
+	 * @param outputFilePath
+	 *  output file path
+	 * @param k
+	 *  number of top documents to write
+	 *  
+	 * @throws IOException
+	 */
+	public void writeTopKResults(String outputFilePath, int k) throws IOException {
+
+		/* Select top k documents with a bounded heap instead of sorting all the relevant documents */
+		if(topKCollector == null)
 		{
-			outputFile.createNewFile();
+			topKCollector = new TopKCollector(k);
 		}
-		FileWriter fileWriter = new FileWriter(outputFile, true);
+		topKCollector.reset(k);
+		this.collectTopK(topKCollector);
 		
-		ScoreConsumer scoreConsumer = new ScoreConsumer(fileWriter, this.queryID);
+		writeResults(topKCollector, this.queryID, this.docNoLookup, outputFilePath);
+	}
+	
+	/**
+	 * This functions writes the documents selected by the TopKCollector in 'treceval' format to the specified output file.
+	 * 
+	 * @param topKCollector
+	 *  sorted collector holding the top documents
+	 * @param queryID
+	 *  Query ID
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 * @param outputFilePath
+	 *  output file path
+	 *  
+	 * @throws IOException
+	 */
+	public static void writeResults(TopKCollector topKCollector, String queryID, DocNoLookup docNoLookup, String outputFilePath) throws IOException {
 		
-		/* Sort DocumentID to score array on score in reverse order and limit size to 1000 to get top 1K documents
-		 * Here I used java Consumer<T> class as ScoreConsumer which writes the each document to the file.
-		 */
-		documentIdToScoreMap.entrySet().stream()
-		.sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
-		.limit(1000).forEachOrdered(scoreConsumer);
+		try(RunFileWriter runFileWriter = new RunFileWriter(outputFilePath, docNoLookup))
+		{
+			writeResults(topKCollector, queryID, runFileWriter);
+		}
+	}
+
+	/**
+	 * This functions writes the documents selected by the TopKCollector in 'treceval' format with the specified RunFileWriter.
+	 * 
+	 * @param topKCollector
+	 *  sorted collector holding the top documents
+	 * @param queryID
+	 *  Query ID
+	 * @param runFileWriter
+	 *  writer of the run file, which stays open for the next query
+	 *  
+	 * @throws IOException
+	 */
+	public static void writeResults(TopKCollector topKCollector, String queryID, RunFileWriter runFileWriter) throws IOException {
 		
-		fileWriter.flush();
-		fileWriter.close();
+		/* Here I used ScoreConsumer which writes the each document to the file.
+		 * DOCNO is resolved by the RunFileWriter only for these top documents.
+		 */
+		ScoreConsumer scoreConsumer = new ScoreConsumer(runFileWriter, queryID);
+		for(int rankIndex = 0; rankIndex < topKCollector.size(); rankIndex++)
+		{
+			scoreConsumer.accept(topKCollector.getDocumentID(rankIndex), topKCollector.getScore(rankIndex));
+		}
 	}
 
 	
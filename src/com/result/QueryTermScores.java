@@ -1,64 +1,135 @@
 package com.result;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
- * This class holds the document scores for the query term. Query is composed of multiple terms similar structure is depicted in storing the scores 
+ * This class holds the document scores for the query term. Query is composed of multiple terms similar structure is depicted in storing the scores
  * QueryScore contains many QueryTermScores object one for a term in query.
- * 
+ *
+ * Scores are kept as parallel primitive arrays of document id and score in the order of postings,
+ * and the object can be cleared and reused for the next term.
+ *
  * @author Anwar Shaikh
  *
  */
 public class QueryTermScores {
 
-	public Map<String, Double> documentIdToScoreMap;
+	private int[] documentIDs;
+	private double[] documentScores;
+	private int documentCount;
 	private String queryTermString;
-	
+
 	/**
 	 * Creates QueryTermScores object for specified QueryTerm
-	 * 
+	 *
 	 * @param queryTerm
 	 * 	query term string
 	 */
 	public QueryTermScores(String queryTerm)
 	{
 		this.queryTermString = queryTerm;
-		documentIdToScoreMap = new HashMap<String, Double>();
+		documentIDs = new int[16];
+		documentScores = new double[16];
+		documentCount = 0;
+	}
+
+	/**
+	 * Clears the scores so the object can be reused for specified QueryTerm
+	 *
+	 * @param queryTerm
+	 * 	query term string
+	 */
+	public void clear(String queryTerm)
+	{
+		this.queryTermString = queryTerm;
+		documentCount = 0;
 	}
-	
+
 	/**
-	 * Adds the document score w.r.t to this term 
-	 * 
-	 * @param docNO
-	 *  document number 
+	 * Adds the document score w.r.t to this term. Documents must be added in increasing order of document id.
+	 *
+	 * @param documentID
+	 *  lucene document id
 	 * @param score
 	 * 	score of document w.r.t the term
 	 */
-	public void addDocumentScore(String docNO, double score)
+	public void addDocumentScore(int documentID, double score)
 	{
-		documentIdToScoreMap.put(docNO, score);
+		if(documentCount == documentIDs.length)
+		{
+			documentIDs = ArrayUtil.grow(documentIDs, documentCount + 1);
+			documentScores = ArrayUtil.grow(documentScores, documentIDs.length);
+		}
+		documentIDs[documentCount] = documentID;
+		documentScores[documentCount] = score;
+		documentCount++;
 	}
-	
+
 	/**
 	 * This method returns the document score w.r.t to the term if it's relevant otherwise returns 0.
-	 * 
-	 * @param docNo
-	 *  document number
-	 * 
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 *
 	 * @return
 	 *  document score w.r.t to the term
 	 */
-	public double getDocumentScore(String docNo)
+	public double getDocumentScore(int documentID)
 	{
 		double documentScore = 0;
-		if(documentIdToScoreMap.containsKey(docNo))
+		int index = Arrays.binarySearch(documentIDs, 0, documentCount, documentID);
+		if(index >= 0)
 		{
-			documentScore = documentIdToScoreMap.get(docNo);
+			documentScore = documentScores[index];
 		}
 		return documentScore;
 	}
+
+	/**
+	 * Returns the number of documents containing the term.
+	 * @return
+	 *  number of documents
+	 */
+	public int getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	/**
+	 * Returns the document id at specified index.
+	 * @param index
+	 *  index between 0 and getDocumentCount()
+	 * @return
+	 *  lucene document id
+	 */
+	public int getDocumentID(int index)
+	{
+		return documentIDs[index];
+	}
+
+	/**
+	 * Returns the document score at specified index.
+	 * @param index
+	 *  index between 0 and getDocumentCount()
+	 * @return
+	 *  document score w.r.t to the term
+	 */
+	public double getDocumentScoreAt(int index)
+	{
+		return documentScores[index];
+	}
+
+	/**
+	 * Returns the query term string.
+	 * @return
+	 *  query term string
+	 */
+	public String getQueryTermString()
+	{
+		return queryTermString;
+	}
 }
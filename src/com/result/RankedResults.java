@@ -0,0 +1,225 @@
+package com.result;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import com.searcher.DocNoLookup;
+
+/**
+ * This class holds the ranked top documents of a query in memory, so queries can be searched in parallel
+ * and their results written in the order of queries afterwards.
+ *
+ * Results of lucene similarities carry float scores; they are kept as doubles and written back as floats,
+ * so the output is same as writing the TopDocs directly.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class RankedResults {
+
+	private String queryID;
+	private int[] documentIDs;
+	private double[] scores;
+	private boolean singlePrecisionScores;
+
+	private RankedResults(String queryID, int[] documentIDs, double[] scores, boolean singlePrecisionScores)
+	{
+		this.queryID = queryID;
+		this.documentIDs = documentIDs;
+		this.scores = scores;
+		this.singlePrecisionScores = singlePrecisionScores;
+	}
+
+	/**
+	 * Creates the RankedResults from the sorted TopKCollector.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param topKCollector
+	 *  sorted collector holding the top documents
+	 * @return
+	 *  ranked results of the query
+	 */
+	public static RankedResults fromTopKCollector(String queryID, TopKCollector topKCollector)
+	{
+		return fromTopKCollector(queryID, topKCollector, false);
+	}
+
+	/**
+	 * Creates the RankedResults from the sorted TopKCollector, which holds float scores of a lucene similarity
+	 * if singlePrecisionScores is true.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param topKCollector
+	 *  sorted collector holding the top documents
+	 * @param singlePrecisionScores
+	 *  true if the collected scores are float scores
+	 * @return
+	 *  ranked results of the query
+	 */
+	public static RankedResults fromTopKCollector(String queryID, TopKCollector topKCollector, boolean singlePrecisionScores)
+	{
+		int size = topKCollector.size();
+		int[] documentIDs = new int[size];
+		double[] scores = new double[size];
+		for(int rankIndex = 0; rankIndex < size; rankIndex++)
+		{
+			documentIDs[rankIndex] = topKCollector.getDocumentID(rankIndex);
+			scores[rankIndex] = topKCollector.getScore(rankIndex);
+		}
+		return new RankedResults(queryID, documentIDs, scores, singlePrecisionScores);
+	}
+
+	/**
+	 * Creates the RankedResults from the parallel arrays of document id and score in the order of rank.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param documentIDs
+	 *  lucene document ids in the order of rank
+	 * @param scores
+	 *  score of each document w.r.t the query
+	 * @param singlePrecisionScores
+	 *  true if the scores are float scores of a lucene similarity
+	 * @return
+	 *  ranked results of the query
+	 */
+	public static RankedResults fromArrays(String queryID, int[] documentIDs, double[] scores, boolean singlePrecisionScores)
+	{
+		return new RankedResults(queryID, documentIDs, scores, singlePrecisionScores);
+	}
+
+	/**
+	 * Creates the RankedResults from the TopDocs returned by lucene.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param topDocs
+	 *  top documents returned by IndexSearcher
+	 * @return
+	 *  ranked results of the query
+	 */
+	public static RankedResults fromTopDocs(String queryID, TopDocs topDocs)
+	{
+		ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+		int[] documentIDs = new int[scoreDocs.length];
+		double[] scores = new double[scoreDocs.length];
+		for(int rankIndex = 0; rankIndex < scoreDocs.length; rankIndex++)
+		{
+			documentIDs[rankIndex] = scoreDocs[rankIndex].doc;
+			scores[rankIndex] = scoreDocs[rankIndex].score;
+		}
+		return new RankedResults(queryID, documentIDs, scores, true);
+	}
+
+	/**
+	 * This function writes the results in 'treceval' format to the specified output file.
+	 *
+	 * @param outputFilePath
+	 *  output file path
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(String outputFilePath, DocNoLookup docNoLookup) throws IOException
+	{
+		try(RunFileWriter runFileWriter = new RunFileWriter(outputFilePath, docNoLookup))
+		{
+			writeTo(runFileWriter);
+		}
+	}
+
+	/**
+	 * This function writes the results in 'treceval' format with the specified RunFileWriter, which stays open for the next query.
+	 *
+	 * @param runFileWriter
+	 *  writer of the run file
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(RunFileWriter runFileWriter) throws IOException
+	{
+		for(int rankIndex = 0; rankIndex < documentIDs.length; rankIndex++)
+		{
+			if(singlePrecisionScores)
+			{
+				runFileWriter.write(queryID, documentIDs[rankIndex], rankIndex + 1, (float) scores[rankIndex]);
+			}
+			else
+			{
+				runFileWriter.write(queryID, documentIDs[rankIndex], rankIndex + 1, scores[rankIndex]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the same ranked documents for the specified Query ID. The documents and scores are shared, not copied.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @return
+	 *  ranked results of the query with specified ID
+	 */
+	public RankedResults withQueryID(String queryID)
+	{
+		return new RankedResults(queryID, documentIDs, scores, singlePrecisionScores);
+	}
+
+	/**
+	 * Returns the Query ID.
+	 * @return
+	 *  Query ID
+	 */
+	public String getQueryID()
+	{
+		return queryID;
+	}
+
+	/**
+	 * Returns the number of ranked documents.
+	 * @return
+	 *  number of documents
+	 */
+	public int size()
+	{
+		return documentIDs.length;
+	}
+
+	/**
+	 * Returns the document id at specified rank.
+	 * @param rankIndex
+	 *  0 based rank
+	 * @return
+	 *  lucene document id
+	 */
+	public int getDocumentID(int rankIndex)
+	{
+		return documentIDs[rankIndex];
+	}
+
+	/**
+	 * Returns the score at specified rank.
+	 * @param rankIndex
+	 *  0 based rank
+	 * @return
+	 *  score of document w.r.t the query
+	 */
+	public double getScore(int rankIndex)
+	{
+		return scores[rankIndex];
+	}
+
+	/**
+	 * Returns true if the scores are float scores of a lucene similarity.
+	 * @return
+	 *  true for float scores
+	 */
+	public boolean isSinglePrecision()
+	{
+		return singlePrecisionScores;
+	}
+}
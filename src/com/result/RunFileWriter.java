@@ -0,0 +1,229 @@
+package com.result;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import com.constants.Constants;
+import com.searcher.DocNoLookup;
+
+/**
+ * This class writes the ranked documents to a run file in 'treceval' format:
+ * queryID Q0 DOCNO rank score run-1
+ * separated by Constants.OUTPUT_FILE_DELIMITER.
+ *
+ * The writer stays open for the whole run. Lines are formatted into a reusable byte buffer without creating a String
+ * per line or boxing the score, the DOCNO bytes are copied straight from the DocNoLookup, and the buffer is written
+ * to the file channel in large chunks. Like the FileWriter it replaces, it appends to an existing file.
+ * The same lines can be written to any channel, e.g. the response of the SearchDaemon.
+ *
+ * It is not thread safe; the results of a run are written by one thread in the order of queries.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class RunFileWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/* Longest text of an int rank, and of a double score as formatted by StringBuilder.append */
+	private static final int MAX_NUMBER_LENGTH = 32;
+
+	private WritableByteChannel channel;
+	private DocNoLookup docNoLookup;
+	private ByteBuffer buffer;
+	private StringBuilder numberBuilder;
+
+	private byte[] delimiterBytes;
+	private byte[] afterQueryIDBytes;
+	private byte[] lineEndBytes;
+
+	private String queryID;
+	private byte[] queryIDBytes;
+
+	/**
+	 * Creates the RunFileWriter which appends to the specified output file, creating the file and its directory if needed.
+	 *
+	 * @param outputFilePath
+	 *  output file path
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 *
+	 * @throws IOException
+	 */
+	public RunFileWriter(String outputFilePath, DocNoLookup docNoLookup) throws IOException
+	{
+		this(openForAppend(outputFilePath), docNoLookup);
+	}
+
+	/**
+	 * Creates the RunFileWriter which writes to the specified channel, and closes it when closed.
+	 *
+	 * @param channel
+	 *  channel to write the lines to
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 */
+	public RunFileWriter(WritableByteChannel channel, DocNoLookup docNoLookup)
+	{
+		this.channel = channel;
+		this.docNoLookup = docNoLookup;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.numberBuilder = new StringBuilder(MAX_NUMBER_LENGTH);
+
+		this.delimiterBytes = Constants.OUTPUT_FILE_DELIMITER.getBytes(StandardCharsets.UTF_8);
+		this.afterQueryIDBytes = (Constants.OUTPUT_FILE_DELIMITER + "Q0" + Constants.OUTPUT_FILE_DELIMITER).getBytes(StandardCharsets.UTF_8);
+		this.lineEndBytes = (Constants.OUTPUT_FILE_DELIMITER + "run-1 \n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Opens the file to append to, creating the file and its directory if needed.
+	 */
+	private static FileChannel openForAppend(String outputFilePath) throws IOException
+	{
+		File outputFile = new File(outputFilePath);
+		File outputDirectory = outputFile.getAbsoluteFile().getParentFile();
+		if(outputDirectory != null)
+		{
+			outputDirectory.mkdirs();
+		}
+		return FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * This function writes the document with its score as the specified rank of the query.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param documentID
+	 *  lucene document id
+	 * @param rank
+	 *  1 based rank of the document
+	 * @param score
+	 *  score of document w.r.t the query
+	 *
+	 * @throws IOException
+	 */
+	public void write(String queryID, int documentID, int rank, double score) throws IOException
+	{
+		numberBuilder.setLength(0);
+		numberBuilder.append(score);
+		writeLine(queryID, documentID, rank);
+	}
+
+	/**
+	 * This function writes the document with its float score of a lucene similarity as the specified rank of the query.
+	 *
+	 * @param queryID
+	 *  Query ID
+	 * @param documentID
+	 *  lucene document id
+	 * @param rank
+	 *  1 based rank of the document
+	 * @param score
+	 *  score of document w.r.t the query
+	 *
+	 * @throws IOException
+	 */
+	public void write(String queryID, int documentID, int rank, float score) throws IOException
+	{
+		numberBuilder.setLength(0);
+		numberBuilder.append(score);
+		writeLine(queryID, documentID, rank);
+	}
+
+	/**
+	 * Writes the line of the document, with the score already formatted in numberBuilder.
+	 */
+	private void writeLine(String queryID, int documentID, int rank) throws IOException
+	{
+		if(queryID.equals(this.queryID) == false)
+		{
+			this.queryID = queryID;
+			this.queryIDBytes = queryID.getBytes(StandardCharsets.UTF_8);
+		}
+
+		int scoreLength = numberBuilder.length();
+		int maxLineLength = queryIDBytes.length + afterQueryIDBytes.length + docNoLookup.getDocNoLength(documentID)
+				+ 2 * delimiterBytes.length + MAX_NUMBER_LENGTH + scoreLength + lineEndBytes.length;
+		if(buffer.remaining() < maxLineLength)
+		{
+			flush();
+			if(buffer.capacity() < maxLineLength)
+			{
+				buffer = ByteBuffer.allocate(maxLineLength);
+			}
+		}
+
+		buffer.put(queryIDBytes);
+		buffer.put(afterQueryIDBytes);
+		docNoLookup.writeDocNo(documentID, buffer);
+		buffer.put(delimiterBytes);
+		putNumber(rank);
+		buffer.put(delimiterBytes);
+		for(int index = 0; index < scoreLength; index++)
+		{
+			/* Digits, sign, '.', 'E', "Infinity" and "NaN" are all ASCII */
+			buffer.put((byte) numberBuilder.charAt(index));
+		}
+		buffer.put(lineEndBytes);
+	}
+
+	/**
+	 * Puts the decimal digits of the non negative number into the buffer.
+	 */
+	private void putNumber(int number)
+	{
+		int start = buffer.position();
+		do
+		{
+			buffer.put((byte) ('0' + number % 10));
+			number /= 10;
+		}
+		while(number > 0);
+
+		/* Digits were put from least significant, reverse them in place */
+		for(int left = start, right = buffer.position() - 1; left < right; left++, right--)
+		{
+			byte digit = buffer.get(left);
+			buffer.put(left, buffer.get(right));
+			buffer.put(right, digit);
+		}
+	}
+
+	/**
+	 * This function writes the buffered lines to the channel.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the buffered lines and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+}
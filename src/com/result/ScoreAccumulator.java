@@ -0,0 +1,116 @@
+package com.result;
+
+import org.apache.lucene.util.FixedBitSet;
+
+/**
+ * This class accumulates the score of documents w.r.t the query, indexed by the lucene document id.
+ * Scores are kept in a dense primitive array along with the list of documents touched by the query,
+ * so resetting it for the next query only clears the touched documents and the arrays are reused across queries.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ScoreAccumulator implements ScoreSink {
+
+	private double[] documentScores;
+	private FixedBitSet touchedDocuments;
+	private int[] touchedDocumentIDs;
+	private int touchedDocumentCount;
+
+	/**
+	 * Creates the ScoreAccumulator for the documents of an index with specified size.
+	 *
+	 * @param maxDocumentCount
+	 *  number of documents in the index
+	 */
+	public ScoreAccumulator(int maxDocumentCount)
+	{
+		documentScores = new double[maxDocumentCount];
+		touchedDocuments = new FixedBitSet(maxDocumentCount);
+		touchedDocumentIDs = new int[maxDocumentCount];
+		touchedDocumentCount = 0;
+	}
+
+	/**
+	 * Adds the score to the accumulated score of the document.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score to be added
+	 * @return
+	 *  true, as every document is accumulated
+	 */
+	@Override
+	public boolean addScore(int documentID, double score)
+	{
+		if(touchedDocuments.getAndSet(documentID) == false)
+		{
+			touchedDocumentIDs[touchedDocumentCount++] = documentID;
+		}
+		documentScores[documentID] += score;
+		return true;
+	}
+
+	/**
+	 * Returns the accumulated score of the document, which is 0 if the document is not touched by the query.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @return
+	 *  accumulated score
+	 */
+	public double getScore(int documentID)
+	{
+		return documentScores[documentID];
+	}
+
+	/**
+	 * Returns the number of documents touched by the query.
+	 * @return
+	 *  number of touched documents
+	 */
+	public int getTouchedDocumentCount()
+	{
+		return touchedDocumentCount;
+	}
+
+	/**
+	 * Returns the document id of touched document at specified index. Documents are in the order they were first touched.
+	 *
+	 * @param index
+	 *  index between 0 and getTouchedDocumentCount()
+	 * @return
+	 *  lucene document id
+	 */
+	public int getTouchedDocumentID(int index)
+	{
+		return touchedDocumentIDs[index];
+	}
+
+	/**
+	 * Clears the scores of all the touched documents, and makes sure the accumulator can hold specified number of documents.
+	 *
+	 * @param maxDocumentCount
+	 *  number of documents in the index
+	 */
+	public void reset(int maxDocumentCount)
+	{
+		if(documentScores.length != maxDocumentCount)
+		{
+			documentScores = new double[maxDocumentCount];
+			touchedDocuments = new FixedBitSet(maxDocumentCount);
+			touchedDocumentIDs = new int[maxDocumentCount];
+		}
+		else
+		{
+			for(int index = 0; index < touchedDocumentCount; index++)
+			{
+				int documentID = touchedDocumentIDs[index];
+				documentScores[documentID] = 0;
+				touchedDocuments.clear(documentID);
+			}
+		}
+		touchedDocumentCount = 0;
+	}
+}
@@ -1,37 +1,34 @@
 package com.result;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Consumer;
 
-import com.constants.Constants;
-
 /**
- * This Consumer class for the processing the sorted QueryScore. Which writes the QueryScores to the file encapsulated in the FileWriter object.
+ * This Consumer class for the processing the sorted QueryScore. Which writes the QueryScores to the run file through the RunFileWriter.
  * 
  * @author Anwar Shaikh
  *
  */
-public class ScoreConsumer implements Consumer<Map.Entry<String, Double>> {
+public class ScoreConsumer implements Consumer<Map.Entry<Integer, Double>> {
 
 
-	private FileWriter fileWriter;
+	private RunFileWriter runFileWriter;
 	private String queryID;
 	private int documentRank;
 	
 	/**
-	 * This function creates the ScoreConsumer with specified FileWriter for query with specified ID.
+	 * This function creates the ScoreConsumer with specified RunFileWriter for query with specified ID.
 	 * 
-	 * @param fileWriter
-	 * 	FileWriter object to write results
+	 * @param runFileWriter
+	 * 	RunFileWriter object to write results
 	 * @param queryID
 	 *  QueryID which is being processed by this ScoreConsumer
 	 */
-	public ScoreConsumer(FileWriter fileWriter, String queryID) {
+	public ScoreConsumer(RunFileWriter runFileWriter, String queryID) {
 		// TODO Auto-generated constructor stub
-		this.fileWriter = fileWriter;
+		this.runFileWriter = runFileWriter;
 		this.queryID = queryID;
 		this.documentRank = 1;
 	}
@@ -40,21 +37,49 @@ public class ScoreConsumer implements Consumer<Map.Entry<String, Double>> {
 	 * This is overridden method from java.util.function.Consumer class. Which writers the specified entry to the file.
 	 */
 	@Override
-	public void accept(Entry<String, Double> entry) {
+	public void accept(Entry<Integer, Double> entry) {
 		// TODO Auto-generated method stub
+		accept(entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * This function writes the specified document with its score to the file, as the next ranked document.
+	 * 
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score of document w.r.t the query
+	 */
+	public void accept(int documentID, double score) {
+		try
+		{
+			runFileWriter.write(this.queryID, documentID, documentRank, score);
+			documentRank++;
+		}
+		catch(IOException e)
+		{
+			System.out.println("Unable to write- " + documentID);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * This function writes the specified document with its float score of a lucene similarity to the file, as the next ranked document.
+	 * 
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score of document w.r.t the query
+	 */
+	public void accept(int documentID, float score) {
 		try
 		{
-			fileWriter.append(this.queryID);
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + "Q0");
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + entry.getKey());
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + documentRank);
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + entry.getValue());
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + "run-1 \n");
+			runFileWriter.write(this.queryID, documentID, documentRank, score);
 			documentRank++;
 		}
 		catch(IOException e)
 		{
-			System.out.println("Unable to write- " + entry.getKey());
+			System.out.println("Unable to write- " + documentID);
 			e.printStackTrace();
 		}
 	}
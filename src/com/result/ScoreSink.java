@@ -0,0 +1,22 @@
+package com.result;
+
+/**
+ * This interface receives the scores of the scored postings, as the accumulators of the query do.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public interface ScoreSink {
+
+	/**
+	 * Adds the score to the accumulated score of the document.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score to be added
+	 * @return
+	 *  false if the document is refused, which stops the scoring of the term
+	 */
+	boolean addScore(int documentID, double score);
+}
@@ -0,0 +1,221 @@
+package com.result;
+
+/**
+ * This class selects the top k documents out of the scored documents using a bounded min-heap of (document id, score) pairs.
+ * Selection costs O(n log k), and no object is allocated per collected document.
+ *
+ * Documents with higher score rank first, documents with equal score are ranked in increasing order of document id,
+ * so the selection is deterministic. The collector can be reset and reused for the next query.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TopKCollector {
+
+	private int[] heapDocumentIDs;
+	private double[] heapScores;
+	private int size;
+	private int k;
+	private boolean sorted;
+
+	/**
+	 * Creates the TopKCollector which keeps specified number of top documents.
+	 *
+	 * @param k
+	 *  number of top documents to keep
+	 */
+	public TopKCollector(int k)
+	{
+		heapDocumentIDs = new int[k];
+		heapScores = new double[k];
+		reset(k);
+	}
+
+	/**
+	 * Clears the collected documents, so the collector can be reused with specified k.
+	 *
+	 * @param k
+	 *  number of top documents to keep
+	 */
+	public void reset(int k)
+	{
+		if(heapDocumentIDs.length < k)
+		{
+			heapDocumentIDs = new int[k];
+			heapScores = new double[k];
+		}
+		this.k = k;
+		this.size = 0;
+		this.sorted = false;
+	}
+
+	/**
+	 * Offers the document to the collector. It is kept only if it is among the top k documents seen so far.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param score
+	 *  score of document w.r.t the query
+	 */
+	public void collect(int documentID, double score)
+	{
+		if(size < k)
+		{
+			heapDocumentIDs[size] = documentID;
+			heapScores[size] = score;
+			siftUp(size);
+			size++;
+		}
+		else if(k > 0 && isWorse(heapDocumentIDs[0], heapScores[0], documentID, score))
+		{
+			heapDocumentIDs[0] = documentID;
+			heapScores[0] = score;
+			siftDown(0, size);
+		}
+	}
+
+	/**
+	 * Returns true if the collector is full, so a document must beat getMinimumScore() to enter.
+	 * @return
+	 *  true if k documents are collected
+	 */
+	public boolean isFull()
+	{
+		return size == k;
+	}
+
+	/**
+	 * Returns the score of the lowest ranked document in the collector.
+	 * @return
+	 *  lowest collected score, or negative infinity if no document is collected
+	 */
+	public double getMinimumScore()
+	{
+		return size == 0 ? Double.NEGATIVE_INFINITY : heapScores[0];
+	}
+
+	/**
+	 * Sorts the collected documents from highest to lowest rank. Must be called once collection is done,
+	 * before reading the documents with getDocumentID and getScore.
+	 */
+	public void sort()
+	{
+		if(sorted == false)
+		{
+			for(int heapSize = size - 1; heapSize > 0; heapSize--)
+			{
+				swap(0, heapSize);
+				siftDown(0, heapSize);
+			}
+			sorted = true;
+		}
+	}
+
+	/**
+	 * Returns the number of collected documents.
+	 * @return
+	 *  number of collected documents
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the document id at specified rank, after sort() is called.
+	 * @param rankIndex
+	 *  0 based rank
+	 * @return
+	 *  lucene document id
+	 */
+	public int getDocumentID(int rankIndex)
+	{
+		return heapDocumentIDs[rankIndex];
+	}
+
+	/**
+	 * Returns the score at specified rank, after sort() is called.
+	 * @param rankIndex
+	 *  0 based rank
+	 * @return
+	 *  score of document w.r.t the query
+	 */
+	public double getScore(int rankIndex)
+	{
+		return heapScores[rankIndex];
+	}
+
+	/**
+	 * Copies the collected documents without ranking them, for merging into another collector which ranks them.
+	 * @param documentIDs
+	 *  array receiving the lucene document ids, at least size() long
+	 * @param scores
+	 *  array receiving the scores, at least size() long
+	 */
+	public void copyTo(int[] documentIDs, double[] scores)
+	{
+		System.arraycopy(heapDocumentIDs, 0, documentIDs, 0, size);
+		System.arraycopy(heapScores, 0, scores, 0, size);
+	}
+
+	/**
+	 * Returns true if the first document ranks lower than the second document.
+	 */
+	private static boolean isWorse(int firstDocumentID, double firstScore, int secondDocumentID, double secondScore)
+	{
+		if(firstScore != secondScore)
+		{
+			return firstScore < secondScore;
+		}
+		return firstDocumentID > secondDocumentID;
+	}
+
+	private void siftUp(int index)
+	{
+		while(index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if(isWorse(heapDocumentIDs[index], heapScores[index], heapDocumentIDs[parent], heapScores[parent]) == false)
+			{
+				break;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index, int heapSize)
+	{
+		while(true)
+		{
+			int worst = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if(left < heapSize && isWorse(heapDocumentIDs[left], heapScores[left], heapDocumentIDs[worst], heapScores[worst]))
+			{
+				worst = left;
+			}
+			if(right < heapSize && isWorse(heapDocumentIDs[right], heapScores[right], heapDocumentIDs[worst], heapScores[worst]))
+			{
+				worst = right;
+			}
+			if(worst == index)
+			{
+				break;
+			}
+			swap(index, worst);
+			index = worst;
+		}
+	}
+
+	private void swap(int first, int second)
+	{
+		int documentID = heapDocumentIDs[first];
+		heapDocumentIDs[first] = heapDocumentIDs[second];
+		heapDocumentIDs[second] = documentID;
+
+		double score = heapScores[first];
+		heapScores[first] = heapScores[second];
+		heapScores[second] = score;
+	}
+}
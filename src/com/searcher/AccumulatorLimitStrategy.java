@@ -0,0 +1,15 @@
+package com.searcher;
+
+/**
+ * This enum lists what the BoundedAccumulatorSearch does once the limit of accumulated documents is reached.
+ * @author Anwar Shaikh
+ *
+ */
+public enum AccumulatorLimitStrategy {
+
+	/** Stops the query at the first document which cannot be accumulated, and ranks the documents accumulated so far */
+	QUIT,
+
+	/** Processes the remaining postings, adding their scores to the accumulated documents only */
+	CONTINUE
+}
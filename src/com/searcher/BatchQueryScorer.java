@@ -0,0 +1,304 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.result.RankedResults;
+import com.result.ScoreAccumulator;
+import com.result.ScoreSink;
+import com.result.TopKCollector;
+
+/**
+ * This class scores a batch of queries with the custom TF-IDF model of EasySearch together, term-at-a-time across the
+ * whole batch: the queries are grouped by term, the postings of every distinct term are decoded and scored once, and
+ * each score is added to the accumulator of every query containing the term. In a trec run the title and description
+ * queries share most of their frequent terms, so the batch decodes far fewer postings than scoring query by query.
+ *
+ * The terms are walked in sorted order, which is the order getQueryRelevanceScores sums the terms of a query,
+ * so every query gets exactly the scores and top documents of the EXHAUSTIVE retrieval.
+ *
+ * An accumulator over all the documents is held per query, hence at most Constants.BATCH_SCORING_MAX_QUERIES queries
+ * are scored together, and a larger batch is scored in groups of that size. The object reuses its accumulators
+ * from batch to batch, so it is used by one thread at a time.
+ *
+ * The queries of a batch are not searched one after another, so each query is measured by its share of the work:
+ * its own parsing and top k selection, and for every term its share of the time decoding the postings of the term,
+ * split evenly among the queries of the term. The postings of a query are those of its terms, as if it were searched alone.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class BatchQueryScorer {
+
+	private SearchSession searchSession;
+	private SessionSearcher sessionSearcher;
+	private Similarity similarity;
+	private int maxQueryCount;
+	private List<ScoreAccumulator> scoreAccumulators;
+	private ScoreAccumulator[] termAccumulators;
+	private ScoreSink scatteringScoreSink;
+	private TopKCollector topKCollector;
+	private long decodedPostingCount;
+	private long scatteredPostingCount;
+
+	/**
+	 * Creates the BatchQueryScorer over the specified searcher.
+	 *
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param sessionSearcher
+	 *  searcher acquired from the search session
+	 * @param similarity
+	 *  similarity whose norms give the document lengths
+	 * @param maxQueryCount
+	 *  number of queries scored together
+	 */
+	public BatchQueryScorer(SearchSession searchSession, SessionSearcher sessionSearcher, Similarity similarity, int maxQueryCount)
+	{
+		this.searchSession = searchSession;
+		this.sessionSearcher = sessionSearcher;
+		this.similarity = similarity;
+		this.maxQueryCount = maxQueryCount;
+		this.scoreAccumulators = new ArrayList<ScoreAccumulator>();
+		this.topKCollector = new TopKCollector(Constants.TOP_K_RESULTS);
+		this.scatteringScoreSink = this::scatterScore;
+	}
+
+	/**
+	 * This function scores all the queries and returns the top k documents of each.
+	 *
+	 * @param queryStrings
+	 *  query strings
+	 * @param queryIDs
+	 *  Query ID of each query
+	 * @param k
+	 *  number of top documents
+	 * @return
+	 *  ranked results, in the order of queries
+	 *
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException
+	 * @throws NoSuchMethodException
+	 * @throws InvocationTargetException
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public RankedResults[] score(String[] queryStrings, String[] queryIDs, int k) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return score(queryStrings, queryIDs, k, null);
+	}
+
+	/**
+	 * This function scores all the queries and returns the top k documents of each, adding the share of every query
+	 * in the work of the batch to its measurements.
+	 *
+	 * @param queryStrings
+	 *  query strings
+	 * @param queryIDs
+	 *  Query ID of each query
+	 * @param k
+	 *  number of top documents
+	 * @param queryMetrics
+	 *  measurements of each query, null to measure no query
+	 * @return
+	 *  ranked results, in the order of queries
+	 *
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException
+	 * @throws NoSuchMethodException
+	 * @throws InvocationTargetException
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public RankedResults[] score(String[] queryStrings, String[] queryIDs, int k, QueryMetrics[] queryMetrics) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		Query[] queries = new Query[queryStrings.length];
+		for(int queryIndex = 0; queryIndex < queryStrings.length; queryIndex++)
+		{
+			long startTime = System.nanoTime();
+			queries[queryIndex] = searchSession.parseQuery(queryStrings[queryIndex]);
+			getQueryMetrics(queryMetrics, queryIndex).addSharedStageTime(Stage.PARSE, System.nanoTime() - startTime);
+		}
+		return score(queries, queryIDs, k, queryMetrics);
+	}
+
+	/**
+	 * This function scores all the parsed queries and returns the top k documents of each, adding the share of every
+	 * query in the work of the batch to its measurements.
+	 *
+	 * @param queries
+	 *  parsed queries
+	 * @param queryIDs
+	 *  Query ID of each query
+	 * @param k
+	 *  number of top documents
+	 * @param queryMetrics
+	 *  measurements of each query, null to measure no query
+	 * @return
+	 *  ranked results, in the order of queries
+	 *
+	 * @throws IOException
+	 * @throws SecurityException
+	 * @throws NoSuchMethodException
+	 * @throws InvocationTargetException
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public RankedResults[] score(Query[] queries, String[] queryIDs, int k, QueryMetrics[] queryMetrics) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		RankedResults[] rankedResults = new RankedResults[queries.length];
+		for(int groupStart = 0; groupStart < queries.length; groupStart += maxQueryCount)
+		{
+			int groupEnd = Math.min(groupStart + maxQueryCount, queries.length);
+			scoreGroup(queries, queryIDs, groupStart, groupEnd, k, rankedResults, queryMetrics);
+		}
+		return rankedResults;
+	}
+
+	/**
+	 * Scores the queries from groupStart to groupEnd (exclusive) together.
+	 */
+	private void scoreGroup(Query[] queries, String[] queryIDs, int groupStart, int groupEnd, int k, RankedResults[] rankedResults, QueryMetrics[] queryMetrics) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		/* Group the queries by term, the queries of a term in increasing order */
+		Map<Term, List<Integer>> queryIndexesByTerm = new TreeMap<Term, List<Integer>>();
+		for(int queryIndex = groupStart; queryIndex < groupEnd; queryIndex++)
+		{
+			long startTime = System.nanoTime();
+			Set<Term> queryTerms = searchSession.extractTerms(sessionSearcher, queries[queryIndex]);
+			getQueryMetrics(queryMetrics, queryIndex).addSharedStageTime(Stage.PARSE, System.nanoTime() - startTime);
+			for(Term queryTerm : queryTerms)
+			{
+				List<Integer> queryIndexes = queryIndexesByTerm.get(queryTerm);
+				if(queryIndexes == null)
+				{
+					queryIndexes = new ArrayList<Integer>();
+					queryIndexesByTerm.put(queryTerm, queryIndexes);
+				}
+				queryIndexes.add(queryIndex - groupStart);
+			}
+		}
+
+		IndexReader indexReader = sessionSearcher.getIndexReader();
+		int groupSize = groupEnd - groupStart;
+		while(scoreAccumulators.size() < groupSize)
+		{
+			scoreAccumulators.add(new ScoreAccumulator(indexReader.maxDoc()));
+		}
+		ScoreAccumulator[] groupAccumulators = new ScoreAccumulator[groupSize];
+		for(int accumulatorIndex = 0; accumulatorIndex < groupSize; accumulatorIndex++)
+		{
+			groupAccumulators[accumulatorIndex] = scoreAccumulators.get(accumulatorIndex);
+			groupAccumulators[accumulatorIndex].reset(indexReader.maxDoc());
+		}
+
+		/* Decode and score the postings of every term once, and scatter the scores to the queries of the term */
+		int corpusDocumentCount = indexReader.maxDoc();
+		DocumentLengths documentLengths = sessionSearcher.getDocumentLengths(similarity);
+		List<LeafReaderContext> leafReaderContexts = indexReader.leaves();
+		for(Map.Entry<Term, List<Integer>> termQueries : queryIndexesByTerm.entrySet())
+		{
+			long startTime = System.nanoTime();
+			Term queryTerm = termQueries.getKey();
+			termAccumulators = new ScoreAccumulator[termQueries.getValue().size()];
+			for(int termQueryIndex = 0; termQueryIndex < termAccumulators.length; termQueryIndex++)
+			{
+				termAccumulators[termQueryIndex] = groupAccumulators[termQueries.getValue().get(termQueryIndex)];
+			}
+
+			int documentFrequencyForTerm = indexReader.docFreq(queryTerm);
+			double iDFScoreForTerm = Calculator.calculateIDFScore(documentFrequencyForTerm, corpusDocumentCount);
+			long termPostingCount = 0;
+			for(LeafReaderContext leafReaderContext : leafReaderContexts)
+			{
+				termPostingCount += PostingsScorer.scorePostings(leafReaderContext, queryTerm, iDFScoreForTerm,
+						documentLengths.getLeafDocumentLengths(leafReaderContext.ord), scatteringScoreSink);
+			}
+			decodedPostingCount += termPostingCount;
+			scatteredPostingCount += termPostingCount * termAccumulators.length;
+
+			long termQueryTime = (System.nanoTime() - startTime) / termAccumulators.length;
+			for(int groupQueryIndex : termQueries.getValue())
+			{
+				QueryMetrics termQueryMetrics = getQueryMetrics(queryMetrics, groupStart + groupQueryIndex);
+				termQueryMetrics.addSharedStageTime(Stage.POSTINGS, termQueryTime);
+				termQueryMetrics.addPostingCount(termPostingCount);
+			}
+		}
+
+		for(int queryIndex = groupStart; queryIndex < groupEnd; queryIndex++)
+		{
+			long startTime = System.nanoTime();
+			ScoreAccumulator scoreAccumulator = groupAccumulators[queryIndex - groupStart];
+			topKCollector.reset(k);
+			for(int touchedIndex = 0; touchedIndex < scoreAccumulator.getTouchedDocumentCount(); touchedIndex++)
+			{
+				int documentID = scoreAccumulator.getTouchedDocumentID(touchedIndex);
+				topKCollector.collect(documentID, scoreAccumulator.getScore(documentID));
+			}
+			topKCollector.sort();
+			rankedResults[queryIndex] = RankedResults.fromTopKCollector(queryIDs[queryIndex], topKCollector);
+			QueryMetrics scoredQueryMetrics = getQueryMetrics(queryMetrics, queryIndex);
+			scoredQueryMetrics.addSharedStageTime(Stage.TOP_K, System.nanoTime() - startTime);
+			scoredQueryMetrics.addScoredDocumentCount(scoreAccumulator.getTouchedDocumentCount());
+		}
+	}
+
+	/**
+	 * Adds the score of a posting to the accumulator of every query of the term being scored.
+	 */
+	private boolean scatterScore(int documentID, double score)
+	{
+		for(ScoreAccumulator termAccumulator : termAccumulators)
+		{
+			termAccumulator.addScore(documentID, score);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the measurements of the query, or QueryMetrics.current() which ignores them if the query is not measured.
+	 */
+	private static QueryMetrics getQueryMetrics(QueryMetrics[] queryMetrics, int queryIndex)
+	{
+		return (queryMetrics == null || queryMetrics[queryIndex] == null) ? QueryMetrics.current() : queryMetrics[queryIndex];
+	}
+
+	/**
+	 * Returns the number of postings decoded so far, once per term of the batch.
+	 * @return
+	 *  number of decoded postings
+	 */
+	public long getDecodedPostingCount()
+	{
+		return decodedPostingCount;
+	}
+
+	/**
+	 * Returns the number of postings the queries scored so far would have decoded one by one.
+	 * @return
+	 *  number of postings added to the query accumulators
+	 */
+	public long getScatteredPostingCount()
+	{
+		return scatteredPostingCount;
+	}
+}
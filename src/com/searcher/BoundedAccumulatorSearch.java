@@ -0,0 +1,169 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.calculator.Calculator;
+import com.result.BoundedScoreAccumulator;
+import com.result.ScoreSink;
+import com.result.TopKCollector;
+
+/**
+ * This class retrieves the top k documents of the custom TF-IDF model term-at-a-time into a BoundedScoreAccumulator,
+ * so the memory of a query is bounded by the accumulator limit rather than by the documents matching its terms.
+ *
+ * The terms are processed from the rarest, whose postings carry the highest IDF, so the documents accumulated before
+ * the limit is reached are those of the most discriminating terms. Once the limit is reached, the QUIT strategy stops
+ * the query, and the CONTINUE strategy adds the scores of the remaining postings to the accumulated documents only.
+ * Below the limit every posting is scored, though the scores are summed in another term order than the EXHAUSTIVE
+ * retrieval, so they may differ from it in the last bits.
+ *
+ * The object reuses its accumulator from query to query, hence one object is used per search thread.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class BoundedAccumulatorSearch {
+
+	private int accumulatorLimit;
+	private AccumulatorLimitStrategy accumulatorLimitStrategy;
+	private BoundedScoreAccumulator scoreAccumulator;
+	private ScoreSink limitedScoreSink;
+	private long processedPostingCount;
+	private long refusedPostingCount;
+
+	/**
+	 * Creates the BoundedAccumulatorSearch with specified accumulator limit and strategy.
+	 *
+	 * @param accumulatorLimit
+	 *  maximum number of accumulated documents per query
+	 * @param accumulatorLimitStrategy
+	 *  what to do once the limit is reached
+	 */
+	public BoundedAccumulatorSearch(int accumulatorLimit, AccumulatorLimitStrategy accumulatorLimitStrategy)
+	{
+		this.accumulatorLimit = accumulatorLimit;
+		this.accumulatorLimitStrategy = accumulatorLimitStrategy;
+		this.limitedScoreSink = this::addScoreWithinLimit;
+	}
+
+	/**
+	 * This function collects the top documents of the query into the specified TopKCollector.
+	 *
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryTerms
+	 *  terms of the query
+	 * @param similarity
+	 *  similarity whose norms give the document lengths
+	 * @param topKCollector
+	 *  empty collector, sorted on return
+	 *
+	 * @throws IOException
+	 * @throws SecurityException
+	 * @throws NoSuchMethodException
+	 * @throws InvocationTargetException
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public void search(SessionSearcher indexSearcher, Set<Term> queryTerms, Similarity similarity, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		IndexReader indexReader = indexSearcher.getIndexReader();
+		int corpusDocumentCount = indexReader.maxDoc();
+		/* An accumulator over more than the documents of the index is never filled, so it is not allocated */
+		int maxDocumentCount = Math.min(accumulatorLimit, corpusDocumentCount);
+		if(scoreAccumulator == null || scoreAccumulator.getMaxDocumentCount() != maxDocumentCount)
+		{
+			scoreAccumulator = new BoundedScoreAccumulator(maxDocumentCount);
+		}
+		scoreAccumulator.reset();
+		processedPostingCount = 0;
+		refusedPostingCount = 0;
+
+		/* Rarest terms first, in term order for the same document frequency */
+		Term[] terms = queryTerms.toArray(new Term[queryTerms.size()]);
+		int[] documentFrequencies = new int[terms.length];
+		Integer[] termOrder = new Integer[terms.length];
+		for(int termIndex = 0; termIndex < terms.length; termIndex++)
+		{
+			documentFrequencies[termIndex] = indexReader.docFreq(terms[termIndex]);
+			termOrder[termIndex] = termIndex;
+		}
+		Arrays.sort(termOrder, Comparator.comparingInt(termIndex -> documentFrequencies[termIndex]));
+
+		DocumentLengths documentLengths = indexSearcher.getDocumentLengths(similarity);
+		List<LeafReaderContext> leafReaderContexts = indexReader.leaves();
+		boolean quit = false;
+		for(int orderIndex = 0; orderIndex < termOrder.length && !quit; orderIndex++)
+		{
+			int termIndex = termOrder[orderIndex];
+			double iDFScoreForTerm = Calculator.calculateIDFScore(documentFrequencies[termIndex], corpusDocumentCount);
+			for(int leafIndex = 0; leafIndex < leafReaderContexts.size() && !quit; leafIndex++)
+			{
+				LeafReaderContext leafReaderContext = leafReaderContexts.get(leafIndex);
+				processedPostingCount += PostingsScorer.scorePostings(leafReaderContext, terms[termIndex], iDFScoreForTerm,
+						documentLengths.getLeafDocumentLengths(leafReaderContext.ord), limitedScoreSink);
+				quit = accumulatorLimitStrategy == AccumulatorLimitStrategy.QUIT && refusedPostingCount > 0;
+			}
+		}
+
+		for(int index = 0; index < scoreAccumulator.getDocumentCount(); index++)
+		{
+			topKCollector.collect(scoreAccumulator.getDocumentID(index), scoreAccumulator.getScoreAt(index));
+		}
+		topKCollector.sort();
+	}
+
+	/**
+	 * Adds the score of a posting to the accumulator and counts the refused postings. Only the QUIT strategy stops
+	 * the scoring of the term on a refusal.
+	 */
+	private boolean addScoreWithinLimit(int documentID, double score)
+	{
+		if(scoreAccumulator.addScore(documentID, score))
+		{
+			return true;
+		}
+		refusedPostingCount++;
+		return accumulatorLimitStrategy != AccumulatorLimitStrategy.QUIT;
+	}
+
+	/**
+	 * Returns the number of postings read by the last query.
+	 * @return
+	 *  number of postings
+	 */
+	public long getProcessedPostingCount()
+	{
+		return processedPostingCount;
+	}
+
+	/**
+	 * Returns the number of postings of the last query whose document could not be accumulated, 0 if the limit was not reached.
+	 * @return
+	 *  number of refused postings
+	 */
+	public long getRefusedPostingCount()
+	{
+		return refusedPostingCount;
+	}
+
+	/**
+	 * Returns the number of documents accumulated by the last query.
+	 * @return
+	 *  number of accumulated documents
+	 */
+	public int getScoredDocumentCount()
+	{
+		return scoreAccumulator.getDocumentCount();
+	}
+}
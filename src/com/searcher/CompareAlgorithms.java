@@ -1,21 +1,8 @@
 package com.searcher;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Paths;
 
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.benchmark.quality.QualityQuery;
-import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -24,9 +11,15 @@ import org.apache.lucene.search.similarities.DefaultSimilarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 
 import com.constants.Constants;
+import com.evaluation.RunEvaluationCollector;
+import com.metrics.PipelineMetrics;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
+import com.result.RankedResults;
+import com.result.RunFileWriter;
 
 /**
  * This class is solution for Task-3. Comparing the different similarity algorithms.
@@ -41,8 +34,8 @@ public class CompareAlgorithms {
 	 * 
 	 * @param topDocs
 	 * 	TopDocs object to process
-	 * @param indexSearcher
-	 * 	IndexSearcher object
+	 * @param docNoLookup
+	 * 	lookup to resolve the DOCNO of the top documents
 	 * @param queryID
 	 * 	ID of query being processed
 	 * @param outputFilePath
@@ -50,34 +43,34 @@ public class CompareAlgorithms {
 	 *  
 	 * @throws IOException
 	 */
-	public static void writeTopDocs(TopDocs topDocs, IndexSearcher indexSearcher, String queryID, String outputFilePath) throws IOException
+	public static void writeTopDocs(TopDocs topDocs, DocNoLookup docNoLookup, String queryID, String outputFilePath) throws IOException
 	{
-		File outputFile = new File(outputFilePath);
-		//outputFile.delete();
-		outputFile.getParentFile().mkdirs();
-		if(outputFile.exists() == false)
+		try(RunFileWriter runFileWriter = new RunFileWriter(outputFilePath, docNoLookup))
 		{
-			outputFile.createNewFile();
+			writeTopDocs(topDocs, queryID, runFileWriter);
 		}
-		FileWriter fileWriter = new FileWriter(outputFile, true);
-		
+	}
+	
+	/**
+	 * This function writes the documents in the specified TopDocs object with the specified RunFileWriter accoriding to trec_eval format.
+	 * 
+	 * @param topDocs
+	 * 	TopDocs object to process
+	 * @param queryID
+	 * 	ID of query being processed
+	 * @param runFileWriter
+	 *  writer of the run file, which stays open for the next query
+	 *  
+	 * @throws IOException
+	 */
+	public static void writeTopDocs(TopDocs topDocs, String queryID, RunFileWriter runFileWriter) throws IOException
+	{
 		ScoreDoc[] scoreDocs = topDocs.scoreDocs;
 		
 		for(int docIndex = 0; docIndex < scoreDocs.length; docIndex++)
 		{
-			ScoreDoc scoreDoc = scoreDocs[docIndex];
-			String docNo = indexSearcher.doc(scoreDoc.doc).get("DOCNO");
-			
-			fileWriter.append(queryID);
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + "Q0");
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + docNo);
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + (docIndex+1));
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + scoreDoc.score);
-			fileWriter.append(Constants.OUTPUT_FILE_DELIMITER + "run-1 \n");	
+			runFileWriter.write(queryID, scoreDocs[docIndex].doc, docIndex + 1, scoreDocs[docIndex].score);
 		}
-		
-		fileWriter.flush();
-		fileWriter.close();
 	}
 	
 	
@@ -95,53 +88,119 @@ public class CompareAlgorithms {
 	 */
 	public static void processTop1KResults(Similarity similarity, String algorithmName) throws IOException, ParseException
 	{
-		// 1. Read the queries from trec topics
-		TrecTopicsReader trecTopicReader = new TrecTopicsReader();
-		BufferedReader bufferedReader = new BufferedReader(new FileReader(Constants.TREC_TOPIC_FILE_PATH));
-		QualityQuery[] qualityQueries = trecTopicReader.readQueries(bufferedReader);
+		processTop1KResults(new Similarity[] { similarity }, new String[] { algorithmName });
+	}
 
-		
-		//2.Create searcher
-		IndexReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(Constants.INDEX_DIR_PATH)));
-		IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-		StandardAnalyzer analyzer = new StandardAnalyzer();
-		indexSearcher.setSimilarity(similarity);
-		
-		/* Task-1 : [1] Parsing query using analyzer */
-		QueryParser queryParser = new QueryParser("TEXT", analyzer); 
-		
-		
-		for(int queryIndex=0; queryIndex < qualityQueries.length; queryIndex++)
+	/**
+	 * This function retrieves the Top 1000 docs for each query for Trec 51-1000 test set with all the specified similarities at once,
+	 * and writes the results of each similarity in trec_eval file format.
+	 * The topics are read and each query is parsed once, and the postings of each query term are walked once for all the similarities.
+	 * 
+	 * @param similarities
+	 * 	Objects of similarities to be used
+	 * @param algorithmNames
+	 * 	algorithm name of each similarity
+	 * 
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public static void processTop1KResults(Similarity[] similarities, String[] algorithmNames) throws IOException, ParseException
+	{
+		//1.Get searcher from the shared search session
+		SearchSession searchSession = SearchSession.getSharedSession();
+		searchSession.maybeRefresh();
+		SessionSearcher sessionSearcher = searchSession.acquire();
+
+		/* Results of the previous runs on the same index are reused */
+		QueryResultCache queryResultCache = searchSession.getQueryResultCache();
+		if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
 		{
-			QualityQuery qualityQuery = qualityQueries[queryIndex];
-			String queryID = qualityQuery.getQueryID();
-
-			// Braces to end the heavy variable scope (titleQueryScore)
+			queryResultCache.load(Constants.QUERY_RESULT_CACHE_FILE_PATH, sessionSearcher.getIndexVersion());
+		}
+		/* The run of several similarities is measured as one run, since each query is searched once for all of them */
+		RunMetrics runMetrics = SearchTRECTTopics.createRunMetrics(String.join("-", algorithmNames));
+		PipelineMetrics pipelineMetrics = SearchTRECTTopics.createPipelineMetrics(String.join("-", algorithmNames));
+		RunEvaluationCollector runEvaluationCollector = SearchTRECTTopics.createRunEvaluationCollector(sessionSearcher, algorithmNames.length);
+
+		//2.Stream the queries from trec topics through the pipeline
+		try(TrecTopicStream topicStream = new TrecTopicStream(Constants.TREC_TOPIC_FILE_PATH);
+				TopicPipeline topicPipeline = new TopicPipeline(pipelineMetrics, runMetrics))
+		{
+			String[] shortOutputFilePaths = new String[algorithmNames.length];
+			String[] longOutputFilePaths = new String[algorithmNames.length];
+			for(int algorithmIndex = 0; algorithmIndex < algorithmNames.length; algorithmIndex++)
 			{
-				String titleStringQuery = qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_TITLE);
-				String cleanedTitleQuery = SearchTRECTTopics.cleanTitleQueryString(titleStringQuery);
-				Query titleQuery = queryParser.parse(QueryParserUtil.escape(cleanedTitleQuery));
-				TopDocs topDocs = indexSearcher.search(titleQuery, 1000);
-				String outputFilePath = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "ShortQuery" + ".txt";
-				writeTopDocs(topDocs, indexSearcher, queryID, outputFilePath);
-
+				if(Constants.WRITE_RUN_FILES)
+				{
+					shortOutputFilePaths[algorithmIndex] = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmNames[algorithmIndex] + "ShortQuery" + ".txt";
+					longOutputFilePaths[algorithmIndex] = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmNames[algorithmIndex] + "LongQuery" + ".txt";
+				}
 			}
-
-
-			// Braces to end the heavy variable scope (descQueryScore)
+			ThreadLocal<MultiSimilaritySearch> multiSimilaritySearches = ThreadLocal.withInitial(() -> new MultiSimilaritySearch(sessionSearcher, similarities));
+
+			/* Title (short) and description (long) query of every topic is searched in parallel, and written in the order of topics */
+			topicPipeline.process(topicStream, (queryString, queryID) -> {
+				/* Task-1 : [1] Parsing query using analyzer */
+				long startTime = System.nanoTime();
+				Query query = searchSession.parseQuery(queryString);
+				QueryMetrics.current().addStageTime(Stage.PARSE, startTime);
+				return searchQuery(query, queryID, similarities, multiSimilaritySearches.get(), queryResultCache, sessionSearcher.getIndexVersion());
+			}, sessionSearcher.getDocNoLookup(), shortOutputFilePaths, longOutputFilePaths, runEvaluationCollector);
+
+			/* Every algorithm is evaluated as its results are written */
+			for(int algorithmIndex = 0; algorithmIndex < algorithmNames.length; algorithmIndex++)
 			{
-				String descStringQuery = qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_DESC);
-				String cleanedDescQuery = SearchTRECTTopics.cleanDescQueryString(descStringQuery);
-				Query descQuery = queryParser.parse(QueryParserUtil.escape(cleanedDescQuery));
-				TopDocs topDocs = indexSearcher.search(descQuery, 1000);
-				String outputFilePath = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "LongQuery" + ".txt";
-				writeTopDocs(topDocs, indexSearcher, queryID, outputFilePath);
-
+				SearchTRECTTopics.printEvaluation(algorithmNames[algorithmIndex], runEvaluationCollector, algorithmIndex);
 			}
+			SearchTRECTTopics.writeRunMetrics(sessionSearcher, runMetrics);
+			System.out.println(pipelineMetrics);
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+		if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
+		{
+			queryResultCache.save(Constants.QUERY_RESULT_CACHE_FILE_PATH);
+		}
+		System.out.println(queryResultCache);
+		for(String algorithmName : algorithmNames)
+		{
+			System.out.println("All the querie from TREC 51-100 executed successfully For-" + algorithmName);
+		}
+	}
+	
+	/**
+	 * This function returns the top 1000 results of the query for every similarity. The query is searched only if the results
+	 * of any similarity are not cached, and then it is searched for all the similarities in one pass.
+	 * 
+	 * @return
+	 *  top 1000 results of the query, one per similarity
+	 */
+	private static RankedResults[] searchQuery(Query query, String queryID, Similarity[] similarities, MultiSimilaritySearch multiSimilaritySearch,
+			QueryResultCache queryResultCache, String indexVersion) throws IOException
+	{
+		String[] cacheKeys = new String[similarities.length];
+		RankedResults[] rankedResults = new RankedResults[similarities.length];
+		boolean allCached = true;
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			cacheKeys[similarityIndex] = QueryResultCache.createKey(query, similarities[similarityIndex], "LUCENE", Constants.TOP_K_RESULTS);
+			rankedResults[similarityIndex] = queryResultCache.get(indexVersion, cacheKeys[similarityIndex], queryID);
+			allCached = allCached && rankedResults[similarityIndex] != null;
+		}
+		if(allCached)
+		{
+			QueryMetrics.current().setResultCacheHit();
+			return rankedResults;
+		}
 
-
+		rankedResults = multiSimilaritySearch.search(query, queryID, Constants.TOP_K_RESULTS);
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			queryResultCache.put(indexVersion, cacheKeys[similarityIndex], rankedResults[similarityIndex]);
 		}
-		System.out.println("All the querie from TREC 51-100 executed successfully For-" + algorithmName);
+		return rankedResults;
 	}
 	
 	/**
@@ -154,10 +213,11 @@ public class CompareAlgorithms {
 		try 
 		{
 
-			processTop1KResults(new DefaultSimilarity(), "DEFAULT_VECTOR");
-			processTop1KResults(new BM25Similarity(), "BM25");
-			processTop1KResults(new LMDirichletSimilarity(), "LMDirichlet");
-			processTop1KResults(new LMJelinekMercerSimilarity((float) 0.7), "LMJelinek");
+			/* All the algorithms are compared with a single pass over the postings of each query */
+			processTop1KResults(
+					new Similarity[] { new DefaultSimilarity(), new BM25Similarity(), new LMDirichletSimilarity(), new LMJelinekMercerSimilarity((float) 0.7), new TFIDFCustomSimilarity() },
+					new String[] { "DEFAULT_VECTOR", "BM25", "LMDirichlet", "LMJelinek", "TFIDF_CUSTOM" });
+			SearchSession.closeSharedSession();
 		} 
 		catch (IOException e) {
 			// TODO Auto-generated catch block
@@ -0,0 +1,187 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+import com.constants.Constants;
+
+/**
+ * This class maps the lucene document id to the document number (DOCNO) of the document.
+ * All the DOCNOs are packed in a single byte array with an offset per document, so the lookup
+ * neither decompresses stored fields nor holds a String object per document.
+ *
+ * It is built once per reader, hence scoring can work on int document ids and the DOCNO
+ * is resolved only for the documents which are written out.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class DocNoLookup {
+
+	private byte[] docNoBytes;
+	private int[] docNoOffsets;
+	private int storedFieldFetchCount;
+
+	private DocNoLookup(byte[] docNoBytes, int[] docNoOffsets, int storedFieldFetchCount)
+	{
+		this.docNoBytes = docNoBytes;
+		this.docNoOffsets = docNoOffsets;
+		this.storedFieldFetchCount = storedFieldFetchCount;
+	}
+
+	/**
+	 * This function builds the lookup for all the documents of the specified reader. The DOCNO is read from the
+	 * "DOCNO" binary doc values of the segments indexed by AP89Indexer, and from the stored field otherwise.
+	 *
+	 * @param indexReader
+	 *  reader to build lookup for
+	 * @return
+	 *  lookup table for the reader
+	 *
+	 * @throws IOException
+	 */
+	public static DocNoLookup build(IndexReader indexReader) throws IOException
+	{
+		Set<String> fieldsToLoad = Collections.singleton(Constants.FIELD_DOCNO);
+		int documentCount = indexReader.maxDoc();
+
+		int[] docNoOffsets = new int[documentCount + 1];
+		byte[] docNoBytes = new byte[documentCount * 16];
+		int length = 0;
+		int storedFieldFetchCount = 0;
+
+		for(LeafReaderContext leafReaderContext : indexReader.leaves())
+		{
+			LeafReader leafReader = leafReaderContext.reader();
+			BinaryDocValues docNoValues = leafReader.getBinaryDocValues(Constants.FIELD_DOCNO);
+
+			for(int leafDocumentID = 0; leafDocumentID < leafReader.maxDoc(); leafDocumentID++)
+			{
+				docNoOffsets[leafReaderContext.docBase + leafDocumentID] = length;
+
+				if(docNoValues != null)
+				{
+					BytesRef docNo = docNoValues.get(leafDocumentID);
+					docNoBytes = ArrayUtil.grow(docNoBytes, length + docNo.length);
+					System.arraycopy(docNo.bytes, docNo.offset, docNoBytes, length, docNo.length);
+					length += docNo.length;
+					continue;
+				}
+
+				String docNo = leafReader.document(leafDocumentID, fieldsToLoad).get(Constants.FIELD_DOCNO);
+				storedFieldFetchCount++;
+				if(docNo != null)
+				{
+					byte[] bytes = docNo.getBytes(StandardCharsets.UTF_8);
+					docNoBytes = ArrayUtil.grow(docNoBytes, length + bytes.length);
+					System.arraycopy(bytes, 0, docNoBytes, length, bytes.length);
+					length += bytes.length;
+				}
+			}
+		}
+		docNoOffsets[documentCount] = length;
+
+		return new DocNoLookup(ArrayUtil.shrink(docNoBytes, length), docNoOffsets, storedFieldFetchCount);
+	}
+
+	/**
+	 * Returns the DOCNO of the specified document.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @return
+	 *  document number
+	 */
+	public String getDocNo(int documentID)
+	{
+		int start = docNoOffsets[documentID];
+		return new String(docNoBytes, start, docNoOffsets[documentID + 1] - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the length of the DOCNO of the specified document in UTF-8 bytes.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @return
+	 *  number of bytes of the DOCNO
+	 */
+	public int getDocNoLength(int documentID)
+	{
+		return docNoOffsets[documentID + 1] - docNoOffsets[documentID];
+	}
+
+	/**
+	 * Puts the UTF-8 bytes of the DOCNO of the specified document into the buffer, without creating a String.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param buffer
+	 *  buffer with at least getDocNoLength(documentID) bytes remaining
+	 */
+	public void writeDocNo(int documentID, ByteBuffer buffer)
+	{
+		int start = docNoOffsets[documentID];
+		buffer.put(docNoBytes, start, docNoOffsets[documentID + 1] - start);
+	}
+
+	/**
+	 * Compares the DOCNOs of two documents byte by byte, as strcmp compares them in trec_eval.
+	 *
+	 * @param documentID
+	 *  lucene document id
+	 * @param otherDocumentID
+	 *  lucene document id to compare with
+	 * @return
+	 *  negative, zero or positive as the DOCNO of the document is less than, equal to or greater than the other
+	 */
+	public int compareDocNo(int documentID, int otherDocumentID)
+	{
+		int start = docNoOffsets[documentID];
+		int length = docNoOffsets[documentID + 1] - start;
+		int otherStart = docNoOffsets[otherDocumentID];
+		int otherLength = docNoOffsets[otherDocumentID + 1] - otherStart;
+
+		int commonLength = Math.min(length, otherLength);
+		for(int index = 0; index < commonLength; index++)
+		{
+			int difference = (docNoBytes[start + index] & 0xFF) - (docNoBytes[otherStart + index] & 0xFF);
+			if(difference != 0)
+			{
+				return difference;
+			}
+		}
+		return length - otherLength;
+	}
+
+	/**
+	 * Returns the number of stored documents read to build the lookup, i.e. the documents of the segments without
+	 * DOCNO doc values. No stored field is read after the lookup is built.
+	 * @return
+	 *  number of stored field fetches
+	 */
+	public int getStoredFieldFetchCount()
+	{
+		return storedFieldFetchCount;
+	}
+
+	/**
+	 * Returns the number of documents in the lookup.
+	 * @return
+	 *  number of documents
+	 */
+	public int size()
+	{
+		return docNoOffsets.length - 1;
+	}
+}
@@ -0,0 +1,163 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.constants.Constants;
+
+/**
+ * This class holds the decoded length of "TEXT" field for every document, one array per segment.
+ * The norm values are decoded through a 256 entry table which calls the decodeNormValue of similarity only once per norm byte,
+ * so finding the document length while iterating a posting is a single array read. The table of DefaultSimilarity is built
+ * once and shared with TFIDFCustomSimilarity, which encodes the norms the same way.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class DocumentLengths {
+
+	private static final int NORM_DECODE_TABLE_SIZE = 256;
+
+	/* Document length for each norm byte of DefaultSimilarity, it must not be modified */
+	private static final double[] DEFAULT_DECODE_TABLE = buildDefaultDecodeTable();
+
+	private double[][] leafDocumentLengths;
+
+	private DocumentLengths(double[][] leafDocumentLengths)
+	{
+		this.leafDocumentLengths = leafDocumentLengths;
+	}
+
+	/**
+	 * This function builds the document lengths for all the segments of the specified reader.
+	 *
+	 * @param indexReader
+	 *  reader to build document lengths for
+	 * @param similarity
+	 *  similarity used to decode the norm values
+	 * @return
+	 *  document lengths of the reader
+	 *
+	 * @throws IOException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public static DocumentLengths build(IndexReader indexReader, Similarity similarity) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		double[] documentLengthDecodeTable = getDecodeTable(similarity);
+
+		List<LeafReaderContext> leafReaderContexts = indexReader.leaves();
+		double[][] leafDocumentLengths = new double[leafReaderContexts.size()][];
+
+		for(LeafReaderContext leafReaderContext : leafReaderContexts)
+		{
+			int leafDocumentCount = leafReaderContext.reader().maxDoc();
+			double[] documentLengths = new double[leafDocumentCount];
+
+			NumericDocValues normValues = leafReaderContext.reader().getNormValues(Constants.FIELD_TEXT);
+			if(normValues != null)
+			{
+				for(int leafDocumentID = 0; leafDocumentID < leafDocumentCount; leafDocumentID++)
+				{
+					documentLengths[leafDocumentID] = documentLengthDecodeTable[(int) (normValues.get(leafDocumentID) & 0xFF)];
+				}
+			}
+			leafDocumentLengths[leafReaderContext.ord] = documentLengths;
+		}
+
+		return new DocumentLengths(leafDocumentLengths);
+	}
+
+	/**
+	 * This function builds the table of document length for each of the 256 possible norm bytes.
+	 * The norm is decoded through decodeNormValue of the similarity, and the length is recovered as 1/(norm * norm).
+	 *
+	 * @param similarity
+	 *  similarity used to decode the norm values
+	 * @return
+	 *  document length for each norm byte
+	 *
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public static double[] buildDecodeTable(Similarity similarity) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		Method decodeNormValue = similarity.getClass().getMethod("decodeNormValue", long.class);
+		double[] documentLengthDecodeTable = new double[NORM_DECODE_TABLE_SIZE];
+
+		for(int normByte = 0; normByte < NORM_DECODE_TABLE_SIZE; normByte++)
+		{
+			double normalizedDocumentLength = (float) decodeNormValue.invoke(similarity, (long) normByte);
+			documentLengthDecodeTable[normByte] = 1 / (normalizedDocumentLength * normalizedDocumentLength);
+		}
+
+		return documentLengthDecodeTable;
+	}
+
+	/**
+	 * This function returns the table of document length for each norm byte of DefaultSimilarity. It is shared, so it must not be modified.
+	 *
+	 * @return
+	 *  document length for each norm byte
+	 */
+	static double[] getDefaultDecodeTable()
+	{
+		return DEFAULT_DECODE_TABLE;
+	}
+
+	/**
+	 * Returns the shared table for the similarities decoding the norms as DefaultSimilarity does, otherwise builds the table.
+	 */
+	private static double[] getDecodeTable(Similarity similarity) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		if(similarity.getClass() == DefaultSimilarity.class || similarity.getClass() == TFIDFCustomSimilarity.class)
+		{
+			return DEFAULT_DECODE_TABLE;
+		}
+		return buildDecodeTable(similarity);
+	}
+
+	/**
+	 * Builds the table of document length for each norm byte of DefaultSimilarity, decoded as buildDecodeTable does.
+	 */
+	private static double[] buildDefaultDecodeTable()
+	{
+		DefaultSimilarity defaultSimilarity = new DefaultSimilarity();
+		double[] documentLengthDecodeTable = new double[NORM_DECODE_TABLE_SIZE];
+
+		for(int normByte = 0; normByte < NORM_DECODE_TABLE_SIZE; normByte++)
+		{
+			double normalizedDocumentLength = defaultSimilarity.decodeNormValue(normByte);
+			documentLengthDecodeTable[normByte] = 1 / (normalizedDocumentLength * normalizedDocumentLength);
+		}
+
+		return documentLengthDecodeTable;
+	}
+
+	/**
+	 * Returns the document lengths of the segment with specified ord, indexed by the segment document id.
+	 *
+	 * @param leafOrd
+	 *  ord of the segment in the reader
+	 * @return
+	 *  document lengths of the segment
+	 */
+	public double[] getLeafDocumentLengths(int leafOrd)
+	{
+		return leafDocumentLengths[leafOrd];
+	}
+}
@@ -2,33 +2,28 @@ package com.searcher;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.nio.file.Paths;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.DefaultSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.BytesRef;
 
 import com.calculator.Calculator;
 import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
 import com.result.QueryScore;
 import com.result.QueryTermScores;
+import com.result.TopKCollector;
+import com.searcher.TermScoreCache.TermScores;
 
 /**
  * This is a solution class for Task-1
@@ -61,61 +56,486 @@ public class EasySearch {
 	 */
 	public static QueryScore getQueryRelevanceScores(String queryString, String queryID, Similarity similarity) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
 	{
+		return getQueryRelevanceScores(SearchSession.getSharedSession(), queryString, queryID, similarity);
+	}
 
-			IndexReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(Constants.INDEX_DIR_PATH)));
-			IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-			StandardAnalyzer analyzer = new StandardAnalyzer();
-			indexSearcher.setSimilarity(similarity);
-			
-			/* Task-1 : [1] Parsing query using analyzer */
-			QueryParser queryParser = new QueryParser("TEXT", analyzer); 
-			Query query = queryParser.parse(QueryParserUtil.escape(queryString));
-			Set<Term> queryTerms = new HashSet<Term>();
-			query.createWeight(indexSearcher,false).extractTerms(queryTerms);
+	/**
+	 * This method returns the QueryScore object for the query, using the specified search session instead of opening the index.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param queryString 
+	 *  Query String 
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 *
+	 * @return
+	 *  Resultant Query Score Object
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static QueryScore getQueryRelevanceScores(SearchSession searchSession, String queryString, String queryID, Similarity similarity) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return getQueryRelevanceScores(searchSession, queryString, queryID, similarity, null);
+	}
+
+	/**
+	 * This method returns the QueryScore object for the query, reusing the QueryScore object of a previous query if specified.
+	 * Reusing the object avoids allocating the score accumulators again for every query of a run.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param queryString 
+	 *  Query String 
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param reusableQueryScore
+	 *  QueryScore of a previous query to be reset and reused, or null to create a new one
+	 *
+	 * @return
+	 *  Resultant Query Score Object
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static QueryScore getQueryRelevanceScores(SearchSession searchSession, String queryString, String queryID, Similarity similarity, QueryScore reusableQueryScore) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		SessionSearcher indexSearcher = searchSession.acquire();
+		try
+		{
+			return getQueryRelevanceScores(searchSession, indexSearcher, queryString, queryID, similarity, reusableQueryScore);
+		}
+		finally
+		{
+			searchSession.release(indexSearcher);
+		}
+	}
+
+	/**
+	 * This method parses the query string with the analyzer of the search session and calls getQueryRelevanceScores with the parsed query.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryString 
+	 *  Query String 
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param reusableQueryScore
+	 *  QueryScore of a previous query to be reset and reused, or null to create a new one
+	 *
+	 * @return
+	 *  Resultant Query Score Object
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static QueryScore getQueryRelevanceScores(SearchSession searchSession, SessionSearcher indexSearcher, String queryString, String queryID, Similarity similarity, QueryScore reusableQueryScore) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return getQueryRelevanceScores(searchSession, indexSearcher, parseQuery(searchSession, queryString), queryID, similarity, reusableQueryScore);
+	}
+
+	/**
+	 * This method returns the QueryScore object for the query, searching the specified searcher acquired from the search session.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param query
+	 *  parsed query
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param reusableQueryScore
+	 *  QueryScore of a previous query to be reset and reused, or null to create a new one
+	 *
+	 * @return
+	 *  Resultant Query Score Object
+	 * @throws IOException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static QueryScore getQueryRelevanceScores(SearchSession searchSession, SessionSearcher indexSearcher, Query query, String queryID, Similarity similarity, QueryScore reusableQueryScore) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		IndexReader indexReader = indexSearcher.getIndexReader();
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		
+		/* Task-1 : [1] Extracting the terms of the query parsed with analyzer */
+		long startTime = System.nanoTime();
+		Set<Term> queryTerms = searchSession.extractTerms(indexSearcher, query);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
 
-			int corpusDocumentCount = indexReader.maxDoc();
-			QueryScore queryScore = new QueryScore(queryID);
+		int corpusDocumentCount = indexReader.maxDoc();
+		QueryScore queryScore = reusableQueryScore;
+		if(queryScore == null)
+		{
+			queryScore = new QueryScore(queryID, indexSearcher.getDocNoLookup());
+		}
+		else
+		{
+			queryScore.reset(queryID, indexSearcher.getDocNoLookup());
+		}
+		DocumentLengths documentLengths = indexSearcher.getDocumentLengths(similarity);
+		TermScoreCache termScoreCache = searchSession.getTermScoreCache();
+		long readerVersion = indexSearcher.getReaderVersion();
 
 
-			List<LeafReaderContext> leafReaderContexts = indexReader.getContext().reader().leaves();
+		List<LeafReaderContext> leafReaderContexts = indexReader.leaves();
+		startTime = System.nanoTime();
+		long postingCount = 0;
+		
+		/* Task-1: [2] Calculating relevance score each term in query */
+		for(Term queryTerm: queryTerms)
+		{
+			/* Terms repeated across the queries are scored from the postings only once per reader */
+			TermScores cachedTermScores = termScoreCache.get(queryTerm, similarity.getClass(), readerVersion);
+			if(cachedTermScores != null)
+			{
+				queryScore.addDocumentScores(cachedTermScores.getDocumentIDs(), cachedTermScores.getDocumentScores(), cachedTermScores.getDocumentCount());
+				continue;
+			}
+
+			int documentFrequencyForTerm = indexReader.docFreq(queryTerm);
+			double iDFScoreForTerm = Calculator.calculateIDFScore(documentFrequencyForTerm, corpusDocumentCount);
 			
-			/* Task-1: [2] Calculating relevance score each term in query */
-			for(Term queryTerm: queryTerms)
+			QueryTermScores queryTermScore = queryScore.newQueryTermScores(queryTerm.text());
+			
+			for(LeafReaderContext leafReaderContext : leafReaderContexts)
 			{
-				int documentFrequencyForTerm = indexReader.docFreq(queryTerm);
-				
-				QueryTermScores queryTermScore = new QueryTermScores(queryTerm.text());
-				
-				for(LeafReaderContext leafReaderContext : leafReaderContexts)
+				PostingsEnum posting = MultiFields.getTermDocsEnum(leafReaderContext.reader(), Constants.FIELD_TEXT, queryTerm.bytes());
+				if(posting != null)
 				{
-					PostingsEnum posting = MultiFields.getTermDocsEnum(leafReaderContext.reader(),"TEXT", new BytesRef(queryTerm.text()));
-					if(posting != null)
+					double[] leafDocumentLengths = documentLengths.getLeafDocumentLengths(leafReaderContext.ord);
+					while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
 					{
-						while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
-						{
-							int termFrequencyInDocument = posting.freq();
-							int documentID = posting.docID() + leafReaderContext.docBase;
-							String docNO = indexSearcher.doc(documentID).get("DOCNO");
-							long nonNormalizedDocLength = leafReaderContext.reader().getNormValues("TEXT").get(posting.docID()); 
-							
-							double normalizedDocumentLength = (float) similarity.getClass().getMethod("decodeNormValue", long.class).invoke(similarity, nonNormalizedDocLength);
-							
-							double documentLength = 1 / (normalizedDocumentLength * normalizedDocumentLength);
-
-							double relevanceScoreForTerm = Calculator.calculateTFIDFScoreForTerm(termFrequencyInDocument, documentLength, documentFrequencyForTerm, corpusDocumentCount);
-							queryTermScore.addDocumentScore(docNO, relevanceScoreForTerm);
-							queryScore.addRelevantDocument(docNO);
-							//System.out.println("Relevance Score for Term: '" + queryTerm.text() + "' for document: "+ docNO +" = " + relevanceScoreForTerm);
-						}
-					}
+						int termFrequencyInDocument = posting.freq();
+						int documentID = posting.docID() + leafReaderContext.docBase;
+						double documentLength = leafDocumentLengths[posting.docID()];
 
+						double relevanceScoreForTerm = Calculator.calculateTFIDFScoreForTerm(termFrequencyInDocument, documentLength, iDFScoreForTerm);
+						queryTermScore.addDocumentScore(documentID, relevanceScoreForTerm);
+						postingCount++;
+						//System.out.println("Relevance Score for Term: '" + queryTerm.text() + "' for document: "+ documentID +" = " + relevanceScoreForTerm);
+					}
 				}
-				
-				// Store the scores calculated for each term */
-				queryScore.addQueryTermScores(queryTermScore);
+
 			}
-			indexReader.close();
-			return queryScore;
+			
+			// Add the scores calculated for each term to the query scores */
+			queryScore.addQueryTermScores(queryTermScore);
+			termScoreCache.put(queryTerm, similarity.getClass(), readerVersion, queryTermScore);
+		}
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		queryMetrics.addPostingCount(postingCount);
+		queryMetrics.addScoredDocumentCount(queryScore.getRelevantDocumentCount());
+		return queryScore;
+	}
+
+	/**
+	 * This method parses the query string with the analyzer of the search session and calls getTopKResults with the parsed query.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryString 
+	 *  Query String 
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, String queryString, Similarity similarity, TopKCollector topKCollector) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return getTopKResults(searchSession, indexSearcher, parseQuery(searchSession, queryString), similarity, topKCollector);
+	}
+
+	/**
+	 * This method collects the top documents of the query with the custom TF-IDF model using MaxScore dynamic pruning.
+	 * The result is identical to selecting the top documents of getQueryRelevanceScores, without scoring every posting.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param query
+	 *  parsed query
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, Query query, Similarity similarity, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Set<Term> queryTerms = searchSession.extractTerms(indexSearcher, query);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+		/* MaxScore selects the top k while walking the postings, so both are measured as postings traversal */
+		startTime = System.nanoTime();
+		topKCollector.reset(Constants.TOP_K_RESULTS);
+		MaxScoreSearch.search(indexSearcher, queryTerms, similarity, topKCollector);
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		return topKCollector;
+	}
+
+	/**
+	 * This method parses the query string with the analyzer of the search session and calls getSegmentParallelTopKResults with the parsed query.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryString 
+	 *  Query String 
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getSegmentParallelTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, String queryString, Similarity similarity, TopKCollector topKCollector) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return getSegmentParallelTopKResults(searchSession, indexSearcher, parseQuery(searchSession, queryString), similarity, topKCollector);
+	}
+
+	/**
+	 * This method collects the top documents of the query with the custom TF-IDF model, scoring every posting with the
+	 * segments of the index searched in parallel on the segment executor of the searcher.
+	 * The result is identical to selecting the top documents of getQueryRelevanceScores.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param query
+	 *  parsed query
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getSegmentParallelTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, Query query, Similarity similarity, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Set<Term> queryTerms = searchSession.extractTerms(indexSearcher, query);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+		SegmentParallelSearch.search(indexSearcher, queryTerms, similarity, Constants.TOP_K_RESULTS, topKCollector);
+		return topKCollector;
+	}
+
+	/**
+	 * This method parses the query string with the analyzer of the search session and calls getBoundedTopKResults with the parsed query.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryString 
+	 *  Query String 
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param boundedAccumulatorSearch
+	 *  bounded accumulator search of the calling thread
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getBoundedTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, String queryString, Similarity similarity, BoundedAccumulatorSearch boundedAccumulatorSearch, TopKCollector topKCollector) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		return getBoundedTopKResults(searchSession, indexSearcher, parseQuery(searchSession, queryString), similarity, boundedAccumulatorSearch, topKCollector);
+	}
+
+	/**
+	 * This method collects the top documents of the query with the custom TF-IDF model, accumulating the scores of at most
+	 * a fixed number of documents. The result is approximate once the limit of the BoundedAccumulatorSearch is reached.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param query
+	 *  parsed query
+	 * @param similarity
+	 *  Similarity algorithm to be used for processing
+	 * @param boundedAccumulatorSearch
+	 *  bounded accumulator search of the calling thread
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws SecurityException 
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalArgumentException 
+	 * @throws IllegalAccessException 
+	 */
+	public static TopKCollector getBoundedTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, Query query, Similarity similarity, BoundedAccumulatorSearch boundedAccumulatorSearch, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Set<Term> queryTerms = searchSession.extractTerms(indexSearcher, query);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+		/* The accumulated documents are offered to the collector right after the postings, so both are measured as postings traversal */
+		startTime = System.nanoTime();
+		topKCollector.reset(Constants.TOP_K_RESULTS);
+		boundedAccumulatorSearch.search(indexSearcher, queryTerms, similarity, topKCollector);
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		queryMetrics.addPostingCount(boundedAccumulatorSearch.getProcessedPostingCount());
+		queryMetrics.addScoredDocumentCount(boundedAccumulatorSearch.getScoredDocumentCount());
+		return topKCollector;
+	}
+
+	/**
+	 * This method parses the query string with the analyzer of the search session and calls getImpactOrderedTopKResults with the parsed query.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param queryString 
+	 *  Query String 
+	 * @param impactSearch
+	 *  impact search of the calling thread
+	 * @param postingsBudget
+	 *  number of postings after which the search stops, Integer.MAX_VALUE to process all the postings
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public static TopKCollector getImpactOrderedTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, String queryString, ImpactSearch impactSearch, int postingsBudget, TopKCollector topKCollector) throws IOException, ParseException
+	{
+		return getImpactOrderedTopKResults(searchSession, indexSearcher, parseQuery(searchSession, queryString), impactSearch, postingsBudget, topKCollector);
+	}
+
+	/**
+	 * This method collects the approximate top documents of the query with the custom TF-IDF model from the impact index,
+	 * processing the highest impacts first and stopping after the specified budget of postings.
+	 * 
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param indexSearcher
+	 *  searcher acquired from the search session
+	 * @param query
+	 *  parsed query
+	 * @param impactSearch
+	 *  impact search of the calling thread
+	 * @param postingsBudget
+	 *  number of postings after which the search stops, Integer.MAX_VALUE to process all the postings
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @return
+	 *  sorted top documents collector
+	 * @throws IOException
+	 */
+	public static TopKCollector getImpactOrderedTopKResults(SearchSession searchSession, SessionSearcher indexSearcher, Query query, ImpactSearch impactSearch, int postingsBudget, TopKCollector topKCollector) throws IOException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Set<Term> queryTerms = searchSession.extractTerms(indexSearcher, query);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+		/* The impact search selects the top k while walking the postings, so both are measured as postings traversal */
+		startTime = System.nanoTime();
+		topKCollector.reset(Constants.TOP_K_RESULTS);
+		impactSearch.search(queryTerms, postingsBudget, topKCollector);
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		queryMetrics.addPostingCount(impactSearch.getProcessedPostingCount());
+		queryMetrics.addScoredDocumentCount(impactSearch.getScoredDocumentCount());
+		return topKCollector;
+	}
+
+	/**
+	 * This function parses the query string with the analyzer of the search session, timed as the parse stage of the current query.
+	 */
+	private static Query parseQuery(SearchSession searchSession, String queryString) throws ParseException
+	{
+		long startTime = System.nanoTime();
+		Query query = searchSession.parseQuery(queryString);
+		QueryMetrics.current().addStageTime(Stage.PARSE, startTime);
+		return query;
 	}
 
 	/**
@@ -132,11 +552,13 @@ public class EasySearch {
 			QueryScore queryScore = getQueryRelevanceScores(queryString, queryID, defaultSimilarity);
 			
 			/* Task-1 [3]: Calculating relevance score for query w.r.t. to documents */
-			for(String docNo : queryScore.relevantDocumentIDs)
+			for(int index = 0; index < queryScore.getRelevantDocumentCount(); index++)
 			{
-				System.out.println("DocumentID: " + docNo + "     Score:" + queryScore.getDocumentScore(docNo));
+				int documentID = queryScore.getRelevantDocumentID(index);
+				System.out.println("DocumentID: " + queryScore.getDocNo(documentID) + "     Score:" + queryScore.getDocumentScore(documentID));
 			}
 			
+			SearchSession.closeSharedSession();
 		} 
 		catch (IOException e) {
 			// TODO Auto-generated catch block
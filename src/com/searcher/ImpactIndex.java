@@ -0,0 +1,304 @@
+package com.searcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * This class reads the impact ordered index written by ImpactIndexBuilder, which holds the TF-IDF Score of every
+ * (term, document) pair of "TEXT" field precomputed and quantized to an 8 bit impact. The postings of a term are
+ * split in blocks of documents with the same impact, and the blocks are stored in decreasing order of impact,
+ * so a query can be processed score-at-a-time and stopped early after the highest impacts.
+ *
+ * The file is memory mapped, and only read with absolute gets, hence one ImpactIndex is shared by all the search threads.
+ * The layout of the file is:
+ * <pre>
+ * header      : magic, format version, document count, term count, score scale, postings offset, index version
+ * dictionary  : per term in sorted order - term bytes start, term length, postings offset, block count, document frequency
+ * term bytes  : bytes of all the terms
+ * postings    : per term, per block in decreasing impact - impact, document count, document ids in increasing order
+ * </pre>
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ImpactIndex {
+
+	public static final int FILE_MAGIC = 0x494D5058;
+	public static final int FILE_FORMAT_VERSION = 1;
+
+	/* Highest impact, the quantized score of the score scale and above */
+	public static final int MAX_IMPACT = 255;
+
+	public static final int DICTIONARY_ENTRY_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+	public static final int BLOCK_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+
+	private ByteBuffer fileBuffer;
+	private int documentCount;
+	private int termCount;
+	private double scoreScale;
+	private String indexVersion;
+	private int dictionaryOffset;
+	private int termBytesOffset;
+
+	private ImpactIndex(ByteBuffer fileBuffer) throws IOException
+	{
+		this.fileBuffer = fileBuffer;
+		if(fileBuffer.limit() < 32 || fileBuffer.getInt(0) != FILE_MAGIC || fileBuffer.getInt(4) != FILE_FORMAT_VERSION)
+		{
+			throw new IOException("Not an impact index of format version " + FILE_FORMAT_VERSION);
+		}
+		this.documentCount = fileBuffer.getInt(8);
+		this.termCount = fileBuffer.getInt(12);
+		this.scoreScale = fileBuffer.getDouble(16);
+		int indexVersionLength = fileBuffer.getInt(32);
+		byte[] indexVersionBytes = new byte[indexVersionLength];
+		for(int index = 0; index < indexVersionLength; index++)
+		{
+			indexVersionBytes[index] = fileBuffer.get(36 + index);
+		}
+		this.indexVersion = new String(indexVersionBytes, StandardCharsets.UTF_8);
+		this.dictionaryOffset = getHeaderLength(indexVersionLength);
+		this.termBytesOffset = dictionaryOffset + termCount * DICTIONARY_ENTRY_BYTES;
+	}
+
+	/**
+	 * Returns the length of the header holding the index version of specified length in bytes.
+	 *
+	 * @param indexVersionLength
+	 *  length of the UTF-8 index version
+	 * @return
+	 *  header length in bytes, a multiple of 8
+	 */
+	public static int getHeaderLength(int indexVersionLength)
+	{
+		int headerLength = 36 + indexVersionLength;
+		return (headerLength + 7) & ~7;
+	}
+
+	/**
+	 * This function maps the impact index at the specified path, and checks it was built for the specified version of
+	 * the lucene index, since the document ids of any other version may refer to other documents.
+	 *
+	 * @param impactIndexFilePath
+	 *  path of the impact index file
+	 * @param expectedIndexVersion
+	 *  version of the lucene index being searched, see SessionSearcher.getIndexVersion()
+	 * @return
+	 *  mapped impact index
+	 *
+	 * @throws IOException
+	 *  if the file cannot be read, or was built for another version of the lucene index
+	 */
+	public static ImpactIndex open(String impactIndexFilePath, String expectedIndexVersion) throws IOException
+	{
+		File impactIndexFile = new File(impactIndexFilePath);
+		ImpactIndex impactIndex;
+		try(FileChannel fileChannel = FileChannel.open(impactIndexFile.toPath(), StandardOpenOption.READ))
+		{
+			long fileSize = fileChannel.size();
+			if(fileSize > Integer.MAX_VALUE)
+			{
+				throw new IOException("Unable to map the impact index larger than 2GB: " + impactIndexFile);
+			}
+			impactIndex = new ImpactIndex(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+		}
+
+		if(!impactIndex.indexVersion.equals(expectedIndexVersion))
+		{
+			throw new IOException("The impact index " + impactIndexFile + " was built for another version of the index, rebuild it with ImpactIndexBuilder");
+		}
+		return impactIndex;
+	}
+
+	/**
+	 * Returns the ordinal of the term, or -1 if the term is not in the index.
+	 *
+	 * @param term
+	 *  term bytes
+	 * @return
+	 *  term ordinal
+	 */
+	public int findTerm(BytesRef term)
+	{
+		int low = 0;
+		int high = termCount - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			int comparison = compareTerm(middle, term);
+			if(comparison < 0)
+			{
+				low = middle + 1;
+			}
+			else if(comparison > 0)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the term with specified ordinal to the term bytes, in the unsigned byte order of lucene terms.
+	 */
+	private int compareTerm(int termOrd, BytesRef term)
+	{
+		int entryOffset = dictionaryOffset + termOrd * DICTIONARY_ENTRY_BYTES;
+		int termStart = termBytesOffset + fileBuffer.getInt(entryOffset);
+		int termLength = fileBuffer.getInt(entryOffset + Integer.BYTES);
+
+		int commonLength = Math.min(termLength, term.length);
+		for(int index = 0; index < commonLength; index++)
+		{
+			int difference = (fileBuffer.get(termStart + index) & 0xFF) - (term.bytes[term.offset + index] & 0xFF);
+			if(difference != 0)
+			{
+				return difference;
+			}
+		}
+		return termLength - term.length;
+	}
+
+	/**
+	 * Returns the offset of the first (highest impact) block of the term.
+	 *
+	 * @param termOrd
+	 *  term ordinal
+	 * @return
+	 *  block offset
+	 */
+	public int getFirstBlockOffset(int termOrd)
+	{
+		return (int) fileBuffer.getLong(dictionaryOffset + termOrd * DICTIONARY_ENTRY_BYTES + 2 * Integer.BYTES);
+	}
+
+	/**
+	 * Returns the number of blocks of the term, i.e. the number of distinct impacts.
+	 *
+	 * @param termOrd
+	 *  term ordinal
+	 * @return
+	 *  number of blocks
+	 */
+	public int getBlockCount(int termOrd)
+	{
+		return fileBuffer.getInt(dictionaryOffset + termOrd * DICTIONARY_ENTRY_BYTES + 2 * Integer.BYTES + Long.BYTES);
+	}
+
+	/**
+	 * Returns the number of documents containing the term.
+	 *
+	 * @param termOrd
+	 *  term ordinal
+	 * @return
+	 *  document frequency
+	 */
+	public int getDocumentFrequency(int termOrd)
+	{
+		return fileBuffer.getInt(dictionaryOffset + termOrd * DICTIONARY_ENTRY_BYTES + 3 * Integer.BYTES + Long.BYTES);
+	}
+
+	/**
+	 * Returns the impact of the block at specified offset.
+	 *
+	 * @param blockOffset
+	 *  block offset
+	 * @return
+	 *  impact between 1 and MAX_IMPACT
+	 */
+	public int getBlockImpact(int blockOffset)
+	{
+		return fileBuffer.getInt(blockOffset);
+	}
+
+	/**
+	 * Returns the number of documents of the block at specified offset.
+	 *
+	 * @param blockOffset
+	 *  block offset
+	 * @return
+	 *  number of documents
+	 */
+	public int getBlockDocumentCount(int blockOffset)
+	{
+		return fileBuffer.getInt(blockOffset + Integer.BYTES);
+	}
+
+	/**
+	 * Returns the document id at specified index of the block.
+	 *
+	 * @param blockOffset
+	 *  block offset
+	 * @param index
+	 *  index between 0 and getBlockDocumentCount(blockOffset)
+	 * @return
+	 *  lucene document id
+	 */
+	public int getBlockDocumentID(int blockOffset, int index)
+	{
+		return fileBuffer.getInt(blockOffset + BLOCK_HEADER_BYTES + index * Integer.BYTES);
+	}
+
+	/**
+	 * Returns the offset of the block following the block at specified offset.
+	 *
+	 * @param blockOffset
+	 *  block offset
+	 * @return
+	 *  offset of the next block
+	 */
+	public int getNextBlockOffset(int blockOffset)
+	{
+		return blockOffset + BLOCK_HEADER_BYTES + getBlockDocumentCount(blockOffset) * Integer.BYTES;
+	}
+
+	/**
+	 * Returns the number of documents of the lucene index.
+	 * @return
+	 *  number of documents
+	 */
+	public int getDocumentCount()
+	{
+		return documentCount;
+	}
+
+	/**
+	 * Returns the number of terms.
+	 * @return
+	 *  number of terms
+	 */
+	public int getTermCount()
+	{
+		return termCount;
+	}
+
+	/**
+	 * Returns the TF-IDF Score represented by one unit of impact, to turn a sum of impacts back into an approximate score.
+	 * @return
+	 *  score per impact
+	 */
+	public double getScorePerImpact()
+	{
+		return scoreScale / MAX_IMPACT;
+	}
+
+	/**
+	 * Returns the version of the lucene index the impact index was built for.
+	 * @return
+	 *  index version
+	 */
+	public String getIndexVersion()
+	{
+		return indexVersion;
+	}
+}
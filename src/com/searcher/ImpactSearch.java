@@ -0,0 +1,144 @@
+package com.searcher;
+
+import java.util.Set;
+
+import org.apache.lucene.index.Term;
+
+import com.result.TopKCollector;
+
+/**
+ * This class retrieves the top k documents of the custom TF-IDF model score-at-a-time from the ImpactIndex.
+ *
+ * The blocks of all the query terms are processed in decreasing order of impact, and the impact is added to an integer
+ * accumulator of each document of the block, so no floating point work is done per posting. The highest impacts contribute
+ * most of the score, hence the search can stop early once a budget of postings is processed, and the top documents found
+ * so far are returned. With an unlimited budget the result is the exact ranking by the quantized scores.
+ *
+ * The object reuses its accumulators from query to query, hence one object is used per search thread.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ImpactSearch {
+
+	private ImpactIndex impactIndex;
+	private int[] documentImpacts;
+	private int[] touchedDocumentIDs;
+	private int touchedDocumentCount;
+	private long processedPostingCount;
+
+	/* Next block and remaining blocks of each query term, reused from query to query */
+	private int[] nextBlockOffsets;
+	private int[] remainingBlockCounts;
+
+	/**
+	 * Creates the ImpactSearch over the specified impact index.
+	 *
+	 * @param impactIndex
+	 *  impact index shared by the search threads
+	 */
+	public ImpactSearch(ImpactIndex impactIndex)
+	{
+		this.impactIndex = impactIndex;
+		this.documentImpacts = new int[impactIndex.getDocumentCount()];
+		this.touchedDocumentIDs = new int[impactIndex.getDocumentCount()];
+		this.nextBlockOffsets = new int[16];
+		this.remainingBlockCounts = new int[16];
+	}
+
+	/**
+	 * This function collects the top documents of the query into the specified TopKCollector. The score of a document is
+	 * the sum of its impacts multiplied by ImpactIndex.getScorePerImpact(), an approximation of its TF-IDF Score.
+	 *
+	 * @param queryTerms
+	 *  terms of the query
+	 * @param postingsBudget
+	 *  number of postings after which no more blocks are started, Integer.MAX_VALUE to process all the postings
+	 * @param topKCollector
+	 *  empty collector, sorted on return
+	 */
+	public void search(Set<Term> queryTerms, int postingsBudget, TopKCollector topKCollector)
+	{
+		int termCount = 0;
+		if(nextBlockOffsets.length < queryTerms.size())
+		{
+			nextBlockOffsets = new int[queryTerms.size()];
+			remainingBlockCounts = new int[queryTerms.size()];
+		}
+		for(Term queryTerm : queryTerms)
+		{
+			int termOrd = impactIndex.findTerm(queryTerm.bytes());
+			if(termOrd >= 0)
+			{
+				nextBlockOffsets[termCount] = impactIndex.getFirstBlockOffset(termOrd);
+				remainingBlockCounts[termCount] = impactIndex.getBlockCount(termOrd);
+				termCount++;
+			}
+		}
+
+		touchedDocumentCount = 0;
+		processedPostingCount = 0;
+
+		/* Impacts are processed from the highest, and for an impact, in the order of query terms */
+		for(int impact = ImpactIndex.MAX_IMPACT; impact > 0 && processedPostingCount < postingsBudget; impact--)
+		{
+			for(int termIndex = 0; termIndex < termCount && processedPostingCount < postingsBudget; termIndex++)
+			{
+				if(remainingBlockCounts[termIndex] == 0)
+				{
+					continue;
+				}
+				int blockOffset = nextBlockOffsets[termIndex];
+				if(impactIndex.getBlockImpact(blockOffset) != impact)
+				{
+					continue;
+				}
+
+				int blockDocumentCount = impactIndex.getBlockDocumentCount(blockOffset);
+				for(int index = 0; index < blockDocumentCount; index++)
+				{
+					int documentID = impactIndex.getBlockDocumentID(blockOffset, index);
+					if(documentImpacts[documentID] == 0)
+					{
+						touchedDocumentIDs[touchedDocumentCount++] = documentID;
+					}
+					documentImpacts[documentID] += impact;
+				}
+				processedPostingCount += blockDocumentCount;
+
+				nextBlockOffsets[termIndex] = impactIndex.getNextBlockOffset(blockOffset);
+				remainingBlockCounts[termIndex]--;
+			}
+		}
+
+		/* Select the top k, and clear the accumulators for the next query */
+		double scorePerImpact = impactIndex.getScorePerImpact();
+		for(int touchedIndex = 0; touchedIndex < touchedDocumentCount; touchedIndex++)
+		{
+			int documentID = touchedDocumentIDs[touchedIndex];
+			topKCollector.collect(documentID, documentImpacts[documentID] * scorePerImpact);
+			documentImpacts[documentID] = 0;
+		}
+		topKCollector.sort();
+	}
+
+	/**
+	 * Returns the number of postings processed by the last search.
+	 * @return
+	 *  number of postings
+	 */
+	public long getProcessedPostingCount()
+	{
+		return processedPostingCount;
+	}
+
+	/**
+	 * Returns the number of documents scored by the last search.
+	 * @return
+	 *  number of documents
+	 */
+	public int getScoredDocumentCount()
+	{
+		return touchedDocumentCount;
+	}
+}
@@ -0,0 +1,251 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.result.TopKCollector;
+
+/**
+ * This class retrieves the top k documents of the custom TF-IDF model document-at-a-time with MaxScore dynamic pruning.
+ *
+ * Query terms are ordered by the upper bound of their score (see TermUpperBounds). Once the top k is full, the terms
+ * whose cumulative upper bound cannot beat the lowest top k score become non-essential: documents are only generated from
+ * the postings of essential terms, and non-essential postings are advanced only while the document can still enter the top k.
+ *
+ * The score of a document is summed in the same term order as the term-at-a-time path of EasySearch,
+ * and documents are visited in increasing document id, so the results are identical to the exhaustive path.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class MaxScoreSearch {
+
+	/* Relative margin on the upper bounds, covering the rounding difference of summing the bounds in another order */
+	private static final double UPPER_BOUND_MARGIN = 1e-9;
+
+	/**
+	 * This function collects the top documents of the query into the specified TopKCollector.
+	 *
+	 * @param indexSearcher
+	 *  searcher of the session
+	 * @param queryTerms
+	 *  terms of the query, in the order their scores are summed
+	 * @param similarity
+	 *  similarity whose norm encoding is used to decode document lengths
+	 * @param topKCollector
+	 *  empty collector, sorted on return
+	 *
+	 * @throws IOException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public static void search(SessionSearcher indexSearcher, Set<Term> queryTerms, Similarity similarity, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		IndexReader indexReader = indexSearcher.getIndexReader();
+		DocumentLengths documentLengths = indexSearcher.getDocumentLengths(similarity);
+		TermUpperBounds termUpperBounds = indexSearcher.getTermUpperBounds(similarity);
+		int corpusDocumentCount = indexReader.maxDoc();
+
+		int termCount = queryTerms.size();
+		Term[] terms = queryTerms.toArray(new Term[termCount]);
+		double[] iDFScores = new double[termCount];
+		double[] upperBounds = new double[termCount];
+
+		for(int termIndex = 0; termIndex < termCount; termIndex++)
+		{
+			int documentFrequencyForTerm = indexReader.docFreq(terms[termIndex]);
+			if(documentFrequencyForTerm > 0)
+			{
+				iDFScores[termIndex] = Calculator.calculateIDFScore(documentFrequencyForTerm, corpusDocumentCount);
+				upperBounds[termIndex] = termUpperBounds.getMaxTFScore(terms[termIndex].bytes()) * iDFScores[termIndex];
+			}
+		}
+
+		/* Order the terms by increasing upper bound, and keep the cumulative upper bound of the terms up to each position */
+		int[] termOrder = new int[termCount];
+		for(int position = 0; position < termCount; position++)
+		{
+			int termIndex = position;
+			int insertAt = position;
+			while(insertAt > 0 && upperBounds[termOrder[insertAt - 1]] > upperBounds[termIndex])
+			{
+				termOrder[insertAt] = termOrder[insertAt - 1];
+				insertAt--;
+			}
+			termOrder[insertAt] = termIndex;
+		}
+
+		double[] cumulativeUpperBounds = new double[termCount];
+		double cumulativeUpperBound = 0;
+		for(int position = 0; position < termCount; position++)
+		{
+			cumulativeUpperBound += upperBounds[termOrder[position]];
+			cumulativeUpperBounds[position] = cumulativeUpperBound;
+		}
+
+		double[] termScores = new double[termCount];
+		int[] termMatchDocuments = new int[termCount];
+		PostingsEnum[] postings = new PostingsEnum[termCount];
+		QueryMetrics queryMetrics = QueryMetrics.current();
+
+		for(LeafReaderContext leafReaderContext : indexReader.leaves())
+		{
+			for(int position = 0; position < termCount; position++)
+			{
+				postings[position] = MultiFields.getTermDocsEnum(leafReaderContext.reader(), Constants.FIELD_TEXT, terms[termOrder[position]].bytes());
+				if(postings[position] != null)
+				{
+					postings[position].nextDoc();
+				}
+			}
+
+			searchLeaf(leafReaderContext, documentLengths.getLeafDocumentLengths(leafReaderContext.ord), postings, termOrder,
+					iDFScores, cumulativeUpperBounds, termScores, termMatchDocuments, topKCollector, queryMetrics);
+		}
+
+		topKCollector.sort();
+	}
+
+	/**
+	 * This function scores the documents of one segment, skipping the documents which cannot enter the top k,
+	 * and adds the postings scored and candidate documents to the measurements of the query.
+	 */
+	private static void searchLeaf(LeafReaderContext leafReaderContext, double[] leafDocumentLengths, PostingsEnum[] postings, int[] termOrder,
+			double[] iDFScores, double[] cumulativeUpperBounds, double[] termScores, int[] termMatchDocuments, TopKCollector topKCollector,
+			QueryMetrics queryMetrics) throws IOException
+	{
+		long postingCount = 0;
+		long candidateCount = 0;
+		int termCount = termOrder.length;
+		/* termMatchDocuments holds the last document matched by each term, so it needs no clearing per document */
+		Arrays.fill(termMatchDocuments, -1);
+		double threshold = getThreshold(topKCollector);
+		int firstEssential = getFirstEssentialPosition(cumulativeUpperBounds, threshold);
+
+		while(firstEssential < termCount)
+		{
+			/* Next candidate is the smallest document of the essential postings */
+			int leafDocumentID = DocIdSetIterator.NO_MORE_DOCS;
+			for(int position = firstEssential; position < termCount; position++)
+			{
+				if(postings[position] != null && postings[position].docID() < leafDocumentID)
+				{
+					leafDocumentID = postings[position].docID();
+				}
+			}
+			if(leafDocumentID == DocIdSetIterator.NO_MORE_DOCS)
+			{
+				break;
+			}
+
+			double documentLength = leafDocumentLengths[leafDocumentID];
+			double partialScore = 0;
+			candidateCount++;
+
+			for(int position = firstEssential; position < termCount; position++)
+			{
+				PostingsEnum posting = postings[position];
+				if(posting != null && posting.docID() == leafDocumentID)
+				{
+					int termIndex = termOrder[position];
+					termScores[termIndex] = Calculator.calculateTFIDFScoreForTerm(posting.freq(), documentLength, iDFScores[termIndex]);
+					termMatchDocuments[termIndex] = leafDocumentID;
+					partialScore += termScores[termIndex];
+					postingCount++;
+					posting.nextDoc();
+				}
+			}
+
+			/* Non-essential terms, from highest upper bound, only while the document can still enter the top k */
+			boolean canEnter = true;
+			for(int position = firstEssential - 1; position >= 0; position--)
+			{
+				if((partialScore + cumulativeUpperBounds[position]) * (1 + UPPER_BOUND_MARGIN) <= threshold)
+				{
+					canEnter = false;
+					break;
+				}
+
+				PostingsEnum posting = postings[position];
+				if(posting == null)
+				{
+					continue;
+				}
+				if(posting.docID() < leafDocumentID)
+				{
+					posting.advance(leafDocumentID);
+				}
+				if(posting.docID() == leafDocumentID)
+				{
+					int termIndex = termOrder[position];
+					termScores[termIndex] = Calculator.calculateTFIDFScoreForTerm(posting.freq(), documentLength, iDFScores[termIndex]);
+					termMatchDocuments[termIndex] = leafDocumentID;
+					partialScore += termScores[termIndex];
+					postingCount++;
+				}
+			}
+
+			if(canEnter)
+			{
+				/* Sum the scores in query term order, same as the term-at-a-time accumulation */
+				double documentScore = 0;
+				for(int termIndex = 0; termIndex < termCount; termIndex++)
+				{
+					if(termMatchDocuments[termIndex] == leafDocumentID)
+					{
+						documentScore += termScores[termIndex];
+					}
+				}
+				topKCollector.collect(leafDocumentID + leafReaderContext.docBase, documentScore);
+
+				double newThreshold = getThreshold(topKCollector);
+				if(newThreshold != threshold)
+				{
+					threshold = newThreshold;
+					firstEssential = getFirstEssentialPosition(cumulativeUpperBounds, threshold);
+				}
+			}
+		}
+		queryMetrics.addPostingCount(postingCount);
+		queryMetrics.addScoredDocumentCount(candidateCount);
+	}
+
+	/**
+	 * Returns the score a document has to beat to enter the top k, or negative infinity while the top k is not full.
+	 * Documents are visited in increasing document id, so a document with score equal to the threshold never enters.
+	 */
+	private static double getThreshold(TopKCollector topKCollector)
+	{
+		return topKCollector.isFull() ? topKCollector.getMinimumScore() : Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the position of first essential term, i.e. the terms before it together cannot beat the threshold.
+	 */
+	private static int getFirstEssentialPosition(double[] cumulativeUpperBounds, double threshold)
+	{
+		int firstEssential = 0;
+		while(firstEssential < cumulativeUpperBounds.length
+				&& cumulativeUpperBounds[firstEssential] * (1 + UPPER_BOUND_MARGIN) <= threshold)
+		{
+			firstEssential++;
+		}
+		return firstEssential;
+	}
+}
@@ -0,0 +1,504 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.similarities.Similarity.SimScorer;
+import org.apache.lucene.search.similarities.Similarity.SimWeight;
+
+import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.result.RankedResults;
+import com.result.TopKCollector;
+
+/**
+ * This class searches one query with several similarities at once. The postings of every query term are walked once,
+ * and each (document, term frequency) pair is scored by all the similarities, each accumulating into its own scores
+ * and selecting its own top k documents. Comparing N similarities costs one postings traversal instead of N.
+ *
+ * The weights, query norm and coord of every similarity are computed the same way lucene does for the parsed query,
+ * so the results are same as searching the query with IndexSearcher set to each similarity.
+ * Only a term query or a disjunction of term queries (what the QueryParser produces for plain keywords) is scored in one pass;
+ * any other query is searched with each similarity separately.
+ *
+ * TFIDFCustomSimilarity is the custom TF-IDF model of EasySearch, which scores each distinct query term once, hence
+ * it is scored once per term instead of once per clause, and searched with the distinct terms of any other query.
+ *
+ * The segments are searched in parallel on the segment executor of the session, like SegmentParallelSearch: each segment
+ * accumulates into its own range of the score arrays and selects its own top k per similarity, which are merged at the end.
+ *
+ * An instance holds reusable score arrays, so it must be used by one thread at a time.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class MultiSimilaritySearch {
+
+	private SessionSearcher sessionSearcher;
+	private Similarity[] similarities;
+	private IndexSearcher[] similaritySearchers;
+	/* Similarities scoring each distinct term of the query once, however many clauses it has */
+	private boolean[] distinctTermSimilarities;
+	/* Accumulated scores per similarity, and the matching clause count of the documents touched by the query */
+	private double[][] documentScores;
+	private int[] matchingClauseCounts;
+	/* Touched documents of every segment, kept from the doc base of the segment */
+	private int[] touchedDocumentIDs;
+	private TopKCollector[] topKCollectors;
+
+	/* Collector of the segment top k for each thread, the segment executor threads are shared by all the sessions */
+	private static final ThreadLocal<TopKCollector> TOP_K_COLLECTORS = ThreadLocal.withInitial(() -> new TopKCollector(Constants.TOP_K_RESULTS));
+
+	/**
+	 * This class holds the top k documents of one segment for every similarity, and the work done to select them.
+	 */
+	private static class LeafResults
+	{
+		private int[][] documentIDs;
+		private double[][] scores;
+		private long postingCount;
+		private int scoredDocumentCount;
+	}
+
+	/**
+	 * Creates the MultiSimilaritySearch over the specified searcher.
+	 *
+	 * @param sessionSearcher
+	 *  searcher of the session
+	 * @param similarities
+	 *  similarities to score the queries with, at least one
+	 */
+	public MultiSimilaritySearch(SessionSearcher sessionSearcher, Similarity[] similarities)
+	{
+		if(similarities.length == 0)
+		{
+			throw new IllegalArgumentException("At least one similarity is required");
+		}
+
+		int maxDocumentCount = sessionSearcher.getIndexReader().maxDoc();
+		this.sessionSearcher = sessionSearcher;
+		this.similarities = similarities;
+		this.similaritySearchers = new IndexSearcher[similarities.length];
+		this.distinctTermSimilarities = new boolean[similarities.length];
+		this.documentScores = new double[similarities.length][maxDocumentCount];
+		this.topKCollectors = new TopKCollector[similarities.length];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			similaritySearchers[similarityIndex] = sessionSearcher.withSimilarity(similarities[similarityIndex]);
+			distinctTermSimilarities[similarityIndex] = similarities[similarityIndex] instanceof TFIDFCustomSimilarity;
+			topKCollectors[similarityIndex] = new TopKCollector(Constants.TOP_K_RESULTS);
+		}
+		this.matchingClauseCounts = new int[maxDocumentCount];
+		this.touchedDocumentIDs = new int[maxDocumentCount];
+	}
+
+	/**
+	 * This function searches the query and returns the top k documents for every similarity.
+	 *
+	 * @param query
+	 *  parsed query
+	 * @param queryID
+	 *  Query ID
+	 * @param k
+	 *  number of top documents per similarity
+	 * @return
+	 *  ranked results, in the order of similarities
+	 *
+	 * @throws IOException
+	 */
+	public RankedResults[] search(Query query, String queryID, int k) throws IOException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Query rewrittenQuery = sessionSearcher.rewrite(query);
+		Term[] clauseTerms = getClauseTerms(rewrittenQuery);
+		if(clauseTerms == null)
+		{
+			RankedResults[] rankedResults = searchEachSimilarity(rewrittenQuery, queryID, k);
+			queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+			return rankedResults;
+		}
+
+		boolean applyCoord = isCoordApplied(rewrittenQuery);
+		int clauseCount = clauseTerms.length;
+		SimWeight[][] simWeights = getNormalizedWeights(clauseTerms);
+		float[][] coordFactors = getCoordFactors(clauseCount, applyCoord);
+
+		/* Duplicate clauses of a term share the postings walk of its first clause, which adds its score once per clause */
+		int[] termClauseCounts = new int[clauseCount];
+		for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+		{
+			termClauseCounts[getFirstClauseIndex(clauseTerms, clauseIndex)]++;
+		}
+
+		/* The calling thread searches the first segment while the segment executor searches the rest */
+		List<LeafReaderContext> leaves = sessionSearcher.getIndexReader().leaves();
+		ExecutorService segmentExecutor = sessionSearcher.getSegmentExecutor();
+		List<Future<LeafResults>> futureLeafResults = new ArrayList<Future<LeafResults>>(leaves.size());
+		LeafResults[] leafResults = new LeafResults[leaves.size()];
+		try
+		{
+			for(int leafIndex = 1; leafIndex < leaves.size(); leafIndex++)
+			{
+				LeafReaderContext leafReaderContext = leaves.get(leafIndex);
+				if(segmentExecutor == null)
+				{
+					leafResults[leafIndex] = searchLeaf(leafReaderContext, clauseTerms, termClauseCounts, simWeights, coordFactors, k);
+				}
+				else
+				{
+					futureLeafResults.add(segmentExecutor.submit(() -> searchLeaf(leafReaderContext, clauseTerms, termClauseCounts, simWeights, coordFactors, k)));
+				}
+			}
+			if(!leaves.isEmpty())
+			{
+				leafResults[0] = searchLeaf(leaves.get(0), clauseTerms, termClauseCounts, simWeights, coordFactors, k);
+			}
+			for(int futureIndex = 0; futureIndex < futureLeafResults.size(); futureIndex++)
+			{
+				leafResults[futureIndex + 1] = SegmentParallelSearch.getSegmentResults(futureLeafResults.get(futureIndex));
+			}
+		}
+		catch(Throwable e)
+		{
+			/* No segment may still be scoring when the arrays are cleared, so the next query of the thread starts from zero */
+			awaitSegments(futureLeafResults, e);
+			clearScores();
+			throw e;
+		}
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+
+		/* Merge the top k of the segments */
+		startTime = System.nanoTime();
+		RankedResults[] rankedResults = new RankedResults[similarities.length];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			TopKCollector topKCollector = topKCollectors[similarityIndex];
+			topKCollector.reset(k);
+			for(LeafResults segmentResults : leafResults)
+			{
+				int[] documentIDs = segmentResults.documentIDs[similarityIndex];
+				double[] scores = segmentResults.scores[similarityIndex];
+				for(int rankIndex = 0; rankIndex < documentIDs.length; rankIndex++)
+				{
+					topKCollector.collect(documentIDs[rankIndex], scores[rankIndex]);
+				}
+			}
+			topKCollector.sort();
+			rankedResults[similarityIndex] = RankedResults.fromTopKCollector(queryID, topKCollector, true);
+		}
+		for(LeafResults segmentResults : leafResults)
+		{
+			queryMetrics.addPostingCount(segmentResults.postingCount);
+			queryMetrics.addScoredDocumentCount(segmentResults.scoredDocumentCount);
+		}
+		queryMetrics.addStageTime(Stage.TOP_K, startTime);
+		return rankedResults;
+	}
+
+	/**
+	 * This function scores every posting of the clauses in the segment with every similarity, and returns the top k
+	 * documents of the segment for every similarity. The segment owns the range of document ids from its doc base,
+	 * so it writes its own part of the score arrays, keeps its touched documents in its own range of touchedDocumentIDs,
+	 * and clears them on the way.
+	 */
+	private LeafResults searchLeaf(LeafReaderContext leafReaderContext, Term[] clauseTerms, int[] termClauseCounts, SimWeight[][] simWeights,
+			float[][] coordFactors, int k) throws IOException
+	{
+		LeafResults leafResults = new LeafResults();
+		int docBase = leafReaderContext.docBase;
+		int touchedDocumentCount = 0;
+		SimScorer[] simScorers = new SimScorer[similarities.length];
+		for(int clauseIndex = 0; clauseIndex < clauseTerms.length; clauseIndex++)
+		{
+			int termClauseCount = termClauseCounts[clauseIndex];
+			if(termClauseCount == 0)
+			{
+				continue;
+			}
+
+			Term term = clauseTerms[clauseIndex];
+			PostingsEnum posting = MultiFields.getTermDocsEnum(leafReaderContext.reader(), term.field(), term.bytes());
+			if(posting == null)
+			{
+				continue;
+			}
+			for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+			{
+				simScorers[similarityIndex] = similarities[similarityIndex].simScorer(simWeights[similarityIndex][clauseIndex], leafReaderContext);
+			}
+
+			while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+			{
+				int leafDocumentID = posting.docID();
+				int documentID = docBase + leafDocumentID;
+				int termFrequency = posting.freq();
+				leafResults.postingCount++;
+				if(matchingClauseCounts[documentID] == 0)
+				{
+					touchedDocumentIDs[docBase + touchedDocumentCount++] = documentID;
+				}
+				matchingClauseCounts[documentID] += termClauseCount;
+
+				for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+				{
+					float termScore = simScorers[similarityIndex].score(leafDocumentID, termFrequency);
+					double[] similarityDocumentScores = documentScores[similarityIndex];
+					int repeatCount = distinctTermSimilarities[similarityIndex] ? 1 : termClauseCount;
+					for(int repeat = 0; repeat < repeatCount; repeat++)
+					{
+						similarityDocumentScores[documentID] += termScore;
+					}
+				}
+			}
+		}
+		leafResults.scoredDocumentCount = touchedDocumentCount;
+
+		/*
+		 * The collector is reused by the next segment of this thread, so the top k of every similarity are copied out,
+		 * unranked since the merge ranks the documents of all the segments.
+		 */
+		TopKCollector topKCollector = TOP_K_COLLECTORS.get();
+		leafResults.documentIDs = new int[similarities.length][];
+		leafResults.scores = new double[similarities.length][];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			double[] similarityDocumentScores = documentScores[similarityIndex];
+			topKCollector.reset(k);
+			for(int touchedIndex = docBase; touchedIndex < docBase + touchedDocumentCount; touchedIndex++)
+			{
+				int documentID = touchedDocumentIDs[touchedIndex];
+				/* Lucene sums the clause scores as double, and scores the document in float */
+				float documentScore = (float) similarityDocumentScores[documentID] * coordFactors[similarityIndex][matchingClauseCounts[documentID]];
+				similarityDocumentScores[documentID] = 0;
+				topKCollector.collect(documentID, documentScore);
+			}
+
+			leafResults.documentIDs[similarityIndex] = new int[topKCollector.size()];
+			leafResults.scores[similarityIndex] = new double[topKCollector.size()];
+			topKCollector.copyTo(leafResults.documentIDs[similarityIndex], leafResults.scores[similarityIndex]);
+		}
+		for(int touchedIndex = docBase; touchedIndex < docBase + touchedDocumentCount; touchedIndex++)
+		{
+			matchingClauseCounts[touchedDocumentIDs[touchedIndex]] = 0;
+		}
+		return leafResults;
+	}
+
+	/**
+	 * Waits for the segments still being scored after the failure of the query, keeping their own failures with it.
+	 */
+	private static void awaitSegments(List<Future<LeafResults>> futureLeafResults, Throwable failure)
+	{
+		boolean interrupted = false;
+		for(Future<LeafResults> futureResults : futureLeafResults)
+		{
+			while(true)
+			{
+				try
+				{
+					futureResults.get();
+					break;
+				}
+				catch(InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch(ExecutionException e)
+				{
+					if(e.getCause() != failure && e.getCause() != failure.getCause())
+					{
+						failure.addSuppressed(e.getCause());
+					}
+					break;
+				}
+			}
+		}
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the terms of the clauses if the rewritten query is a term query or a pure disjunction of term queries,
+	 * or null for any other query. Rewriting wraps a boosted query or clause in a BoostQuery, so boosts are rejected
+	 * with the other kinds of queries.
+	 */
+	static Term[] getClauseTerms(Query query)
+	{
+		if(query instanceof TermQuery)
+		{
+			return new Term[] { ((TermQuery) query).getTerm() };
+		}
+		if(query instanceof BooleanQuery == false)
+		{
+			return null;
+		}
+
+		BooleanQuery booleanQuery = (BooleanQuery) query;
+		if(booleanQuery.getMinimumNumberShouldMatch() != 0)
+		{
+			return null;
+		}
+		Term[] clauseTerms = new Term[booleanQuery.clauses().size()];
+		int clauseIndex = 0;
+		for(BooleanClause booleanClause : booleanQuery)
+		{
+			Query clauseQuery = booleanClause.getQuery();
+			if(booleanClause.getOccur() != BooleanClause.Occur.SHOULD || clauseQuery instanceof TermQuery == false)
+			{
+				return null;
+			}
+			clauseTerms[clauseIndex++] = ((TermQuery) clauseQuery).getTerm();
+		}
+		return clauseTerms;
+	}
+
+	/**
+	 * Returns the index of the first clause with the same term as the specified clause.
+	 */
+	static int getFirstClauseIndex(Term[] clauseTerms, int clauseIndex)
+	{
+		for(int firstClauseIndex = 0; firstClauseIndex < clauseIndex; firstClauseIndex++)
+		{
+			if(clauseTerms[firstClauseIndex].equals(clauseTerms[clauseIndex]))
+			{
+				return firstClauseIndex;
+			}
+		}
+		return clauseIndex;
+	}
+
+	/**
+	 * Computes the weight of every clause for every similarity from the collection and term statistics, which are read once.
+	 */
+	private SimWeight[][] getNormalizedWeights(Term[] clauseTerms) throws IOException
+	{
+		int clauseCount = clauseTerms.length;
+		CollectionStatistics[] collectionStatistics = new CollectionStatistics[clauseCount];
+		TermStatistics[] termStatistics = new TermStatistics[clauseCount];
+		for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+		{
+			Term term = clauseTerms[clauseIndex];
+			TermContext termContext = TermContext.build(sessionSearcher.getTopReaderContext(), term);
+			collectionStatistics[clauseIndex] = sessionSearcher.collectionStatistics(term.field());
+			termStatistics[clauseIndex] = sessionSearcher.termStatistics(term, termContext);
+		}
+
+		SimWeight[][] simWeights = new SimWeight[similarities.length][];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			simWeights[similarityIndex] = getNormalizedWeights(similarities[similarityIndex], collectionStatistics, termStatistics);
+		}
+		return simWeights;
+	}
+
+	/**
+	 * Computes the weight of every clause for the similarity, and normalizes them with the query norm of the similarity,
+	 * same as IndexSearcher.createNormalizedWeight.
+	 */
+	static SimWeight[] getNormalizedWeights(Similarity similarity, CollectionStatistics[] collectionStatistics, TermStatistics[] termStatistics)
+	{
+		int clauseCount = termStatistics.length;
+		SimWeight[] simWeights = new SimWeight[clauseCount];
+		float valueForNormalization = 0;
+		for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+		{
+			simWeights[clauseIndex] = similarity.computeWeight(collectionStatistics[clauseIndex], termStatistics[clauseIndex]);
+			valueForNormalization += simWeights[clauseIndex].getValueForNormalization();
+		}
+
+		float queryNorm = similarity.queryNorm(valueForNormalization);
+		if(Float.isInfinite(queryNorm) || Float.isNaN(queryNorm))
+		{
+			queryNorm = 1.0f;
+		}
+		for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+		{
+			simWeights[clauseIndex].normalize(queryNorm, 1.0f);
+		}
+		return simWeights;
+	}
+
+	/**
+	 * Returns the coord factor of every similarity for every number of matching clauses, same as BooleanWeight.
+	 */
+	private float[][] getCoordFactors(int clauseCount, boolean applyCoord)
+	{
+		float[][] coordFactors = new float[similarities.length][];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			coordFactors[similarityIndex] = getCoordFactors(similarities[similarityIndex], clauseCount, applyCoord);
+		}
+		return coordFactors;
+	}
+
+	/**
+	 * Returns the coord factor of the similarity for every number of matching clauses, same as BooleanWeight.
+	 */
+	static float[] getCoordFactors(Similarity similarity, int clauseCount, boolean applyCoord)
+	{
+		float[] coordFactors = new float[clauseCount + 1];
+		for(int overlap = 1; overlap <= clauseCount; overlap++)
+		{
+			coordFactors[overlap] = (applyCoord && clauseCount > 1) ? similarity.coord(overlap, clauseCount) : 1f;
+		}
+		return coordFactors;
+	}
+
+	/**
+	 * Returns true if coord applies to the rewritten query: it applies to a boolean query
+	 * with coord enabled only, a single term query is scored without it.
+	 */
+	static boolean isCoordApplied(Query rewrittenQuery)
+	{
+		return rewrittenQuery instanceof BooleanQuery && ((BooleanQuery) rewrittenQuery).isCoordDisabled() == false;
+	}
+
+	/**
+	 * Clears all the scores and matching clause counts, which are left over only when the query failed in some segment.
+	 */
+	private void clearScores()
+	{
+		Arrays.fill(matchingClauseCounts, 0);
+		for(double[] similarityDocumentScores : documentScores)
+		{
+			Arrays.fill(similarityDocumentScores, 0);
+		}
+	}
+
+	/**
+	 * Searches the query with each similarity separately, for the queries which cannot be scored in one pass.
+	 */
+	private RankedResults[] searchEachSimilarity(Query query, String queryID, int k) throws IOException
+	{
+		RankedResults[] rankedResults = new RankedResults[similarities.length];
+		for(int similarityIndex = 0; similarityIndex < similarities.length; similarityIndex++)
+		{
+			IndexSearcher similaritySearcher = similaritySearchers[similarityIndex];
+			Query similarityQuery = distinctTermSimilarities[similarityIndex] ? TFIDFCustomSimilarity.createDistinctTermQuery(similaritySearcher, query) : query;
+			rankedResults[similarityIndex] = RankedResults.fromTopDocs(queryID, similaritySearcher.search(similarityQuery, k));
+		}
+		return rankedResults;
+	}
+}
@@ -0,0 +1,221 @@
+package com.searcher;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.constants.Constants;
+import com.evaluation.QueryEvaluation;
+import com.evaluation.RunEvaluation;
+import com.evaluation.RunEvaluationCollector;
+import com.metrics.PipelineMetrics;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
+import com.result.RankedResults;
+
+/**
+ * This class sweeps the parameters of the similarities over the trec topics: every configuration of the parameter grids
+ * (see SimilarityFactory) retrieves the top 1000 documents of the short and long query of every topic, and is evaluated.
+ *
+ * The topics are streamed through the TopicPipeline and searched in parallel. The postings and statistics of each query are read once into a PostingsSnapshot,
+ * which is replayed for every configuration, so a grid of N configurations costs one postings traversal per query
+ * and N passes over the decoded postings, rather than N searches. The results of every configuration are the same
+ * as searching the query with IndexSearcher set to its similarity. The queries of every configuration are evaluated as
+ * they are written, so only their measures are kept rather than the results of all the configurations.
+ *
+ * For every configuration the measures are written to [configuration].eval in Constants.PARAMETER_SWEEP_OUTPUT_DIR,
+ * in the format of trec_eval, along with its run files if Constants.WRITE_RUN_FILES is set; and the main measures of
+ * all the configurations are written as a table to sweep-summary.txt.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ParameterSweep {
+
+	private static final String SUMMARY_FILE_NAME = "sweep-summary.txt";
+
+	/**
+	 * This function retrieves the top 1000 documents of every topic for every configuration of the parameter grids,
+	 * and writes the measures of every configuration.
+	 *
+	 * @param parameterGrids
+	 *  parameter grids, e.g. "BM25(k1=0.5:1.5:0.1,b=0.25|0.5|0.75)"
+	 *
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public static void processTop1KResults(String[] parameterGrids) throws IOException, ParseException
+	{
+		List<String> configurations = new ArrayList<String>();
+		for(String parameterGrid : parameterGrids)
+		{
+			configurations.addAll(SimilarityFactory.expandGrid(parameterGrid));
+		}
+		Similarity[] similarities = new Similarity[configurations.size()];
+		for(int configurationIndex = 0; configurationIndex < similarities.length; configurationIndex++)
+		{
+			similarities[configurationIndex] = SimilarityFactory.create(configurations.get(configurationIndex));
+		}
+
+		SearchSession searchSession = SearchSession.getSharedSession();
+		searchSession.maybeRefresh();
+		SessionSearcher sessionSearcher = searchSession.acquire();
+		long startTime = System.nanoTime();
+		RunMetrics runMetrics = SearchTRECTTopics.createRunMetrics("ParameterSweep");
+		PipelineMetrics pipelineMetrics = SearchTRECTTopics.createPipelineMetrics("ParameterSweep");
+
+		// 1. Stream the queries from trec topics through the pipeline
+		try(TrecTopicStream topicStream = new TrecTopicStream(Constants.TREC_TOPIC_FILE_PATH);
+				TopicPipeline topicPipeline = new TopicPipeline(pipelineMetrics, runMetrics))
+		{
+			RunEvaluationCollector runEvaluationCollector = SearchTRECTTopics.createRunEvaluationCollector(sessionSearcher, similarities.length);
+			String[] shortOutputFilePaths = new String[similarities.length];
+			String[] longOutputFilePaths = new String[similarities.length];
+			for(int configurationIndex = 0; configurationIndex < similarities.length; configurationIndex++)
+			{
+				if(Constants.WRITE_RUN_FILES)
+				{
+					shortOutputFilePaths[configurationIndex] = Constants.PARAMETER_SWEEP_OUTPUT_DIR + "/" + configurations.get(configurationIndex) + "ShortQuery" + ".txt";
+					longOutputFilePaths[configurationIndex] = Constants.PARAMETER_SWEEP_OUTPUT_DIR + "/" + configurations.get(configurationIndex) + "LongQuery" + ".txt";
+				}
+			}
+			ThreadLocal<SnapshotSearch> snapshotSearches = ThreadLocal.withInitial(() -> new SnapshotSearch(sessionSearcher, Constants.TOP_K_RESULTS));
+
+			// 2. Search every query once, and score it with every configuration
+			topicPipeline.process(topicStream, (queryString, queryID) -> {
+				long parseStartTime = System.nanoTime();
+				Query query = searchSession.parseQuery(queryString);
+				QueryMetrics.current().addStageTime(Stage.PARSE, parseStartTime);
+				return searchQuery(sessionSearcher, query, queryID, similarities, snapshotSearches.get(), Constants.TOP_K_RESULTS);
+			}, sessionSearcher.getDocNoLookup(), shortOutputFilePaths, longOutputFilePaths, runEvaluationCollector);
+
+			// 3. Write the measures of every configuration, evaluated as the results were written
+			writeEvaluations(configurations, runEvaluationCollector);
+			SearchTRECTTopics.writeRunMetrics(sessionSearcher, runMetrics);
+			System.out.println(pipelineMetrics);
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+		System.out.println(String.format(Locale.ROOT, "Swept %d configurations over %d queries in %.1f seconds, %d postings read",
+				similarities.length, runMetrics.getQueryCount(), (System.nanoTime() - startTime) / 1e9, runMetrics.getPostingCount()));
+	}
+
+	/**
+	 * This function returns the top k results of the query for every configuration. The postings of the query are read
+	 * once and replayed for every configuration; a query which cannot be snapshotted is searched for every configuration.
+	 *
+	 * @return
+	 *  top k results of the query, one per configuration
+	 */
+	static RankedResults[] searchQuery(SessionSearcher sessionSearcher, Query query, String queryID, Similarity[] similarities,
+			SnapshotSearch snapshotSearch, int k) throws IOException
+	{
+		RankedResults[] rankedResults = new RankedResults[similarities.length];
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		PostingsSnapshot postingsSnapshot = PostingsSnapshot.create(sessionSearcher, query);
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		if(postingsSnapshot != null)
+		{
+			queryMetrics.addPostingCount(postingsSnapshot.getPostingCount());
+			for(int configurationIndex = 0; configurationIndex < similarities.length; configurationIndex++)
+			{
+				rankedResults[configurationIndex] = snapshotSearch.search(postingsSnapshot, similarities[configurationIndex], queryID, k);
+			}
+			return rankedResults;
+		}
+
+		startTime = System.nanoTime();
+		for(int configurationIndex = 0; configurationIndex < similarities.length; configurationIndex++)
+		{
+			IndexSearcher similaritySearcher = sessionSearcher.withSimilarity(similarities[configurationIndex]);
+			Query similarityQuery = (similarities[configurationIndex] instanceof TFIDFCustomSimilarity) ? TFIDFCustomSimilarity.createDistinctTermQuery(similaritySearcher, query) : query;
+			rankedResults[configurationIndex] = RankedResults.fromTopDocs(queryID, similaritySearcher.search(similarityQuery, k));
+		}
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		return rankedResults;
+	}
+
+	/**
+	 * This function writes the measures of each configuration, evaluated against the relevance judgments at
+	 * Constants.TREC_QRELS_FILE_PATH, and the summary table. Nothing is written if there is no qrels file.
+	 */
+	private static void writeEvaluations(List<String> configurations, RunEvaluationCollector runEvaluationCollector) throws IOException
+	{
+		if(runEvaluationCollector == null)
+		{
+			System.out.println("No qrels file at " + Constants.TREC_QRELS_FILE_PATH + ", the configurations are not evaluated");
+			return;
+		}
+
+		File outputDirectory = new File(Constants.PARAMETER_SWEEP_OUTPUT_DIR);
+		outputDirectory.mkdirs();
+		int precisionAt10Index = 1;
+
+		String bestConfiguration = null;
+		double bestMeanAveragePrecision = -1;
+		try(Writer summaryWriter = new FileWriter(new File(outputDirectory, SUMMARY_FILE_NAME)))
+		{
+			summaryWriter.write(String.format(Locale.ROOT, "%-40s\t%s\t%s\t%s\t%s\t%s\t%s%n", "configuration",
+					"short_map", "short_P_" + QueryEvaluation.PRECISION_CUTOFFS[precisionAt10Index], "short_ndcg",
+					"long_map", "long_P_" + QueryEvaluation.PRECISION_CUTOFFS[precisionAt10Index], "long_ndcg"));
+			for(int configurationIndex = 0; configurationIndex < configurations.size(); configurationIndex++)
+			{
+				String configuration = configurations.get(configurationIndex);
+				RunEvaluation shortQueryEvaluation = runEvaluationCollector.getShortQueryEvaluation(configurationIndex);
+				RunEvaluation longQueryEvaluation = runEvaluationCollector.getLongQueryEvaluation(configurationIndex);
+				try(Writer evaluationWriter = new FileWriter(new File(outputDirectory, configuration + ".eval")))
+				{
+					evaluationWriter.write(configuration + "ShortQuery" + System.lineSeparator() + shortQueryEvaluation + System.lineSeparator());
+					evaluationWriter.write(configuration + "LongQuery" + System.lineSeparator() + longQueryEvaluation);
+				}
+
+				summaryWriter.write(String.format(Locale.ROOT, "%-40s\t%.4f\t%.4f\t%.4f\t%.4f\t%.4f\t%.4f%n", configuration,
+						shortQueryEvaluation.getMeanAveragePrecision(), shortQueryEvaluation.getMeanPrecision(precisionAt10Index), shortQueryEvaluation.getMeanNDCG(),
+						longQueryEvaluation.getMeanAveragePrecision(), longQueryEvaluation.getMeanPrecision(precisionAt10Index), longQueryEvaluation.getMeanNDCG()));
+				if(shortQueryEvaluation.getMeanAveragePrecision() > bestMeanAveragePrecision)
+				{
+					bestMeanAveragePrecision = shortQueryEvaluation.getMeanAveragePrecision();
+					bestConfiguration = configuration;
+				}
+			}
+		}
+		System.out.println(String.format(Locale.ROOT, "Best configuration for short queries: %s, map %.4f", bestConfiguration, bestMeanAveragePrecision));
+	}
+
+	/**
+	 * Main function to sweep the parameter grids given as arguments, or the default grids of BM25, LMDirichlet and LMJelinek.
+	 * @param args
+	 *  parameter grids, e.g. "BM25(k1=0.5:1.5:0.1,b=0.25|0.5|0.75)"
+	 */
+	public static void main(String[] args) {
+
+		String[] parameterGrids = args.length > 0 ? args : new String[] {
+				"BM25(k1=0.3:1.2:0.1,b=0.1:1.0:0.1)",
+				"LMDirichlet(mu=500:3000:250)",
+				"LMJelinek(lambda=0.1:0.9:0.1)" };
+		try
+		{
+			processTop1KResults(parameterGrids);
+			SearchSession.closeSharedSession();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		catch (ParseException e) {
+			e.printStackTrace();
+		}
+	}
+}
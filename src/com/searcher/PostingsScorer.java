@@ -0,0 +1,67 @@
+package com.searcher;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.result.ScoreSink;
+
+/**
+ * This class scores the postings of a term with the custom TF-IDF model of EasySearch, the inner loop shared by
+ * the retrievals which walk the postings segment by segment (segment parallel, bounded, batch and sharded).
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class PostingsScorer {
+
+	private PostingsScorer()
+	{
+	}
+
+	/**
+	 * This function scores every posting of the term in the segment, and adds the score to the specified sink
+	 * under the document id in the reader of the segment, until the sink refuses a document.
+	 *
+	 * @param leafReaderContext
+	 *  segment of the reader
+	 * @param term
+	 *  query term
+	 * @param iDFScoreForTerm
+	 *  IDF of the term in the collection
+	 * @param leafDocumentLengths
+	 *  length of every document of the segment
+	 * @param scoreSink
+	 *  receives the score of every posting
+	 * @return
+	 *  number of postings read, including the refused one
+	 *
+	 * @throws IOException
+	 */
+	public static long scorePostings(LeafReaderContext leafReaderContext, Term term, double iDFScoreForTerm, double[] leafDocumentLengths,
+			ScoreSink scoreSink) throws IOException
+	{
+		PostingsEnum posting = MultiFields.getTermDocsEnum(leafReaderContext.reader(), Constants.FIELD_TEXT, term.bytes());
+		if(posting == null)
+		{
+			return 0;
+		}
+		int docBase = leafReaderContext.docBase;
+		long postingCount = 0;
+		while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+		{
+			double relevanceScoreForTerm = Calculator.calculateTFIDFScoreForTerm(posting.freq(), leafDocumentLengths[posting.docID()], iDFScoreForTerm);
+			postingCount++;
+			if(!scoreSink.addScore(docBase + posting.docID(), relevanceScoreForTerm))
+			{
+				break;
+			}
+		}
+		return postingCount;
+	}
+}
@@ -0,0 +1,222 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermStatistics;
+
+/**
+ * This class holds everything a lucene similarity needs to score one query, read once from the index: the collection
+ * and term statistics of every clause (document count, document frequency, collection term frequency), and the decoded
+ * postings (document id, term frequency) of every distinct term in every segment. The document lengths are the norms,
+ * which stay in memory in the reader.
+ *
+ * A snapshot is replayed by SnapshotSearch with any number of similarities, e.g. all the points of a parameter grid,
+ * without walking the postings again. The scores are same as searching the query with IndexSearcher.
+ * Only a term query or a disjunction of term queries is snapshotted, like MultiSimilaritySearch scores in one pass.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class PostingsSnapshot {
+
+	private Query rewrittenQuery;
+	private Term[] clauseTerms;
+	/* Number of clauses of the term of each clause, 0 for the duplicate clauses of a term */
+	private int[] termClauseCounts;
+	private boolean applyCoord;
+	private CollectionStatistics[] collectionStatistics;
+	private TermStatistics[] termStatistics;
+
+	/* Postings per segment, per clause; null for a duplicate clause, or a term missing in the segment */
+	private int[][][] leafDocumentIDs;
+	private int[][][] termFrequencies;
+	private long postingCount;
+
+	private PostingsSnapshot()
+	{
+	}
+
+	/**
+	 * This function reads the statistics and postings of the query.
+	 *
+	 * @param sessionSearcher
+	 *  searcher of the session, the snapshot is replayed on the same searcher
+	 * @param query
+	 *  parsed query
+	 * @return
+	 *  snapshot of the query, or null if the query is not a term query or a disjunction of term queries
+	 *
+	 * @throws IOException
+	 */
+	public static PostingsSnapshot create(SessionSearcher sessionSearcher, Query query) throws IOException
+	{
+		Query rewrittenQuery = sessionSearcher.rewrite(query);
+		Term[] clauseTerms = MultiSimilaritySearch.getClauseTerms(rewrittenQuery);
+		if(clauseTerms == null)
+		{
+			return null;
+		}
+
+		PostingsSnapshot postingsSnapshot = new PostingsSnapshot();
+		int clauseCount = clauseTerms.length;
+		postingsSnapshot.rewrittenQuery = rewrittenQuery;
+		postingsSnapshot.clauseTerms = clauseTerms;
+		postingsSnapshot.applyCoord = MultiSimilaritySearch.isCoordApplied(rewrittenQuery);
+		postingsSnapshot.termClauseCounts = new int[clauseCount];
+		postingsSnapshot.collectionStatistics = new CollectionStatistics[clauseCount];
+		postingsSnapshot.termStatistics = new TermStatistics[clauseCount];
+		for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+		{
+			Term term = clauseTerms[clauseIndex];
+			postingsSnapshot.termClauseCounts[MultiSimilaritySearch.getFirstClauseIndex(clauseTerms, clauseIndex)]++;
+			TermContext termContext = TermContext.build(sessionSearcher.getTopReaderContext(), term);
+			postingsSnapshot.collectionStatistics[clauseIndex] = sessionSearcher.collectionStatistics(term.field());
+			postingsSnapshot.termStatistics[clauseIndex] = sessionSearcher.termStatistics(term, termContext);
+		}
+
+		List<LeafReaderContext> leaves = sessionSearcher.getIndexReader().leaves();
+		postingsSnapshot.leafDocumentIDs = new int[leaves.size()][clauseCount][];
+		postingsSnapshot.termFrequencies = new int[leaves.size()][clauseCount][];
+		for(LeafReaderContext leafReaderContext : leaves)
+		{
+			for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+			{
+				if(postingsSnapshot.termClauseCounts[clauseIndex] == 0)
+				{
+					continue;
+				}
+				Term term = clauseTerms[clauseIndex];
+				PostingsEnum posting = MultiFields.getTermDocsEnum(leafReaderContext.reader(), term.field(), term.bytes());
+				if(posting == null)
+				{
+					continue;
+				}
+
+				/* The document frequency in the index bounds the postings of the segment, the arrays are trimmed afterwards */
+				int maxCount = (int) Math.min(postingsSnapshot.termStatistics[clauseIndex].docFreq(), leafReaderContext.reader().maxDoc());
+				int[] documentIDs = new int[maxCount];
+				int[] frequencies = new int[maxCount];
+				int count = 0;
+				while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+				{
+					documentIDs[count] = posting.docID();
+					frequencies[count] = posting.freq();
+					count++;
+				}
+				postingsSnapshot.leafDocumentIDs[leafReaderContext.ord][clauseIndex] = (count == maxCount) ? documentIDs : Arrays.copyOf(documentIDs, count);
+				postingsSnapshot.termFrequencies[leafReaderContext.ord][clauseIndex] = (count == maxCount) ? frequencies : Arrays.copyOf(frequencies, count);
+				postingsSnapshot.postingCount += count;
+			}
+		}
+		return postingsSnapshot;
+	}
+
+	/**
+	 * Returns the rewritten query the snapshot was read for.
+	 * @return
+	 *  rewritten query
+	 */
+	public Query getRewrittenQuery()
+	{
+		return rewrittenQuery;
+	}
+
+	/**
+	 * Returns the number of clauses of the query.
+	 * @return
+	 *  number of clauses
+	 */
+	public int getClauseCount()
+	{
+		return clauseTerms.length;
+	}
+
+	/**
+	 * Returns the number of postings held by the snapshot.
+	 * @return
+	 *  number of postings
+	 */
+	public long getPostingCount()
+	{
+		return postingCount;
+	}
+
+	/**
+	 * Returns the number of clauses of the term of the specified clause if it is the first clause of the term, 0 otherwise.
+	 * @param clauseIndex
+	 *  index of the clause
+	 * @return
+	 *  number of clauses of the term
+	 */
+	int getTermClauseCount(int clauseIndex)
+	{
+		return termClauseCounts[clauseIndex];
+	}
+
+	/**
+	 * Returns true if coord applies to the query.
+	 * @return
+	 *  true if coord applies
+	 */
+	boolean isCoordApplied()
+	{
+		return applyCoord;
+	}
+
+	/**
+	 * Returns the collection statistics of the field of every clause.
+	 * @return
+	 *  collection statistics per clause
+	 */
+	CollectionStatistics[] getCollectionStatistics()
+	{
+		return collectionStatistics;
+	}
+
+	/**
+	 * Returns the term statistics of every clause.
+	 * @return
+	 *  term statistics per clause
+	 */
+	TermStatistics[] getTermStatistics()
+	{
+		return termStatistics;
+	}
+
+	/**
+	 * Returns the segment document ids of the postings of the clause in the segment.
+	 * @param leafOrd
+	 *  ordinal of the segment
+	 * @param clauseIndex
+	 *  index of the clause
+	 * @return
+	 *  document ids in increasing order, or null if the clause has no postings in the segment
+	 */
+	int[] getLeafDocumentIDs(int leafOrd, int clauseIndex)
+	{
+		return leafDocumentIDs[leafOrd][clauseIndex];
+	}
+
+	/**
+	 * Returns the term frequencies of the postings of the clause in the segment.
+	 * @param leafOrd
+	 *  ordinal of the segment
+	 * @param clauseIndex
+	 *  index of the clause
+	 * @return
+	 *  term frequencies in the order of document ids, or null if the clause has no postings in the segment
+	 */
+	int[] getTermFrequencies(int leafOrd, int clauseIndex)
+	{
+		return termFrequencies[leafOrd][clauseIndex];
+	}
+}
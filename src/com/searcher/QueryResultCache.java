@@ -0,0 +1,298 @@
+package com.searcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.constants.Constants;
+import com.result.RankedResults;
+
+/**
+ * This class caches the ranked top documents of queries, so rerunning the same topics on an unchanged index is answered
+ * without touching the postings. The cache can be saved to a file and loaded by the next run.
+ *
+ * A query is cached under the analyzed query (the terms of the parsed query in order, as the query prints them), the
+ * similarity class and its parameters, the retrieval method and k. Hence the same query text of another topic hits the
+ * cache, and a change of similarity configuration misses it. The results are held for one index version; they are
+ * dropped when the cache is used with another index version, as the lucene document ids would not be valid anymore.
+ *
+ * The cache keeps at most the specified number of queries, and evicts the least recently used queries first.
+ * The cache is thread-safe.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class QueryResultCache {
+
+	private static final int FILE_MAGIC = 0x51524331;
+	private static final int FILE_FORMAT_VERSION = 1;
+
+	private int maxQueryCount;
+	private String indexVersion;
+	private LinkedHashMap<String, RankedResults> rankedResultsByKey;
+
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * Creates the cache holding at most the specified number of queries.
+	 *
+	 * @param maxQueryCount
+	 *  maximum number of cached queries, 0 disables the cache
+	 */
+	public QueryResultCache(int maxQueryCount)
+	{
+		this.maxQueryCount = maxQueryCount;
+		/* Access order with removeEldestEntry makes the map a LRU cache */
+		this.rankedResultsByKey = new LinkedHashMap<String, RankedResults>(64, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, RankedResults> eldest)
+			{
+				return size() > QueryResultCache.this.maxQueryCount;
+			}
+		};
+	}
+
+	/**
+	 * This function creates the cache key of the parsed query searched with the specified similarity and retrieval method.
+	 *
+	 * @param query
+	 *  parsed query
+	 * @param similarity
+	 *  similarity the query is scored with
+	 * @param retrievalMethod
+	 *  name of the way the top documents are retrieved
+	 * @param k
+	 *  number of top documents
+	 * @return
+	 *  cache key
+	 */
+	public static String createKey(Query query, Similarity similarity, String retrievalMethod, int k)
+	{
+		/* Similarities print their parameters, e.g. BM25(k1=1.2,b=0.75) */
+		return retrievalMethod + "|" + k + "|" + similarity.getClass().getName() + "|" + similarity + "|" + query.toString(Constants.FIELD_TEXT);
+	}
+
+	/**
+	 * Returns the cached results of the query for the specified query ID, or null if they are not cached.
+	 *
+	 * @param indexVersion
+	 *  version of the index searched
+	 * @param key
+	 *  cache key of the query
+	 * @param queryID
+	 *  Query ID of the returned results
+	 * @return
+	 *  cached results, or null
+	 */
+	public synchronized RankedResults get(String indexVersion, String key, String queryID)
+	{
+		useIndexVersion(indexVersion);
+		RankedResults rankedResults = rankedResultsByKey.get(key);
+		if(rankedResults == null)
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return rankedResults.withQueryID(queryID);
+	}
+
+	/**
+	 * Caches the results of the query.
+	 *
+	 * @param indexVersion
+	 *  version of the index searched
+	 * @param key
+	 *  cache key of the query
+	 * @param rankedResults
+	 *  results of the query
+	 */
+	public synchronized void put(String indexVersion, String key, RankedResults rankedResults)
+	{
+		useIndexVersion(indexVersion);
+		if(maxQueryCount > 0)
+		{
+			rankedResultsByKey.put(key, rankedResults);
+		}
+	}
+
+	/**
+	 * Drops the cached results if they belong to another index version.
+	 */
+	private void useIndexVersion(String indexVersion)
+	{
+		if(!indexVersion.equals(this.indexVersion))
+		{
+			rankedResultsByKey.clear();
+			this.indexVersion = indexVersion;
+		}
+	}
+
+	/**
+	 * This function loads the results saved to the specified file, if the file exists and was saved for the specified
+	 * index version. Otherwise the cache is left as it is.
+	 *
+	 * @param cacheFilePath
+	 *  path of the cache file
+	 * @param indexVersion
+	 *  version of the index searched
+	 * @return
+	 *  number of queries loaded
+	 *
+	 * @throws IOException
+	 */
+	public synchronized int load(String cacheFilePath, String indexVersion) throws IOException
+	{
+		File cacheFile = new File(cacheFilePath);
+		if(!cacheFile.isFile())
+		{
+			return 0;
+		}
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))
+		{
+			if(input.readInt() != FILE_MAGIC || input.readInt() != FILE_FORMAT_VERSION || !indexVersion.equals(input.readUTF()))
+			{
+				/* Saved by another version of the application or for another index */
+				return 0;
+			}
+
+			useIndexVersion(indexVersion);
+			int queryCount = input.readInt();
+			for(int queryIndex = 0; queryIndex < queryCount; queryIndex++)
+			{
+				String key = readString(input);
+				boolean singlePrecisionScores = input.readBoolean();
+				int size = input.readInt();
+				int[] documentIDs = new int[size];
+				double[] scores = new double[size];
+				for(int rankIndex = 0; rankIndex < size; rankIndex++)
+				{
+					documentIDs[rankIndex] = input.readInt();
+					scores[rankIndex] = input.readDouble();
+				}
+				put(indexVersion, key, RankedResults.fromArrays(null, documentIDs, scores, singlePrecisionScores));
+			}
+			return queryCount;
+		}
+	}
+
+	/**
+	 * This function saves the cached results to the specified file. The file is written aside and moved over the
+	 * previous file, so an interrupted save never leaves a truncated cache file.
+	 *
+	 * @param cacheFilePath
+	 *  path of the cache file
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save(String cacheFilePath) throws IOException
+	{
+		if(indexVersion == null)
+		{
+			return;
+		}
+
+		File cacheFile = new File(cacheFilePath);
+		File parentDirectory = cacheFile.getAbsoluteFile().getParentFile();
+		if(parentDirectory != null)
+		{
+			parentDirectory.mkdirs();
+		}
+		File temporaryFile = new File(cacheFilePath + ".tmp");
+
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile))))
+		{
+			output.writeInt(FILE_MAGIC);
+			output.writeInt(FILE_FORMAT_VERSION);
+			output.writeUTF(indexVersion);
+			output.writeInt(rankedResultsByKey.size());
+			for(Map.Entry<String, RankedResults> entry : rankedResultsByKey.entrySet())
+			{
+				RankedResults rankedResults = entry.getValue();
+				writeString(output, entry.getKey());
+				output.writeBoolean(rankedResults.isSinglePrecision());
+				output.writeInt(rankedResults.size());
+				for(int rankIndex = 0; rankIndex < rankedResults.size(); rankIndex++)
+				{
+					output.writeInt(rankedResults.getDocumentID(rankIndex));
+					output.writeDouble(rankedResults.getScore(rankIndex));
+				}
+			}
+		}
+		Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Writes the string as UTF-8 with its length, as a long query exceeds the 64KB limit of writeUTF.
+	 */
+	private static void writeString(DataOutputStream output, String string) throws IOException
+	{
+		byte[] bytes = string.getBytes("UTF-8");
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Reads the string written by writeString.
+	 */
+	private static String readString(DataInputStream input) throws IOException
+	{
+		byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Returns the number of lookups which found the results in the cache.
+	 * @return
+	 *  hit count
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of lookups which did not find the results in the cache.
+	 * @return
+	 *  miss count
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 * @return
+	 *  number of cached queries
+	 */
+	public synchronized int size()
+	{
+		return rankedResultsByKey.size();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "QueryResultCache[queries=" + rankedResultsByKey.size() + ", maxQueries=" + maxQueryCount
+				+ ", hits=" + hitCount + ", misses=" + missCount + "]";
+	}
+}
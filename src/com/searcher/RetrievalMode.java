@@ -0,0 +1,30 @@
+package com.searcher;
+
+/**
+ * This enum lists the ways the custom TF-IDF model can retrieve the top documents of a query.
+ * @author Anwar Shaikh
+ *
+ */
+public enum RetrievalMode {
+
+	/** Scores every posting of every query term, term-at-a-time */
+	EXHAUSTIVE,
+
+	/** Scores document-at-a-time and skips the documents which cannot enter the top k, with identical results */
+	MAX_SCORE,
+
+	/** Sums the precomputed, quantized impacts of the ImpactIndex score-at-a-time, with approximate results */
+	IMPACT_ORDERED,
+
+	/** Scores all the queries of the run together term-at-a-time, decoding the postings of each term once, with identical results */
+	BATCH,
+
+	/** Scores every posting like EXHAUSTIVE, with the segments of the query searched in parallel, with identical results */
+	SEGMENT_PARALLEL,
+
+	/** Scores term-at-a-time from the rarest term into at most Constants.ACCUMULATOR_LIMIT documents, and stops at the limit */
+	BOUNDED_QUIT,
+
+	/** Scores term-at-a-time from the rarest term into at most Constants.ACCUMULATOR_LIMIT documents, and only updates them past the limit */
+	BOUNDED_CONTINUE
+}
@@ -0,0 +1,554 @@
+package com.searcher;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.benchmark.quality.QualityQuery;
+import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.QueryType;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
+import com.result.RankedResults;
+import com.result.RunFileWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class is a resident search service over the shared SearchSession, so the index, the DOCNO lookup and the caches
+ * are loaded once and stay warm across requests, instead of once per batch program. It listens on the loopback
+ * interface only, at Constants.SEARCH_DAEMON_PORT, and answers in the 'treceval' format of the run files:
+ *
+ * GET /search?query=[text]&amp;similarity=[configuration]&amp;k=[k]&amp;id=[query ID] searches one query.
+ * POST /topics?similarity=[configuration]&amp;queries=short|long&amp;k=[k] searches the title (short) or description (long)
+ * query of every topic of the trec topics in the body, or of Constants.TREC_TOPIC_FILE_PATH if the body is empty,
+ * and streams the results of every topic as soon as it is searched, in the order of topics.
+ * GET /metrics returns the JSON summary of the queries searched so far, which is also exposed over JMX.
+ * POST /refresh reopens the index if it has changed.
+ *
+ * The similarity is a configuration of SimilarityFactory, BM25 by default, and k is Constants.TOP_K_RESULTS by default.
+ * A k above Constants.SEARCH_DAEMON_MAX_K is answered with 400 Bad Request, and a k above the number of documents of
+ * the index is lowered to it. A topics body longer than Constants.SEARCH_DAEMON_MAX_BODY_BYTES is answered with
+ * 413 Payload Too Large.
+ * A query is scored by a MultiSimilaritySearch holding the one similarity, with the results of IndexSearcher in a single
+ * walk of the postings, and its results are cached in the QueryResultCache of the session, shared with CompareAlgorithms.
+ *
+ * Requests are searched concurrently on Constants.SEARCH_THREAD_COUNT threads, one request per thread, with at most
+ * Constants.SEARCH_DAEMON_QUEUE_SIZE requests waiting; a request beyond that is answered at once with
+ * 503 Service Unavailable, so an overloaded daemon sheds load instead of queueing without bound.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SearchDaemon implements Closeable {
+
+	private static final String DEFAULT_SIMILARITY = SimilarityFactory.BM25;
+	private static final String DEFAULT_QUERY_ID = "1";
+	private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+	private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+	/* Seconds a rejected client is asked to wait before retrying */
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	private SearchSession searchSession;
+	private HttpServer httpServer;
+	private ThreadPoolExecutor searchExecutor;
+	private RunMetrics runMetrics;
+	/* Each search thread reuses its score arrays for the searcher and similarity they were created for */
+	private ThreadLocal<SimilaritySearch> similaritySearches;
+
+	/**
+	 * Creates the daemon over the search session and starts listening on the loopback interface.
+	 *
+	 * @param searchSession
+	 *  search session holding the index
+	 * @param port
+	 *  port to listen at, 0 for any free port
+	 * @param threadCount
+	 *  number of requests searched at once
+	 * @param queueSize
+	 *  number of requests waiting for a search thread, beyond which requests are rejected
+	 *
+	 * @throws IOException
+	 */
+	public SearchDaemon(SearchSession searchSession, int port, int threadCount, int queueSize) throws IOException
+	{
+		this.searchSession = searchSession;
+		this.searchExecutor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize));
+		this.runMetrics = SearchTRECTTopics.createRunMetrics("SearchDaemon");
+		this.similaritySearches = new ThreadLocal<SimilaritySearch>();
+
+		this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		/* The handlers only admit the request to the search threads, so they run on the thread of the server */
+		httpServer.createContext("/search", exchange -> admit(exchange, "GET", () -> handleSearch(exchange)));
+		httpServer.createContext("/topics", exchange -> admit(exchange, "POST", () -> handleTopics(exchange)));
+		httpServer.createContext("/metrics", exchange -> admit(exchange, "GET", () -> sendText(exchange, 200, JSON_CONTENT_TYPE, runMetrics.toJson())));
+		httpServer.createContext("/refresh", exchange -> admit(exchange, "POST",
+				() -> sendText(exchange, 200, TEXT_CONTENT_TYPE, "refreshed=" + searchSession.maybeRefresh() + "\n")));
+		httpServer.start();
+	}
+
+	/**
+	 * Returns the port the daemon listens at.
+	 * @return
+	 *  port
+	 */
+	public int getPort()
+	{
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * This interface handles an admitted request on a search thread.
+	 */
+	private interface RequestHandler
+	{
+		void handle() throws Exception;
+	}
+
+	/**
+	 * Queues the request for the search threads, or rejects it with 503 if the queue is full.
+	 */
+	private void admit(HttpExchange exchange, String method, RequestHandler requestHandler) throws IOException
+	{
+		if(!method.equals(exchange.getRequestMethod()))
+		{
+			exchange.getResponseHeaders().set("Allow", method);
+			sendText(exchange, 405, TEXT_CONTENT_TYPE, "Use " + method + "\n");
+			return;
+		}
+		try
+		{
+			searchExecutor.execute(() -> handle(exchange, requestHandler));
+		}
+		catch(RejectedExecutionException e)
+		{
+			exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+			sendText(exchange, 503, TEXT_CONTENT_TYPE, "Search queue is full\n");
+		}
+	}
+
+	/**
+	 * This class is the failure of a request whose body is longer than Constants.SEARCH_DAEMON_MAX_BODY_BYTES.
+	 */
+	private static class RequestTooLargeException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private RequestTooLargeException(String message)
+		{
+			super(message);
+		}
+	}
+
+	/**
+	 * Handles the request, answering 400 for a malformed request, 413 for a too large body and 500 for a failure before
+	 * the response is started.
+	 */
+	private static void handle(HttpExchange exchange, RequestHandler requestHandler)
+	{
+		try
+		{
+			requestHandler.handle();
+		}
+		catch(IllegalArgumentException | ParseException e)
+		{
+			sendError(exchange, 400, e);
+		}
+		catch(RequestTooLargeException e)
+		{
+			sendError(exchange, 413, e);
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			sendError(exchange, 500, e);
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Searches one query and writes its results.
+	 */
+	private void handleSearch(HttpExchange exchange) throws IOException, ParseException
+	{
+		Map<String, String> parameters = getParameters(exchange);
+		String queryString = parameters.get("query");
+		if(queryString == null || queryString.trim().isEmpty())
+		{
+			throw new IllegalArgumentException("Missing query parameter");
+		}
+		Similarity similarity = SimilarityFactory.create(getParameter(parameters, "similarity", DEFAULT_SIMILARITY));
+		int k = getK(parameters);
+		String queryID = getParameter(parameters, "id", DEFAULT_QUERY_ID);
+
+		SessionSearcher sessionSearcher = searchSession.acquire();
+		try
+		{
+			QueryMetrics queryMetrics = new QueryMetrics(queryID, QueryType.SHORT);
+			RankedResults rankedResults = searchQuery(sessionSearcher, queryString, queryID, similarity, k, queryMetrics);
+			try(OutputStream responseBody = startResponse(exchange);
+					RunFileWriter runFileWriter = new RunFileWriter(Channels.newChannel(responseBody), sessionSearcher.getDocNoLookup()))
+			{
+				write(rankedResults, runFileWriter, queryMetrics);
+			}
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+	}
+
+	/**
+	 * Searches the short or long query of every topic, and streams the results of every topic as soon as it is searched.
+	 */
+	private void handleTopics(HttpExchange exchange) throws IOException, ParseException
+	{
+		Map<String, String> parameters = getParameters(exchange);
+		Similarity similarity = SimilarityFactory.create(getParameter(parameters, "similarity", DEFAULT_SIMILARITY));
+		int k = getK(parameters);
+		String queries = getParameter(parameters, "queries", "short");
+		if(!queries.equals("short") && !queries.equals("long"))
+		{
+			throw new IllegalArgumentException("Unknown queries " + queries + ", expected short or long");
+		}
+		QueryType queryType = queries.equals("short") ? QueryType.SHORT : QueryType.LONG;
+
+		String topics = readBody(exchange);
+		TrecTopicsReader trecTopicReader = new TrecTopicsReader();
+		QualityQuery[] qualityQueries;
+		if(topics.trim().isEmpty())
+		{
+			/* The default topics are configured on the server, so failing to read them is answered with 500, not blamed on the client */
+			try(BufferedReader bufferedReader = new BufferedReader(new FileReader(Constants.TREC_TOPIC_FILE_PATH)))
+			{
+				qualityQueries = trecTopicReader.readQueries(bufferedReader);
+			}
+		}
+		else
+		{
+			try(BufferedReader bufferedReader = new BufferedReader(new StringReader(topics)))
+			{
+				qualityQueries = trecTopicReader.readQueries(bufferedReader);
+			}
+			catch(IOException | RuntimeException e)
+			{
+				throw new IllegalArgumentException("Unable to read the trec topics: " + e.getMessage(), e);
+			}
+		}
+
+		SessionSearcher sessionSearcher = searchSession.acquire();
+		try(OutputStream responseBody = startResponse(exchange);
+				RunFileWriter runFileWriter = new RunFileWriter(Channels.newChannel(responseBody), sessionSearcher.getDocNoLookup()))
+		{
+			for(QualityQuery qualityQuery : qualityQueries)
+			{
+				String queryID = qualityQuery.getQueryID();
+				String queryString = (queryType == QueryType.SHORT)
+						? SearchTRECTTopics.cleanTitleQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_TITLE))
+						: SearchTRECTTopics.cleanDescQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_DESC));
+				QueryMetrics queryMetrics = new QueryMetrics(queryID, queryType);
+				RankedResults rankedResults = searchQuery(sessionSearcher, queryString, queryID, similarity, k, queryMetrics);
+				write(rankedResults, runFileWriter, queryMetrics);
+				responseBody.flush();
+			}
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+	}
+
+	/**
+	 * This function returns the top k results of the query, from the result cache of the session if they are cached.
+	 */
+	private RankedResults searchQuery(SessionSearcher sessionSearcher, String queryString, String queryID, Similarity similarity, int requestedK,
+			QueryMetrics queryMetrics) throws IOException, ParseException
+	{
+		/* No more documents than the index holds are ranked, so k does not size the score arrays beyond it */
+		int k = Math.min(requestedK, Math.max(1, sessionSearcher.getIndexReader().maxDoc()));
+		queryMetrics.begin();
+		try
+		{
+			long startTime = System.nanoTime();
+			Query query = searchSession.parseQuery(queryString);
+			queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+			/* The MultiSimilaritySearch scores same as IndexSearcher, so it shares the results cached by CompareAlgorithms */
+			QueryResultCache queryResultCache = searchSession.getQueryResultCache();
+			String cacheKey = QueryResultCache.createKey(query, similarity, "LUCENE", k);
+			RankedResults cachedResults = queryResultCache.get(sessionSearcher.getIndexVersion(), cacheKey, queryID);
+			if(cachedResults != null)
+			{
+				queryMetrics.setResultCacheHit();
+				return cachedResults;
+			}
+
+			/* One similarity is scored in a single walk of the postings, a postings snapshot only pays off when replayed for a grid */
+			RankedResults rankedResults = getSimilaritySearch(sessionSearcher, similarity).search(query, queryID, k)[0];
+			queryResultCache.put(sessionSearcher.getIndexVersion(), cacheKey, rankedResults);
+			return rankedResults;
+		}
+		finally
+		{
+			queryMetrics.end();
+		}
+	}
+
+	/**
+	 * Returns the search of the calling thread for the searcher and similarity, replacing the one of an earlier searcher
+	 * or another similarity. Similarities are told apart by class and parameters, as in the keys of the result cache.
+	 */
+	private MultiSimilaritySearch getSimilaritySearch(SessionSearcher sessionSearcher, Similarity similarity)
+	{
+		SimilaritySearch similaritySearch = similaritySearches.get();
+		if(similaritySearch == null || similaritySearch.sessionSearcher != sessionSearcher
+				|| similaritySearch.similarity.getClass() != similarity.getClass() || !similaritySearch.similarity.toString().equals(similarity.toString()))
+		{
+			similaritySearch = new SimilaritySearch(sessionSearcher, similarity);
+			similaritySearches.set(similaritySearch);
+		}
+		return similaritySearch.multiSimilaritySearch;
+	}
+
+	/**
+	 * This class holds the search of one similarity over one searcher, whose score arrays a search thread reuses.
+	 */
+	private static class SimilaritySearch
+	{
+		private SessionSearcher sessionSearcher;
+		private Similarity similarity;
+		private MultiSimilaritySearch multiSimilaritySearch;
+
+		private SimilaritySearch(SessionSearcher sessionSearcher, Similarity similarity)
+		{
+			this.sessionSearcher = sessionSearcher;
+			this.similarity = similarity;
+			this.multiSimilaritySearch = new MultiSimilaritySearch(sessionSearcher, new Similarity[] { similarity });
+		}
+	}
+
+	/**
+	 * Writes the results of the query, and records the query.
+	 */
+	private void write(RankedResults rankedResults, RunFileWriter runFileWriter, QueryMetrics queryMetrics) throws IOException
+	{
+		long startTime = System.nanoTime();
+		rankedResults.writeTo(runFileWriter);
+		runFileWriter.flush();
+		queryMetrics.addStageTime(Stage.WRITE, startTime);
+		queryMetrics.addWrittenDocumentCount(rankedResults.size());
+		runMetrics.record(queryMetrics);
+	}
+
+	/**
+	 * Starts the streamed response, and returns its body.
+	 */
+	private static OutputStream startResponse(HttpExchange exchange) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+		exchange.sendResponseHeaders(200, 0);
+		return exchange.getResponseBody();
+	}
+
+	/**
+	 * Sends the text as the whole response.
+	 */
+	private static void sendText(HttpExchange exchange, int statusCode, String contentType, String text) throws IOException
+	{
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		try(OutputStream responseBody = exchange.getResponseBody())
+		{
+			responseBody.write(bytes);
+		}
+	}
+
+	/**
+	 * Sends the error, unless the response is already started, in which case the response is cut short.
+	 */
+	private static void sendError(HttpExchange exchange, int statusCode, Exception exception)
+	{
+		if(exchange.getResponseCode() != -1)
+		{
+			return;
+		}
+		try
+		{
+			sendText(exchange, statusCode, TEXT_CONTENT_TYPE, exception.getMessage() + "\n");
+		}
+		catch(IOException e)
+		{
+			/* The client is gone */
+		}
+	}
+
+	/**
+	 * Returns the decoded parameters of the query string of the request.
+	 */
+	private static Map<String, String> getParameters(HttpExchange exchange) throws UnsupportedEncodingException
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+		String rawQuery = exchange.getRequestURI().getRawQuery();
+		if(rawQuery == null)
+		{
+			return parameters;
+		}
+		for(String parameter : rawQuery.split("&"))
+		{
+			int equalsIndex = parameter.indexOf('=');
+			String name = (equalsIndex < 0) ? parameter : parameter.substring(0, equalsIndex);
+			String value = (equalsIndex < 0) ? "" : parameter.substring(equalsIndex + 1);
+			parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns the parameter, or the default value if it is not specified.
+	 */
+	private static String getParameter(Map<String, String> parameters, String name, String defaultValue)
+	{
+		String value = parameters.get(name);
+		return (value == null || value.isEmpty()) ? defaultValue : value;
+	}
+
+	/**
+	 * Returns the number of top documents requested, Constants.TOP_K_RESULTS by default, at most Constants.SEARCH_DAEMON_MAX_K.
+	 */
+	private static int getK(Map<String, String> parameters)
+	{
+		String k = getParameter(parameters, "k", String.valueOf(Constants.TOP_K_RESULTS));
+		try
+		{
+			int topK = Integer.parseInt(k);
+			if(topK <= 0)
+			{
+				throw new IllegalArgumentException("k must be positive, got " + k);
+			}
+			if(topK > Constants.SEARCH_DAEMON_MAX_K)
+			{
+				throw new IllegalArgumentException("k must be at most " + Constants.SEARCH_DAEMON_MAX_K + ", got " + k);
+			}
+			return topK;
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Malformed k " + k, e);
+		}
+	}
+
+	/**
+	 * Reads the whole body of the request as UTF-8, failing with RequestTooLargeException once it is longer than
+	 * Constants.SEARCH_DAEMON_MAX_BODY_BYTES. A declared Content-Length above the limit fails before reading.
+	 */
+	private static String readBody(HttpExchange exchange) throws IOException
+	{
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if(contentLength != null)
+		{
+			try
+			{
+				if(Long.parseLong(contentLength.trim()) > Constants.SEARCH_DAEMON_MAX_BODY_BYTES)
+				{
+					throw new RequestTooLargeException("Body of " + contentLength + " bytes is longer than " + Constants.SEARCH_DAEMON_MAX_BODY_BYTES + " bytes");
+				}
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Malformed Content-Length " + contentLength, e);
+			}
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try(InputStream requestBody = exchange.getRequestBody())
+		{
+			int length;
+			while((length = requestBody.read(buffer)) != -1)
+			{
+				if(body.size() + length > Constants.SEARCH_DAEMON_MAX_BODY_BYTES)
+				{
+					throw new RequestTooLargeException("Body is longer than " + Constants.SEARCH_DAEMON_MAX_BODY_BYTES + " bytes");
+				}
+				body.write(buffer, 0, length);
+			}
+		}
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Stops listening, waits for the admitted requests to finish, and unregisters the metrics.
+	 */
+	@Override
+	public void close()
+	{
+		httpServer.stop(0);
+		searchExecutor.shutdown();
+		try
+		{
+			searchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		runMetrics.unregister();
+	}
+
+	/**
+	 * Main function to run the daemon over the shared search session until the process is stopped.
+	 * @param args
+	 *  optional port, Constants.SEARCH_DAEMON_PORT by default
+	 */
+	public static void main(String[] args) {
+
+		try
+		{
+			int port = args.length > 0 ? Integer.parseInt(args[0]) : Constants.SEARCH_DAEMON_PORT;
+			SearchSession searchSession = SearchSession.getSharedSession();
+			SearchDaemon searchDaemon = new SearchDaemon(searchSession, port, Constants.SEARCH_THREAD_COUNT, Constants.SEARCH_DAEMON_QUEUE_SIZE);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				searchDaemon.close();
+				try
+				{
+					SearchSession.closeSharedSession();
+				}
+				catch(IOException e)
+				{
+					e.printStackTrace();
+				}
+			}));
+			System.out.println("Search daemon listening at http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + searchDaemon.getPort());
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.searcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import com.constants.Constants;
+
+/**
+ * This class is a long lived search session over the index. It owns one reader, searcher, analyzer and
+ * query parser, so a batch run pays the index open and warmup cost once instead of once per query.
+ * The session is thread-safe and reopens the reader only when the index has changed.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SearchSession implements Closeable {
+
+	private static SearchSession sharedSession;
+
+	private Directory indexDirectory;
+	private SearcherManager searcherManager;
+	private ExecutorService segmentExecutor;
+	private StandardAnalyzer analyzer;
+	private TermScoreCache termScoreCache;
+	private QueryResultCache queryResultCache;
+
+	/* QueryParser is not thread-safe, hence one parser per thread */
+	private ThreadLocal<QueryParser> queryParsers;
+
+	/**
+	 * Creates the search session over the index at specified path, with the default term score cache budget.
+	 *
+	 * @param indexDirPath
+	 *  path of the index directory
+	 *
+	 * @throws IOException
+	 */
+	public SearchSession(String indexDirPath) throws IOException
+	{
+		this(indexDirPath, Constants.TERM_SCORE_CACHE_MB * 1024 * 1024);
+	}
+
+	/**
+	 * Creates the search session over the index at specified path.
+	 *
+	 * @param indexDirPath
+	 *  path of the index directory
+	 * @param termScoreCacheSizeInBytes
+	 *  memory budget of the term score cache, 0 disables the cache
+	 *
+	 * @throws IOException
+	 */
+	public SearchSession(String indexDirPath, long termScoreCacheSizeInBytes) throws IOException
+	{
+		this.termScoreCache = new TermScoreCache(termScoreCacheSizeInBytes);
+		this.queryResultCache = new QueryResultCache(Constants.QUERY_RESULT_CACHE_SIZE);
+		this.indexDirectory = FSDirectory.open(Paths.get(indexDirPath));
+		try
+		{
+			this.segmentExecutor = new ForkJoinPool(Constants.SEGMENT_SEARCH_THREAD_COUNT);
+			this.searcherManager = new SearcherManager(indexDirectory, new SessionSearcherFactory(segmentExecutor));
+		}
+		catch(Throwable e)
+		{
+			/* A missing or corrupt index fails here, so the directory and the executor opened for it are released */
+			if(segmentExecutor != null)
+			{
+				segmentExecutor.shutdown();
+			}
+			try
+			{
+				indexDirectory.close();
+			}
+			catch(IOException closeException)
+			{
+				e.addSuppressed(closeException);
+			}
+			throw e;
+		}
+		this.analyzer = new StandardAnalyzer();
+		this.queryParsers = ThreadLocal.withInitial(() -> new QueryParser(Constants.FIELD_TEXT, analyzer));
+	}
+
+	/**
+	 * Returns the session shared by all the searchers of the application over the index at Constants.INDEX_DIR_PATH.
+	 * The session is opened on first use.
+	 *
+	 * @return
+	 *  shared search session
+	 *
+	 * @throws IOException
+	 */
+	public static synchronized SearchSession getSharedSession() throws IOException
+	{
+		if(sharedSession == null)
+		{
+			sharedSession = new SearchSession(Constants.INDEX_DIR_PATH);
+		}
+		return sharedSession;
+	}
+
+	/**
+	 * Closes the shared session if it was opened.
+	 *
+	 * @throws IOException
+	 */
+	public static synchronized void closeSharedSession() throws IOException
+	{
+		if(sharedSession != null)
+		{
+			sharedSession.close();
+			sharedSession = null;
+		}
+	}
+
+	/**
+	 * Reopens the reader if the index has changed since it was last opened.
+	 * Searchers acquired before the refresh keep on working on the old reader until released.
+	 *
+	 * @return
+	 *  true if the session now sees the latest index
+	 *
+	 * @throws IOException
+	 */
+	public boolean maybeRefresh() throws IOException
+	{
+		return searcherManager.maybeRefresh();
+	}
+
+	/**
+	 * Acquires the current searcher. Every acquired searcher must be released with {@link #release(SessionSearcher)}.
+	 *
+	 * @return
+	 *  current searcher
+	 *
+	 * @throws IOException
+	 */
+	public SessionSearcher acquire() throws IOException
+	{
+		return (SessionSearcher) searcherManager.acquire();
+	}
+
+	/**
+	 * Releases the searcher acquired from this session.
+	 *
+	 * @param sessionSearcher
+	 *  searcher to be released
+	 *
+	 * @throws IOException
+	 */
+	public void release(SessionSearcher sessionSearcher) throws IOException
+	{
+		searcherManager.release(sessionSearcher);
+	}
+
+	/**
+	 * Parses the specified query string on "TEXT" field after escaping the query syntax characters.
+	 *
+	 * @param queryString
+	 *  query string
+	 * @return
+	 *  parsed query
+	 *
+	 * @throws ParseException
+	 */
+	public Query parseQuery(String queryString) throws ParseException
+	{
+		return queryParsers.get().parse(QueryParserUtil.escape(queryString));
+	}
+
+	/**
+	 * Extracts the terms of the specified query. Terms are returned in sorted order, so the scores of a query
+	 * are always summed in the same order.
+	 *
+	 * @param indexSearcher
+	 *  searcher used to create the weight of query
+	 * @param query
+	 *  query to extract terms from
+	 * @return
+	 *  set of query terms
+	 *
+	 * @throws IOException
+	 */
+	public Set<Term> extractTerms(IndexSearcher indexSearcher, Query query) throws IOException
+	{
+		Set<Term> queryTerms = new TreeSet<Term>();
+		query.createWeight(indexSearcher, false).extractTerms(queryTerms);
+		return queryTerms;
+	}
+
+	/**
+	 * Returns the analyzer used by this session.
+	 * @return
+	 *  analyzer
+	 */
+	public StandardAnalyzer getAnalyzer()
+	{
+		return analyzer;
+	}
+
+	/**
+	 * Returns the cache of term scores shared by all the queries of this session.
+	 * Scores are cached per reader version, so the cache stays valid across refreshes.
+	 * @return
+	 *  term score cache
+	 */
+	public TermScoreCache getTermScoreCache()
+	{
+		return termScoreCache;
+	}
+
+	/**
+	 * Returns the cache of ranked results shared by all the runs of this session.
+	 * Results are cached per index version, so the cache stays valid across refreshes.
+	 * @return
+	 *  query result cache
+	 */
+	public QueryResultCache getQueryResultCache()
+	{
+		return queryResultCache;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		searcherManager.close();
+		segmentExecutor.shutdown();
+		termScoreCache.clear();
+		analyzer.close();
+		indexDirectory.close();
+	}
+
+	/**
+	 * This factory creates a SessionSearcher every time the reader is (re)opened.
+	 * All the searchers of the session search their segments on the same executor.
+	 */
+	private static class SessionSearcherFactory extends SearcherFactory
+	{
+		private ExecutorService segmentExecutor;
+
+		public SessionSearcherFactory(ExecutorService segmentExecutor)
+		{
+			this.segmentExecutor = segmentExecutor;
+		}
+
+		@Override
+		public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException
+		{
+			return new SessionSearcher(reader, segmentExecutor);
+		}
+	}
+}
@@ -1,20 +1,37 @@
 package com.searcher;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import org.apache.lucene.benchmark.quality.QualityQuery;
 import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
 import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.DefaultSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 
 import com.constants.Constants;
+import com.evaluation.RunEvaluation;
+import com.evaluation.RunEvaluationCollector;
+import com.evaluation.TrecEvaluator;
+import com.metrics.PipelineMetrics;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.QueryType;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
 import com.result.QueryScore;
+import com.result.RankedResults;
+import com.result.RunFileWriter;
+import com.result.TopKCollector;
 
 /**
  * This class is solution for Task-2
@@ -41,43 +58,448 @@ public class SearchTRECTTopics {
 	 */
 	public static void processTop1KResults(Similarity similarity, String algorithmName) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
 	{
-		// 1. Read the queries from trec topics
-		TrecTopicsReader trecTopicReader = new TrecTopicsReader();
-		BufferedReader bufferedReader = new BufferedReader(new FileReader(Constants.TREC_TOPIC_FILE_PATH));
-		QualityQuery[] qualityQueries = trecTopicReader.readQueries(bufferedReader);
+		processTop1KResults(similarity, algorithmName, RetrievalMode.EXHAUSTIVE);
+	}
 
-		// 2. Get calculate query score each document 
-		for(int queryIndex=0; queryIndex < qualityQueries.length; queryIndex++)
+	/**
+	 * This function process top 1000 results for all the short and long trec queries with specified retrieval mode and writes result to the file.
+	 * 
+	 * @param similarity
+	 *  similarity algoritm to be used
+	 * @param algorithmName
+	 * 	algorithm name which used to devise the output file name
+	 * @param retrievalMode
+	 *  retrieval mode of the custom TF-IDF model
+	 * 
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public static void processTop1KResults(Similarity similarity, String algorithmName, RetrievalMode retrievalMode) throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		SearchSession searchSession = SearchSession.getSharedSession();
+		searchSession.maybeRefresh();
+		if(retrievalMode == RetrievalMode.BATCH)
 		{
-			QualityQuery qualityQuery = qualityQueries[queryIndex];
-			String queryID = qualityQuery.getQueryID();
-
-			// 2.a Process for "Title" query (Short Query)
-			// Braces to end the heavy variable scope (titleQueryScore)
+			// 1. Read all the queries from trec topics, they are scored together
+			QualityQuery[] qualityQueries;
+			try(BufferedReader bufferedReader = new BufferedReader(new FileReader(Constants.TREC_TOPIC_FILE_PATH)))
 			{
-				String titleQuery = qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_TITLE);
-				String cleanedTitleQuery = cleanTitleQueryString(titleQuery);
-				QueryScore titleQueryScore = EasySearch.getQueryRelevanceScores(cleanedTitleQuery, queryID, similarity);
-				String OutputFilePath = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "ShortQuery" + ".txt";
-				titleQueryScore.writeTop1KResults(OutputFilePath);
-
+				qualityQueries = new TrecTopicsReader().readQueries(bufferedReader);
 			}
+			processTop1KResultsInBatch(searchSession, qualityQueries, similarity, algorithmName);
+			return;
+		}
+		SessionSearcher sessionSearcher = searchSession.acquire();
 
+		/* Results of the previous runs on the same index are reused */
+		QueryResultCache queryResultCache = searchSession.getQueryResultCache();
+		if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
+		{
+			queryResultCache.load(Constants.QUERY_RESULT_CACHE_FILE_PATH, sessionSearcher.getIndexVersion());
+		}
+
+		/* Each search thread reuses its own score accumulators and top k collector */
+		ThreadLocal<QueryScore> reusableQueryScores = new ThreadLocal<QueryScore>();
+		ThreadLocal<TopKCollector> topKCollectors = ThreadLocal.withInitial(() -> new TopKCollector(Constants.TOP_K_RESULTS));
+		/* The impact index is opened before searching, so a missing or stale impact index fails the run at once */
+		ImpactIndex impactIndex = (retrievalMode == RetrievalMode.IMPACT_ORDERED) ? sessionSearcher.getImpactIndex() : null;
+		ThreadLocal<ImpactSearch> impactSearches = ThreadLocal.withInitial(() -> new ImpactSearch(impactIndex));
+		/* The term upper bounds are built before searching, so their pass over the postings is not part of the first queries */
+		if(retrievalMode == RetrievalMode.MAX_SCORE)
+		{
+			sessionSearcher.getTermUpperBounds(similarity);
+		}
+		AccumulatorLimitStrategy accumulatorLimitStrategy = (retrievalMode == RetrievalMode.BOUNDED_QUIT) ? AccumulatorLimitStrategy.QUIT : AccumulatorLimitStrategy.CONTINUE;
+		ThreadLocal<BoundedAccumulatorSearch> boundedAccumulatorSearches = ThreadLocal.withInitial(() -> new BoundedAccumulatorSearch(Constants.ACCUMULATOR_LIMIT, accumulatorLimitStrategy));
+		RunMetrics runMetrics = createRunMetrics(algorithmName);
+		PipelineMetrics pipelineMetrics = createPipelineMetrics(algorithmName);
+		RunEvaluationCollector runEvaluationCollector = createRunEvaluationCollector(sessionSearcher, 1);
+
+		// 1. Stream the queries from trec topics through the pipeline
+		try(TrecTopicStream topicStream = new TrecTopicStream(Constants.TREC_TOPIC_FILE_PATH);
+				TopicPipeline topicPipeline = new TopicPipeline(pipelineMetrics, runMetrics))
+		{
+			// 2. Get calculate query score each document, for "Title" query (Short Query) and "Description" query (Long Query)
+			String shortOutputFilePath = Constants.WRITE_RUN_FILES ? Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "ShortQuery" + ".txt" : null;
+			String longOutputFilePath = Constants.WRITE_RUN_FILES ? Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "LongQuery" + ".txt" : null;
+
+			topicPipeline.process(topicStream, 
+					(queryString, queryID) -> new RankedResults[] { searchQuery(searchSession, sessionSearcher, queryString, queryID, similarity, retrievalMode, reusableQueryScores, topKCollectors, impactSearches, boundedAccumulatorSearches) }, 
+					sessionSearcher.getDocNoLookup(), new String[] { shortOutputFilePath }, new String[] { longOutputFilePath }, runEvaluationCollector);
+
+			// 3. Evaluate the results as they are written
+			printEvaluation(algorithmName, runEvaluationCollector, 0);
+			writeRunMetrics(sessionSearcher, runMetrics);
+			System.out.println(pipelineMetrics);
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+		if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
+		{
+			queryResultCache.save(Constants.QUERY_RESULT_CACHE_FILE_PATH);
+		}
+		System.out.println("All the querie from TREC 51-100 executed successfully.");
+		System.out.println(queryResultCache);
+		if(retrievalMode == RetrievalMode.EXHAUSTIVE)
+		{
+			System.out.println(searchSession.getTermScoreCache());
+		}
+	}
 
-			// 2.b Process for "Description" query (Long Query)
-			// Braces to end the heavy variable scope (descQueryScore)
+	/**
+	 * This function scores the short and long queries of all the topics together with the BatchQueryScorer,
+	 * and writes the results of short and long queries to their output files in the order of topics.
+	 *
+	 * The queries whose results are in the QueryResultCache are taken from it, and only the others are scored together,
+	 * and every query is recorded in the RunMetrics. The topics are not streamed through the TopicPipeline, since the
+	 * batch needs all its queries before it scores any of them.
+	 */
+	private static void processTop1KResultsInBatch(SearchSession searchSession, QualityQuery[] qualityQueries, Similarity similarity, String algorithmName)
+			throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		/* Title queries first, then description queries */
+		int topicCount = qualityQueries.length;
+		String[] queryStrings = new String[2 * topicCount];
+		String[] queryIDs = new String[2 * topicCount];
+		QueryMetrics[] queryMetrics = new QueryMetrics[2 * topicCount];
+		for(int topicIndex = 0; topicIndex < topicCount; topicIndex++)
+		{
+			QualityQuery qualityQuery = qualityQueries[topicIndex];
+			queryStrings[topicIndex] = cleanTitleQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_TITLE));
+			queryStrings[topicCount + topicIndex] = cleanDescQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_DESC));
+			queryIDs[topicIndex] = qualityQuery.getQueryID();
+			queryIDs[topicCount + topicIndex] = qualityQuery.getQueryID();
+			queryMetrics[topicIndex] = new QueryMetrics(qualityQuery.getQueryID(), QueryType.SHORT);
+			queryMetrics[topicCount + topicIndex] = new QueryMetrics(qualityQuery.getQueryID(), QueryType.LONG);
+		}
+		RunMetrics runMetrics = createRunMetrics(algorithmName);
+
+		SessionSearcher sessionSearcher = searchSession.acquire();
+		QueryResultCache queryResultCache = searchSession.getQueryResultCache();
+		try
+		{
+			/* Results of the previous runs on the same index are reused */
+			if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
+			{
+				queryResultCache.load(Constants.QUERY_RESULT_CACHE_FILE_PATH, sessionSearcher.getIndexVersion());
+			}
+			String retrievalMethod = getRetrievalMethod(RetrievalMode.BATCH);
+			RankedResults[] rankedResults = new RankedResults[queryStrings.length];
+			String[] cacheKeys = new String[queryStrings.length];
+			List<Integer> scoredQueryIndexes = new ArrayList<Integer>();
+			List<Query> scoredQueries = new ArrayList<Query>();
+			for(int queryIndex = 0; queryIndex < queryStrings.length; queryIndex++)
 			{
-				String descQuery = qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_DESC);				
-				String cleanedDescQuery = cleanDescQueryString(descQuery);
-				QueryScore descQueryScore = EasySearch.getQueryRelevanceScores(cleanedDescQuery, queryID, similarity);
-				String OutputFilePath = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "LongQuery" + ".txt";
-				descQueryScore.writeTop1KResults(OutputFilePath);
+				long startTime = System.nanoTime();
+				Query query = searchSession.parseQuery(queryStrings[queryIndex]);
+				queryMetrics[queryIndex].addSharedStageTime(Stage.PARSE, System.nanoTime() - startTime);
+				cacheKeys[queryIndex] = QueryResultCache.createKey(query, similarity, retrievalMethod, Constants.TOP_K_RESULTS);
+				rankedResults[queryIndex] = queryResultCache.get(sessionSearcher.getIndexVersion(), cacheKeys[queryIndex], queryIDs[queryIndex]);
+				if(rankedResults[queryIndex] != null)
+				{
+					queryMetrics[queryIndex].setResultCacheHit();
+				}
+				else
+				{
+					scoredQueryIndexes.add(queryIndex);
+					scoredQueries.add(query);
+				}
+			}
 
+			// 2. Score the queries which are not cached together
+			long startTime = System.nanoTime();
+			int scoredQueryCount = scoredQueryIndexes.size();
+			String[] scoredQueryIDs = new String[scoredQueryCount];
+			QueryMetrics[] scoredQueryMetrics = new QueryMetrics[scoredQueryCount];
+			for(int scoredIndex = 0; scoredIndex < scoredQueryCount; scoredIndex++)
+			{
+				scoredQueryIDs[scoredIndex] = queryIDs[scoredQueryIndexes.get(scoredIndex)];
+				scoredQueryMetrics[scoredIndex] = queryMetrics[scoredQueryIndexes.get(scoredIndex)];
+			}
+			BatchQueryScorer batchQueryScorer = new BatchQueryScorer(searchSession, sessionSearcher, similarity, Constants.BATCH_SCORING_MAX_QUERIES);
+			RankedResults[] scoredResults = batchQueryScorer.score(scoredQueries.toArray(new Query[scoredQueryCount]), scoredQueryIDs, Constants.TOP_K_RESULTS, scoredQueryMetrics);
+			for(int scoredIndex = 0; scoredIndex < scoredQueryCount; scoredIndex++)
+			{
+				int queryIndex = scoredQueryIndexes.get(scoredIndex);
+				rankedResults[queryIndex] = scoredResults[scoredIndex];
+				queryResultCache.put(sessionSearcher.getIndexVersion(), cacheKeys[queryIndex], scoredResults[scoredIndex]);
 			}
+			System.out.println(String.format(Locale.ROOT, "Scored %d queries in batch in %.1f ms, %d postings decoded instead of %d",
+					scoredQueryCount, (System.nanoTime() - startTime) / 1e6, batchQueryScorer.getDecodedPostingCount(), batchQueryScorer.getScatteredPostingCount()));
 
+			// 3. Write the results in the order of topics
+			RankedResults[] shortResults = Arrays.copyOfRange(rankedResults, 0, topicCount);
+			RankedResults[] longResults = Arrays.copyOfRange(rankedResults, topicCount, 2 * topicCount);
 
+			String shortOutputFilePath = Constants.WRITE_RUN_FILES ? Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "ShortQuery" + ".txt" : null;
+			String longOutputFilePath = Constants.WRITE_RUN_FILES ? Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmName + "LongQuery" + ".txt" : null;
+			writeResults(shortResults, Arrays.copyOfRange(queryMetrics, 0, topicCount), shortOutputFilePath, sessionSearcher.getDocNoLookup(), runMetrics);
+			writeResults(longResults, Arrays.copyOfRange(queryMetrics, topicCount, 2 * topicCount), longOutputFilePath, sessionSearcher.getDocNoLookup(), runMetrics);
+			printEvaluation(sessionSearcher, algorithmName, shortResults, longResults);
+			writeRunMetrics(sessionSearcher, runMetrics);
+		}
+		finally
+		{
+			searchSession.release(sessionSearcher);
+		}
+		if(Constants.QUERY_RESULT_CACHE_FILE_PATH != null)
+		{
+			queryResultCache.save(Constants.QUERY_RESULT_CACHE_FILE_PATH);
 		}
 		System.out.println("All the querie from TREC 51-100 executed successfully.");
+		System.out.println(queryResultCache);
+	}
+
+	/**
+	 * Writes the results of all the queries to the run file, in the order of queries, and records the measurements of
+	 * every query once it is written. Nothing is written if the output file is null.
+	 */
+	private static void writeResults(RankedResults[] rankedResults, QueryMetrics[] queryMetrics, String outputFilePath, DocNoLookup docNoLookup, RunMetrics runMetrics) throws IOException
+	{
+		try(RunFileWriter runFileWriter = (outputFilePath == null) ? null : new RunFileWriter(outputFilePath, docNoLookup))
+		{
+			for(int queryIndex = 0; queryIndex < rankedResults.length; queryIndex++)
+			{
+				if(runFileWriter != null)
+				{
+					long startTime = System.nanoTime();
+					rankedResults[queryIndex].writeTo(runFileWriter);
+					queryMetrics[queryIndex].addStageTime(Stage.WRITE, startTime);
+					queryMetrics[queryIndex].addWrittenDocumentCount(rankedResults[queryIndex].size());
+				}
+				runMetrics.record(queryMetrics[queryIndex]);
+			}
+		}
+	}
+
+	/**
+	 * This function retrieves the top 1000 results of one query with specified retrieval mode, or returns the results cached
+	 * by a previous run. It is called from several search threads at once.
+	 * 
+	 * @return
+	 *  top 1000 results of the query
+	 */
+	private static RankedResults searchQuery(SearchSession searchSession, SessionSearcher sessionSearcher, String queryString, String queryID, 
+			Similarity similarity, RetrievalMode retrievalMode, ThreadLocal<QueryScore> reusableQueryScores, ThreadLocal<TopKCollector> topKCollectors,
+			ThreadLocal<ImpactSearch> impactSearches, ThreadLocal<BoundedAccumulatorSearch> boundedAccumulatorSearches) 
+					throws IOException, ParseException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		QueryResultCache queryResultCache = searchSession.getQueryResultCache();
+		String retrievalMethod = getRetrievalMethod(retrievalMode);
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		/* The query is parsed once for the cache key and the retrieval */
+		long startTime = System.nanoTime();
+		Query query = searchSession.parseQuery(queryString);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+		String cacheKey = QueryResultCache.createKey(query, similarity, retrievalMethod, Constants.TOP_K_RESULTS);
+		RankedResults cachedResults = queryResultCache.get(sessionSearcher.getIndexVersion(), cacheKey, queryID);
+		if(cachedResults != null)
+		{
+			queryMetrics.setResultCacheHit();
+			return cachedResults;
+		}
+
+		TopKCollector topKCollector = topKCollectors.get();
+
+		if(retrievalMode == RetrievalMode.MAX_SCORE)
+		{
+			EasySearch.getTopKResults(searchSession, sessionSearcher, query, similarity, topKCollector);
+		}
+		else if(retrievalMode == RetrievalMode.SEGMENT_PARALLEL)
+		{
+			EasySearch.getSegmentParallelTopKResults(searchSession, sessionSearcher, query, similarity, topKCollector);
+		}
+		else if(retrievalMode == RetrievalMode.BOUNDED_QUIT || retrievalMode == RetrievalMode.BOUNDED_CONTINUE)
+		{
+			EasySearch.getBoundedTopKResults(searchSession, sessionSearcher, query, similarity, boundedAccumulatorSearches.get(), topKCollector);
+		}
+		else if(retrievalMode == RetrievalMode.IMPACT_ORDERED)
+		{
+			EasySearch.getImpactOrderedTopKResults(searchSession, sessionSearcher, query, impactSearches.get(), Constants.IMPACT_POSTINGS_BUDGET, topKCollector);
+		}
+		else
+		{
+			QueryScore queryScore = EasySearch.getQueryRelevanceScores(searchSession, sessionSearcher, query, queryID, similarity, reusableQueryScores.get());
+			reusableQueryScores.set(queryScore);
+			startTime = System.nanoTime();
+			topKCollector.reset(Constants.TOP_K_RESULTS);
+			queryScore.collectTopK(topKCollector);
+			queryMetrics.addStageTime(Stage.TOP_K, startTime);
+		}
+		RankedResults rankedResults = RankedResults.fromTopKCollector(queryID, topKCollector);
+		queryResultCache.put(sessionSearcher.getIndexVersion(), cacheKey, rankedResults);
+		return rankedResults;
+	}
+
+	/**
+	 * Returns the retrieval method of the result cache key. Results of the approximate retrievals depend on their budget.
+	 */
+	private static String getRetrievalMethod(RetrievalMode retrievalMode)
+	{
+		if(retrievalMode == RetrievalMode.IMPACT_ORDERED)
+		{
+			return retrievalMode.name() + "(" + Constants.IMPACT_POSTINGS_BUDGET + ")";
+		}
+		if(retrievalMode == RetrievalMode.BOUNDED_QUIT || retrievalMode == RetrievalMode.BOUNDED_CONTINUE)
+		{
+			return retrievalMode.name() + "(" + Constants.ACCUMULATOR_LIMIT + ")";
+		}
+		return retrievalMode.name();
+	}
+
+	/**
+	 * This function evaluates the short and long query results against the relevance judgments at
+	 * Constants.TREC_QRELS_FILE_PATH, and prints the measures in the format of trec_eval. Nothing is evaluated if
+	 * there is no qrels file.
+	 * 
+	 * @param sessionSearcher
+	 *  searcher the results were retrieved with
+	 * @param algorithmName
+	 *  algorithm name printed with the measures
+	 * @param shortResults
+	 *  results of the short (title) query of every topic
+	 * @param longResults
+	 *  results of the long (description) query of every topic
+	 * 
+	 * @throws IOException
+	 */
+	public static void printEvaluation(SessionSearcher sessionSearcher, String algorithmName, RankedResults[] shortResults, RankedResults[] longResults) throws IOException
+	{
+		if(!hasQrels())
+		{
+			return;
+		}
+		TrecEvaluator trecEvaluator = new TrecEvaluator(sessionSearcher.getQrels(), sessionSearcher.getDocNoLookup());
+		RunEvaluation shortQueryEvaluation = trecEvaluator.evaluate(shortResults);
+		RunEvaluation longQueryEvaluation = trecEvaluator.evaluate(longResults);
+		System.out.println(algorithmName + "ShortQuery\n" + shortQueryEvaluation);
+		System.out.println(algorithmName + "LongQuery\n" + longQueryEvaluation);
+	}
+
+	/**
+	 * This function creates the collector evaluating the queries of a pipeline run against the relevance judgments at
+	 * Constants.TREC_QRELS_FILE_PATH as they are written. Nothing is evaluated if there is no qrels file.
+	 * 
+	 * @param sessionSearcher
+	 *  searcher the results are retrieved with
+	 * @param outputCount
+	 *  number of outputs of every query
+	 * @return
+	 *  evaluation collector, null if there is no qrels file
+	 * 
+	 * @throws IOException
+	 */
+	public static RunEvaluationCollector createRunEvaluationCollector(SessionSearcher sessionSearcher, int outputCount) throws IOException
+	{
+		if(!hasQrels())
+		{
+			return null;
+		}
+		return new RunEvaluationCollector(new TrecEvaluator(sessionSearcher.getQrels(), sessionSearcher.getDocNoLookup()), outputCount);
+	}
+
+	/**
+	 * This function prints the measures of the short and long queries of the specified output of a pipeline run,
+	 * in the format of trec_eval.
+	 * 
+	 * @param algorithmName
+	 *  algorithm name printed with the measures
+	 * @param runEvaluationCollector
+	 *  collector which evaluated the queries, null to print nothing
+	 * @param outputIndex
+	 *  index of the output to print
+	 */
+	public static void printEvaluation(String algorithmName, RunEvaluationCollector runEvaluationCollector, int outputIndex)
+	{
+		if(runEvaluationCollector == null)
+		{
+			return;
+		}
+		System.out.println(algorithmName + "ShortQuery\n" + runEvaluationCollector.getShortQueryEvaluation(outputIndex));
+		System.out.println(algorithmName + "LongQuery\n" + runEvaluationCollector.getLongQueryEvaluation(outputIndex));
+	}
+
+	/**
+	 * Returns whether there is a qrels file to evaluate the runs with.
+	 */
+	static boolean hasQrels()
+	{
+		return Constants.TREC_QRELS_FILE_PATH != null && new File(Constants.TREC_QRELS_FILE_PATH).isFile();
+	}
+
+	/**
+	 * This function creates the measurements of a run, registered over JMX while the run is searched.
+	 * 
+	 * @param runName
+	 *  name of the run, which names its JSON summary
+	 * @return
+	 *  measurements of the run
+	 */
+	public static RunMetrics createRunMetrics(String runName)
+	{
+		RunMetrics runMetrics = new RunMetrics(runName);
+		runMetrics.register();
+		return runMetrics;
+	}
+
+	/**
+	 * This function creates the measurements of the stages of a pipeline run, registered over JMX while the run is searched.
+	 * 
+	 * @param runName
+	 *  name of the run
+	 * @return
+	 *  measurements of the pipeline
+	 */
+	public static PipelineMetrics createPipelineMetrics(String runName)
+	{
+		PipelineMetrics pipelineMetrics = new PipelineMetrics(runName);
+		pipelineMetrics.register();
+		return pipelineMetrics;
+	}
+
+	/**
+	 * This function prints the latencies of the run, and writes its JSON summary to [run name]-metrics.json
+	 * in Constants.METRICS_OUTPUT_DIR, unless the directory is null.
+	 * 
+	 * @param sessionSearcher
+	 *  searcher the run was searched with
+	 * @param runMetrics
+	 *  measurements of the run
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeRunMetrics(SessionSearcher sessionSearcher, RunMetrics runMetrics) throws IOException
+	{
+		writeRunMetrics(sessionSearcher.getDocNoLookup(), runMetrics);
+	}
+
+	/**
+	 * This function prints the latencies of the run, and writes its JSON summary to [run name]-metrics.json
+	 * in Constants.METRICS_OUTPUT_DIR, unless the directory is null.
+	 * 
+	 * @param docNoLookup
+	 *  lookup the DOCNOs of the run were resolved with
+	 * @param runMetrics
+	 *  measurements of the run
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeRunMetrics(DocNoLookup docNoLookup, RunMetrics runMetrics) throws IOException
+	{
+		/* DOCNOs are resolved from the lookup, so stored fields are only read to build it */
+		runMetrics.setStoredFieldFetchCount(docNoLookup.getStoredFieldFetchCount());
+		System.out.println(runMetrics);
+		if(Constants.METRICS_OUTPUT_DIR != null)
+		{
+			runMetrics.writeJson(Constants.METRICS_OUTPUT_DIR + "/" + runMetrics.getRunName() + "-metrics.json");
+		}
 	}
 
 	/**
@@ -129,7 +551,8 @@ public class SearchTRECTTopics {
 		try {
 
 			Similarity defaultSimilarity = new DefaultSimilarity();
-			processTop1KResults(defaultSimilarity, "MYRANK1");
+			processTop1KResults(defaultSimilarity, "MYRANK1", RetrievalMode.EXHAUSTIVE);
+			SearchSession.closeSharedSession();
 		} 
 		catch (IOException e) {
 			// TODO Auto-generated catch block
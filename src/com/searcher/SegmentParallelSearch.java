@@ -0,0 +1,193 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.Similarity;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.result.ScoreAccumulator;
+import com.result.TopKCollector;
+
+/**
+ * This class scores a query with the custom TF-IDF model of EasySearch with its segments searched in parallel on the
+ * segment executor of the session: each segment scores every posting of every query term into its own accumulator
+ * and selects its own top k documents, and the top k of the segments are merged into the top k of the query.
+ * A single long query thus uses as many cores as the index has segments.
+ *
+ * The terms of a segment are summed in sorted order like getQueryRelevanceScores, and the top k are selected by
+ * score then document id, so the results are identical to the EXHAUSTIVE retrieval.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SegmentParallelSearch {
+
+	/* Each searching thread reuses its accumulator over all the documents and its top k collector */
+	private static final ThreadLocal<ScoreAccumulator> SCORE_ACCUMULATORS = new ThreadLocal<ScoreAccumulator>();
+	private static final ThreadLocal<TopKCollector> TOP_K_COLLECTORS = ThreadLocal.withInitial(() -> new TopKCollector(Constants.TOP_K_RESULTS));
+
+	/**
+	 * This class holds the top k documents of one segment, and the work done to select them.
+	 */
+	private static class LeafResults
+	{
+		private int[] documentIDs;
+		private double[] scores;
+		private long postingCount;
+		private int scoredDocumentCount;
+	}
+
+	/**
+	 * This function searches the segments of the query in parallel and collects the top k documents of the query.
+	 *
+	 * @param indexSearcher
+	 *  searcher acquired from the search session, whose segment executor searches the segments
+	 * @param queryTerms
+	 *  sorted terms of the query
+	 * @param similarity
+	 *  similarity whose norms give the document lengths
+	 * @param k
+	 *  number of top documents
+	 * @param topKCollector
+	 *  collector to be filled with the top documents, it is reset before use
+	 *
+	 * @throws IOException
+	 * @throws SecurityException
+	 * @throws NoSuchMethodException
+	 * @throws InvocationTargetException
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public static void search(SessionSearcher indexSearcher, Set<Term> queryTerms, Similarity similarity, int k, TopKCollector topKCollector) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+
+		IndexReader indexReader = indexSearcher.getIndexReader();
+		int corpusDocumentCount = indexReader.maxDoc();
+		Term[] terms = queryTerms.toArray(new Term[queryTerms.size()]);
+		double[] iDFScores = new double[terms.length];
+		for(int termIndex = 0; termIndex < terms.length; termIndex++)
+		{
+			iDFScores[termIndex] = Calculator.calculateIDFScore(indexReader.docFreq(terms[termIndex]), corpusDocumentCount);
+		}
+		DocumentLengths documentLengths = indexSearcher.getDocumentLengths(similarity);
+
+		/* The calling thread searches the first segment while the executor searches the rest */
+		List<LeafReaderContext> leaves = indexReader.leaves();
+		ExecutorService segmentExecutor = indexSearcher.getSegmentExecutor();
+		List<Future<LeafResults>> futureLeafResults = new ArrayList<Future<LeafResults>>(leaves.size());
+		LeafResults[] leafResults = new LeafResults[leaves.size()];
+		for(int leafIndex = 1; leafIndex < leaves.size(); leafIndex++)
+		{
+			LeafReaderContext leafReaderContext = leaves.get(leafIndex);
+			double[] leafDocumentLengths = documentLengths.getLeafDocumentLengths(leafReaderContext.ord);
+			if(segmentExecutor == null)
+			{
+				leafResults[leafIndex] = searchLeaf(leafReaderContext, terms, iDFScores, leafDocumentLengths, corpusDocumentCount, k);
+			}
+			else
+			{
+				futureLeafResults.add(segmentExecutor.submit(() -> searchLeaf(leafReaderContext, terms, iDFScores, leafDocumentLengths, corpusDocumentCount, k)));
+			}
+		}
+		if(!leaves.isEmpty())
+		{
+			leafResults[0] = searchLeaf(leaves.get(0), terms, iDFScores, documentLengths.getLeafDocumentLengths(leaves.get(0).ord), corpusDocumentCount, k);
+		}
+		for(int futureIndex = 0; futureIndex < futureLeafResults.size(); futureIndex++)
+		{
+			leafResults[futureIndex + 1] = getSegmentResults(futureLeafResults.get(futureIndex));
+		}
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+
+		/* Merge the top k of the segments */
+		startTime = System.nanoTime();
+		topKCollector.reset(k);
+		for(LeafResults segmentResults : leafResults)
+		{
+			for(int rankIndex = 0; rankIndex < segmentResults.documentIDs.length; rankIndex++)
+			{
+				topKCollector.collect(segmentResults.documentIDs[rankIndex], segmentResults.scores[rankIndex]);
+			}
+			queryMetrics.addPostingCount(segmentResults.postingCount);
+			queryMetrics.addScoredDocumentCount(segmentResults.scoredDocumentCount);
+		}
+		topKCollector.sort();
+		queryMetrics.addStageTime(Stage.TOP_K, startTime);
+	}
+
+	/**
+	 * This function scores every posting of the query terms in the segment, and returns the top k documents of the segment.
+	 */
+	private static LeafResults searchLeaf(LeafReaderContext leafReaderContext, Term[] terms, double[] iDFScores, double[] leafDocumentLengths,
+			int maxDocumentCount, int k) throws IOException
+	{
+		/* The accumulator is indexed by the document id in the index, so it fits every segment without reallocation */
+		ScoreAccumulator scoreAccumulator = SCORE_ACCUMULATORS.get();
+		if(scoreAccumulator == null)
+		{
+			scoreAccumulator = new ScoreAccumulator(maxDocumentCount);
+			SCORE_ACCUMULATORS.set(scoreAccumulator);
+		}
+		scoreAccumulator.reset(maxDocumentCount);
+
+		LeafResults leafResults = new LeafResults();
+		for(int termIndex = 0; termIndex < terms.length; termIndex++)
+		{
+			leafResults.postingCount += PostingsScorer.scorePostings(leafReaderContext, terms[termIndex], iDFScores[termIndex], leafDocumentLengths, scoreAccumulator);
+		}
+
+		TopKCollector topKCollector = TOP_K_COLLECTORS.get();
+		topKCollector.reset(k);
+		for(int touchedIndex = 0; touchedIndex < scoreAccumulator.getTouchedDocumentCount(); touchedIndex++)
+		{
+			int documentID = scoreAccumulator.getTouchedDocumentID(touchedIndex);
+			topKCollector.collect(documentID, scoreAccumulator.getScore(documentID));
+		}
+		leafResults.scoredDocumentCount = scoreAccumulator.getTouchedDocumentCount();
+
+		/* The collector is reused by the next segment of this thread, so its top k are copied out */
+		leafResults.documentIDs = new int[topKCollector.size()];
+		leafResults.scores = new double[topKCollector.size()];
+		for(int rankIndex = 0; rankIndex < topKCollector.size(); rankIndex++)
+		{
+			leafResults.documentIDs[rankIndex] = topKCollector.getDocumentID(rankIndex);
+			leafResults.scores[rankIndex] = topKCollector.getScore(rankIndex);
+		}
+		return leafResults;
+	}
+
+	/**
+	 * Waits for the results of the segment, and reports the failure of the segment as IOException.
+	 */
+	static <T> T getSegmentResults(Future<T> futureResults) throws IOException
+	{
+		try
+		{
+			return futureResults.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for segment results", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IOException("Unable to search segment", e.getCause());
+		}
+	}
+}
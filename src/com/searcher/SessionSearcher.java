@@ -0,0 +1,248 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.StringHelper;
+
+import com.constants.Constants;
+import com.evaluation.Qrels;
+
+/**
+ * This class is the searcher handed out by the SearchSession. One instance is created per opened reader,
+ * hence it is the place to hold everything which is computed once per reader.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SessionSearcher extends IndexSearcher {
+
+	private ExecutorService segmentExecutor;
+	private long readerVersion;
+	private String indexVersion;
+	private DocNoLookup docNoLookup;
+	private Map<Class<?>, DocumentLengths> documentLengthsBySimilarity;
+	private Map<Class<?>, TermUpperBounds> termUpperBoundsBySimilarity;
+	private ImpactIndex impactIndex;
+	private Qrels qrels;
+
+	/**
+	 * Creates the SessionSearcher over specified reader and builds the per reader lookups.
+	 *
+	 * @param indexReader
+	 *  reader to search
+	 *
+	 * @throws IOException
+	 */
+	public SessionSearcher(IndexReader indexReader) throws IOException
+	{
+		this(indexReader, null);
+	}
+
+	/**
+	 * Creates the SessionSearcher over specified reader which searches the segments of a query on the specified executor.
+	 *
+	 * @param indexReader
+	 *  reader to search
+	 * @param segmentExecutor
+	 *  executor searching the segments in parallel, null searches them on the calling thread
+	 *
+	 * @throws IOException
+	 */
+	public SessionSearcher(IndexReader indexReader, ExecutorService segmentExecutor) throws IOException
+	{
+		super(indexReader, segmentExecutor);
+		this.segmentExecutor = segmentExecutor;
+		/* A reader not opened from a directory has no version, it is told apart by its identity */
+		this.readerVersion = (indexReader instanceof DirectoryReader) ? ((DirectoryReader) indexReader).getVersion() : -System.identityHashCode(indexReader);
+		this.indexVersion = buildIndexVersion(indexReader, readerVersion);
+		this.docNoLookup = DocNoLookup.build(indexReader);
+		this.documentLengthsBySimilarity = new HashMap<Class<?>, DocumentLengths>();
+		this.termUpperBoundsBySimilarity = new HashMap<Class<?>, TermUpperBounds>();
+	}
+
+	/**
+	 * Returns the executor searching the segments of a query in parallel.
+	 * @return
+	 *  segment executor, null when the segments are searched on the calling thread
+	 */
+	public ExecutorService getSegmentExecutor()
+	{
+		return segmentExecutor;
+	}
+
+	/**
+	 * Returns the version of the reader, which changes whenever the index is changed and reopened.
+	 * @return
+	 *  reader version
+	 */
+	public long getReaderVersion()
+	{
+		return readerVersion;
+	}
+
+	/**
+	 * Returns the version of the index which identifies the documents of the reader across runs of the application.
+	 * It is made of the reader version and the unique id and deletions generation of every segment, so it changes whenever
+	 * a lucene document id may refer to another document, including when the index is rebuilt from scratch.
+	 * @return
+	 *  index version
+	 */
+	public String getIndexVersion()
+	{
+		return indexVersion;
+	}
+
+	/**
+	 * Builds the index version of the reader.
+	 */
+	private static String buildIndexVersion(IndexReader indexReader, long readerVersion)
+	{
+		StringBuilder indexVersion = new StringBuilder().append(readerVersion);
+		for(LeafReaderContext leafReaderContext : indexReader.leaves())
+		{
+			LeafReader leafReader = leafReaderContext.reader();
+			if(!(leafReader instanceof SegmentReader))
+			{
+				/* Segment without an id can only be told apart by its identity within this run */
+				indexVersion.append('/').append(System.identityHashCode(leafReader));
+				continue;
+			}
+			SegmentCommitInfo segmentCommitInfo = ((SegmentReader) leafReader).getSegmentInfo();
+			indexVersion.append('/').append(segmentCommitInfo.info.name)
+				.append(':').append(StringHelper.idToString(segmentCommitInfo.info.getId()))
+				.append(':').append(segmentCommitInfo.getDelGen());
+		}
+		return indexVersion.toString();
+	}
+
+	/**
+	 * Returns the document id to DOCNO lookup of the reader.
+	 * @return
+	 *  DOCNO lookup
+	 */
+	public DocNoLookup getDocNoLookup()
+	{
+		return docNoLookup;
+	}
+
+	/**
+	 * Returns the document lengths of the reader decoded with the norm encoding of specified similarity.
+	 * The lengths are built on first use and shared by all the queries using the same similarity class.
+	 *
+	 * @param similarity
+	 *  similarity used to decode the norm values
+	 * @return
+	 *  document lengths
+	 *
+	 * @throws IOException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public synchronized DocumentLengths getDocumentLengths(Similarity similarity) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		DocumentLengths documentLengths = documentLengthsBySimilarity.get(similarity.getClass());
+		if(documentLengths == null)
+		{
+			documentLengths = DocumentLengths.build(this.getIndexReader(), similarity);
+			documentLengthsBySimilarity.put(similarity.getClass(), documentLengths);
+		}
+		return documentLengths;
+	}
+
+	/**
+	 * Returns the upper bounds of term scores of the reader, for the document lengths decoded with specified similarity.
+	 * The bounds of all the terms are built in one pass over the postings on first use, and shared by all the queries
+	 * using the same similarity class.
+	 *
+	 * @param similarity
+	 *  similarity used to decode the norm values
+	 * @return
+	 *  term upper bounds
+	 *
+	 * @throws IOException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	public synchronized TermUpperBounds getTermUpperBounds(Similarity similarity) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		TermUpperBounds termUpperBounds = termUpperBoundsBySimilarity.get(similarity.getClass());
+		if(termUpperBounds == null)
+		{
+			termUpperBounds = TermUpperBounds.build(this.getIndexReader(), getDocumentLengths(similarity));
+			termUpperBoundsBySimilarity.put(similarity.getClass(), termUpperBounds);
+		}
+		return termUpperBounds;
+	}
+
+	/**
+	 * Returns the impact index of the reader at Constants.IMPACT_INDEX_FILE_PATH, which is mapped on first use.
+	 *
+	 * @return
+	 *  impact index
+	 *
+	 * @throws IOException
+	 *  if the impact index is missing, or was built for another version of the index
+	 */
+	public synchronized ImpactIndex getImpactIndex() throws IOException
+	{
+		if(impactIndex == null)
+		{
+			impactIndex = ImpactIndex.open(Constants.IMPACT_INDEX_FILE_PATH, indexVersion);
+		}
+		return impactIndex;
+	}
+
+	/**
+	 * Returns the relevance judgments at Constants.TREC_QRELS_FILE_PATH, with the DOCNOs resolved to the document ids
+	 * of the reader. They are loaded on first use and shared by all the runs evaluated on the reader.
+	 *
+	 * @return
+	 *  relevance judgments
+	 *
+	 * @throws IOException
+	 *  if the qrels file cannot be read
+	 */
+	public synchronized Qrels getQrels() throws IOException
+	{
+		if(qrels == null)
+		{
+			qrels = Qrels.load(Constants.TREC_QRELS_FILE_PATH, docNoLookup);
+		}
+		return qrels;
+	}
+
+	/**
+	 * Returns a light weight searcher over the same reader which uses the specified similarity.
+	 * The similarity of this searcher is not changed, so it can be shared between different algorithms.
+	 * The returned searcher searches the segments on the same executor.
+	 *
+	 * @param similarity
+	 *  similarity to be used
+	 * @return
+	 *  searcher using the specified similarity
+	 */
+	public IndexSearcher withSimilarity(Similarity similarity)
+	{
+		IndexSearcher indexSearcher = new IndexSearcher(this.getIndexReader(), segmentExecutor);
+		indexSearcher.setSimilarity(similarity);
+		return indexSearcher;
+	}
+}
@@ -0,0 +1,678 @@
+package com.searcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+import com.evaluation.Qrels;
+import com.evaluation.RunEvaluationCollector;
+import com.evaluation.TrecEvaluator;
+import com.indexer.AP89Indexer;
+import com.metrics.PipelineMetrics;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
+import com.result.RankedResults;
+import com.result.ScoreAccumulator;
+import com.result.TopKCollector;
+
+/**
+ * This class searches a collection split into several shard indexes, as built by AP89Indexer with more than one shard.
+ * A query is fanned out to all the shards in parallel, each shard selects its own top k documents, and the top k lists
+ * of the shards are merged with a k-way heap into the top k of the query.
+ *
+ * The shards are scored with the document frequencies and document count of the whole collection, summed over the
+ * shards, both by the custom TF-IDF model of Calculator and by the lucene similarities, so every document gets the same
+ * score as in a single index of the collection. The documents are numbered across the shards in the order of shards,
+ * like a MultiReader over the shards, hence the results are ranked by score then by that number.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class ShardedSearcher implements Closeable {
+
+	/* Each searching thread reuses its accumulator over the documents of the largest shard and its top k collector */
+	private static final ThreadLocal<ScoreAccumulator> SCORE_ACCUMULATORS = new ThreadLocal<ScoreAccumulator>();
+	private static final ThreadLocal<TopKCollector> TOP_K_COLLECTORS = ThreadLocal.withInitial(() -> new TopKCollector(Constants.TOP_K_RESULTS));
+
+	private Directory[] shardDirectories;
+	private SessionSearcher[] shardSearchers;
+	private int[] shardDocBases;
+	private int maxShardDocumentCount;
+	private MultiReader collectionReader;
+	private DocNoLookup docNoLookup;
+	private ExecutorService shardExecutor;
+	private StandardAnalyzer analyzer;
+
+	/* QueryParser is not thread-safe, hence one parser per thread */
+	private ThreadLocal<QueryParser> queryParsers;
+
+	/**
+	 * This class holds the top k documents of one shard, numbered across the shards.
+	 */
+	private static class ShardResults
+	{
+		private int[] documentIDs;
+		private double[] scores;
+		private long postingCount;
+		private int scoredDocumentCount;
+	}
+
+	/**
+	 * Creates the ShardedSearcher over the shard indexes at specified paths.
+	 *
+	 * @param shardIndexDirPaths
+	 *  path of the index directory of every shard
+	 *
+	 * @throws IOException
+	 */
+	public ShardedSearcher(String[] shardIndexDirPaths) throws IOException
+	{
+		int shardCount = shardIndexDirPaths.length;
+		this.shardDirectories = new Directory[shardCount];
+		this.shardSearchers = new SessionSearcher[shardCount];
+		this.shardDocBases = new int[shardCount];
+		IndexReader[] shardReaders = new IndexReader[shardCount];
+		int docBase = 0;
+		try
+		{
+			for(int shardIndex = 0; shardIndex < shardCount; shardIndex++)
+			{
+				shardDirectories[shardIndex] = FSDirectory.open(Paths.get(shardIndexDirPaths[shardIndex]));
+				shardReaders[shardIndex] = DirectoryReader.open(shardDirectories[shardIndex]);
+				shardSearchers[shardIndex] = new SessionSearcher(shardReaders[shardIndex]);
+				shardDocBases[shardIndex] = docBase;
+				docBase += shardReaders[shardIndex].maxDoc();
+				maxShardDocumentCount = Math.max(maxShardDocumentCount, shardReaders[shardIndex].maxDoc());
+			}
+
+			/* The shard readers are closed with the collection reader */
+			this.collectionReader = new MultiReader(shardReaders, true);
+			this.docNoLookup = DocNoLookup.build(collectionReader);
+		}
+		catch(Throwable e)
+		{
+			/* The shards opened before the failure are closed, and their close failures are kept with it */
+			closeOnFailure(e, (collectionReader != null) ? new Closeable[] { collectionReader } : shardReaders);
+			closeOnFailure(e, shardDirectories);
+			throw e;
+		}
+		this.shardExecutor = Executors.newFixedThreadPool(Math.max(1, shardCount - 1));
+		this.analyzer = new StandardAnalyzer();
+		this.queryParsers = ThreadLocal.withInitial(() -> new QueryParser(Constants.FIELD_TEXT, analyzer));
+	}
+
+	/**
+	 * Closes every opened object, adding the close failures to the failure as suppressed.
+	 */
+	private static void closeOnFailure(Throwable failure, Closeable[] closeables)
+	{
+		for(Closeable closeable : closeables)
+		{
+			if(closeable == null)
+			{
+				continue;
+			}
+			try
+			{
+				closeable.close();
+			}
+			catch(IOException e)
+			{
+				failure.addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of shards.
+	 * @return
+	 *  number of shards
+	 */
+	public int getShardCount()
+	{
+		return shardSearchers.length;
+	}
+
+	/**
+	 * Returns the number of documents of the collection, summed over the shards.
+	 * @return
+	 *  number of documents
+	 */
+	public int maxDoc()
+	{
+		return collectionReader.maxDoc();
+	}
+
+	/**
+	 * Returns the number of documents of the collection containing the term, summed over the shards.
+	 *
+	 * @param term
+	 *  term to look up
+	 * @return
+	 *  document frequency of the term
+	 *
+	 * @throws IOException
+	 */
+	public int docFreq(Term term) throws IOException
+	{
+		return collectionReader.docFreq(term);
+	}
+
+	/**
+	 * Returns the statistics of the term over the collection, summed over the shards.
+	 *
+	 * @param term
+	 *  term to look up
+	 * @return
+	 *  term statistics
+	 *
+	 * @throws IOException
+	 */
+	public TermStatistics termStatistics(Term term) throws IOException
+	{
+		long documentFrequency = 0;
+		long totalTermFrequency = 0;
+		for(SessionSearcher shardSearcher : shardSearchers)
+		{
+			IndexReader shardReader = shardSearcher.getIndexReader();
+			documentFrequency += shardReader.docFreq(term);
+			totalTermFrequency = sumStatistic(totalTermFrequency, shardReader.totalTermFreq(term));
+		}
+		return new TermStatistics(term.bytes(), documentFrequency, totalTermFrequency);
+	}
+
+	/**
+	 * Returns the statistics of the field over the collection, summed over the shards.
+	 *
+	 * @param field
+	 *  field name
+	 * @return
+	 *  collection statistics
+	 *
+	 * @throws IOException
+	 */
+	public CollectionStatistics collectionStatistics(String field) throws IOException
+	{
+		long maxDocumentCount = 0;
+		long documentCount = 0;
+		long sumTotalTermFrequency = 0;
+		long sumDocumentFrequency = 0;
+		for(SessionSearcher shardSearcher : shardSearchers)
+		{
+			CollectionStatistics shardStatistics = shardSearcher.collectionStatistics(field);
+			maxDocumentCount += shardStatistics.maxDoc();
+			documentCount = sumStatistic(documentCount, shardStatistics.docCount());
+			sumTotalTermFrequency = sumStatistic(sumTotalTermFrequency, shardStatistics.sumTotalTermFreq());
+			sumDocumentFrequency = sumStatistic(sumDocumentFrequency, shardStatistics.sumDocFreq());
+		}
+		return new CollectionStatistics(field, maxDocumentCount, documentCount, sumTotalTermFrequency, sumDocumentFrequency);
+	}
+
+	/**
+	 * Adds the statistic of a shard to the sum, which is unknown (-1) as soon as the statistic of any shard is unknown.
+	 */
+	private static long sumStatistic(long sum, long shardStatistic)
+	{
+		return (sum == -1 || shardStatistic == -1) ? -1 : sum + shardStatistic;
+	}
+
+	/**
+	 * Parses the specified query string on "TEXT" field after escaping the query syntax characters.
+	 *
+	 * @param queryString
+	 *  query string
+	 * @return
+	 *  parsed query
+	 *
+	 * @throws ParseException
+	 */
+	public Query parseQuery(String queryString) throws ParseException
+	{
+		return queryParsers.get().parse(QueryParserUtil.escape(queryString));
+	}
+
+	/**
+	 * Returns the document id to DOCNO lookup of the collection, for the document ids numbered across the shards.
+	 * @return
+	 *  DOCNO lookup
+	 */
+	public DocNoLookup getDocNoLookup()
+	{
+		return docNoLookup;
+	}
+
+	/**
+	 * This function retrieves the top k documents of the query with the custom TF-IDF model of EasySearch. The terms of
+	 * a document are summed in sorted order like getQueryRelevanceScores, so the results are identical to the EXHAUSTIVE
+	 * retrieval over a single index of the collection, but for the order of documents with equal score.
+	 *
+	 * @param queryString
+	 *  query string
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  similarity whose norms give the document lengths
+	 * @param k
+	 *  number of top documents
+	 * @return
+	 *  top k results of the query
+	 *
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public RankedResults search(String queryString, String queryID, Similarity similarity, int k) throws IOException, ParseException
+	{
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+		Query query = parseQuery(queryString);
+		/* Terms in sorted order, as extracted by the SearchSession */
+		Set<Term> queryTerms = new TreeSet<Term>();
+		query.createWeight(shardSearchers[0], false).extractTerms(queryTerms);
+		queryMetrics.addStageTime(Stage.PARSE, startTime);
+
+		/* IDF of the collection, so a document scores the same in its shard as in a single index */
+		startTime = System.nanoTime();
+		Term[] terms = queryTerms.toArray(new Term[queryTerms.size()]);
+		double[] iDFScores = new double[terms.length];
+		for(int termIndex = 0; termIndex < terms.length; termIndex++)
+		{
+			iDFScores[termIndex] = Calculator.calculateIDFScore(docFreq(terms[termIndex]), maxDoc());
+		}
+
+		ShardResults[] shardResults = searchShards(shardIndex -> searchShard(shardIndex, terms, iDFScores, similarity, k));
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+
+		startTime = System.nanoTime();
+		RankedResults rankedResults = mergeTopK(queryID, shardResults, k, false);
+		for(ShardResults results : shardResults)
+		{
+			queryMetrics.addPostingCount(results.postingCount);
+			queryMetrics.addScoredDocumentCount(results.scoredDocumentCount);
+		}
+		queryMetrics.addStageTime(Stage.TOP_K, startTime);
+		return rankedResults;
+	}
+
+	/**
+	 * This function retrieves the top k documents of the query with the specified lucene similarity. Every shard is searched
+	 * by lucene with the statistics of the collection, so the scores are identical to searching a single index of the collection.
+	 *
+	 * @param query
+	 *  parsed query
+	 * @param queryID
+	 *  Query ID
+	 * @param similarity
+	 *  lucene similarity
+	 * @param k
+	 *  number of top documents
+	 * @return
+	 *  top k results of the query
+	 *
+	 * @throws IOException
+	 */
+	public RankedResults search(Query query, String queryID, Similarity similarity, int k) throws IOException
+	{
+		ShardResults[] shardResults = searchShards(shardIndex -> {
+			IndexSearcher shardSearcher = new CollectionStatisticsSearcher(shardSearchers[shardIndex].getIndexReader());
+			shardSearcher.setSimilarity(similarity);
+			ScoreDoc[] scoreDocs = shardSearcher.search(query, k).scoreDocs;
+
+			ShardResults results = new ShardResults();
+			results.documentIDs = new int[scoreDocs.length];
+			results.scores = new double[scoreDocs.length];
+			for(int rankIndex = 0; rankIndex < scoreDocs.length; rankIndex++)
+			{
+				results.documentIDs[rankIndex] = shardDocBases[shardIndex] + scoreDocs[rankIndex].doc;
+				results.scores[rankIndex] = scoreDocs[rankIndex].score;
+			}
+			return results;
+		});
+		return mergeTopK(queryID, shardResults, k, true);
+	}
+
+	/**
+	 * This interface searches one shard.
+	 */
+	private interface ShardSearch
+	{
+		ShardResults search(int shardIndex) throws Exception;
+	}
+
+	/**
+	 * Searches all the shards in parallel, the calling thread searching the first shard while the executor searches the rest.
+	 */
+	private ShardResults[] searchShards(ShardSearch shardSearch) throws IOException
+	{
+		ShardResults[] shardResults = new ShardResults[shardSearchers.length];
+		List<Future<ShardResults>> futureShardResults = new ArrayList<Future<ShardResults>>(shardSearchers.length);
+		try
+		{
+			for(int shardIndex = 1; shardIndex < shardSearchers.length; shardIndex++)
+			{
+				int searchedShardIndex = shardIndex;
+				futureShardResults.add(shardExecutor.submit(() -> shardSearch.search(searchedShardIndex)));
+			}
+			shardResults[0] = shardSearch.search(0);
+			for(int futureIndex = 0; futureIndex < futureShardResults.size(); futureIndex++)
+			{
+				shardResults[futureIndex + 1] = futureShardResults.get(futureIndex).get();
+			}
+			return shardResults;
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for shard results", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IOException("Unable to search shard", e.getCause());
+		}
+		catch(IOException e)
+		{
+			throw e;
+		}
+		catch(Exception e)
+		{
+			throw new IOException("Unable to search shard", e);
+		}
+		finally
+		{
+			/* The remaining shards are not waited for once a shard has failed */
+			for(Future<ShardResults> futureResults : futureShardResults)
+			{
+				futureResults.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * This function scores every posting of the query terms in the shard with the IDF of the collection, and returns
+	 * the top k documents of the shard.
+	 */
+	private ShardResults searchShard(int shardIndex, Term[] terms, double[] iDFScores, Similarity similarity, int k)
+			throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	{
+		SessionSearcher shardSearcher = shardSearchers[shardIndex];
+		DocumentLengths documentLengths = shardSearcher.getDocumentLengths(similarity);
+
+		/* The accumulator fits the largest shard, so it is not reallocated from shard to shard */
+		ScoreAccumulator scoreAccumulator = SCORE_ACCUMULATORS.get();
+		if(scoreAccumulator == null)
+		{
+			scoreAccumulator = new ScoreAccumulator(maxShardDocumentCount);
+			SCORE_ACCUMULATORS.set(scoreAccumulator);
+		}
+		scoreAccumulator.reset(maxShardDocumentCount);
+
+		ShardResults shardResults = new ShardResults();
+		for(int termIndex = 0; termIndex < terms.length; termIndex++)
+		{
+			for(LeafReaderContext leafReaderContext : shardSearcher.getIndexReader().leaves())
+			{
+				shardResults.postingCount += PostingsScorer.scorePostings(leafReaderContext, terms[termIndex], iDFScores[termIndex],
+						documentLengths.getLeafDocumentLengths(leafReaderContext.ord), scoreAccumulator);
+			}
+		}
+
+		TopKCollector topKCollector = TOP_K_COLLECTORS.get();
+		topKCollector.reset(k);
+		for(int touchedIndex = 0; touchedIndex < scoreAccumulator.getTouchedDocumentCount(); touchedIndex++)
+		{
+			int documentID = scoreAccumulator.getTouchedDocumentID(touchedIndex);
+			topKCollector.collect(documentID, scoreAccumulator.getScore(documentID));
+		}
+		topKCollector.sort();
+		shardResults.scoredDocumentCount = scoreAccumulator.getTouchedDocumentCount();
+
+		/* The collector is reused by the next shard of this thread, so its top k are copied out */
+		shardResults.documentIDs = new int[topKCollector.size()];
+		shardResults.scores = new double[topKCollector.size()];
+		for(int rankIndex = 0; rankIndex < topKCollector.size(); rankIndex++)
+		{
+			shardResults.documentIDs[rankIndex] = shardDocBases[shardIndex] + topKCollector.getDocumentID(rankIndex);
+			shardResults.scores[rankIndex] = topKCollector.getScore(rankIndex);
+		}
+		return shardResults;
+	}
+
+	/**
+	 * This function merges the top k documents of the shards, each in the order of rank, into the top k documents of the query.
+	 * A min-heap holds the shards by their next unmerged document, so each merged document costs O(log n) for n shards.
+	 */
+	private static RankedResults mergeTopK(String queryID, ShardResults[] shardResults, int k, boolean singlePrecisionScores)
+	{
+		int[] heapShards = new int[shardResults.length];
+		int[] nextRanks = new int[shardResults.length];
+		int heapSize = 0;
+		int documentCount = 0;
+		for(int shardIndex = 0; shardIndex < shardResults.length; shardIndex++)
+		{
+			if(shardResults[shardIndex].documentIDs.length > 0)
+			{
+				heapShards[heapSize] = shardIndex;
+				siftUp(heapShards, heapSize, shardResults, nextRanks);
+				heapSize++;
+				documentCount += shardResults[shardIndex].documentIDs.length;
+			}
+		}
+
+		int[] documentIDs = new int[Math.min(k, documentCount)];
+		double[] scores = new double[documentIDs.length];
+		for(int rankIndex = 0; rankIndex < documentIDs.length; rankIndex++)
+		{
+			int shardIndex = heapShards[0];
+			int shardRank = nextRanks[shardIndex]++;
+			documentIDs[rankIndex] = shardResults[shardIndex].documentIDs[shardRank];
+			scores[rankIndex] = shardResults[shardIndex].scores[shardRank];
+
+			/* The shard drops out of the heap once all its documents are merged */
+			if(nextRanks[shardIndex] == shardResults[shardIndex].documentIDs.length)
+			{
+				heapShards[0] = heapShards[--heapSize];
+			}
+			siftDown(heapShards, heapSize, shardResults, nextRanks);
+		}
+		return RankedResults.fromArrays(queryID, documentIDs, scores, singlePrecisionScores);
+	}
+
+	/**
+	 * Returns true if the next document of the first shard ranks before the next document of the second shard.
+	 * Documents with equal score are ranked in increasing order of document id, like the TopKCollector.
+	 */
+	private static boolean ranksBefore(int firstShardIndex, int secondShardIndex, ShardResults[] shardResults, int[] nextRanks)
+	{
+		double firstScore = shardResults[firstShardIndex].scores[nextRanks[firstShardIndex]];
+		double secondScore = shardResults[secondShardIndex].scores[nextRanks[secondShardIndex]];
+		if(firstScore != secondScore)
+		{
+			return firstScore > secondScore;
+		}
+		return shardResults[firstShardIndex].documentIDs[nextRanks[firstShardIndex]] < shardResults[secondShardIndex].documentIDs[nextRanks[secondShardIndex]];
+	}
+
+	private static void siftUp(int[] heapShards, int index, ShardResults[] shardResults, int[] nextRanks)
+	{
+		while(index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if(!ranksBefore(heapShards[index], heapShards[parent], shardResults, nextRanks))
+			{
+				break;
+			}
+			swap(heapShards, index, parent);
+			index = parent;
+		}
+	}
+
+	private static void siftDown(int[] heapShards, int heapSize, ShardResults[] shardResults, int[] nextRanks)
+	{
+		int index = 0;
+		while(true)
+		{
+			int best = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if(left < heapSize && ranksBefore(heapShards[left], heapShards[best], shardResults, nextRanks))
+			{
+				best = left;
+			}
+			if(right < heapSize && ranksBefore(heapShards[right], heapShards[best], shardResults, nextRanks))
+			{
+				best = right;
+			}
+			if(best == index)
+			{
+				break;
+			}
+			swap(heapShards, index, best);
+			index = best;
+		}
+	}
+
+	private static void swap(int[] heapShards, int first, int second)
+	{
+		int shardIndex = heapShards[first];
+		heapShards[first] = heapShards[second];
+		heapShards[second] = shardIndex;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		shardExecutor.shutdown();
+		analyzer.close();
+		collectionReader.close();
+		for(Directory shardDirectory : shardDirectories)
+		{
+			shardDirectory.close();
+		}
+	}
+
+	/**
+	 * This searcher searches one shard with the term and collection statistics of the whole collection,
+	 * so the lucene similarities weight the query as over a single index.
+	 */
+	private class CollectionStatisticsSearcher extends IndexSearcher
+	{
+		public CollectionStatisticsSearcher(IndexReader shardReader)
+		{
+			super(shardReader);
+		}
+
+		@Override
+		public TermStatistics termStatistics(Term term, TermContext context) throws IOException
+		{
+			return ShardedSearcher.this.termStatistics(term);
+		}
+
+		@Override
+		public CollectionStatistics collectionStatistics(String field) throws IOException
+		{
+			return ShardedSearcher.this.collectionStatistics(field);
+		}
+	}
+
+	/**
+	 * This function searches the short and long queries of all the topics over the shards, with the custom TF-IDF model
+	 * and with the lucene DefaultSimilarity, and writes the results of both in trec_eval file format.
+	 *
+	 * @param shardedSearcher
+	 *  searcher over the shards
+	 * @param algorithmNames
+	 *  name of the run of the custom TF-IDF model and of the DefaultSimilarity
+	 *
+	 * @throws IOException
+	 */
+	public static void processTop1KResults(ShardedSearcher shardedSearcher, String[] algorithmNames) throws IOException
+	{
+		Similarity similarity = new DefaultSimilarity();
+		RunMetrics runMetrics = SearchTRECTTopics.createRunMetrics(String.join("-", algorithmNames));
+		PipelineMetrics pipelineMetrics = SearchTRECTTopics.createPipelineMetrics(String.join("-", algorithmNames));
+		DocNoLookup docNoLookup = shardedSearcher.getDocNoLookup();
+		RunEvaluationCollector runEvaluationCollector = null;
+		if(SearchTRECTTopics.hasQrels())
+		{
+			Qrels qrels = Qrels.load(Constants.TREC_QRELS_FILE_PATH, docNoLookup);
+			runEvaluationCollector = new RunEvaluationCollector(new TrecEvaluator(qrels, docNoLookup), algorithmNames.length);
+		}
+
+		try(TrecTopicStream topicStream = new TrecTopicStream(Constants.TREC_TOPIC_FILE_PATH);
+				TopicPipeline topicPipeline = new TopicPipeline(pipelineMetrics, runMetrics))
+		{
+			String[] shortOutputFilePaths = new String[algorithmNames.length];
+			String[] longOutputFilePaths = new String[algorithmNames.length];
+			for(int algorithmIndex = 0; algorithmIndex < algorithmNames.length; algorithmIndex++)
+			{
+				if(Constants.WRITE_RUN_FILES)
+				{
+					shortOutputFilePaths[algorithmIndex] = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmNames[algorithmIndex] + "ShortQuery" + ".txt";
+					longOutputFilePaths[algorithmIndex] = Constants.TREC_TOPIC_OUTPUT_DIR + "/" + algorithmNames[algorithmIndex] + "LongQuery" + ".txt";
+				}
+			}
+
+			topicPipeline.process(topicStream, (queryString, queryID) -> new RankedResults[] {
+					shardedSearcher.search(queryString, queryID, similarity, Constants.TOP_K_RESULTS),
+					shardedSearcher.search(shardedSearcher.parseQuery(queryString), queryID, similarity, Constants.TOP_K_RESULTS) },
+					docNoLookup, shortOutputFilePaths, longOutputFilePaths, runEvaluationCollector);
+
+			for(int algorithmIndex = 0; algorithmIndex < algorithmNames.length; algorithmIndex++)
+			{
+				SearchTRECTTopics.printEvaluation(algorithmNames[algorithmIndex], runEvaluationCollector, algorithmIndex);
+			}
+			SearchTRECTTopics.writeRunMetrics(docNoLookup, runMetrics);
+			System.out.println(pipelineMetrics);
+		}
+	}
+
+	/**
+	 * Main Function to search the topics over the shards of the index.
+	 * @param args
+	 *  optional number of shards of Constants.INDEX_DIR_PATH, default is Constants.SHARD_COUNT
+	 */
+	public static void main(String[] args) {
+
+		int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : Constants.SHARD_COUNT;
+		try(ShardedSearcher shardedSearcher = new ShardedSearcher(AP89Indexer.getShardIndexDirPaths(Constants.INDEX_DIR_PATH, shardCount)))
+		{
+			processTop1KResults(shardedSearcher, new String[] { "SHARDED_MYRANK1", "SHARDED_DEFAULT_VECTOR" });
+			System.out.println("All the querie from TREC 51-100 executed successfully over " + shardCount + " shards.");
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.searcher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+
+/**
+ * This class creates the similarities compared by CompareAlgorithms from a configuration, which is the algorithm name
+ * optionally followed by its parameters, e.g. "BM25", "BM25(k1=0.9,b=0.4)", "LMDirichlet(mu=1000)" or "LMJelinek(lambda=0.3)".
+ * A parameter which is not specified takes its default value: k1=1.2 and b=0.75 for BM25, mu=2000 for LMDirichlet,
+ * and lambda=0.7 for LMJelinek as compared by CompareAlgorithms. DEFAULT_VECTOR and TFIDF_CUSTOM have no parameters.
+ *
+ * A parameter grid has the same syntax, with several values per parameter separated by '|', and a range of values
+ * written from:to:step, e.g. "BM25(k1=0.5:1.5:0.1,b=0.25|0.5|0.75)" for 33 configurations.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SimilarityFactory {
+
+	public static final String DEFAULT_VECTOR = "DEFAULT_VECTOR";
+	public static final String BM25 = "BM25";
+	public static final String LM_DIRICHLET = "LMDirichlet";
+	public static final String LM_JELINEK = "LMJelinek";
+	public static final String TFIDF_CUSTOM = "TFIDF_CUSTOM";
+
+	/* Parameter names of each algorithm in the order of configuration names, with their default values */
+	private static final Map<String, String[]> PARAMETER_NAMES = new LinkedHashMap<String, String[]>();
+	private static final Map<String, String[]> DEFAULT_VALUES = new LinkedHashMap<String, String[]>();
+	static
+	{
+		register(DEFAULT_VECTOR, new String[0], new String[0]);
+		register(BM25, new String[] { "k1", "b" }, new String[] { "1.2", "0.75" });
+		register(LM_DIRICHLET, new String[] { "mu" }, new String[] { "2000" });
+		register(LM_JELINEK, new String[] { "lambda" }, new String[] { "0.7" });
+		register(TFIDF_CUSTOM, new String[0], new String[0]);
+	}
+
+	/**
+	 * Registers the parameters of the algorithm with their default values.
+	 */
+	private static void register(String algorithmName, String[] parameterNames, String[] defaultValues)
+	{
+		PARAMETER_NAMES.put(algorithmName, parameterNames);
+		DEFAULT_VALUES.put(algorithmName, defaultValues);
+	}
+
+	/**
+	 * This function creates the similarity of the configuration.
+	 *
+	 * @param configuration
+	 *  algorithm name, optionally followed by its parameters
+	 * @return
+	 *  similarity
+	 *
+	 * @throws IllegalArgumentException
+	 *  if the algorithm or a parameter is unknown, or a value is not a number
+	 */
+	public static Similarity create(String configuration)
+	{
+		String algorithmName = getAlgorithmName(configuration);
+		float[] values = new float[PARAMETER_NAMES.get(algorithmName).length];
+		String[] valueTexts = getParameterValues(configuration, algorithmName);
+		for(int parameterIndex = 0; parameterIndex < values.length; parameterIndex++)
+		{
+			values[parameterIndex] = parseNumber(valueTexts[parameterIndex], configuration).floatValue();
+		}
+
+		switch(algorithmName)
+		{
+		case DEFAULT_VECTOR:
+			return new DefaultSimilarity();
+		case BM25:
+			return new BM25Similarity(values[0], values[1]);
+		case LM_DIRICHLET:
+			return new LMDirichletSimilarity(values[0]);
+		case LM_JELINEK:
+			return new LMJelinekMercerSimilarity(values[0]);
+		default:
+			return new TFIDFCustomSimilarity();
+		}
+	}
+
+	/**
+	 * This function expands the parameter grid to all its configurations, with every parameter written out, e.g. "BM25(k1=0.5,b=0.25)".
+	 * The configurations vary the last parameter fastest.
+	 *
+	 * @param parameterGrid
+	 *  algorithm name, optionally followed by the values of its parameters
+	 * @return
+	 *  configurations of the grid
+	 *
+	 * @throws IllegalArgumentException
+	 *  if the algorithm or a parameter is unknown, or a value or range is malformed
+	 */
+	public static List<String> expandGrid(String parameterGrid)
+	{
+		String algorithmName = getAlgorithmName(parameterGrid);
+		String[] parameterNames = PARAMETER_NAMES.get(algorithmName);
+		String[] valueTexts = getParameterValues(parameterGrid, algorithmName);
+
+		List<String> configurations = new ArrayList<String>();
+		configurations.add(algorithmName + (parameterNames.length > 0 ? "(" : ""));
+		for(int parameterIndex = 0; parameterIndex < parameterNames.length; parameterIndex++)
+		{
+			String separator = (parameterIndex == 0) ? "" : ",";
+			String suffix = (parameterIndex == parameterNames.length - 1) ? ")" : "";
+			List<String> expandedConfigurations = new ArrayList<String>();
+			for(String configuration : configurations)
+			{
+				for(BigDecimal value : parseValues(valueTexts[parameterIndex], parameterGrid))
+				{
+					expandedConfigurations.add(configuration + separator + parameterNames[parameterIndex] + "=" + format(value) + suffix);
+				}
+			}
+			configurations = expandedConfigurations;
+		}
+		return configurations;
+	}
+
+	/**
+	 * Returns the algorithm name of the configuration, checking it is known.
+	 */
+	private static String getAlgorithmName(String configuration)
+	{
+		int parameterStart = configuration.indexOf('(');
+		String algorithmName = (parameterStart < 0 ? configuration : configuration.substring(0, parameterStart)).trim();
+		if(!PARAMETER_NAMES.containsKey(algorithmName))
+		{
+			throw new IllegalArgumentException("Unknown algorithm " + algorithmName + " in " + configuration + ", expected one of " + PARAMETER_NAMES.keySet());
+		}
+		return algorithmName;
+	}
+
+	/**
+	 * Returns the value text of every parameter of the algorithm in the configuration, the default value for a parameter which is not specified.
+	 */
+	private static String[] getParameterValues(String configuration, String algorithmName)
+	{
+		String[] parameterNames = PARAMETER_NAMES.get(algorithmName);
+		String[] valueTexts = DEFAULT_VALUES.get(algorithmName).clone();
+
+		int parameterStart = configuration.indexOf('(');
+		if(parameterStart < 0)
+		{
+			return valueTexts;
+		}
+		int parameterEnd = configuration.lastIndexOf(')');
+		if(parameterEnd < parameterStart || !configuration.substring(parameterEnd + 1).trim().isEmpty())
+		{
+			throw new IllegalArgumentException("Malformed parameters in " + configuration);
+		}
+
+		String parameters = configuration.substring(parameterStart + 1, parameterEnd).trim();
+		if(parameters.isEmpty())
+		{
+			return valueTexts;
+		}
+		for(String parameter : parameters.split(","))
+		{
+			int equalsIndex = parameter.indexOf('=');
+			String parameterName = (equalsIndex < 0) ? parameter.trim() : parameter.substring(0, equalsIndex).trim();
+			int parameterIndex = Arrays.asList(parameterNames).indexOf(parameterName);
+			if(equalsIndex < 0 || parameterIndex < 0)
+			{
+				throw new IllegalArgumentException("Unknown parameter " + parameterName + " in " + configuration + ", " + algorithmName + " takes " + Arrays.toString(parameterNames));
+			}
+			valueTexts[parameterIndex] = parameter.substring(equalsIndex + 1).trim();
+		}
+		return valueTexts;
+	}
+
+	/**
+	 * Returns the values of a parameter in the grid: numbers separated by '|', each of which may be a range from:to:step.
+	 * Ranges are stepped in decimal, so 0.1:0.3:0.1 is exactly 0.1, 0.2 and 0.3.
+	 */
+	private static List<BigDecimal> parseValues(String valueTexts, String parameterGrid)
+	{
+		List<BigDecimal> values = new ArrayList<BigDecimal>();
+		for(String valueText : valueTexts.split("\\|"))
+		{
+			String[] range = valueText.split(":");
+			if(range.length == 1)
+			{
+				values.add(parseNumber(range[0], parameterGrid));
+				continue;
+			}
+			if(range.length != 3)
+			{
+				throw new IllegalArgumentException("Malformed range " + valueText + " in " + parameterGrid + ", expected from:to:step");
+			}
+
+			BigDecimal from = parseNumber(range[0], parameterGrid);
+			BigDecimal to = parseNumber(range[1], parameterGrid);
+			BigDecimal step = parseNumber(range[2], parameterGrid);
+			if(step.signum() <= 0)
+			{
+				throw new IllegalArgumentException("Step of range " + valueText + " in " + parameterGrid + " must be positive");
+			}
+			for(BigDecimal value = from; value.compareTo(to) <= 0; value = value.add(step))
+			{
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Parses the number, reporting the configuration it belongs to if it is not a number.
+	 */
+	private static BigDecimal parseNumber(String number, String configuration)
+	{
+		try
+		{
+			return new BigDecimal(number.trim());
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Malformed number " + number + " in " + configuration, e);
+		}
+	}
+
+	/**
+	 * Formats the value without trailing zeros and exponent, so the same value always gives the same configuration.
+	 */
+	private static String format(BigDecimal value)
+	{
+		return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+	}
+}
@@ -0,0 +1,137 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.similarities.Similarity.SimScorer;
+import org.apache.lucene.search.similarities.Similarity.SimWeight;
+
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.Stage;
+import com.result.RankedResults;
+import com.result.TopKCollector;
+
+/**
+ * This class retrieves the top k documents of a query for a similarity by replaying the PostingsSnapshot of the query,
+ * instead of walking its postings. The weights are computed from the statistics held by the snapshot, and each posting
+ * is scored with the SimScorer of the similarity, summed and coord applied the same way as MultiSimilaritySearch,
+ * so the results are same as searching the query with IndexSearcher set to the similarity.
+ *
+ * The object reuses its score arrays from search to search, hence one object is used per search thread.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class SnapshotSearch {
+
+	private SessionSearcher sessionSearcher;
+	private double[] documentScores;
+	private int[] matchingClauseCounts;
+	private int[] touchedDocumentIDs;
+	private int touchedDocumentCount;
+	private TopKCollector topKCollector;
+
+	/**
+	 * Creates the SnapshotSearch over the specified searcher.
+	 *
+	 * @param sessionSearcher
+	 *  searcher the snapshots are read from
+	 * @param k
+	 *  initial number of top documents
+	 */
+	public SnapshotSearch(SessionSearcher sessionSearcher, int k)
+	{
+		int maxDocumentCount = sessionSearcher.getIndexReader().maxDoc();
+		this.sessionSearcher = sessionSearcher;
+		this.documentScores = new double[maxDocumentCount];
+		this.matchingClauseCounts = new int[maxDocumentCount];
+		this.touchedDocumentIDs = new int[maxDocumentCount];
+		this.topKCollector = new TopKCollector(k);
+	}
+
+	/**
+	 * This function scores the snapshot with the similarity and returns the top k documents.
+	 *
+	 * @param postingsSnapshot
+	 *  snapshot of the query, read from the searcher of this object
+	 * @param similarity
+	 *  similarity to score the query with
+	 * @param queryID
+	 *  Query ID
+	 * @param k
+	 *  number of top documents
+	 * @return
+	 *  ranked results of the query
+	 *
+	 * @throws IOException
+	 */
+	public RankedResults search(PostingsSnapshot postingsSnapshot, Similarity similarity, String queryID, int k) throws IOException
+	{
+		int clauseCount = postingsSnapshot.getClauseCount();
+		SimWeight[] simWeights = MultiSimilaritySearch.getNormalizedWeights(similarity, postingsSnapshot.getCollectionStatistics(), postingsSnapshot.getTermStatistics());
+		float[] coordFactors = MultiSimilaritySearch.getCoordFactors(similarity, clauseCount, postingsSnapshot.isCoordApplied());
+		boolean distinctTermSimilarity = similarity instanceof TFIDFCustomSimilarity;
+		QueryMetrics queryMetrics = QueryMetrics.current();
+		long startTime = System.nanoTime();
+
+		touchedDocumentCount = 0;
+		List<LeafReaderContext> leaves = sessionSearcher.getIndexReader().leaves();
+		for(LeafReaderContext leafReaderContext : leaves)
+		{
+			int docBase = leafReaderContext.docBase;
+			for(int clauseIndex = 0; clauseIndex < clauseCount; clauseIndex++)
+			{
+				int[] leafDocumentIDs = postingsSnapshot.getLeafDocumentIDs(leafReaderContext.ord, clauseIndex);
+				if(leafDocumentIDs == null)
+				{
+					continue;
+				}
+				int[] termFrequencies = postingsSnapshot.getTermFrequencies(leafReaderContext.ord, clauseIndex);
+				int termClauseCount = postingsSnapshot.getTermClauseCount(clauseIndex);
+				/* The custom TF-IDF model scores each distinct term once, see MultiSimilaritySearch */
+				int repeatCount = distinctTermSimilarity ? 1 : termClauseCount;
+				SimScorer simScorer = similarity.simScorer(simWeights[clauseIndex], leafReaderContext);
+
+				for(int postingIndex = 0; postingIndex < leafDocumentIDs.length; postingIndex++)
+				{
+					int leafDocumentID = leafDocumentIDs[postingIndex];
+					int documentID = docBase + leafDocumentID;
+					if(matchingClauseCounts[documentID] == 0)
+					{
+						touchedDocumentIDs[touchedDocumentCount++] = documentID;
+					}
+					matchingClauseCounts[documentID] += termClauseCount;
+
+					float termScore = simScorer.score(leafDocumentID, termFrequencies[postingIndex]);
+					for(int repeat = 0; repeat < repeatCount; repeat++)
+					{
+						documentScores[documentID] += termScore;
+					}
+				}
+			}
+		}
+
+		/* Replaying the snapshot is measured as postings traversal, the postings are counted once when read */
+		queryMetrics.addStageTime(Stage.POSTINGS, startTime);
+		queryMetrics.addScoredDocumentCount(touchedDocumentCount);
+
+		/* Select the top k, and clear the score arrays for the next search */
+		startTime = System.nanoTime();
+		topKCollector.reset(k);
+		for(int touchedIndex = 0; touchedIndex < touchedDocumentCount; touchedIndex++)
+		{
+			int documentID = touchedDocumentIDs[touchedIndex];
+			/* Lucene sums the clause scores as double, and scores the document in float */
+			float documentScore = (float) documentScores[documentID] * coordFactors[matchingClauseCounts[documentID]];
+			documentScores[documentID] = 0;
+			matchingClauseCounts[documentID] = 0;
+			topKCollector.collect(documentID, documentScore);
+		}
+		topKCollector.sort();
+		RankedResults rankedResults = RankedResults.fromTopKCollector(queryID, topKCollector, true);
+		queryMetrics.addStageTime(Stage.TOP_K, startTime);
+		return rankedResults;
+	}
+}
@@ -0,0 +1,209 @@
+package com.searcher;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+
+import com.calculator.Calculator;
+
+/**
+ * This class is the custom TF-IDF model of EasySearch as a lucene Similarity, so the model can be searched with
+ * IndexSearcher and compared with the other similarities in CompareAlgorithms. The score of a term in a document is
+ * Calculator.calculateTFIDFScoreForTerm: (term frequency / document length) * log(1 + document count / document frequency).
+ *
+ * The norms are encoded and decoded as DefaultSimilarity does, so the document lengths are the same as those decoded
+ * by DocumentLengths for an index built with DefaultSimilarity. Coord and query normalization are not applied.
+ *
+ * The scores differ from EasySearch in two ways lucene imposes:
+ * (1) lucene scores are float, the score of each term is rounded to float, and so is the summed document score;
+ * hence documents whose double scores differ in the last digits may tie, or swap their ranks.
+ * (2) EasySearch scores each distinct query term once, while lucene scores every clause of the query, so a term
+ * repeated in the query string is counted as many times as it is repeated. Searching the query made by
+ * createDistinctTermQuery scores the same terms as EasySearch.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TFIDFCustomSimilarity extends Similarity {
+
+	private DefaultSimilarity normSimilarity;
+	private double[] documentLengthDecodeTable;
+
+	/**
+	 * Creates the similarity, sharing the table of document length for each norm byte with DocumentLengths.
+	 */
+	public TFIDFCustomSimilarity()
+	{
+		this.normSimilarity = new DefaultSimilarity();
+		this.documentLengthDecodeTable = DocumentLengths.getDefaultDecodeTable();
+	}
+
+	@Override
+	public long computeNorm(FieldInvertState state)
+	{
+		return normSimilarity.computeNorm(state);
+	}
+
+	/**
+	 * Decodes the norm value of a document as DefaultSimilarity does, so DocumentLengths.buildDecodeTable can decode the lengths with it.
+	 *
+	 * @param norm
+	 *  encoded norm value
+	 * @return
+	 *  1 / square root of the document length
+	 */
+	public float decodeNormValue(long norm)
+	{
+		return normSimilarity.decodeNormValue(norm);
+	}
+
+	@Override
+	public SimWeight computeWeight(CollectionStatistics collectionStats, TermStatistics... termStats)
+	{
+		/* A phrase is scored with the sum of the IDF Scores of its terms */
+		double iDFScore = 0;
+		for(TermStatistics termStatistics : termStats)
+		{
+			iDFScore += Calculator.calculateIDFScore(termStatistics.docFreq(), collectionStats.maxDoc());
+		}
+		return new TFIDFWeight(collectionStats.field(), iDFScore);
+	}
+
+	@Override
+	public SimScorer simScorer(SimWeight weight, LeafReaderContext context) throws IOException
+	{
+		TFIDFWeight tFIDFWeight = (TFIDFWeight) weight;
+		return new TFIDFScorer(tFIDFWeight, context.reader().getNormValues(tFIDFWeight.field));
+	}
+
+	/**
+	 * This function creates the query of the distinct terms of the specified query, which scores the same terms as
+	 * EasySearch: a disjunction of one term query per distinct term, in sorted order, without coord.
+	 *
+	 * @param indexSearcher
+	 *  searcher used to create the weight of query
+	 * @param query
+	 *  query to extract terms from
+	 * @return
+	 *  query of the distinct terms
+	 *
+	 * @throws IOException
+	 */
+	public static Query createDistinctTermQuery(IndexSearcher indexSearcher, Query query) throws IOException
+	{
+		Set<Term> queryTerms = new TreeSet<Term>();
+		query.createWeight(indexSearcher, false).extractTerms(queryTerms);
+
+		BooleanQuery.Builder distinctTermQuery = new BooleanQuery.Builder();
+		distinctTermQuery.setDisableCoord(true);
+		for(Term queryTerm : queryTerms)
+		{
+			distinctTermQuery.add(new TermQuery(queryTerm), BooleanClause.Occur.SHOULD);
+		}
+		return distinctTermQuery.build();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TFIDFCustom";
+	}
+
+	/**
+	 * This class holds the IDF Score of the term and the boost of the query clause.
+	 */
+	private static class TFIDFWeight extends SimWeight
+	{
+		private String field;
+		private double iDFScore;
+		private float boost;
+
+		private TFIDFWeight(String field, double iDFScore)
+		{
+			this.field = field;
+			this.iDFScore = iDFScore;
+			this.boost = 1f;
+		}
+
+		@Override
+		public float getValueForNormalization()
+		{
+			return 1f;
+		}
+
+		@Override
+		public void normalize(float queryNorm, float boost)
+		{
+			this.boost = boost;
+		}
+	}
+
+	/**
+	 * This class scores the documents of one segment.
+	 */
+	private class TFIDFScorer extends SimScorer
+	{
+		private TFIDFWeight tFIDFWeight;
+		private NumericDocValues normValues;
+
+		private TFIDFScorer(TFIDFWeight tFIDFWeight, NumericDocValues normValues)
+		{
+			this.tFIDFWeight = tFIDFWeight;
+			this.normValues = normValues;
+		}
+
+		/**
+		 * Returns the document length, or 0 if the field has no norms, as DocumentLengths does.
+		 */
+		private double getDocumentLength(int doc)
+		{
+			return normValues == null ? 0 : documentLengthDecodeTable[(int) (normValues.get(doc) & 0xFF)];
+		}
+
+		@Override
+		public float score(int doc, float freq)
+		{
+			double score = Calculator.calculateTFIDFScoreForTerm(freq, getDocumentLength(doc), tFIDFWeight.iDFScore);
+			return (float) (tFIDFWeight.boost == 1f ? score : score * tFIDFWeight.boost);
+		}
+
+		@Override
+		public float computeSlopFactor(int distance)
+		{
+			return 1f / (distance + 1);
+		}
+
+		@Override
+		public float computePayloadFactor(int doc, int start, int end, BytesRef payload)
+		{
+			return 1f;
+		}
+
+		@Override
+		public Explanation explain(int doc, Explanation freq)
+		{
+			double documentLength = getDocumentLength(doc);
+			return Explanation.match(score(doc, freq.getValue()), "score(doc=" + doc + ", freq=" + freq.getValue() + "), (tf / docLength) * idf * boost, computed from:",
+					freq,
+					Explanation.match((float) documentLength, "docLength"),
+					Explanation.match((float) tFIDFWeight.iDFScore, "idf, log(1 + docCount / docFreq)"),
+					Explanation.match(tFIDFWeight.boost, "boost"));
+		}
+	}
+}
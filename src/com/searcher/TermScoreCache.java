@@ -0,0 +1,368 @@
+package com.searcher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+
+import com.result.QueryTermScores;
+
+/**
+ * This class caches the scores of a term over all the documents of the reader, so a term repeated across the queries
+ * of a run (title and description of the same topic, common terms of different topics) is scored from its postings once.
+ * The scores are kept as compact parallel arrays of document id and score in the order of postings.
+ *
+ * Entries are keyed by field, term, similarity class and reader version, hence the scores of a reopened index are never
+ * served from the old reader. The cache is bounded by a memory budget and evicts the least recently used entries first.
+ *
+ * The cache is thread-safe. The entries are spread over segments by the hash of the key, each with its own lock, LRU order
+ * and an equal share of the memory budget, so the threads scoring different terms rarely wait on each other. The scores are
+ * copied before the segment is locked, hence a lock is held only to look up, insert and evict.
+ *
+ * The cache is consulted by the EXHAUSTIVE retrieval only, which is the default mode of SearchTRECTTopics; the other modes
+ * walk the postings of the segments (or shards) themselves and never read or fill it.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TermScoreCache {
+
+	/* Estimated size of the map entry, key and array headers of one cached term */
+	private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+	/* Number of independently locked segments, a power of two */
+	private static final int SEGMENT_COUNT = 16;
+
+	private long maxSizeInBytes;
+	private Segment[] segments;
+
+	private LongAdder hitCount;
+	private LongAdder missCount;
+
+	/**
+	 * Creates the cache bounded by the specified memory budget.
+	 *
+	 * @param maxSizeInBytes
+	 *  memory budget of the cached scores, 0 disables the cache
+	 */
+	public TermScoreCache(long maxSizeInBytes)
+	{
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.segments = new Segment[SEGMENT_COUNT];
+		for(int index = 0; index < SEGMENT_COUNT; index++)
+		{
+			segments[index] = new Segment(maxSizeInBytes / SEGMENT_COUNT);
+		}
+		this.hitCount = new LongAdder();
+		this.missCount = new LongAdder();
+	}
+
+	/**
+	 * Returns the cached scores of the term, or null if they are not cached.
+	 *
+	 * @param term
+	 *  field and text of the term
+	 * @param similarityClass
+	 *  class of the similarity the scores are calculated with
+	 * @param readerVersion
+	 *  version of the reader the scores are calculated on
+	 * @return
+	 *  cached scores, or null
+	 */
+	public TermScores get(Term term, Class<?> similarityClass, long readerVersion)
+	{
+		CacheKey cacheKey = new CacheKey(term.field(), term.bytes(), similarityClass, readerVersion);
+		TermScores termScores = getSegment(cacheKey).get(cacheKey);
+		if(termScores == null)
+		{
+			missCount.increment();
+		}
+		else
+		{
+			hitCount.increment();
+		}
+		return termScores;
+	}
+
+	/**
+	 * Caches the scores of the term, evicting the least recently used terms of its segment if the segment's share of the
+	 * memory budget is exceeded. The scores are copied, so the caller can reuse the QueryTermScores object.
+	 *
+	 * @param term
+	 *  field and text of the term
+	 * @param similarityClass
+	 *  class of the similarity the scores are calculated with
+	 * @param readerVersion
+	 *  version of the reader the scores are calculated on
+	 * @param queryTermScores
+	 *  scores of the term over all the documents of the reader
+	 * @return
+	 *  cached scores, or null if the scores alone exceed the segment's share of the memory budget
+	 */
+	public TermScores put(Term term, Class<?> similarityClass, long readerVersion, QueryTermScores queryTermScores)
+	{
+		int documentCount = queryTermScores.getDocumentCount();
+		CacheKey cacheKey = new CacheKey(term.field(), BytesRef.deepCopyOf(term.bytes()), similarityClass, readerVersion);
+		long entrySizeInBytes = ENTRY_OVERHEAD_BYTES + cacheKey.term.length + (long) documentCount * (Integer.BYTES + Double.BYTES);
+		Segment segment = getSegment(cacheKey);
+		if(entrySizeInBytes > segment.maxSizeInBytes)
+		{
+			return null;
+		}
+
+		int[] documentIDs = new int[documentCount];
+		double[] documentScores = new double[documentCount];
+		for(int index = 0; index < documentCount; index++)
+		{
+			documentIDs[index] = queryTermScores.getDocumentID(index);
+			documentScores[index] = queryTermScores.getDocumentScoreAt(index);
+		}
+		TermScores termScores = new TermScores(documentIDs, documentScores, entrySizeInBytes);
+		segment.put(cacheKey, termScores);
+		return termScores;
+	}
+
+	/**
+	 * Removes all the cached scores. The counters are kept.
+	 */
+	public void clear()
+	{
+		for(Segment segment : segments)
+		{
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups which found the scores in the cache.
+	 * @return
+	 *  hit count
+	 */
+	public long getHitCount()
+	{
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of lookups which did not find the scores in the cache.
+	 * @return
+	 *  miss count
+	 */
+	public long getMissCount()
+	{
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns the number of terms evicted to stay within the memory budget.
+	 * @return
+	 *  eviction count
+	 */
+	public long getEvictionCount()
+	{
+		long evictionCount = 0;
+		for(Segment segment : segments)
+		{
+			evictionCount += segment.getEvictionCount();
+		}
+		return evictionCount;
+	}
+
+	/**
+	 * Returns the estimated memory used by the cached scores.
+	 * @return
+	 *  size in bytes
+	 */
+	public long getSizeInBytes()
+	{
+		long sizeInBytes = 0;
+		for(Segment segment : segments)
+		{
+			sizeInBytes += segment.getSizeInBytes();
+		}
+		return sizeInBytes;
+	}
+
+	/**
+	 * Returns the number of cached terms.
+	 * @return
+	 *  number of cached terms
+	 */
+	public int size()
+	{
+		int size = 0;
+		for(Segment segment : segments)
+		{
+			size += segment.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TermScoreCache[terms=" + size() + ", sizeInBytes=" + getSizeInBytes() + ", maxSizeInBytes=" + maxSizeInBytes
+				+ ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	/**
+	 * This function returns the segment holding the key.
+	 */
+	private Segment getSegment(CacheKey cacheKey)
+	{
+		int hashCode = cacheKey.hashCode();
+		return segments[(hashCode ^ (hashCode >>> 16)) & (SEGMENT_COUNT - 1)];
+	}
+
+	/**
+	 * This class is one independently locked LRU map of the cache, bounded by its share of the memory budget.
+	 */
+	private static class Segment
+	{
+		private long maxSizeInBytes;
+		private long sizeInBytes;
+		private LinkedHashMap<CacheKey, TermScores> termScoresByKey;
+		private long evictionCount;
+
+		private Segment(long maxSizeInBytes)
+		{
+			this.maxSizeInBytes = maxSizeInBytes;
+			this.sizeInBytes = 0;
+			/* Access order makes the iteration order least recently used first */
+			this.termScoresByKey = new LinkedHashMap<CacheKey, TermScores>(16, 0.75f, true);
+		}
+
+		private synchronized TermScores get(CacheKey cacheKey)
+		{
+			return termScoresByKey.get(cacheKey);
+		}
+
+		private synchronized void put(CacheKey cacheKey, TermScores termScores)
+		{
+			TermScores replacedTermScores = termScoresByKey.put(cacheKey, termScores);
+			if(replacedTermScores != null)
+			{
+				sizeInBytes -= replacedTermScores.sizeInBytes;
+			}
+			sizeInBytes += termScores.sizeInBytes;
+
+			Iterator<TermScores> leastRecentlyUsed = termScoresByKey.values().iterator();
+			while(sizeInBytes > maxSizeInBytes)
+			{
+				sizeInBytes -= leastRecentlyUsed.next().sizeInBytes;
+				leastRecentlyUsed.remove();
+				evictionCount++;
+			}
+		}
+
+		private synchronized void clear()
+		{
+			termScoresByKey.clear();
+			sizeInBytes = 0;
+		}
+
+		private synchronized long getSizeInBytes()
+		{
+			return sizeInBytes;
+		}
+
+		private synchronized long getEvictionCount()
+		{
+			return evictionCount;
+		}
+
+		private synchronized int size()
+		{
+			return termScoresByKey.size();
+		}
+	}
+
+	/**
+	 * This class holds the cached scores of one term. The arrays must not be modified.
+	 */
+	public static class TermScores
+	{
+		private int[] documentIDs;
+		private double[] documentScores;
+		private long sizeInBytes;
+
+		private TermScores(int[] documentIDs, double[] documentScores, long sizeInBytes)
+		{
+			this.documentIDs = documentIDs;
+			this.documentScores = documentScores;
+			this.sizeInBytes = sizeInBytes;
+		}
+
+		/**
+		 * Returns the document ids in the order of postings.
+		 * @return
+		 *  document ids
+		 */
+		public int[] getDocumentIDs()
+		{
+			return documentIDs;
+		}
+
+		/**
+		 * Returns the score of each document w.r.t the term.
+		 * @return
+		 *  document scores
+		 */
+		public double[] getDocumentScores()
+		{
+			return documentScores;
+		}
+
+		/**
+		 * Returns the number of documents containing the term.
+		 * @return
+		 *  number of documents
+		 */
+		public int getDocumentCount()
+		{
+			return documentIDs.length;
+		}
+	}
+
+	/**
+	 * This class is the key of a cached term.
+	 */
+	private static class CacheKey
+	{
+		private String field;
+		private BytesRef term;
+		private Class<?> similarityClass;
+		private long readerVersion;
+
+		private CacheKey(String field, BytesRef term, Class<?> similarityClass, long readerVersion)
+		{
+			this.field = field;
+			this.term = term;
+			this.similarityClass = similarityClass;
+			this.readerVersion = readerVersion;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hashCode = field.hashCode();
+			hashCode = 31 * hashCode + term.hashCode();
+			hashCode = 31 * hashCode + similarityClass.hashCode();
+			return 31 * hashCode + Long.hashCode(readerVersion);
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if(!(object instanceof CacheKey))
+			{
+				return false;
+			}
+			CacheKey cacheKey = (CacheKey) object;
+			return readerVersion == cacheKey.readerVersion && similarityClass == cacheKey.similarityClass
+					&& field.equals(cacheKey.field) && term.bytesEquals(cacheKey.term);
+		}
+	}
+}
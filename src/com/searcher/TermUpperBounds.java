@@ -0,0 +1,171 @@
+package com.searcher;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+import com.calculator.Calculator;
+import com.constants.Constants;
+
+/**
+ * This class holds the highest TF Score of every term of "TEXT" field over all the documents of the reader.
+ * Multiplied by the IDF Score of the term it gives the upper bound of the TF-IDF Score the term can contribute
+ * to any document, which is used by MaxScoreSearch to skip documents that cannot enter the top k.
+ *
+ * The bounds of all the terms are built in one pass over the postings of the reader, so no query walks the postings
+ * of its terms twice. The terms are kept sorted in one byte array and looked up by binary search, without an object
+ * per term, and the bounds can be read by several threads at once.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TermUpperBounds {
+
+	/* Bytes of all the terms in sorted order; the term at index i is termBytes[termStarts[i], termStarts[i + 1]) */
+	private byte[] termBytes;
+	private int[] termStarts;
+	private double[] maxTFScores;
+
+	private TermUpperBounds(byte[] termBytes, int[] termStarts, double[] maxTFScores)
+	{
+		this.termBytes = termBytes;
+		this.termStarts = termStarts;
+		this.maxTFScores = maxTFScores;
+	}
+
+	/**
+	 * This function builds the upper bounds of all the terms of the specified reader, walking the postings of every segment once.
+	 *
+	 * @param indexReader
+	 *  reader to build upper bounds for
+	 * @param documentLengths
+	 *  document lengths of the reader
+	 * @return
+	 *  upper bounds of the reader
+	 *
+	 * @throws IOException
+	 */
+	public static TermUpperBounds build(IndexReader indexReader, DocumentLengths documentLengths) throws IOException
+	{
+		/* A term of several segments gets one id, holding the highest TF Score of all its segments */
+		BytesRefHash termIDs = new BytesRefHash();
+		double[] termMaxTFScores = new double[0];
+		PostingsEnum posting = null;
+		for(LeafReaderContext leafReaderContext : indexReader.leaves())
+		{
+			Terms terms = leafReaderContext.reader().terms(Constants.FIELD_TEXT);
+			if(terms == null)
+			{
+				continue;
+			}
+			double[] leafDocumentLengths = documentLengths.getLeafDocumentLengths(leafReaderContext.ord);
+			TermsEnum termsEnum = terms.iterator();
+			BytesRef term;
+			while((term = termsEnum.next()) != null)
+			{
+				double leafMaxTFScore = 0;
+				posting = termsEnum.postings(posting, PostingsEnum.FREQS);
+				while(posting.nextDoc() != PostingsEnum.NO_MORE_DOCS)
+				{
+					double tFScore = Calculator.calculateTFScore(posting.freq(), leafDocumentLengths[posting.docID()]);
+					if(tFScore > leafMaxTFScore)
+					{
+						leafMaxTFScore = tFScore;
+					}
+				}
+
+				int termID = termIDs.add(term);
+				if(termID < 0)
+				{
+					termID = -termID - 1;
+				}
+				else
+				{
+					termMaxTFScores = ArrayUtil.grow(termMaxTFScores, termID + 1);
+				}
+				if(leafMaxTFScore > termMaxTFScores[termID])
+				{
+					termMaxTFScores[termID] = leafMaxTFScore;
+				}
+			}
+		}
+
+		/* The hash is not safe to read from several threads, so the terms are copied out in sorted order */
+		int termCount = termIDs.size();
+		int[] sortedTermIDs = termIDs.sort(BytesRef.getUTF8SortedAsUnicodeComparator());
+		int[] termStarts = new int[termCount + 1];
+		double[] maxTFScores = new double[termCount];
+		BytesRef term = new BytesRef();
+		for(int termIndex = 0; termIndex < termCount; termIndex++)
+		{
+			termIDs.get(sortedTermIDs[termIndex], term);
+			termStarts[termIndex + 1] = termStarts[termIndex] + term.length;
+			maxTFScores[termIndex] = termMaxTFScores[sortedTermIDs[termIndex]];
+		}
+		byte[] termBytes = new byte[termStarts[termCount]];
+		for(int termIndex = 0; termIndex < termCount; termIndex++)
+		{
+			termIDs.get(sortedTermIDs[termIndex], term);
+			System.arraycopy(term.bytes, term.offset, termBytes, termStarts[termIndex], term.length);
+		}
+		return new TermUpperBounds(termBytes, termStarts, maxTFScores);
+	}
+
+	/**
+	 * Returns the highest TF Score of the term in any document, or 0 if the term is not in the index.
+	 *
+	 * @param term
+	 *  term bytes
+	 * @return
+	 *  highest TF Score of the term
+	 */
+	public double getMaxTFScore(BytesRef term)
+	{
+		int low = 0;
+		int high = maxTFScores.length - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			int comparison = compareTerm(middle, term);
+			if(comparison < 0)
+			{
+				low = middle + 1;
+			}
+			else if(comparison > 0)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return maxTFScores[middle];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compares the term at specified index with the term, byte by byte as unsigned values like BytesRef.compareTo.
+	 */
+	private int compareTerm(int termIndex, BytesRef term)
+	{
+		int start = termStarts[termIndex];
+		int length = termStarts[termIndex + 1] - start;
+		int commonLength = Math.min(length, term.length);
+		for(int byteIndex = 0; byteIndex < commonLength; byteIndex++)
+		{
+			int difference = (termBytes[start + byteIndex] & 0xFF) - (term.bytes[term.offset + byteIndex] & 0xFF);
+			if(difference != 0)
+			{
+				return difference;
+			}
+		}
+		return length - term.length;
+	}
+}
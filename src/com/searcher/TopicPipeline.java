@@ -0,0 +1,512 @@
+package com.searcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.benchmark.quality.QualityQuery;
+
+import com.constants.Constants;
+import com.metrics.PipelineMetrics;
+import com.metrics.PipelineMetrics.PipelineStage;
+import com.metrics.QueryMetrics;
+import com.metrics.QueryMetrics.QueryType;
+import com.metrics.QueryMetrics.Stage;
+import com.metrics.RunMetrics;
+import com.result.RankedResults;
+import com.result.RunFileWriter;
+
+/**
+ * This class processes the topics of a run as a pipeline of stages connected by bounded queues: a thread reads the
+ * topics from the TrecTopicStream, a thread cleans the title and description of every topic into a short and a long
+ * query, a pool of threads searches the queries, and the calling thread writes their results to the run files.
+ * Reading, searching and writing overlap, and a full queue blocks the stage before it, so a topic file of any size is
+ * processed with at most Constants.TOPIC_PIPELINE_MAX_IN_FLIGHT_QUERIES queries between the analysis and the output.
+ *
+ * The results are written in the order of topics, so the run files are byte-identical to a run on a single thread.
+ * They are not kept; a ResultsConsumer sees the results of every query after they are written, e.g. to evaluate the run.
+ *
+ * Every stage is measured in the PipelineMetrics of the pipeline. If the pipeline is given a RunMetrics, every query is
+ * measured too: the query is the current QueryMetrics of the thread while it is searched, so the searcher adds its stage
+ * times and counters, and the time to write its results is added before it is recorded in the RunMetrics.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TopicPipeline implements Closeable {
+
+	/* The output stage checks for a failed stage whenever no results arrived within this interval */
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	/* Ends the items of every queue */
+	private static final QualityQuery END_OF_TOPICS = new QualityQuery("", Collections.<String, String>emptyMap());
+	private static final QueryTask END_OF_QUERIES = new QueryTask(-1, null, null, null, null);
+	private static final QueryResults END_OF_RESULTS = new QueryResults(END_OF_QUERIES, null);
+
+	/**
+	 * This interface consumes the results of every query, in the order they are written. It is called from the output stage only.
+	 */
+	public interface ResultsConsumer
+	{
+		/**
+		 * Consumes the results of the query.
+		 *
+		 * @param queryType
+		 *  type of the query, short for the title and long for the description of the topic
+		 * @param rankedResults
+		 *  ranked results of the query, one per output
+		 *
+		 * @throws IOException
+		 */
+		void accept(QueryType queryType, RankedResults[] rankedResults) throws IOException;
+	}
+
+	/**
+	 * This interface searches one query for several outputs at once, e.g. with several similarities, and returns
+	 * the ranked results of every output. It is called from several threads at once.
+	 */
+	public interface MultiQuerySearcher
+	{
+		/**
+		 * Searches the specified query.
+		 *
+		 * @param queryString
+		 *  cleaned query string
+		 * @param queryID
+		 *  Query ID
+		 * @return
+		 *  ranked results of the query, one per output
+		 *
+		 * @throws Exception
+		 */
+		RankedResults[] search(String queryString, String queryID) throws Exception;
+	}
+
+	/**
+	 * This class is a query of a topic waiting to be searched.
+	 */
+	private static class QueryTask
+	{
+		private long sequence;
+		private String queryID;
+		private QueryType queryType;
+		private String queryString;
+		private QueryMetrics queryMetrics;
+
+		private QueryTask(long sequence, String queryID, QueryType queryType, String queryString, QueryMetrics queryMetrics)
+		{
+			this.sequence = sequence;
+			this.queryID = queryID;
+			this.queryType = queryType;
+			this.queryString = queryString;
+			this.queryMetrics = queryMetrics;
+		}
+	}
+
+	/**
+	 * This class is a searched query waiting to be written.
+	 */
+	private static class QueryResults
+	{
+		private QueryTask queryTask;
+		private RankedResults[] rankedResults;
+
+		private QueryResults(QueryTask queryTask, RankedResults[] rankedResults)
+		{
+			this.queryTask = queryTask;
+			this.rankedResults = rankedResults;
+		}
+	}
+
+	private ExecutorService executorService;
+	private int searchThreadCount;
+	private int queueSize;
+	private int maxInFlightQueryCount;
+	private PipelineMetrics pipelineMetrics;
+	private RunMetrics runMetrics;
+
+	/**
+	 * Creates the TopicPipeline with Constants.SEARCH_THREAD_COUNT search threads and the default queue sizes.
+	 *
+	 * @param pipelineMetrics
+	 *  measurements of the stages
+	 * @param runMetrics
+	 *  measurements of the run, null to measure no query
+	 */
+	public TopicPipeline(PipelineMetrics pipelineMetrics, RunMetrics runMetrics)
+	{
+		this(Constants.SEARCH_THREAD_COUNT, Constants.TOPIC_PIPELINE_QUEUE_SIZE, Constants.TOPIC_PIPELINE_MAX_IN_FLIGHT_QUERIES, pipelineMetrics, runMetrics);
+	}
+
+	/**
+	 * Creates the TopicPipeline with specified number of search threads and queue sizes.
+	 *
+	 * @param searchThreadCount
+	 *  number of threads searching the queries
+	 * @param queueSize
+	 *  capacity of every queue between two stages
+	 * @param maxInFlightQueryCount
+	 *  number of queries which may be searched or wait to be written at once
+	 * @param pipelineMetrics
+	 *  measurements of the stages
+	 * @param runMetrics
+	 *  measurements of the run, null to measure no query
+	 */
+	public TopicPipeline(int searchThreadCount, int queueSize, int maxInFlightQueryCount, PipelineMetrics pipelineMetrics, RunMetrics runMetrics)
+	{
+		/* The reading and analysis stages run on two threads of their own */
+		this.executorService = Executors.newFixedThreadPool(searchThreadCount + 2);
+		this.searchThreadCount = searchThreadCount;
+		this.queueSize = queueSize;
+		this.maxInFlightQueryCount = maxInFlightQueryCount;
+		this.pipelineMetrics = pipelineMetrics;
+		this.runMetrics = runMetrics;
+	}
+
+	/**
+	 * This function searches the short and long query of every topic of the stream once for all the outputs, and writes
+	 * the results of every output to its short and long output file, in the order of topics.
+	 *
+	 * @param topicStream
+	 *  stream of the trec topics
+	 * @param multiQuerySearcher
+	 *  searcher of one query for all the outputs
+	 * @param docNoLookup
+	 *  lookup to resolve the DOCNO of documents being written
+	 * @param shortOutputFilePaths
+	 *  output file of short (title) queries, per output, null for an output without output file
+	 * @param longOutputFilePaths
+	 *  output file of long (description) queries, per output, null for an output without output file
+	 * @param resultsConsumer
+	 *  consumer of the results of every query, null if the results are only written
+	 *
+	 * @throws IOException
+	 */
+	public void process(TrecTopicStream topicStream, MultiQuerySearcher multiQuerySearcher, DocNoLookup docNoLookup,
+			String[] shortOutputFilePaths, String[] longOutputFilePaths, ResultsConsumer resultsConsumer) throws IOException
+	{
+		BlockingQueue<QualityQuery> topicQueue = new ArrayBlockingQueue<QualityQuery>(queueSize);
+		BlockingQueue<QueryTask> queryQueue = new ArrayBlockingQueue<QueryTask>(queueSize);
+		BlockingQueue<QueryResults> resultQueue = new ArrayBlockingQueue<QueryResults>(queueSize);
+		Semaphore inFlightQueries = new Semaphore(maxInFlightQueryCount);
+		pipelineMetrics.setStage(PipelineStage.READ, 1, null);
+		pipelineMetrics.setStage(PipelineStage.ANALYZE, 1, topicQueue);
+		pipelineMetrics.setStage(PipelineStage.SCORE, searchThreadCount, queryQueue);
+		pipelineMetrics.setStage(PipelineStage.WRITE, 1, resultQueue);
+
+		/* The run files stay open for the whole run */
+		int outputCount = shortOutputFilePaths.length;
+		RunFileWriter[] shortRunFileWriters = new RunFileWriter[outputCount];
+		RunFileWriter[] longRunFileWriters = new RunFileWriter[outputCount];
+		List<Future<?>> stageFutures = new ArrayList<Future<?>>(searchThreadCount + 2);
+		Throwable pipelineFailure = null;
+		try
+		{
+			for(int outputIndex = 0; outputIndex < outputCount; outputIndex++)
+			{
+				if(shortOutputFilePaths[outputIndex] != null)
+				{
+					shortRunFileWriters[outputIndex] = new RunFileWriter(shortOutputFilePaths[outputIndex], docNoLookup);
+				}
+				if(longOutputFilePaths[outputIndex] != null)
+				{
+					longRunFileWriters[outputIndex] = new RunFileWriter(longOutputFilePaths[outputIndex], docNoLookup);
+				}
+			}
+
+			pipelineMetrics.start();
+			stageFutures.add(executorService.submit(() -> read(topicStream, topicQueue)));
+			stageFutures.add(executorService.submit(() -> analyze(topicQueue, queryQueue, inFlightQueries)));
+			for(int threadIndex = 0; threadIndex < searchThreadCount; threadIndex++)
+			{
+				stageFutures.add(executorService.submit(() -> score(queryQueue, resultQueue, multiQuerySearcher)));
+			}
+			write(resultQueue, inFlightQueries, stageFutures, shortRunFileWriters, longRunFileWriters, resultsConsumer);
+			checkStages(stageFutures);
+		}
+		catch(Throwable e)
+		{
+			pipelineFailure = e;
+			throw e;
+		}
+		finally
+		{
+			pipelineMetrics.stop();
+			/* A failed stage stops the others, which may be waiting on a queue */
+			for(Future<?> stageFuture : stageFutures)
+			{
+				stageFuture.cancel(true);
+			}
+			closeAll(pipelineFailure, shortRunFileWriters, longRunFileWriters);
+		}
+	}
+
+	/**
+	 * Reads the topics of the stream into the topic queue.
+	 */
+	private Void read(TrecTopicStream topicStream, BlockingQueue<QualityQuery> topicQueue) throws IOException, InterruptedException
+	{
+		while(true)
+		{
+			long startTime = System.nanoTime();
+			QualityQuery qualityQuery = topicStream.next();
+			if(qualityQuery == null)
+			{
+				break;
+			}
+			pipelineMetrics.recordItem(PipelineStage.READ, startTime);
+			topicQueue.put(qualityQuery);
+		}
+		topicQueue.put(END_OF_TOPICS);
+		return null;
+	}
+
+	/**
+	 * Cleans the title and description of every topic into its short and long query, numbered in the order of writing.
+	 * A query is queued only when fewer than the maximum number of queries are in flight.
+	 */
+	private Void analyze(BlockingQueue<QualityQuery> topicQueue, BlockingQueue<QueryTask> queryQueue, Semaphore inFlightQueries) throws InterruptedException
+	{
+		long sequence = 0;
+		while(true)
+		{
+			pipelineMetrics.recordQueueDepth(PipelineStage.ANALYZE);
+			QualityQuery qualityQuery = topicQueue.take();
+			if(qualityQuery == END_OF_TOPICS)
+			{
+				break;
+			}
+			long startTime = System.nanoTime();
+			String queryID = qualityQuery.getQueryID();
+			String cleanedTitleQuery = SearchTRECTTopics.cleanTitleQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_TITLE));
+			String cleanedDescQuery = SearchTRECTTopics.cleanDescQueryString(qualityQuery.getValue(Constants.TREC_TOPIC_QUERY_DESC));
+			QueryMetrics titleMetrics = (runMetrics == null) ? null : new QueryMetrics(queryID, QueryType.SHORT);
+			QueryMetrics descMetrics = (runMetrics == null) ? null : new QueryMetrics(queryID, QueryType.LONG);
+			QueryTask titleTask = new QueryTask(sequence++, queryID, QueryType.SHORT, cleanedTitleQuery, titleMetrics);
+			QueryTask descTask = new QueryTask(sequence++, queryID, QueryType.LONG, cleanedDescQuery, descMetrics);
+			pipelineMetrics.recordItem(PipelineStage.ANALYZE, startTime);
+
+			inFlightQueries.acquire();
+			queryQueue.put(titleTask);
+			inFlightQueries.acquire();
+			queryQueue.put(descTask);
+		}
+		/* Every search thread ends at its own end marker */
+		for(int threadIndex = 0; threadIndex < searchThreadCount; threadIndex++)
+		{
+			queryQueue.put(END_OF_QUERIES);
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the queries of the query queue into the result queue, until the end marker of the thread.
+	 */
+	private Void score(BlockingQueue<QueryTask> queryQueue, BlockingQueue<QueryResults> resultQueue, MultiQuerySearcher multiQuerySearcher) throws Exception
+	{
+		while(true)
+		{
+			pipelineMetrics.recordQueueDepth(PipelineStage.SCORE);
+			QueryTask queryTask = queryQueue.take();
+			if(queryTask == END_OF_QUERIES)
+			{
+				break;
+			}
+			long startTime = System.nanoTime();
+			RankedResults[] rankedResults = search(multiQuerySearcher, queryTask.queryString, queryTask.queryID, queryTask.queryMetrics);
+			pipelineMetrics.recordItem(PipelineStage.SCORE, startTime);
+			resultQueue.put(new QueryResults(queryTask, rankedResults));
+		}
+		resultQueue.put(END_OF_RESULTS);
+		return null;
+	}
+
+	/**
+	 * Writes the results of the result queue in the order of queries, until the end marker of every search thread.
+	 * The results which arrive early wait for the results before them, at most as many as the queries in flight.
+	 */
+	private void write(BlockingQueue<QueryResults> resultQueue, Semaphore inFlightQueries, List<Future<?>> stageFutures,
+			RunFileWriter[] shortRunFileWriters, RunFileWriter[] longRunFileWriters, ResultsConsumer resultsConsumer) throws IOException
+	{
+		Map<Long, QueryResults> waitingResults = new HashMap<Long, QueryResults>();
+		long nextSequence = 0;
+		int endedThreadCount = 0;
+		while(endedThreadCount < searchThreadCount)
+		{
+			pipelineMetrics.recordQueueDepth(PipelineStage.WRITE);
+			QueryResults queryResults = poll(resultQueue);
+			if(queryResults == null)
+			{
+				checkStages(stageFutures);
+				continue;
+			}
+			if(queryResults == END_OF_RESULTS)
+			{
+				endedThreadCount++;
+				continue;
+			}
+
+			waitingResults.put(queryResults.queryTask.sequence, queryResults);
+			while((queryResults = waitingResults.remove(nextSequence)) != null)
+			{
+				long startTime = System.nanoTime();
+				QueryTask queryTask = queryResults.queryTask;
+				write(queryResults.rankedResults, (queryTask.queryType == QueryType.SHORT) ? shortRunFileWriters : longRunFileWriters, queryTask.queryMetrics);
+				if(resultsConsumer != null)
+				{
+					resultsConsumer.accept(queryTask.queryType, queryResults.rankedResults);
+				}
+				pipelineMetrics.recordItem(PipelineStage.WRITE, startTime);
+				inFlightQueries.release();
+				nextSequence++;
+			}
+		}
+	}
+
+	/**
+	 * Writes the results of the query for every output with a run file, and records the query if it is measured.
+	 */
+	private void write(RankedResults[] rankedResults, RunFileWriter[] runFileWriters, QueryMetrics queryMetrics) throws IOException
+	{
+		long startTime = System.nanoTime();
+		long writtenDocumentCount = 0;
+		for(int outputIndex = 0; outputIndex < runFileWriters.length; outputIndex++)
+		{
+			if(runFileWriters[outputIndex] != null)
+			{
+				rankedResults[outputIndex].writeTo(runFileWriters[outputIndex]);
+				writtenDocumentCount += rankedResults[outputIndex].size();
+			}
+		}
+		if(queryMetrics != null)
+		{
+			queryMetrics.addStageTime(Stage.WRITE, startTime);
+			queryMetrics.addWrittenDocumentCount(writtenDocumentCount);
+			runMetrics.record(queryMetrics);
+		}
+	}
+
+	/**
+	 * Waits for the next results for at most the poll interval.
+	 */
+	private static QueryResults poll(BlockingQueue<QueryResults> resultQueue) throws IOException
+	{
+		try
+		{
+			return resultQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for query results", e);
+		}
+	}
+
+	/**
+	 * Searches the query, as the current query of the thread if it is measured.
+	 */
+	private static RankedResults[] search(MultiQuerySearcher multiQuerySearcher, String queryString, String queryID, QueryMetrics queryMetrics) throws Exception
+	{
+		if(queryMetrics == null)
+		{
+			return multiQuerySearcher.search(queryString, queryID);
+		}
+		queryMetrics.begin();
+		try
+		{
+			return multiQuerySearcher.search(queryString, queryID);
+		}
+		finally
+		{
+			queryMetrics.end();
+		}
+	}
+
+	/**
+	 * Closes all the opened run files of every set, trying every file whatever the failures of the others. If the run
+	 * has failed, the close failures are added to its failure as suppressed, so they do not hide it. Otherwise the first
+	 * close failure is reported, with the others suppressed.
+	 */
+	private static void closeAll(Throwable runFailure, RunFileWriter[]... runFileWriterSets) throws IOException
+	{
+		IOException closeException = null;
+		for(RunFileWriter[] runFileWriters : runFileWriterSets)
+		{
+			for(RunFileWriter runFileWriter : runFileWriters)
+			{
+				if(runFileWriter == null)
+				{
+					continue;
+				}
+				try
+				{
+					runFileWriter.close();
+				}
+				catch(IOException e)
+				{
+					if(runFailure != null)
+					{
+						runFailure.addSuppressed(e);
+					}
+					else if(closeException == null)
+					{
+						closeException = e;
+					}
+					else
+					{
+						closeException.addSuppressed(e);
+					}
+				}
+			}
+		}
+		if(closeException != null)
+		{
+			throw closeException;
+		}
+	}
+
+	/**
+	 * Reports the failure of any stage which has ended as IOException.
+	 */
+	private static void checkStages(List<Future<?>> stageFutures) throws IOException
+	{
+		for(Future<?> stageFuture : stageFutures)
+		{
+			if(!stageFuture.isDone())
+			{
+				continue;
+			}
+			try
+			{
+				stageFuture.get();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while checking the pipeline", e);
+			}
+			catch(ExecutionException e)
+			{
+				throw new IOException("Unable to process topics", e.getCause());
+			}
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		executorService.shutdownNow();
+	}
+}
@@ -0,0 +1,101 @@
+package com.searcher;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.lucene.benchmark.quality.QualityQuery;
+import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
+
+/**
+ * This class reads the topics of a trec topic file one at a time, so a topic file of any size is read in the memory of
+ * one topic. The lines of every topic from &lt;top&gt; to &lt;/top&gt; are parsed by the TrecTopicsReader, so a topic
+ * has exactly the fields TrecTopicsReader.readQueries gives it. Unlike readQueries, the topics are returned in the order
+ * of the file rather than sorted by topic number.
+ *
+ * It is not thread safe; the topics are read by one thread.
+ *
+ * @author Anwar Shaikh
+ *
+ */
+public class TrecTopicStream implements Closeable {
+
+	private static final String TOPIC_START = "<top>";
+	private static final String TOPIC_END = "</top>";
+
+	private BufferedReader bufferedReader;
+	private TrecTopicsReader trecTopicReader;
+	private StringBuilder topicText;
+
+	/**
+	 * Creates the TrecTopicStream over the specified topic file.
+	 *
+	 * @param topicFilePath
+	 *  path of the trec topic file
+	 *
+	 * @throws IOException
+	 */
+	public TrecTopicStream(String topicFilePath) throws IOException
+	{
+		this(new BufferedReader(new FileReader(topicFilePath)));
+	}
+
+	/**
+	 * Creates the TrecTopicStream over the specified reader, which is closed when the stream is closed.
+	 *
+	 * @param bufferedReader
+	 *  reader of the topics
+	 */
+	public TrecTopicStream(BufferedReader bufferedReader)
+	{
+		this.bufferedReader = bufferedReader;
+		this.trecTopicReader = new TrecTopicsReader();
+		this.topicText = new StringBuilder();
+	}
+
+	/**
+	 * This function reads the next topic.
+	 *
+	 * @return
+	 *  next topic, null at the end of the topics
+	 *
+	 * @throws IOException
+	 */
+	public QualityQuery next() throws IOException
+	{
+		String line;
+		while((line = bufferedReader.readLine()) != null)
+		{
+			if(!line.startsWith(TOPIC_START))
+			{
+				continue;
+			}
+
+			/* Collect the lines of the topic and parse them as a topic file of one topic */
+			topicText.setLength(0);
+			topicText.append(line).append('\n');
+			while((line = bufferedReader.readLine()) != null)
+			{
+				topicText.append(line).append('\n');
+				if(line.startsWith(TOPIC_END))
+				{
+					break;
+				}
+			}
+			QualityQuery[] qualityQueries = trecTopicReader.readQueries(new BufferedReader(new StringReader(topicText.toString())));
+			if(qualityQueries.length > 0)
+			{
+				return qualityQueries[0];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		bufferedReader.close();
+	}
+}